@@ -0,0 +1,119 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.common.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import software.aws.solution.clickstream.common.RuleConfig;
+import software.aws.solution.clickstream.common.enrich.RuleBasedTrafficSourceHelper;
+import software.aws.solution.clickstream.common.enrich.UAEnrichHelper;
+import software.aws.solution.clickstream.common.enrich.ts.rule.CategoryListEvaluator;
+import software.aws.solution.clickstream.common.enrich.ts.rule.ChannelListEvaluator;
+import software.aws.solution.clickstream.common.enrich.ts.rule.ChannelRuleEvaluatorInput;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static software.aws.solution.clickstream.common.Util.readResourceFile;
+
+/**
+ * Measures the user agent and traffic source enrichment of a single event.
+ * Inputs are rotated on every call, the evaluators cache by input, so steady state
+ * numbers mostly reflect the cache hit path, as in production.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnrichBenchmark {
+    private static final String[] USER_AGENTS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/58.0.3029.110 Safari/537.36",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 16_5 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/16.5 Mobile/15E148 Safari/604.1",
+            "Mozilla/5.0 (Linux; Android 13; SM-S908B) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/112.0.0.0 Mobile Safari/537.36",
+            "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+    };
+
+    private static final String[][] PAGES = {
+            {"https://www.example.com/a?utm_source=google&utm_medium=cpc&gclid=abc", "https://www.google.com/search?q=shoes"},
+            {"https://www.example.com/b?utm_source=newsletter&utm_medium=email", null},
+            {"https://www.example.com/c", "https://www.facebook.com/"},
+            {"https://www.example.com/d", "https://www.bing.com/search?q=test"},
+            {"https://www.example.com/e", null},
+    };
+
+    private RuleBasedTrafficSourceHelper trafficSourceHelper;
+    private ChannelListEvaluator channelListEvaluator;
+    private CategoryListEvaluator categoryListEvaluator;
+    private ChannelRuleEvaluatorInput[] channelInputs;
+    private int index;
+
+    @Setup
+    public void setup() throws IOException {
+        RuleConfig ruleConfig = new RuleConfig();
+        ruleConfig.setOptCategoryRuleJson(readResourceFile("ts/traffic_source_category_rule_v0.json"));
+        ruleConfig.setOptChannelRuleJson(readResourceFile("ts/traffic_source_channel_rule_v0.json"));
+        trafficSourceHelper = RuleBasedTrafficSourceHelper.getInstance("benchmark_app", ruleConfig);
+
+        channelListEvaluator = ChannelListEvaluator.fromJsonFile("ts/traffic_source_channel_rule_v0.json");
+        categoryListEvaluator = CategoryListEvaluator.fromJsonFile("ts/traffic_source_category_rule_v0.json");
+
+        channelInputs = new ChannelRuleEvaluatorInput[PAGES.length];
+        String[] categories = {"Search", "Email", "Social", "Search", null};
+        for (int i = 0; i < PAGES.length; i++) {
+            ChannelRuleEvaluatorInput input = new ChannelRuleEvaluatorInput();
+            input.setTrafficSourceCategory(categories[i]);
+            input.setTrafficSourceClid(i == 0 ? "abc" : null);
+            input.setPageViewLatestReferrer(PAGES[i][1]);
+            channelInputs[i] = input;
+        }
+    }
+
+    private int next(final int size) {
+        index = (index + 1) % (USER_AGENTS.length * PAGES.length);
+        return index % size;
+    }
+
+    @Benchmark
+    public void parseUA(final Blackhole bh) {
+        bh.consume(UAEnrichHelper.parserUA(USER_AGENTS[next(USER_AGENTS.length)]));
+    }
+
+    @Benchmark
+    public void parseTrafficSource(final Blackhole bh) {
+        String[] page = PAGES[next(PAGES.length)];
+        bh.consume(trafficSourceHelper.parse(page[0], page[1], page[1], null));
+    }
+
+    @Benchmark
+    public void evaluateChannel(final Blackhole bh) {
+        bh.consume(channelListEvaluator.evaluate(channelInputs[next(channelInputs.length)]));
+    }
+
+    @Benchmark
+    public void evaluateCategory(final Blackhole bh) {
+        bh.consume(categoryListEvaluator.evaluate(PAGES[next(PAGES.length)][1]));
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.common.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import software.aws.solution.clickstream.common.BaseEventParser;
+import software.aws.solution.clickstream.common.ClickstreamEventParser;
+import software.aws.solution.clickstream.common.TransformConfig;
+import software.aws.solution.clickstream.common.gtm.GTMEventParser;
+import software.aws.solution.clickstream.common.sensors.SensorsEventParser;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static software.aws.solution.clickstream.common.Util.readResourceFile;
+
+/**
+ * Measures parseLineToDBRow for one ingest line of each supported source format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventParserBenchmark {
+    private static final String PROJECT_ID = "benchmark_project";
+    private static final String FILE_NAME = "benchmark.json";
+
+    @Param({"clickstream_gzip", "clickstream_plain", "gtm", "sensors"})
+    private String source;
+
+    private BaseEventParser parser;
+    private String line;
+
+    @Setup
+    public void setup() throws IOException {
+        switch (source) {
+            case "clickstream_gzip":
+                parser = ClickstreamEventParser.getInstance(new TransformConfig());
+                line = firstLine("original_data.json");
+                break;
+            case "clickstream_plain":
+                parser = ClickstreamEventParser.getInstance(new TransformConfig());
+                line = firstLine("original_data_nozip.json");
+                break;
+            case "gtm":
+                parser = GTMEventParser.getInstance();
+                line = firstLine("gtm-server/server-single.json");
+                break;
+            case "sensors":
+                parser = SensorsEventParser.getInstance();
+                line = firstLine("sensors-data/gzip-raw-data.json");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown source: " + source);
+        }
+    }
+
+    @Benchmark
+    public void parseLineToDBRow(final Blackhole bh) throws IOException {
+        bh.consume(parser.parseLineToDBRow(line, PROJECT_ID, FILE_NAME));
+    }
+
+    private static String firstLine(final String fileName) throws IOException {
+        return readResourceFile(fileName).trim().split("\n")[0];
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.common.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import software.aws.solution.clickstream.common.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures the url and gzip helpers of {@link Util} used on every ingest row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UtilBenchmark {
+    private static final String[] URLS = {
+            "https://www.example.com/products/shoes?utm_source=google&utm_medium=cpc&utm_campaign=spring_sale&gclid=abc123",
+            "https://m.example.com/search?q=%E4%B8%AD%E6%96%87&page=2&sort=price_asc",
+            "http://example.com/landing#section?utm_source=newsletter",
+            "https://shop.example.com/cart?item=1&item=2&item=3&coupon=",
+            "/relative/path/without/host?k=v",
+    };
+
+    @Param({"1024", "65536"})
+    private int payloadSize;
+
+    private byte[] gzipPayload;
+    private int urlIndex;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder sb = new StringBuilder(payloadSize);
+        int i = 0;
+        while (sb.length() < payloadSize) {
+            sb.append("{\"event_type\":\"_page_view\",\"event_id\":\"").append(i++).append("\",\"attributes\":{\"_page_url\":\"")
+                    .append(URLS[i % URLS.length]).append("\"}},");
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream gos = new GZIPOutputStream(bos)) {
+            gos.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        gzipPayload = bos.toByteArray();
+    }
+
+    @Benchmark
+    public void getUriParams(final Blackhole bh) {
+        urlIndex = (urlIndex + 1) % URLS.length;
+        bh.consume(Util.getUriParams(URLS[urlIndex]));
+    }
+
+    @Benchmark
+    public void decompress(final Blackhole bh) {
+        bh.consume(Util.decompress(gzipPayload));
+    }
+}
@@ -13,21 +13,27 @@
 
 package software.aws.solution.clickstream.common;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.extern.slf4j.Slf4j;
 import software.aws.solution.clickstream.common.enrich.RuleBasedTrafficSourceHelper;
 import software.aws.solution.clickstream.common.enrich.UrlParseResult;
 import software.aws.solution.clickstream.common.enrich.ts.CategoryTrafficSource;
+import software.aws.solution.clickstream.common.exception.ExtractDataException;
 import software.aws.solution.clickstream.common.ingest.ClickstreamIngestRow;
 import software.aws.solution.clickstream.common.model.ClickstreamEvent;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static software.aws.solution.clickstream.common.Util.deCodeUri;
 import static software.aws.solution.clickstream.common.Util.decompress;
@@ -56,16 +62,105 @@ public abstract class BaseEventParser implements EventParser {
         return OBJECT_MAPPER.readValue(ingestLine, ClickstreamIngestRow.class);
     }
 
-    @Override
-    public JsonNode getData(final String ingestDataField) throws JsonProcessingException {
+    protected static ParseDataResult emptyParseDataResult() {
+        ParseDataResult parseDataResult = new ParseDataResult();
+        parseDataResult.setClickstreamEventList(new ArrayList<>());
+        parseDataResult.setClickstreamItemList(new ArrayList<>());
+        return parseDataResult;
+    }
+
+    protected static <T> T readDataValue(final ObjectReader reader, final JsonParser dataParser) throws JsonProcessingException {
+        long start = ParserMetrics.start();
+        try {
+            return reader.readValue(dataParser);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new ExtractDataException(e);
+        } finally {
+            ParserMetrics.record(ParserMetrics.Phase.JSON_PARSE, start);
+        }
+    }
+
+    /**
+     * Decode the raw ingest data field into its JSON text, returns null if there is nothing to parse.
+     */
+    protected String decodeData(final String ingestDataField) {
         String rawStringData = ingestDataField;
         if (!rawStringData.startsWith("[") && !rawStringData.startsWith("{")) {
             log.debug("gzipData: " + true);
             String gzipData = rawStringData;
+            long start = ParserMetrics.start();
             rawStringData = decompress(Base64.getDecoder().decode(gzipData));
+            ParserMetrics.record(ParserMetrics.Phase.DECODE, start);
+        }
+        return rawStringData;
+    }
+
+    /**
+     * Open a JSON parser over the raw ingest data field, returns null if there is nothing to parse.
+     */
+    protected JsonParser createDataParser(final String ingestDataField) throws IOException {
+        String rawStringData = decodeData(ingestDataField);
+        if (rawStringData == null) {
+            return null;
+        }
+        return OBJECT_MAPPER.getFactory().createParser(rawStringData);
+    }
+
+    @Override
+    public JsonNode getData(final String ingestDataField) throws JsonProcessingException {
+        try (JsonParser dataParser = createDataParser(ingestDataField)) {
+            if (dataParser == null) {
+                return null;
+            }
+            return OBJECT_MAPPER.readTree(dataParser);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new ExtractDataException(e);
+        }
+    }
+
+    @Override
+    public boolean parseDataElements(final String ingestDataField, final ExtraParams extraParams,
+                                     final Consumer<ParseDataResult> resultConsumer) throws JsonProcessingException {
+        try (JsonParser dataParser = createDataParser(ingestDataField)) {
+            if (dataParser == null) {
+                return false;
+            }
+            JsonToken token = dataParser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                int index = 0;
+                while ((token = dataParser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                    resultConsumer.accept(parseData(dataParser, extraParams, index++));
+                }
+            } else if (token != null) {
+                resultConsumer.accept(parseData(dataParser, extraParams, 0));
+            }
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new ExtractDataException(e);
         }
-        return OBJECT_MAPPER.readTree(rawStringData);
+        return true;
     }
+
+    @Override
+    public DataElementIterator iterateDataElements(final String ingestDataField, final ExtraParams extraParams) throws JsonProcessingException {
+        try {
+            JsonParser dataParser = createDataParser(ingestDataField);
+            if (dataParser == null) {
+                return null;
+            }
+            return new DataElementIterator(this, dataParser, extraParams);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new ExtractDataException(e);
+        }
+    }
+
     @Override
     public ParseRowResult parseLineToDBRow(final String ingestLine, final String projectId, final String fileName) throws JsonProcessingException {
         ParseRowResult rowResult = new ParseRowResult();
@@ -75,11 +170,6 @@ public abstract class BaseEventParser implements EventParser {
             log.warn("Data field is empty, skipping the row");
             return rowResult;
         }
-        JsonNode dataNode = getData(dataField);
-        if (dataNode == null) {
-            log.warn("getData is empty, skipping the row");
-            return rowResult;
-        }
 
         ExtraParams extraParams = ExtraParams.builder()
                 .ua(clickstreamIngestRow.getUa())
@@ -93,17 +183,9 @@ public abstract class BaseEventParser implements EventParser {
                 .appId(clickstreamIngestRow.getAppId())
                 .build();
 
-        int index = 0;
-        if (dataNode.isArray()) {
-            Iterator<JsonNode> iterator = dataNode.elements();
-            while (iterator.hasNext()) {
-                JsonNode element = iterator.next();
-                ParseDataResult result = parseData(element.toString(), extraParams, index++);
-                addDataResult(rowResult, result);
-            }
-        } else {
-            ParseDataResult result = parseData(dataNode.toString(), extraParams, 0);
-            addDataResult(rowResult, result);
+        if (!parseDataElements(dataField, extraParams, result -> addDataResult(rowResult, result))) {
+            log.warn("getData is empty, skipping the row");
+            return new ParseRowResult();
         }
         return rowResult;
     }
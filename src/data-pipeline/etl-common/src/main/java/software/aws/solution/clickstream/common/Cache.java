@@ -11,34 +11,203 @@
  *  and limitations under the License.
  */
 
+
 package software.aws.solution.clickstream.common;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import lombok.Getter;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
-public class Cache<T> {
-    private final com.github.benmanes.caffeine.cache.Cache<String, T> dataCached;
+/**
+ * Bounded in-process cache for enrichment results.
+ * <p>
+ * Keys can be any type with value semantics, use {@link java.util.Arrays#asList(Object[])}
+ * for composite keys. Named caches are bounded by an estimated size in bytes, configurable with
+ * the system property {@code cache.<name>.max.bytes}, and their hit, miss and eviction counts are
+ * aggregated per name and available from {@link #stats()}. They are also recorded to
+ * {@link ParserMetrics}, which reports them per task. Evictions run on the thread that accessed the
+ * cache, so they are counted in the task that caused them.
+ */
+public class Cache<K, V> {
+    public static final String CACHE_MAX_BYTES_PROP_FORMAT = "cache.%s.max.bytes";
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    public static final int DEFAULT_VALUE_BYTES = 128;
+    private static final int OBJECT_OVERHEAD_BYTES = 16;
+    private static final int STRING_OVERHEAD_BYTES = 40;
 
-    public Cache() {
-        this(Integer.MAX_VALUE/8); //255M
-    }
+    private static final Map<String, ConcurrentStatsCounter> STATS = new ConcurrentHashMap<>();
+
+    private final com.github.benmanes.caffeine.cache.Cache<K, V> dataCached;
+    @Getter
+    private final String name;
 
+    /**
+     * Cache bounded by entry count, without statistics.
+     */
     public Cache(final int size) {
-        this.dataCached =  Caffeine.newBuilder()
+        this.name = null;
+        this.dataCached = Caffeine.newBuilder()
                 .maximumSize(size)
                 .expireAfterWrite(Duration.ofMinutes(5))
                 .expireAfterAccess(Duration.ofMinutes(5))
                 .build();
     }
-    public boolean containsKey(final String key) {
+
+    /**
+     * Cache bounded by the estimated key size plus a fixed size per value.
+     */
+    public Cache(final String name, final int valueBytes) {
+        this(name, (key, value) -> estimateBytes(key) + valueBytes);
+    }
+
+    public Cache(final String name, final Weigher<? super K, ? super V> weigher) {
+        this(name, Long.getLong(String.format(CACHE_MAX_BYTES_PROP_FORMAT, name), DEFAULT_MAX_BYTES), weigher);
+    }
+
+    public Cache(final String name, final long maxBytes, final Weigher<? super K, ? super V> weigher) {
+        this.name = name;
+        StatsCounter statsCounter = new RecordingStatsCounter(name, STATS.computeIfAbsent(name, n -> new ConcurrentStatsCounter()));
+        this.dataCached = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<K, V>weigher(weigher)
+                .expireAfterWrite(Duration.ofMinutes(5))
+                .expireAfterAccess(Duration.ofMinutes(5))
+                .executor(Runnable::run)
+                .recordStats(() -> statsCounter)
+                .build();
+    }
+
+    public boolean containsKey(final K key) {
         return dataCached.getIfPresent(key) != null;
     }
-    public T get(final String key) {
+
+    public V get(final K key) {
         return dataCached.getIfPresent(key);
     }
 
-    public void put(final String key, final T data) {
+    /**
+     * Single lookup, the loader runs at most once per absent key and a null result is not cached.
+     * The loader must not access this same cache.
+     */
+    public V get(final K key, final Function<? super K, ? extends V> loader) {
+        return dataCached.get(key, loader);
+    }
+
+    public void put(final K key, final V data) {
         dataCached.put(key, data);
     }
+
+    public void putAll(final Map<? extends K, ? extends V> entries) {
+        dataCached.putAll(entries);
+    }
+
+    /**
+     * Up to {@code limit} entries which the eviction policy considers most likely to be used again, the hottest first.
+     */
+    public Map<K, V> hottest(final int limit) {
+        return dataCached.policy().eviction()
+                .map(eviction -> eviction.hottest(limit))
+                .orElse(Collections.emptyMap());
+    }
+
+    public long estimatedSize() {
+        return dataCached.estimatedSize();
+    }
+
+    /**
+     * Run pending maintenance such as evictions now instead of on a later access.
+     */
+    public void cleanUp() {
+        dataCached.cleanUp();
+    }
+
+    /**
+     * Statistics of all named caches in this JVM, aggregated by name.
+     */
+    public static Map<String, CacheStats> stats() {
+        Map<String, CacheStats> result = new TreeMap<>();
+        STATS.forEach((n, counter) -> result.put(n, counter.snapshot()));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Rough retained size of a cache key or value, strings are counted with two bytes per char.
+     */
+    public static int estimateBytes(final Object obj) {
+        if (obj == null) {
+            return 0;
+        }
+        if (obj instanceof CharSequence) {
+            return STRING_OVERHEAD_BYTES + 2 * ((CharSequence) obj).length();
+        }
+        if (obj instanceof Number || obj instanceof Boolean) {
+            return OBJECT_OVERHEAD_BYTES + 8;
+        }
+        if (obj instanceof Collection) {
+            int size = OBJECT_OVERHEAD_BYTES;
+            for (Object o : (Collection<?>) obj) {
+                size += 8 + estimateBytes(o);
+            }
+            return size;
+        }
+        return DEFAULT_VALUE_BYTES;
+    }
+
+    /**
+     * Adds the counts of a named cache to the JVM-wide counter and to {@link ParserMetrics}.
+     */
+    private static final class RecordingStatsCounter implements StatsCounter {
+        private final String name;
+        private final ConcurrentStatsCounter jvmCounter;
+
+        RecordingStatsCounter(final String name, final ConcurrentStatsCounter jvmCounter) {
+            this.name = name;
+            this.jvmCounter = jvmCounter;
+        }
+
+        @Override
+        public void recordHits(final int count) {
+            jvmCounter.recordHits(count);
+            ParserMetrics.recordCache(name, ParserMetrics.CACHE_HIT, count);
+        }
+
+        @Override
+        public void recordMisses(final int count) {
+            jvmCounter.recordMisses(count);
+            ParserMetrics.recordCache(name, ParserMetrics.CACHE_MISS, count);
+        }
+
+        @Override
+        public void recordLoadSuccess(final long loadTime) {
+            jvmCounter.recordLoadSuccess(loadTime);
+        }
+
+        @Override
+        public void recordLoadFailure(final long loadTime) {
+            jvmCounter.recordLoadFailure(loadTime);
+        }
+
+        @Override
+        public void recordEviction(final int weight, final RemovalCause cause) {
+            jvmCounter.recordEviction(weight, cause);
+            ParserMetrics.recordCache(name, ParserMetrics.CACHE_EVICTION, 1L);
+        }
+
+        @Override
+        public CacheStats snapshot() {
+            return jvmCounter.snapshot();
+        }
+    }
 }
@@ -0,0 +1,416 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+package software.aws.solution.clickstream.common;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Warm-start snapshots of the enrichment caches.
+ * <p>
+ * Caches are registered with a codec and a fingerprint of everything their values are derived from,
+ * e.g. a hash of the rule files. {@link #export(int)} writes the hottest entries of every registered
+ * cache as one section per cache, {@link #load(InputStream)} puts the entries of a snapshot back into
+ * the caches, now or when they are registered later. A section whose fingerprint differs from the
+ * fingerprint of the registered cache is discarded, as is a snapshot of another format version.
+ * <p>
+ * Snapshot layout, gzip compressed:
+ * <pre>
+ * magic, format version, section count
+ * per section: name, scope, fingerprint, entry count, then per entry: key length, key, value length, value
+ * </pre>
+ */
+@Slf4j
+public final class CacheSnapshot {
+    public static final int FORMAT_VERSION = 1;
+    private static final int MAGIC = 0x43534E50;
+    private static final int FINGERPRINT_CHARS = 16;
+    private static final int NULL_LENGTH = -1;
+
+    private static final Map<String, Registration<?, ?>> REGISTRATIONS = new LinkedHashMap<>();
+    private static final Map<String, Section> PENDING = new HashMap<>();
+
+    private CacheSnapshot() {
+    }
+
+    /**
+     * Serializes the entries of one cache, a value is read back knowing its key.
+     */
+    public interface Codec<K, V> {
+        void writeKey(DataOutput out, K key) throws IOException;
+
+        K readKey(DataInput in) throws IOException;
+
+        void writeValue(DataOutput out, V value) throws IOException;
+
+        V readValue(DataInput in, K key) throws IOException;
+    }
+
+    /**
+     * Register a named cache, replacing an earlier registration of the same name and scope.
+     * Entries of an already loaded snapshot are put into the cache now.
+     *
+     * @param scope distinguishes caches of the same name, e.g. per app id
+     * @param fingerprint fingerprint of everything the cached values are derived from,
+     *                    called when a snapshot is loaded or exported
+     */
+    public static synchronized <K, V> void register(final String scope, final Supplier<String> fingerprint,
+                                                    final Cache<K, V> cache, final Codec<K, V> codec) {
+        if (cache.getName() == null) {
+            throw new IllegalArgumentException("Only named caches can be registered");
+        }
+        Registration<K, V> registration = new Registration<>(cache.getName(), scope, fingerprint, cache, codec);
+        REGISTRATIONS.put(registration.id(), registration);
+        if (!PENDING.isEmpty()) {
+            apply(registration);
+        }
+    }
+
+    /**
+     * Load a snapshot written by {@link #export(int)} or {@link #merge(Collection, int, OutputStream)}.
+     *
+     * @return the number of entries put into registered caches, entries of caches not registered
+     * yet are kept until they are
+     */
+    public static synchronized int load(final InputStream snapshot) throws IOException {
+        List<Section> sections = read(snapshot);
+        if (sections == null) {
+            return 0;
+        }
+        PENDING.clear();
+        for (Section section : sections) {
+            PENDING.put(section.id(), section);
+        }
+        int loaded = 0;
+        for (Registration<?, ?> registration : REGISTRATIONS.values()) {
+            loaded += apply(registration);
+        }
+        return loaded;
+    }
+
+    /**
+     * @param limit max entries per cache
+     * @return snapshot of the hottest entries of every registered cache
+     */
+    public static byte[] export(final int limit) {
+        List<Registration<?, ?>> registrations;
+        synchronized (CacheSnapshot.class) {
+            registrations = new ArrayList<>(REGISTRATIONS.values());
+        }
+        List<Section> sections = new ArrayList<>();
+        for (Registration<?, ?> registration : registrations) {
+            String fingerprint = registration.fingerprint();
+            if (fingerprint != null) {
+                sections.add(registration.export(fingerprint, limit));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(sections, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Merge the snapshots of several JVMs into one. Entries are ranked by the sum of their ranks in the
+     * snapshots, so an entry hot in many JVMs comes first, and at most {@code limit} are kept per cache.
+     * Snapshots which cannot be read are skipped.
+     */
+    public static void merge(final Collection<byte[]> snapshots, final int limit, final OutputStream out) throws IOException {
+        Map<String, Section> merged = new LinkedHashMap<>();
+        Map<String, Map<ByteBuffer, MergedEntry>> mergedEntries = new HashMap<>();
+        for (byte[] snapshot : snapshots) {
+            List<Section> sections;
+            try {
+                sections = read(new ByteArrayInputStream(snapshot));
+            } catch (IOException e) {
+                log.warn("Skipped unreadable cache snapshot: {}", e.getMessage());
+                continue;
+            }
+            if (sections == null) {
+                continue;
+            }
+            for (Section section : sections) {
+                merged.putIfAbsent(section.id(), section);
+                Map<ByteBuffer, MergedEntry> entries = mergedEntries.computeIfAbsent(section.id(), k -> new LinkedHashMap<>());
+                int size = section.entries.size();
+                for (int rank = 0; rank < size; rank++) {
+                    byte[][] entry = section.entries.get(rank);
+                    entries.computeIfAbsent(ByteBuffer.wrap(entry[0]), k -> new MergedEntry(entry)).score += (double) (size - rank) / size;
+                }
+            }
+        }
+        List<Section> sections = new ArrayList<>();
+        for (Section section : merged.values()) {
+            List<byte[][]> entries = mergedEntries.get(section.id()).values().stream()
+                    .sorted(Comparator.comparingDouble((MergedEntry entry) -> entry.score).reversed())
+                    .limit(limit)
+                    .map(entry -> entry.entry)
+                    .collect(Collectors.toList());
+            sections.add(new Section(section.name, section.scope, section.fingerprint, entries));
+        }
+        write(sections, out);
+    }
+
+    /**
+     * Short hex digest of the given strings, for fingerprints.
+     */
+    public static String fingerprint(final String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                if (part != null) {
+                    digest.update(part.getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) 0);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.substring(0, FINGERPRINT_CHARS);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write a string which may be null or longer than {@link DataOutput#writeUTF(String)} supports.
+     */
+    public static void writeString(final DataOutput out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(final DataInput in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static synchronized void clear() {
+        REGISTRATIONS.clear();
+        PENDING.clear();
+    }
+
+    private static int apply(final Registration<?, ?> registration) {
+        String fingerprint = registration.fingerprint();
+        int loaded = 0;
+        Section matching = fingerprint == null ? null : PENDING.remove(sectionId(registration.name, registration.scope, fingerprint));
+        if (matching != null) {
+            loaded = registration.load(matching);
+            log.info("Loaded {} entries of cache {} {} from snapshot", loaded, registration.name, registration.scope);
+        }
+        PENDING.values().removeIf(section -> {
+            boolean stale = section.name.equals(registration.name) && section.scope.equals(registration.scope);
+            if (stale) {
+                log.info("Discarded snapshot of cache {} {}, fingerprint {} is not {}",
+                        section.name, section.scope, section.fingerprint, fingerprint);
+            }
+            return stale;
+        });
+        return loaded;
+    }
+
+    /**
+     * @return the sections, or null if this is not a snapshot of the current format version
+     */
+    private static List<Section> read(final InputStream snapshot) throws IOException {
+        DataInputStream in = new DataInputStream(new GZIPInputStream(snapshot));
+        if (in.readInt() != MAGIC) {
+            log.warn("Discarded cache snapshot, it is not a cache snapshot");
+            return null;
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            log.info("Discarded cache snapshot of format version {}, current version is {}", version, FORMAT_VERSION);
+            return null;
+        }
+        int sectionCount = in.readInt();
+        List<Section> sections = new ArrayList<>(sectionCount);
+        for (int i = 0; i < sectionCount; i++) {
+            String name = in.readUTF();
+            String scope = in.readUTF();
+            String fingerprint = in.readUTF();
+            int entryCount = in.readInt();
+            List<byte[][]> entries = new ArrayList<>(entryCount);
+            for (int j = 0; j < entryCount; j++) {
+                entries.add(new byte[][] {readBytes(in), readBytes(in)});
+            }
+            sections.add(new Section(name, scope, fingerprint, entries));
+        }
+        return sections;
+    }
+
+    private static void write(final List<Section> sections, final OutputStream snapshot) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(snapshot);
+        DataOutputStream out = new DataOutputStream(gzip);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(sections.size());
+        for (Section section : sections) {
+            out.writeUTF(section.name);
+            out.writeUTF(section.scope);
+            out.writeUTF(section.fingerprint);
+            out.writeInt(section.entries.size());
+            for (byte[][] entry : section.entries) {
+                out.writeInt(entry[0].length);
+                out.write(entry[0]);
+                out.writeInt(entry[1].length);
+                out.write(entry[1]);
+            }
+        }
+        out.flush();
+        gzip.finish();
+    }
+
+    private static byte[] readBytes(final DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static String sectionId(final String name, final String scope, final String fingerprint) {
+        return name + '\0' + scope + '\0' + fingerprint;
+    }
+
+    private static final class Section {
+        private final String name;
+        private final String scope;
+        private final String fingerprint;
+        private final List<byte[][]> entries;
+
+        Section(final String name, final String scope, final String fingerprint, final List<byte[][]> entries) {
+            this.name = name;
+            this.scope = scope;
+            this.fingerprint = fingerprint;
+            this.entries = entries;
+        }
+
+        String id() {
+            return sectionId(name, scope, fingerprint);
+        }
+    }
+
+    private static final class MergedEntry {
+        private final byte[][] entry;
+        private double score;
+
+        MergedEntry(final byte[][] entry) {
+            this.entry = entry;
+        }
+    }
+
+    private static final class Registration<K, V> {
+        private final String name;
+        private final String scope;
+        private final Supplier<String> fingerprint;
+        private final Cache<K, V> cache;
+        private final Codec<K, V> codec;
+
+        Registration(final String name, final String scope, final Supplier<String> fingerprint,
+                     final Cache<K, V> cache, final Codec<K, V> codec) {
+            this.name = name;
+            this.scope = scope == null ? "" : scope;
+            this.fingerprint = fingerprint;
+            this.cache = cache;
+            this.codec = codec;
+        }
+
+        String id() {
+            return name + '\0' + scope;
+        }
+
+        /**
+         * @return the fingerprint, or null if it is not available
+         */
+        String fingerprint() {
+            try {
+                return fingerprint.get();
+            } catch (RuntimeException e) {
+                log.warn("Cannot get fingerprint of cache {} {}: {}", name, scope, e.getMessage());
+                return null;
+            }
+        }
+
+        int load(final Section section) {
+            Map<K, V> entries = new LinkedHashMap<>();
+            for (byte[][] entry : section.entries) {
+                try {
+                    K key = codec.readKey(new DataInputStream(new ByteArrayInputStream(entry[0])));
+                    V value = codec.readValue(new DataInputStream(new ByteArrayInputStream(entry[1])), key);
+                    entries.put(key, value);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Skipped snapshot entry of cache {} {}: {}", name, scope, e.getMessage());
+                }
+            }
+            cache.putAll(entries);
+            return entries.size();
+        }
+
+        Section export(final String currentFingerprint, final int limit) {
+            List<byte[][]> entries = new ArrayList<>();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (Map.Entry<K, V> entry : cache.hottest(limit).entrySet()) {
+                try {
+                    bytes.reset();
+                    codec.writeKey(out, entry.getKey());
+                    byte[] key = bytes.toByteArray();
+                    bytes.reset();
+                    codec.writeValue(out, entry.getValue());
+                    entries.add(new byte[][] {key, bytes.toByteArray()});
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Skipped entry of cache {} {} in snapshot: {}", name, scope, e.getMessage());
+                }
+            }
+            return new Section(name, scope, currentFingerprint, entries);
+        }
+    }
+}
@@ -14,17 +14,20 @@
 package software.aws.solution.clickstream.common;
 
 import com.fasterxml.jackson.core.*;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.*;
 import software.aws.solution.clickstream.common.enrich.*;
 import software.aws.solution.clickstream.common.enrich.ts.CategoryTrafficSource;
 import software.aws.solution.clickstream.common.enrich.ts.TrafficSourceUtm;
+import software.aws.solution.clickstream.common.exception.ExtractDataException;
 import software.aws.solution.clickstream.common.ingest.*;
 import software.aws.solution.clickstream.common.model.*;
 
+import java.io.IOException;
 import java.sql.Timestamp;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -52,7 +55,12 @@ public final class ClickstreamEventParser extends BaseEventParser {
     public static final String EVENT_USER_ENGAGEMENT = "_user_engagement";
     public static final String EVENT_SCROLL = "_scroll";
 
+    private static final List<String> PLATFORM_OS_LIST = Stream.of(
+            PLATFORM_ANDROID, PLATFORM_IOS, PLATFORM_WECHATMP
+    ).map(String::toLowerCase).collect(Collectors.toList());
+
     private TransformConfig transformConfig;
+    private final ObjectReader eventReader = getObjectMapper().readerFor(Event.class);
 
     private ClickstreamEventParser(final TransformConfig transformConfig) {
         this.transformConfig = transformConfig;
@@ -73,23 +81,92 @@ public final class ClickstreamEventParser extends BaseEventParser {
         return getObjectMapper().readValue(data, Event.class);
     }
 
+    /**
+     * A compressed data field is base64 decoded and inflated while the JSON parser reads it.
+     */
     @Override
-    public ParseDataResult parseData(final String dataString, final ExtraParams extraParams, final int index) throws JsonProcessingException {
-        ParseDataResult parseDataResult = new ParseDataResult();
-        List<ClickstreamEvent> clickstreamEventList = new ArrayList<>();
-        parseDataResult.setClickstreamEventList(clickstreamEventList);
-        parseDataResult.setClickstreamItemList(new ArrayList<>());
+    protected JsonParser createDataParser(final String ingestDataField) throws IOException {
+        if (ingestDataField.startsWith("[") || ingestDataField.startsWith("{")) {
+            return super.createDataParser(ingestDataField);
+        }
+        log.debug("gzipData: " + true);
+        return getObjectMapper().getFactory().createParser(PayloadDecoder.openBase64Gzip(ingestDataField));
+    }
 
+    @Override
+    public ParseDataResult parseData(final String dataString, final ExtraParams extraParams, final int index) throws JsonProcessingException {
         log.debug("Parsing data: " + dataString);
         if (dataString == null || dataString.isEmpty()) {
             log.warn("Data field is empty, skipping the row");
-            return parseDataResult;
+            return emptyParseDataResult();
         }
         Event ingestEvent = ingestDataToEvent(dataString);
         if (ingestEvent.getEventName() == null || ingestEvent.getEventName().isEmpty()) {
             log.warn("Event name is empty, skipping the row, dataString:" + dataString);
+            return emptyParseDataResult();
+        }
+        return parseIngestEvent(ingestEvent, extraParams, index);
+    }
+
+    @Override
+    public ParseDataResult parseData(final JsonParser dataParser, final ExtraParams extraParams, final int index) throws JsonProcessingException {
+        if (extraParams.getValidation() != null) {
+            return parseValidatedData(dataParser, extraParams, index);
+        }
+        Event ingestEvent = readDataValue(eventReader, dataParser);
+        if (ingestEvent == null || ingestEvent.getEventName() == null || ingestEvent.getEventName().isEmpty()) {
+            log.warn("Event name is empty, skipping the row, index:" + index);
+            return emptyParseDataResult();
+        }
+        return parseIngestEvent(ingestEvent, extraParams, index);
+    }
+
+    /**
+     * The element is buffered so that a schema or binding error only marks this element as corrupt,
+     * the rest of the data array is still parsed.
+     */
+    private ParseDataResult parseValidatedData(final JsonParser dataParser, final ExtraParams extraParams, final int index) throws JsonProcessingException {
+        IngestValidation validation = extraParams.getValidation();
+        TokenBuffer element;
+        String error;
+        try {
+            String rootError = validation.checkInArray(dataParser);
+            element = new TokenBuffer(dataParser);
+            element.copyCurrentStructure(dataParser);
+            error = rootError != null ? rootError : validation.checkSchema(element);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new ExtractDataException(e);
+        }
+        Event ingestEvent = null;
+        if (error == null) {
+            try {
+                ingestEvent = readDataValue(eventReader, element.asParser());
+                error = validation.checkRequired(ingestEvent);
+            } catch (JsonProcessingException e) {
+                error = e.getOriginalMessage();
+            }
+        }
+        if (error != null) {
+            ParserMetrics.recordError("invalid_data_element");
+            ParseDataResult parseDataResult = emptyParseDataResult();
+            parseDataResult.setCorruptRecord("Invalid data element" + ERROR_LOG + error + VALUE_LOG + getObjectMapper().writeValueAsString(element));
             return parseDataResult;
         }
+        if (!validation.accept(ingestEvent, extraParams.getIngestTimestamp())) {
+            return emptyParseDataResult();
+        }
+        if (ingestEvent.getEventName() == null || ingestEvent.getEventName().isEmpty()) {
+            log.warn("Event name is empty, skipping the row, index:" + index);
+            return emptyParseDataResult();
+        }
+        return parseIngestEvent(ingestEvent, extraParams, index);
+    }
+
+    private ParseDataResult parseIngestEvent(final Event ingestEvent, final ExtraParams extraParams, final int index) {
+        ParseDataResult parseDataResult = new ParseDataResult();
+        List<ClickstreamEvent> clickstreamEventList = new ArrayList<>();
 
         TimeShiftInfo timeShiftInfo = getEventTimeShiftInfo(ingestEvent, extraParams);
 
@@ -215,7 +292,7 @@ public final class ClickstreamEventParser extends BaseEventParser {
 
     private ClickstreamEvent getClickstreamEvent(final Event ingestEvent, final int index, final ExtraParams extraParams, final TimeShiftInfo timeShiftInfo) {
         ClickstreamEvent clickstreamEvent = new ClickstreamEvent();
-        Map<String, List<String>> uriParams = getUriParams(extraParams.getUri());
+        IngestRowContext rowContext = extraParams.getRowContext();
 
         clickstreamEvent.setEventTimeMsec(ingestEvent.getEventTimestamp() + timeShiftInfo.getTimeDiff());
         clickstreamEvent.setEventTimestamp(new Timestamp(clickstreamEvent.getEventTimeMsec()));
@@ -235,9 +312,9 @@ public final class ClickstreamEventParser extends BaseEventParser {
         clickstreamEvent.setEventName(ingestEvent.getEventName());
 
         setEventValue(ingestEvent, clickstreamEvent);
-        setEventBundleSeqId(uriParams, clickstreamEvent);
+        setEventBundleSeqId(rowContext.getUriParams(), clickstreamEvent);
         setDeviceInfo(ingestEvent, clickstreamEvent);
-        setUA(extraParams, clickstreamEvent);
+        clickstreamEvent.setDeviceUa(rowContext.getDeviceUa());
         setAppInfo(ingestEvent, clickstreamEvent);
 
         if (ingestEvent.getPlatform() == null) {
@@ -261,12 +338,14 @@ public final class ClickstreamEventParser extends BaseEventParser {
 
         setEventCustomParameters(ingestEvent, customProperties, clickstreamEvent);
 
-        clickstreamEvent.setIp(extraParams.getIp());
-        clickstreamEvent.setUa(extraParams.getUa());
+        clickstreamEvent.setIp(rowContext.getIp());
+        clickstreamEvent.setUa(rowContext.getUa());
 
+        long trafficSourceStart = ParserMetrics.start();
         setTrafficSource(ingestEvent, clickstreamEvent);
+        ParserMetrics.record(ParserMetrics.Phase.TRAFFIC_SOURCE, trafficSourceStart);
 
-        setProcessInfo(extraParams, clickstreamEvent, timeShiftInfo);
+        setProcessInfo(rowContext, clickstreamEvent, timeShiftInfo);
 
         return clickstreamEvent;
     }
@@ -312,11 +391,7 @@ public final class ClickstreamEventParser extends BaseEventParser {
         clickstreamEvent.setDeviceViewportHeight(ingestEvent.getViewportHeight());
         clickstreamEvent.setGeoLocale(ingestEvent.getLocale());
 
-        List<String> platformOsList = Stream.of(
-                PLATFORM_ANDROID, PLATFORM_IOS, PLATFORM_WECHATMP
-        ).map(String::toLowerCase).collect(Collectors.toList());
-
-        if (ingestEvent.getPlatform() != null && platformOsList.contains(ingestEvent.getPlatform().toLowerCase())) {
+        if (ingestEvent.getPlatform() != null && PLATFORM_OS_LIST.contains(ingestEvent.getPlatform().toLowerCase())) {
             clickstreamEvent.setDeviceOperatingSystem(ingestEvent.getPlatform());
         }
 
@@ -442,11 +517,6 @@ public final class ClickstreamEventParser extends BaseEventParser {
         clickstreamEvent.setAppId(ingestEvent.getAppId());
     }
 
-    private void setUA(final ExtraParams extraParams, final ClickstreamEvent clickstreamEvent) {
-        Map<String, Object> uaMap = new HashMap<>();
-        uaMap.put("string", extraParams.getUa());
-        clickstreamEvent.setDeviceUa(uaMap);
-    }
     private void setTrafficSource(final Event ingestEvent, final ClickstreamEvent clickstreamEvent) {
         IngestTrafficSourceWrap clientTsInfo = getIngestTrafficSourceInfo(ingestEvent);
 
@@ -464,7 +534,7 @@ public final class ClickstreamEventParser extends BaseEventParser {
         log.debug("setTrafficSource() platform: {}, source: {}", clickstreamEvent.getPlatform(), clientTsInfo.getSource());
 
         if (isDisableTrafficSourceEnrichment()) {
-            log.info("disable.traffic.source.enrichment is set, skipping traffic source enrichment");
+            log.debug("disable.traffic.source.enrichment is set, skipping traffic source enrichment");
             return;
         }
 
@@ -585,13 +655,6 @@ public final class ClickstreamEventParser extends BaseEventParser {
         this.transformConfig = transformConfig;
     }
 
-    private boolean isEnableEventTimeShift() {
-        if (System.getProperty(ENABLE_EVENT_TIME_SHIFT_PROP) == null) {
-            return false;
-        }
-        return Boolean.parseBoolean(System.getProperty(ENABLE_EVENT_TIME_SHIFT_PROP));
-    }
-
     private TimeShiftInfo getEventTimeShiftInfo(final Event ingestEvent, final ExtraParams extraParams) {
         TimeShiftInfo timeShiftInfo = new TimeShiftInfo();
         long currentTime = System.currentTimeMillis();
@@ -608,22 +671,14 @@ public final class ClickstreamEventParser extends BaseEventParser {
 
         boolean isFutureEvent = eventTimestamp > currentTime;
 
-        if (!isEnableEventTimeShift() && !isFutureEvent) {
+        IngestRowContext rowContext = extraParams.getRowContext();
+        if (!rowContext.isEventTimeShiftEnabled() && !isFutureEvent) {
             log.debug("event time shift is not enable and event is not future event, skip time shift adjustment.");
             return timeShiftInfo;
         }
 
         if (uploadTimestamp == null) {
-            Map<String, List<String>> uriParams = getUriParams(extraParams.getUri());
-            if (uriParams.containsKey(UPLOAD_TIMESTAMP)) {
-                String uploadTimestampStr = uriParams.get(UPLOAD_TIMESTAMP).get(0);
-                try {
-                    uploadTimestamp = Long.parseLong(uploadTimestampStr);
-                    extraParams.setUploadTimestamp(uploadTimestamp);
-                } catch (Exception e) {
-                    log.warn("cannot parse upload_timestamp: " + uploadTimestampStr + ERROR_LOG + e.getMessage());
-                }
-            }
+            uploadTimestamp = rowContext.getUploadTimestamp();
             timeShiftInfo.setUri(extraParams.getUri());
         }
 
@@ -656,16 +711,11 @@ public final class ClickstreamEventParser extends BaseEventParser {
         return timeShiftInfo;
     }
 
-    private void setProcessInfo(final ExtraParams extraParams, final ClickstreamEvent clickstreamEvent, final TimeShiftInfo timeShiftInfo) {
-        Map<String, String> processInfo = new HashMap<>();
-        processInfo.put("rid", extraParams.getRid());
-        processInfo.put("ingest_time", Instant.ofEpochMilli(extraParams.getIngestTimestamp()).toString());
-        processInfo.put(INPUT_FILE_NAME, extraParams.getInputFileName());
-        processInfo.put("source_ip", extraParams.getIp());
-        if (extraParams.getUploadTimestamp() != null) {
-            processInfo.put("upload_time", Instant.ofEpochMilli(extraParams.getUploadTimestamp()).toString());
-        }
+    private void setProcessInfo(final IngestRowContext rowContext, final ClickstreamEvent clickstreamEvent, final TimeShiftInfo timeShiftInfo) {
+        // the row process info is shared by the events of the row, only adjusted events get their own copy
+        Map<String, String> processInfo = rowContext.getProcessInfo();
         if (timeShiftInfo.isAdjusted()) {
+            processInfo = new HashMap<>(processInfo);
             processInfo.put("event_timestamp_adjusted", true + "");
             processInfo.put("event_timestamp_adjusted_from", timeShiftInfo.getOriginEventTimestamp() + "");
             processInfo.put("event_timestamp_adjusted_to", timeShiftInfo.getEventTimestamp() + "");
@@ -0,0 +1,117 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.common;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import software.aws.solution.clickstream.common.exception.ExtractDataException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Pull based counterpart of {@link EventParser#parseDataElements}, each event of the decoded data
+ * field is parsed only when the iterator advances. Parse errors are thrown from
+ * {@link #hasNext()} and {@link #next()} as {@link ExtractDataException}, events returned before
+ * the error stay valid. The underlying parser is closed once the data is exhausted.
+ */
+public final class DataElementIterator implements Iterator<ParseDataResult>, Closeable {
+    private final EventParser eventParser;
+    private final JsonParser dataParser;
+    private final ExtraParams extraParams;
+    private final boolean isArray;
+    private int index;
+    private boolean pending;
+    private boolean done;
+
+    DataElementIterator(final EventParser eventParser, final JsonParser dataParser, final ExtraParams extraParams) throws IOException {
+        this.eventParser = eventParser;
+        this.dataParser = dataParser;
+        this.extraParams = extraParams;
+        JsonToken token;
+        try {
+            token = dataParser.nextToken();
+        } catch (IOException e) {
+            dataParser.close();
+            throw e;
+        }
+        this.isArray = token == JsonToken.START_ARRAY;
+        this.pending = token != null && !isArray;
+        if (token == null) {
+            close();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending) {
+            return true;
+        }
+        if (done) {
+            return false;
+        }
+        if (isArray) {
+            JsonToken token = nextToken();
+            pending = token != JsonToken.END_ARRAY && token != null;
+        }
+        if (!pending) {
+            close();
+        }
+        return pending;
+    }
+
+    @Override
+    public ParseDataResult next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        pending = false;
+        try {
+            ParseDataResult result = eventParser.parseData(dataParser, extraParams, index++);
+            if (!isArray) {
+                close();
+            }
+            return result;
+        } catch (JsonProcessingException e) {
+            close();
+            throw new ExtractDataException(e);
+        }
+    }
+
+    private JsonToken nextToken() {
+        try {
+            return dataParser.nextToken();
+        } catch (IOException e) {
+            close();
+            throw new ExtractDataException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (done) {
+            return;
+        }
+        done = true;
+        try {
+            dataParser.close();
+        } catch (IOException e) {
+            throw new ExtractDataException(e);
+        }
+    }
+}
@@ -16,8 +16,27 @@ package software.aws.solution.clickstream.common;
 import com.fasterxml.jackson.core.*;
 import com.fasterxml.jackson.databind.JsonNode;
 
+import java.util.function.Consumer;
+
 public interface EventParser {
     ParseRowResult parseLineToDBRow(String ingestLine, String projectId, String fileName)  throws JsonProcessingException;
     JsonNode getData(String ingestDataField) throws JsonProcessingException;
     ParseDataResult parseData(String dataString, ExtraParams extraParams, int index)  throws JsonProcessingException;
+    ParseDataResult parseData(JsonParser dataParser, ExtraParams extraParams, int index)  throws JsonProcessingException;
+
+    /**
+     * Decode the ingest data field and parse each event in it with a single streaming pass,
+     * handing every result to the consumer in order.
+     *
+     * @return false if the data field cannot be decoded, results already handed over must then be discarded
+     */
+    boolean parseDataElements(String ingestDataField, ExtraParams extraParams, Consumer<ParseDataResult> resultConsumer) throws JsonProcessingException;
+
+    /**
+     * Decode the ingest data field and return an iterator that parses one event per step,
+     * so a large batch never has to be held in memory as a whole.
+     *
+     * @return null if the data field cannot be decoded
+     */
+    DataElementIterator iterateDataElements(String ingestDataField, ExtraParams extraParams) throws JsonProcessingException;
 }
@@ -16,7 +16,6 @@ package software.aws.solution.clickstream.common;
 import lombok.*;
 
 @Getter
-@AllArgsConstructor
 public class ExtraParams {
     Long ingestTimestamp;
     @Setter
@@ -28,6 +27,31 @@ public class ExtraParams {
     String ua;
     String ip;
     String appId;
+    IngestValidation validation;
+    IngestRowContext rowContext;
+
+    public ExtraParams(final Long ingestTimestamp, final Long uploadTimestamp, final String rid, final String projectId, final String inputFileName,
+                       final String uri, final String ua, final String ip, final String appId) {
+        this.ingestTimestamp = ingestTimestamp;
+        this.uploadTimestamp = uploadTimestamp;
+        this.rid = rid;
+        this.projectId = projectId;
+        this.inputFileName = inputFileName;
+        this.uri = uri;
+        this.ua = ua;
+        this.ip = ip;
+        this.appId = appId;
+    }
+
+    /**
+     * Context shared by all events parsed from this ingest row.
+     */
+    public IngestRowContext getRowContext() {
+        if (rowContext == null) {
+            rowContext = new IngestRowContext(this);
+        }
+        return rowContext;
+    }
 
     public static ExtraParamsBuilder builder() {
         return new ExtraParamsBuilder();
@@ -44,6 +68,7 @@ public class ExtraParams {
         private String ip;
 
         private String appId;
+        private IngestValidation validation;
 
         public ExtraParamsBuilder ingestTimestamp(final Long ingestTimestamp) {
             this.ingestTimestamp = ingestTimestamp;
@@ -90,8 +115,15 @@ public class ExtraParams {
             return this;
         }
 
+        public ExtraParamsBuilder validation(final IngestValidation validation) {
+            this.validation = validation;
+            return this;
+        }
+
         public ExtraParams build() {
-            return new ExtraParams(ingestTimestamp, uploadTimestamp, rid, projectId, inputFileName, uri, ua, ip, appId);
+            ExtraParams extraParams = new ExtraParams(ingestTimestamp, uploadTimestamp, rid, projectId, inputFileName, uri, ua, ip, appId);
+            extraParams.validation = validation;
+            return extraParams;
         }
     }
 }
@@ -0,0 +1,118 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.common;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static software.aws.solution.clickstream.common.BaseEventParser.INPUT_FILE_NAME;
+import static software.aws.solution.clickstream.common.BaseEventParser.UPLOAD_TIMESTAMP;
+import static software.aws.solution.clickstream.common.ClickstreamEventParser.ENABLE_EVENT_TIME_SHIFT_PROP;
+import static software.aws.solution.clickstream.common.Util.ERROR_LOG;
+
+/**
+ * Values which only depend on the ingest row, they are computed on first use and shared by all
+ * events of the row. The returned maps are read only.
+ */
+@Slf4j
+public final class IngestRowContext {
+    private static final String UA_STRING = "string";
+
+    private final ExtraParams extraParams;
+    private final boolean eventTimeShiftEnabled;
+    private Map<String, List<String>> uriParams;
+    private boolean uploadTimestampResolved;
+    private Map<String, Object> deviceUa;
+    private Map<String, String> processInfo;
+    private Long processInfoUploadTimestamp;
+
+    IngestRowContext(final ExtraParams extraParams) {
+        this.extraParams = extraParams;
+        this.eventTimeShiftEnabled = Boolean.parseBoolean(System.getProperty(ENABLE_EVENT_TIME_SHIFT_PROP));
+    }
+
+    public boolean isEventTimeShiftEnabled() {
+        return eventTimeShiftEnabled;
+    }
+
+    public Map<String, List<String>> getUriParams() {
+        if (uriParams == null) {
+            long start = ParserMetrics.start();
+            uriParams = Collections.unmodifiableMap(Util.getUriParams(extraParams.getUri()));
+            ParserMetrics.record(ParserMetrics.Phase.URI_PARSE, start);
+        }
+        return uriParams;
+    }
+
+    /**
+     * The upload timestamp of the row, taken from the request uri if the row does not have it.
+     */
+    public Long getUploadTimestamp() {
+        if (extraParams.getUploadTimestamp() == null && !uploadTimestampResolved) {
+            uploadTimestampResolved = true;
+            List<String> values = getUriParams().get(UPLOAD_TIMESTAMP);
+            if (values != null) {
+                String uploadTimestampStr = values.get(0);
+                try {
+                    extraParams.setUploadTimestamp(Long.parseLong(uploadTimestampStr));
+                } catch (NumberFormatException e) {
+                    log.warn("cannot parse upload_timestamp: " + uploadTimestampStr + ERROR_LOG + e.getMessage());
+                }
+            }
+        }
+        return extraParams.getUploadTimestamp();
+    }
+
+    public String getUa() {
+        return extraParams.getUa();
+    }
+
+    public String getIp() {
+        return extraParams.getIp();
+    }
+
+    public Map<String, Object> getDeviceUa() {
+        if (deviceUa == null) {
+            deviceUa = Collections.singletonMap(UA_STRING, extraParams.getUa());
+        }
+        return deviceUa;
+    }
+
+    /**
+     * Process info of the row, rebuilt if the upload timestamp was resolved after it was built.
+     */
+    public Map<String, String> getProcessInfo() {
+        Long uploadTimestamp = extraParams.getUploadTimestamp();
+        if (processInfo == null || !Objects.equals(uploadTimestamp, processInfoUploadTimestamp)) {
+            Map<String, String> info = new HashMap<>();
+            info.put("rid", extraParams.getRid());
+            info.put("ingest_time", Instant.ofEpochMilli(extraParams.getIngestTimestamp()).toString());
+            info.put(INPUT_FILE_NAME, extraParams.getInputFileName());
+            info.put("source_ip", extraParams.getIp());
+            if (uploadTimestamp != null) {
+                info.put("upload_time", Instant.ofEpochMilli(uploadTimestamp).toString());
+            }
+            processInfo = Collections.unmodifiableMap(info);
+            processInfoUploadTimestamp = uploadTimestamp;
+        }
+        return processInfo;
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.common;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import lombok.Getter;
+import software.aws.solution.clickstream.common.ingest.Event;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static software.aws.solution.clickstream.common.ClickstreamEventParser.EVENT_FIRST_OPEN;
+import static software.aws.solution.clickstream.common.ClickstreamEventParser.EVENT_FIRST_VISIT;
+import static software.aws.solution.clickstream.common.ClickstreamEventParser.EVENT_PROFILE_SET;
+
+/**
+ * The checks the cleaner applies to each data element, done on the element tokens while the event
+ * parser reads them: the data must be a JSON array, the element must match the numeric fields of the
+ * data schema and carry an event id, app id and timestamp, otherwise it is corrupt; stale, future and
+ * unknown app events are dropped. Like the cleaner filter, an event is in the future when it is after the
+ * job start time and it is stale when it has no ingest time.
+ * <p>
+ * The data schema is flat, only its top-level long and float fields can fail, string fields take any value
+ * as from_json does.
+ */
+@Getter
+public class IngestValidation implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final List<String> FRESHNESS_EXEMPT_EVENTS = Arrays.asList(EVENT_FIRST_OPEN, EVENT_FIRST_VISIT, EVENT_PROFILE_SET);
+
+    private final Set<String> appIds; // NOSONAR
+    private final long dataFreshnessMillis;
+    private final long jobStartTimestamp;
+    private final Set<String> longFields; // NOSONAR
+    private final Set<String> floatFields; // NOSONAR
+
+    public IngestValidation(final Set<String> appIds, final long dataFreshnessMillis, final long jobStartTimestamp,
+                            final Set<String> longFields, final Set<String> floatFields) {
+        this.appIds = new HashSet<>(appIds);
+        this.dataFreshnessMillis = dataFreshnessMillis;
+        this.jobStartTimestamp = jobStartTimestamp;
+        this.longFields = new HashSet<>(longFields);
+        this.floatFields = new HashSet<>(floatFields);
+    }
+
+    /**
+     * Returns an error if the current value of the parser is the data itself rather than an element of the
+     * data array, or null if it is an element.
+     */
+    public String checkInArray(final JsonParser dataParser) {
+        JsonStreamContext context = dataParser.getParsingContext();
+        if (dataParser.isExpectedStartObjectToken() || dataParser.isExpectedStartArrayToken()) {
+            context = context.getParent();
+        }
+        return context.inArray() ? null : "data is not a JSON array";
+    }
+
+    /**
+     * Returns why the element does not match the schema, or null if it does.
+     */
+    public String checkSchema(final TokenBuffer element) throws IOException {
+        try (JsonParser parser = element.asParser()) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return "data is not a JSON object";
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (value != JsonToken.VALUE_NULL) {
+                    if (longFields.contains(name) && value != JsonToken.VALUE_NUMBER_INT) {
+                        return "field " + name + " is not a long";
+                    }
+                    if (floatFields.contains(name) && !value.isNumeric()) {
+                        return "field " + name + " is not a number";
+                    }
+                }
+                parser.skipChildren();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns which required field the event misses, or null if it has them all.
+     */
+    public String checkRequired(final Event event) {
+        if (event.getEventId() == null) {
+            return "event_id is null";
+        }
+        if (event.getAppId() == null) {
+            return "app_id is null";
+        }
+        if (event.getEventTimestamp() == null) {
+            return "timestamp is null";
+        }
+        return null;
+    }
+
+    public boolean accept(final Event event, final Long ingestTimestamp) {
+        return isFresh(event, ingestTimestamp) && isValidAppId(event.getAppId());
+    }
+
+    private boolean isFresh(final Event event, final Long ingestTimestamp) {
+        if (FRESHNESS_EXEMPT_EVENTS.contains(event.getEventName())) {
+            return true;
+        }
+        long eventTimestamp = event.getEventTimestamp();
+        if (eventTimestamp > jobStartTimestamp) {
+            ParserMetrics.recordError("future_event");
+            return false;
+        }
+        return ingestTimestamp != null && ingestTimestamp - eventTimestamp <= dataFreshnessMillis;
+    }
+
+    private boolean isValidAppId(final String appId) {
+        return appId != null && !appId.trim().isEmpty() && appIds.contains(appId);
+    }
+}
@@ -25,4 +25,5 @@ public class ParseDataResult {
     private List<ClickstreamEvent> clickstreamEventList; //NOSONAR
     private ClickstreamUser clickstreamUser; //NOSONAR
     private List<ClickstreamItem> clickstreamItemList; //NOSONAR
+    private String corruptRecord; //NOSONAR
 }
@@ -0,0 +1,197 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.common;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings of the parser phases and counts of corrupt records, cheap enough to update for every
+ * record. Recording is off until {@link #setEnabled(boolean)}, then a phase is timed with
+ * <pre>
+ * long start = ParserMetrics.start();
+ * ...
+ * ParserMetrics.record(ParserMetrics.Phase.UA, start);
+ * </pre>
+ * The latencies go to log-linear histograms with 8 buckets per power of two, so percentiles are
+ * within 12.5%. A task binds its own {@link Recorder} to its thread with {@link #startTaskRecording()},
+ * so what it drains is only what the task recorded. Records outside a task go to a JVM-wide
+ * recorder drained by {@link #drain()}. The hit, miss and eviction counts of the named
+ * {@link Cache caches} are recorded the same way.
+ */
+public final class ParserMetrics {
+    public static final String PARSER_METRICS_ENABLED_PROP = "parser.metrics.enabled";
+
+    public enum Phase {
+        DECODE, JSON_PARSE, URI_PARSE, TRAFFIC_SOURCE, UA, ROW_BUILD
+    }
+
+    static final int CACHE_HIT = 0;
+    static final int CACHE_MISS = 1;
+    static final int CACHE_EVICTION = 2;
+    static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    static final int BUCKETS = LINEAR_LIMIT + (Long.SIZE - 1 - Integer.numberOfTrailingZeros(LINEAR_LIMIT)) * SUB_BUCKETS;
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final Recorder SHARED = new Recorder();
+    private static final ThreadLocal<Recorder> TASK_RECORDER = new ThreadLocal<>();
+    private static volatile boolean enabled = Boolean.getBoolean(PARSER_METRICS_ENABLED_PROP);
+
+    private ParserMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(final boolean enabled) {
+        ParserMetrics.enabled = enabled;
+    }
+
+    /**
+     * The start time of a phase, 0 when recording is off.
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public static void record(final Phase phase, final long start) {
+        if (start == 0L) {
+            return;
+        }
+        current().record(phase, Math.max(0L, System.nanoTime() - start));
+    }
+
+    /**
+     * Count a corrupt record by the type of its error.
+     */
+    public static void recordError(final String errorType) {
+        if (enabled) {
+            current().recordError(errorType);
+        }
+    }
+
+    /**
+     * Count hits, misses or evictions of a named cache.
+     */
+    static void recordCache(final String cacheName, final int counter, final long count) {
+        if (enabled) {
+            current().recordCache(cacheName, counter, count);
+        }
+    }
+
+    /**
+     * Drain what was recorded outside a task.
+     */
+    public static ParserMetricsSnapshot drain() {
+        return SHARED.drain();
+    }
+
+    /**
+     * Send what the current thread records to a new recorder until {@link #stopTaskRecording(Recorder)}.
+     */
+    public static Recorder startTaskRecording() {
+        Recorder recorder = new Recorder();
+        TASK_RECORDER.set(recorder);
+        return recorder;
+    }
+
+    /**
+     * Unbind the recorder from the current thread, if it is still bound there.
+     */
+    public static void stopTaskRecording(final Recorder recorder) {
+        if (TASK_RECORDER.get() == recorder) {
+            TASK_RECORDER.remove();
+        }
+    }
+
+    private static Recorder current() {
+        Recorder recorder = TASK_RECORDER.get();
+        return recorder != null ? recorder : SHARED;
+    }
+
+    static int bucketOf(final long nanos) {
+        if (nanos < LINEAR_LIMIT) {
+            return (int) nanos;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * The smallest value of the bucket.
+     */
+    static long lowerBoundOf(final int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        long subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * The histograms and error counts of one task, or of the JVM for records outside a task. Each
+     * recorded value is drained once even when it is drained concurrently with recording.
+     */
+    public static final class Recorder {
+        private final AtomicLongArray[] histograms = new AtomicLongArray[PHASES.length];
+        private final AtomicLongArray totalNanos = new AtomicLongArray(PHASES.length);
+        private final AtomicLongArray maxNanos = new AtomicLongArray(PHASES.length);
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        private final Map<String, AtomicLongArray> caches = new ConcurrentHashMap<>();
+
+        Recorder() {
+            for (int i = 0; i < PHASES.length; i++) {
+                histograms[i] = new AtomicLongArray(BUCKETS);
+            }
+        }
+
+        void record(final Phase phase, final long nanos) {
+            histograms[phase.ordinal()].incrementAndGet(bucketOf(nanos));
+            totalNanos.addAndGet(phase.ordinal(), nanos);
+            maxNanos.accumulateAndGet(phase.ordinal(), nanos, Math::max);
+        }
+
+        void recordError(final String errorType) {
+            errors.computeIfAbsent(errorType, t -> new LongAdder()).increment();
+        }
+
+        void recordCache(final String cacheName, final int counter, final long count) {
+            caches.computeIfAbsent(cacheName, n -> new AtomicLongArray(CACHE_EVICTION + 1)).addAndGet(counter, count);
+        }
+
+        public ParserMetricsSnapshot drain() {
+            ParserMetricsSnapshot snapshot = new ParserMetricsSnapshot();
+            for (Phase phase : PHASES) {
+                AtomicLongArray histogram = histograms[phase.ordinal()];
+                long[] buckets = new long[BUCKETS];
+                for (int i = 0; i < BUCKETS; i++) {
+                    buckets[i] = histogram.getAndSet(i, 0L);
+                }
+                snapshot.addPhase(phase.name(), buckets, totalNanos.getAndSet(phase.ordinal(), 0L), maxNanos.getAndSet(phase.ordinal(), 0L));
+            }
+            errors.forEach((errorType, count) -> snapshot.addError(errorType, count.sumThenReset()));
+            caches.forEach((cacheName, counts) -> snapshot.addCache(cacheName,
+                    counts.getAndSet(CACHE_HIT, 0L), counts.getAndSet(CACHE_MISS, 0L), counts.getAndSet(CACHE_EVICTION, 0L)));
+            return snapshot;
+        }
+    }
+}
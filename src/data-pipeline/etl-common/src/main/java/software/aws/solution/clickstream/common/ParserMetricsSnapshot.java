@@ -0,0 +1,150 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.common;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Parser metrics and cache counts drained from {@link ParserMetrics}, snapshots of several tasks are merged into one.
+ */
+public class ParserMetricsSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final double NANOS_PER_MICRO = 1000.0;
+    private static final double NANOS_PER_MILLI = 1000_000.0;
+
+    private final Map<String, long[]> histograms = new LinkedHashMap<>(); // NOSONAR
+    private final Map<String, Long> totalNanos = new LinkedHashMap<>(); // NOSONAR
+    private final Map<String, Long> maxNanos = new LinkedHashMap<>(); // NOSONAR
+    private final Map<String, Long> errors = new TreeMap<>(); // NOSONAR
+    private final Map<String, long[]> caches = new TreeMap<>(); // NOSONAR
+
+    public void addPhase(final String phase, final long[] buckets, final long phaseTotalNanos, final long phaseMaxNanos) {
+        long[] histogram = histograms.computeIfAbsent(phase, p -> new long[ParserMetrics.BUCKETS]);
+        for (int i = 0; i < histogram.length && i < buckets.length; i++) {
+            histogram[i] += buckets[i];
+        }
+        totalNanos.merge(phase, phaseTotalNanos, Long::sum);
+        maxNanos.merge(phase, phaseMaxNanos, Math::max);
+    }
+
+    public void addError(final String errorType, final long count) {
+        if (count > 0) {
+            errors.merge(errorType, count, Long::sum);
+        }
+    }
+
+    public void addCache(final String cacheName, final long hits, final long misses, final long evictions) {
+        if (hits > 0 || misses > 0 || evictions > 0) {
+            long[] counts = caches.computeIfAbsent(cacheName, n -> new long[ParserMetrics.CACHE_EVICTION + 1]);
+            counts[ParserMetrics.CACHE_HIT] += hits;
+            counts[ParserMetrics.CACHE_MISS] += misses;
+            counts[ParserMetrics.CACHE_EVICTION] += evictions;
+        }
+    }
+
+    public void merge(final ParserMetricsSnapshot other) {
+        other.histograms.forEach((phase, buckets) ->
+                addPhase(phase, buckets, other.totalNanos.getOrDefault(phase, 0L), other.maxNanos.getOrDefault(phase, 0L)));
+        other.errors.forEach(this::addError);
+        other.caches.forEach((cacheName, counts) ->
+                addCache(cacheName, counts[ParserMetrics.CACHE_HIT], counts[ParserMetrics.CACHE_MISS], counts[ParserMetrics.CACHE_EVICTION]));
+    }
+
+    public ParserMetricsSnapshot copy() {
+        ParserMetricsSnapshot copy = new ParserMetricsSnapshot();
+        copy.merge(this);
+        return copy;
+    }
+
+    public boolean isEmpty() {
+        return errors.isEmpty() && caches.isEmpty() && histograms.keySet().stream().allMatch(phase -> getCount(phase) == 0);
+    }
+
+    public long getCount(final String phase) {
+        long count = 0;
+        for (long bucketCount : histograms.getOrDefault(phase, new long[0])) {
+            count += bucketCount;
+        }
+        return count;
+    }
+
+    public Map<String, Long> getErrors() {
+        return new TreeMap<>(errors);
+    }
+
+    /**
+     * The hit, miss and eviction counts of the named caches, keyed by "&lt;name&gt; hit" and so on.
+     */
+    public Map<String, Long> getCacheStats() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        caches.forEach((cacheName, counts) -> {
+            result.put(cacheName + " hit", counts[ParserMetrics.CACHE_HIT]);
+            result.put(cacheName + " miss", counts[ParserMetrics.CACHE_MISS]);
+            result.put(cacheName + " eviction", counts[ParserMetrics.CACHE_EVICTION]);
+        });
+        return result;
+    }
+
+    /**
+     * The lower bound of the bucket holding the given quantile, in nanoseconds.
+     */
+    public long getPercentileNanos(final String phase, final double quantile) {
+        long[] histogram = histograms.get(phase);
+        long count = getCount(phase);
+        if (histogram == null || count == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return ParserMetrics.lowerBoundOf(i);
+            }
+        }
+        return maxNanos.getOrDefault(phase, 0L);
+    }
+
+    /**
+     * Count, total time and latency percentiles per phase, the error counts and the cache counts.
+     */
+    public Map<String, Object> toSummary() {
+        Map<String, Object> phases = new LinkedHashMap<>();
+        for (String phase : histograms.keySet()) {
+            long count = getCount(phase);
+            if (count == 0) {
+                continue;
+            }
+            long total = totalNanos.getOrDefault(phase, 0L);
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", count);
+            stats.put("total_ms", total / NANOS_PER_MILLI);
+            stats.put("mean_us", total / NANOS_PER_MICRO / count);
+            stats.put("p50_us", getPercentileNanos(phase, 0.5) / NANOS_PER_MICRO);
+            stats.put("p90_us", getPercentileNanos(phase, 0.9) / NANOS_PER_MICRO);
+            stats.put("p99_us", getPercentileNanos(phase, 0.99) / NANOS_PER_MICRO);
+            stats.put("max_us", maxNanos.getOrDefault(phase, 0L) / NANOS_PER_MICRO);
+            phases.put(phase.toLowerCase(), stats);
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("phases", phases);
+        summary.put("errors", getErrors());
+        summary.put("caches", getCacheStats());
+        return summary;
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Decodes base64 gzip ingest payloads as they are read, so the JSON parser reads the inflated bytes
+ * without a decoded byte[] or an intermediate String.
+ */
+public final class PayloadDecoder {
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private PayloadDecoder() {
+    }
+
+    /**
+     * Stream of the inflated bytes of a base64 encoded gzip payload, an invalid payload fails while reading.
+     */
+    public static InputStream openBase64Gzip(final String base64Data) throws IOException {
+        return new ReusableGzipInputStream(Base64.getDecoder().wrap(new AsciiInputStream(base64Data)));
+    }
+
+    public static InputStream openGzip(final byte[] gzipData) throws IOException {
+        return new ReusableGzipInputStream(new ByteArrayInputStream(gzipData));
+    }
+
+    public static String readUtf8(final InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(COPY_BUFFER_SIZE);
+            byte[] chunk = new byte[COPY_BUFFER_SIZE];
+            int n;
+            while ((n = input.read(chunk, 0, chunk.length)) >= 0) {
+                out.write(chunk, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Reads the chars of a base64 string as bytes.
+     */
+    private static final class AsciiInputStream extends InputStream {
+        private final String data;
+        private int pos;
+
+        AsciiInputStream(final String data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            return pos < data.length() ? data.charAt(pos++) & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int n = Math.min(len, data.length() - pos);
+            if (n <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < n; i++) {
+                b[off + i] = (byte) data.charAt(pos + i);
+            }
+            pos += n;
+            return n;
+        }
+    }
+}
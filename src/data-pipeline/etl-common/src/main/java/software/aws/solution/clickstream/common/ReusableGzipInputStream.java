@@ -0,0 +1,250 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Gzip inflating stream like {@link java.util.zip.GZIPInputStream}, but the inflater and input buffer
+ * are reused by the streams of a thread instead of being allocated for every payload.
+ * <p>
+ * A stream opened while another one of the same thread is still open gets its own inflater. The thread
+ * inflater is released when its stream is closed or fully read, and taken over by the next stream when
+ * its stream was dropped without either.
+ */
+final class ReusableGzipInputStream extends InputStream {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int GZIP_ID1 = 0x1f;
+    private static final int GZIP_ID2 = 0x8b;
+    private static final int DEFLATED = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int MTIME_XFL_OS_SIZE = 6;
+    private static final long UINT_MASK = 0xffffffffL;
+    private static final ThreadLocal<InflaterHolder> HOLDER = ThreadLocal.withInitial(InflaterHolder::new);
+
+    private final InputStream in;
+    private final InflaterHolder holder;
+    private final boolean shared;
+    private final Inflater inflater;
+    private final byte[] buf;
+    private final CRC32 crc = new CRC32();
+    private int bufPos;
+    private int bufLen;
+    private boolean eof;
+    private boolean closed;
+
+    ReusableGzipInputStream(final InputStream in) throws IOException {
+        this.in = in;
+        InflaterHolder threadHolder = HOLDER.get();
+        this.shared = threadHolder.acquire(this);
+        this.holder = shared ? threadHolder : new InflaterHolder();
+        this.inflater = holder.inflater;
+        this.buf = holder.buf;
+        this.inflater.reset();
+        try {
+            if (readUByte() != GZIP_ID1 || readUByte() != GZIP_ID2) {
+                throw new ZipException("Not in GZIP format");
+            }
+            readHeader();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = holder.single;
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (!eof) {
+            int n;
+            try {
+                n = inflater.inflate(b, off, len);
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage() == null ? "Invalid ZLIB data format" : e.getMessage());
+            }
+            if (n > 0) {
+                crc.update(b, off, n);
+                return n;
+            }
+            if (inflater.finished()) {
+                bufPos = bufLen - inflater.getRemaining();
+                readTrailer();
+                eof = !nextMember();
+                if (eof) {
+                    release();
+                }
+            } else if (inflater.needsDictionary()) {
+                throw new ZipException("Unexpected preset dictionary in GZIP data");
+            } else if (inflater.needsInput()) {
+                if (!fill()) {
+                    throw new EOFException("Unexpected end of ZLIB input stream");
+                }
+                inflater.setInput(buf, bufPos, bufLen - bufPos);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        release();
+        in.close();
+    }
+
+    boolean usesThreadInflater() {
+        return shared;
+    }
+
+    private void release() {
+        if (shared) {
+            holder.release(this);
+        } else {
+            inflater.end();
+        }
+    }
+
+    private void readHeader() throws IOException {
+        if (readUByte() != DEFLATED) {
+            throw new ZipException("Unsupported compression method");
+        }
+        int flags = readUByte();
+        skipBytes(MTIME_XFL_OS_SIZE);
+        if ((flags & FEXTRA) != 0) {
+            skipBytes(readUByte() | readUByte() << 8);
+        }
+        if ((flags & FNAME) != 0) {
+            skipZeroTerminated();
+        }
+        if ((flags & FCOMMENT) != 0) {
+            skipZeroTerminated();
+        }
+        if ((flags & FHCRC) != 0) {
+            skipBytes(2);
+        }
+        crc.reset();
+        inflater.reset();
+        inflater.setInput(buf, bufPos, bufLen - bufPos);
+    }
+
+    private void readTrailer() throws IOException {
+        long expectedCrc = readUInt();
+        long expectedSize = readUInt();
+        if (expectedCrc != crc.getValue() || expectedSize != (inflater.getBytesWritten() & UINT_MASK)) {
+            throw new ZipException("Corrupt GZIP trailer");
+        }
+    }
+
+    /**
+     * Starts the next member of a multi member payload, anything else after a member is ignored as
+     * {@link java.util.zip.GZIPInputStream} does.
+     */
+    private boolean nextMember() throws IOException {
+        if (bufPos >= bufLen && !fill() || (buf[bufPos++] & 0xff) != GZIP_ID1) {
+            return false;
+        }
+        if (bufPos >= bufLen && !fill() || (buf[bufPos++] & 0xff) != GZIP_ID2) {
+            return false;
+        }
+        readHeader();
+        return true;
+    }
+
+    private long readUInt() throws IOException {
+        long value = 0;
+        for (int i = 0; i < 4; i++) {
+            value |= (long) readUByte() << (i * 8);
+        }
+        return value;
+    }
+
+    private void skipZeroTerminated() throws IOException {
+        int b;
+        do {
+            b = readUByte();
+        } while (b != 0);
+    }
+
+    private void skipBytes(final int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            readUByte();
+        }
+    }
+
+    private int readUByte() throws IOException {
+        if (bufPos >= bufLen && !fill()) {
+            throw new EOFException("Unexpected end of GZIP input stream");
+        }
+        return buf[bufPos++] & 0xff;
+    }
+
+    private boolean fill() throws IOException {
+        int n;
+        do {
+            n = in.read(buf, 0, buf.length);
+        } while (n == 0);
+        bufPos = 0;
+        bufLen = Math.max(n, 0);
+        return n > 0;
+    }
+
+    private static final class InflaterHolder {
+        private final Inflater inflater = new Inflater(true);
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private final byte[] single = new byte[1];
+        private WeakReference<ReusableGzipInputStream> owner;
+
+        /**
+         * Takes the holder for the stream unless the stream holding it is still reachable.
+         */
+        boolean acquire(final ReusableGzipInputStream stream) {
+            if (owner != null && owner.get() != null) {
+                return false;
+            }
+            owner = new WeakReference<>(stream);
+            return true;
+        }
+
+        void release(final ReusableGzipInputStream stream) {
+            if (owner != null && owner.get() == stream) {
+                owner = null;
+            }
+        }
+    }
+}
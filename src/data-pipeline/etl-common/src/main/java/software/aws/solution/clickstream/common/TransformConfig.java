@@ -25,4 +25,16 @@ public class TransformConfig implements Serializable {
     private static final long serialVersionUID = 1L;
     private Map<String, RuleConfig> appRuleConfig; // NOSONAR
     private boolean trafficSourceEnrichmentDisabled; // NOSONAR
+    private IngestValidation ingestValidation; // NOSONAR
+
+    /**
+     * A copy of this config with the given validation, the config shared by the transformers is left as it is.
+     */
+    public TransformConfig withIngestValidation(final IngestValidation validation) {
+        TransformConfig config = new TransformConfig();
+        config.setAppRuleConfig(this.appRuleConfig);
+        config.setTrafficSourceEnrichmentDisabled(this.trafficSourceEnrichmentDisabled);
+        config.setIngestValidation(validation);
+        return config;
+    }
 }
@@ -0,0 +1,464 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.common;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single pass url parser which keeps the component offsets into the original string and only
+ * decodes when a component contains an escape.
+ * <p>
+ * A url accepted by {@link java.net.URI} gets the same host, path and query as {@code URI}, a url
+ * with characters {@code URI} rejects is parsed leniently: the query runs from the first '?' to the
+ * end, including any '#', and its values are unescaped without turning '+' into space. This is
+ * what the former {@code URI} with {@code encodeUriString} fallback returned for such query values.
+ */
+public final class UrlParser {
+    private static final int NONE = -1;
+    private static final int HEX_RADIX = 16;
+    private static final int MAX_OCTET = 255;
+    private static final int IPV4_PARTS = 4;
+
+    private static final long L_ALPHA = 0L;
+    private static final long H_ALPHA = highMask('A', 'Z') | highMask('a', 'z');
+    private static final long L_DIGIT = lowMask('0', '9');
+    private static final long L_ALPHANUM = L_DIGIT;
+    private static final long H_ALPHANUM = H_ALPHA;
+    private static final long L_HEX = L_DIGIT;
+    private static final long H_HEX = highMask('A', 'F') | highMask('a', 'f');
+    private static final long L_UNRESERVED = L_ALPHANUM | lowMask("-_.!~*'()");
+    private static final long H_UNRESERVED = H_ALPHANUM | highMask("-_.!~*'()");
+    private static final long L_RESERVED = lowMask(";/?:@&=+$,[]");
+    private static final long H_RESERVED = highMask(";/?:@&=+$,[]");
+    private static final long L_URIC = L_RESERVED | L_UNRESERVED;
+    private static final long H_URIC = H_RESERVED | H_UNRESERVED;
+    private static final long L_PATH = L_UNRESERVED | lowMask(":@&=+$,;/");
+    private static final long H_PATH = H_UNRESERVED | highMask(":@&=+$,;/");
+    private static final long L_SERVER = L_UNRESERVED | lowMask(";:&=+$,@[]");
+    private static final long H_SERVER = H_UNRESERVED | highMask(";:&=+$,@[]");
+    private static final long L_SCHEME = L_ALPHANUM | lowMask("+-.");
+    private static final long H_SCHEME = H_ALPHANUM | highMask("+-.");
+
+    private final String url;
+    private boolean failed;
+    private boolean lenient;
+    private boolean opaque;
+    private int hostStart = NONE;
+    private int hostEnd = NONE;
+    private int pathStart = NONE;
+    private int pathEnd = NONE;
+    private int queryStart = NONE;
+    private int queryEnd = NONE;
+
+    private UrlParser(final String url) {
+        this.url = url;
+    }
+
+    public static UrlParser parse(final String url) {
+        UrlParser parser = new UrlParser(url);
+        if (!parser.parseStrict()) {
+            parser.parseLenient();
+        }
+        return parser;
+    }
+
+    /**
+     * False if the url cannot be parsed at all, e.g. a missing scheme name before ':'.
+     */
+    public boolean isValid() {
+        return !failed;
+    }
+
+    public String getHost() {
+        return hostStart == NONE ? null : url.substring(hostStart, hostEnd);
+    }
+
+    /**
+     * The decoded path, a leniently parsed path is returned as is.
+     */
+    public String getPath() {
+        if (failed || opaque) {
+            return null;
+        }
+        return lenient ? url.substring(pathStart, pathEnd) : decode(url, pathStart, pathEnd, false);
+    }
+
+    public String getRawQuery() {
+        return queryStart == NONE ? null : url.substring(queryStart, queryEnd);
+    }
+
+    /**
+     * The query with escapes decoded, then url decoded once more, as {@code Util.deCodeUri(URI.getQuery())}.
+     */
+    public String getQueryString() {
+        if (queryStart == NONE) {
+            return null;
+        }
+        if (lenient) {
+            return decodeOrRaw(queryStart, queryEnd, false);
+        }
+        String query = decode(url, queryStart, queryEnd, false);
+        String decoded = decode(query, 0, query.length(), true);
+        return decoded == null ? query : decoded;
+    }
+
+    public Map<String, List<String>> getQueryParameters() {
+        Map<String, List<String>> params = new HashMap<>();
+        if (queryStart == NONE) {
+            return params;
+        }
+        // a valid query is unescaped before it is split, as URI.getQuery() does
+        String query = lenient ? url : decode(url, queryStart, queryEnd, false);
+        int start = lenient ? queryStart : 0;
+        int end = lenient ? queryEnd : query.length();
+
+        // same pairs as String.split("&"): trailing empty pairs are dropped unless the query is empty
+        int last = end;
+        while (last > start && query.charAt(last - 1) == '&') {
+            last--;
+        }
+        if (last == start && end > start) {
+            return params;
+        }
+        int p = start;
+        while (p <= last) {
+            int amp = query.indexOf('&', p);
+            int pairEnd = amp < 0 || amp > last ? last : amp;
+            addPair(params, query, p, pairEnd);
+            p = pairEnd + 1;
+        }
+        return params;
+    }
+
+    private void addPair(final Map<String, List<String>> params, final String query, final int start, final int end) {
+        int eq = query.indexOf('=', start);
+        boolean hasValue = eq > start && eq < end;
+        String key = query.substring(start, hasValue ? eq : end);
+        String value = null;
+        if (hasValue && eq + 1 < end) {
+            value = decode(query, eq + 1, end, !lenient);
+            if (value == null) {
+                value = query.substring(eq + 1, end);
+            }
+        }
+        params.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+    }
+
+    private String decodeOrRaw(final int start, final int end, final boolean plusAsSpace) {
+        String decoded = decode(url, start, end, plusAsSpace);
+        return decoded == null ? url.substring(start, end) : decoded;
+    }
+
+    private boolean parseStrict() {
+        int n = url.length();
+        int p = 0;
+        int colon = scanUntil(0, n, ":/?#");
+        if (colon < n && url.charAt(colon) == ':') {
+            if (colon == 0) {
+                failed = true;
+                return true;
+            }
+            if (!match(url.charAt(0), L_ALPHA, H_ALPHA) || scan(1, colon, L_SCHEME, H_SCHEME, false) < colon) {
+                return false;
+            }
+            p = colon + 1;
+            if (p == n) {
+                failed = true;
+                return true;
+            }
+            if (url.charAt(p) != '/') {
+                opaque = true;
+                int q = scanUntil(p, n, "#");
+                return scan(p, q, L_URIC, H_URIC, true) == q && (q == n || scan(q + 1, n, L_URIC, H_URIC, true) == n);
+            }
+        }
+        if (url.startsWith("//", p)) {
+            p += 2;
+            int q = scanUntil(p, n, "/?#");
+            if (q > p) {
+                if (scan(p, q, L_SERVER, H_SERVER, true) < q) {
+                    return false;
+                }
+                parseServer(p, q);
+            } else if (q == n) {
+                failed = true;
+                return true;
+            }
+            p = q;
+        }
+        int q = scanUntil(p, n, "?#");
+        if (scan(p, q, L_PATH, H_PATH, true) < q) {
+            return false;
+        }
+        pathStart = p;
+        pathEnd = q;
+        p = q;
+        if (p < n && url.charAt(p) == '?') {
+            p++;
+            q = scanUntil(p, n, "#");
+            if (scan(p, q, L_URIC, H_URIC, true) < q) {
+                return false;
+            }
+            queryStart = p;
+            queryEnd = q;
+            p = q;
+        }
+        return p == n || scan(p + 1, n, L_URIC, H_URIC, true) == n;
+    }
+
+    private void parseLenient() {
+        failed = false;
+        opaque = false;
+        hostStart = NONE;
+        hostEnd = NONE;
+        int n = url.length();
+        int question = url.indexOf('?');
+        int hierEnd = question < 0 ? n : question;
+        int p = 0;
+        int sep = url.indexOf("://");
+        if (sep >= 0 && sep < hierEnd) {
+            p = sep + 3;
+            int q = scanUntil(p, hierEnd, "/");
+            parseServer(p, q);
+            p = q;
+        }
+        pathStart = p;
+        pathEnd = hierEnd;
+        if (question >= 0) {
+            queryStart = question + 1;
+            queryEnd = n;
+        } else {
+            queryStart = NONE;
+            queryEnd = NONE;
+        }
+        lenient = true;
+    }
+
+    /**
+     * Sets the host if the authority is server based, a registry based authority has no host.
+     */
+    private void parseServer(final int start, final int end) {
+        int p = start;
+        int at = url.indexOf('@', start);
+        if (at >= 0 && at < end) {
+            p = at + 1;
+        }
+        int h = p;
+        if (p < end && url.charAt(p) == '[') {
+            int close = url.indexOf(']', p);
+            if (close < 0 || close >= end || !isIpv6(p + 1, close)) {
+                return;
+            }
+            p = close + 1;
+        } else {
+            p = scanUntil(p, end, ":");
+            if (!isIpv4(h, p) && !isHostname(h, p)) {
+                return;
+            }
+        }
+        if (p < end && (url.charAt(p) != ':' || scan(p + 1, end, L_DIGIT, 0L, false) < end)) {
+            return;
+        }
+        hostStart = h;
+        hostEnd = p;
+    }
+
+    private boolean isHostname(final int start, final int end) {
+        int p = start;
+        int lastLabel = NONE;
+        while (p < end) {
+            int q = scan(p, end, L_ALPHANUM, H_ALPHANUM, false);
+            if (q == p) {
+                break;
+            }
+            lastLabel = p;
+            q = scan(p, end, L_ALPHANUM | lowMask("-"), H_ALPHANUM | highMask("-"), false);
+            if (url.charAt(q - 1) == '-') {
+                return false;
+            }
+            p = q;
+            if (p < end && url.charAt(p) == '.') {
+                p++;
+            } else {
+                break;
+            }
+        }
+        if (p < end || lastLabel == NONE) {
+            return false;
+        }
+        return lastLabel == start || match(url.charAt(lastLabel), L_ALPHA, H_ALPHA);
+    }
+
+    private boolean isIpv4(final int start, final int end) {
+        int p = start;
+        for (int part = 0; part < IPV4_PARTS; part++) {
+            if (part > 0) {
+                if (p >= end || url.charAt(p) != '.') {
+                    return false;
+                }
+                p++;
+            }
+            int q = scan(p, end, L_DIGIT, 0L, false);
+            if (q == p || q - p > 3 || Integer.parseInt(url, p, q, 10) > MAX_OCTET) {
+                return false;
+            }
+            p = q;
+        }
+        return p == end;
+    }
+
+    private boolean isIpv6(final int start, final int end) {
+        boolean hasColon = false;
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            hasColon |= c == ':';
+            if (c != ':' && c != '.' && !match(c, L_HEX, H_HEX)) {
+                return false;
+            }
+        }
+        return hasColon;
+    }
+
+    private int scanUntil(final int start, final int end, final String stop) {
+        for (int p = start; p < end; p++) {
+            if (stop.indexOf(url.charAt(p)) >= 0) {
+                return p;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Index of the first char not in the masks, escapes and visible non ascii chars are
+     * accepted if allowed, a malformed escape stops the scan.
+     */
+    private int scan(final int start, final int end, final long lowMask, final long highMask, final boolean escapes) {
+        int p = start;
+        while (p < end) {
+            char c = url.charAt(p);
+            if (match(c, lowMask, highMask)) {
+                p++;
+            } else if (escapes && c == '%') {
+                if (p + 2 < end && isHex(url.charAt(p + 1)) && isHex(url.charAt(p + 2))) {
+                    p += 3;
+                } else {
+                    return p;
+                }
+            } else if (escapes && c > 128 && !Character.isSpaceChar(c) && !Character.isISOControl(c)) {
+                p++;
+            } else {
+                return p;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Unescape %XX sequences as utf-8 and optionally '+' as space, returns null for a malformed escape.
+     */
+    static String decode(final String s, final int start, final int end, final boolean plusAsSpace) {
+        int p = start;
+        while (p < end) {
+            char c = s.charAt(p);
+            if (c == '%' || plusAsSpace && c == '+') {
+                break;
+            }
+            p++;
+        }
+        if (p == end) {
+            return start == 0 && end == s.length() ? s : s.substring(start, end);
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        sb.append(s, start, p);
+        ByteArrayOutputStream bytes = null;
+        while (p < end) {
+            char c = s.charAt(p);
+            if (c == '%') {
+                if (bytes == null) {
+                    bytes = new ByteArrayOutputStream((end - p) / 3);
+                } else {
+                    bytes.reset();
+                }
+                while (p < end && s.charAt(p) == '%') {
+                    if (p + 2 >= end || !isHex(s.charAt(p + 1)) || !isHex(s.charAt(p + 2))) {
+                        return null;
+                    }
+                    bytes.write(Character.digit(s.charAt(p + 1), HEX_RADIX) << 4 | Character.digit(s.charAt(p + 2), HEX_RADIX));
+                    p += 3;
+                }
+                sb.append(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+            } else {
+                sb.append(plusAsSpace && c == '+' ? ' ' : c);
+                p++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isHex(final char c) {
+        return match(c, L_HEX, H_HEX);
+    }
+
+    private static boolean match(final char c, final long lowMask, final long highMask) {
+        if (c < 64) {
+            return ((1L << c) & lowMask) != 0;
+        }
+        if (c < 128) {
+            return ((1L << (c - 64)) & highMask) != 0;
+        }
+        return false;
+    }
+
+    private static long lowMask(final char first, final char last) {
+        long m = 0;
+        for (int i = Math.max(first, 0); i <= Math.min(last, 63); i++) {
+            m |= 1L << i;
+        }
+        return m;
+    }
+
+    private static long highMask(final char first, final char last) {
+        long m = 0;
+        for (int i = Math.max(first, 64); i <= Math.min(last, 127); i++) {
+            m |= 1L << (i - 64);
+        }
+        return m;
+    }
+
+    private static long lowMask(final String chars) {
+        long m = 0;
+        for (char c : chars.toCharArray()) {
+            if (c < 64) {
+                m |= 1L << c;
+            }
+        }
+        return m;
+    }
+
+    private static long highMask(final String chars) {
+        long m = 0;
+        for (char c : chars.toCharArray()) {
+            if (c >= 64 && c < 128) {
+                m |= 1L << (c - 64);
+            }
+        }
+        return m;
+    }
+}
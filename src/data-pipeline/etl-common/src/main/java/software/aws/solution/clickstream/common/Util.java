@@ -23,23 +23,17 @@ import software.aws.solution.clickstream.common.model.ClickstreamEventPropValue;
 import software.aws.solution.clickstream.common.model.ClickstreamUserPropValue;
 import software.aws.solution.clickstream.common.model.ValueType;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.zip.GZIPInputStream;
 
 @Slf4j
 public final class Util {
@@ -56,16 +50,8 @@ public final class Util {
         if (str == null) {
             return "";
         }
-        GZIPInputStream gis;
         try {
-            gis = new GZIPInputStream(new ByteArrayInputStream(str));
-            BufferedReader bf = new BufferedReader(new InputStreamReader(gis, StandardCharsets.UTF_8));
-            StringBuilder outStr = new StringBuilder();
-            String line;
-            while ((line = bf.readLine()) != null) {
-                outStr.append(line);
-            }
-            return outStr.toString();
+            return PayloadDecoder.readUtf8(PayloadDecoder.openGzip(str));
         } catch (IOException e) {
             log.error("decompress error:" + e.getMessage());
             throw new ExtractDataException(e);
@@ -77,29 +63,12 @@ public final class Util {
         if (uri == null) {
             return new HashMap<>();
         }
-        URI uriObj = null;
-        try {
-             uriObj = new URI(uri);
-        } catch (URISyntaxException e) {
-            if (isHasIllegalChar(e)) {
-                String encodedUri = encodeUriString(uri);
-                try {
-                    uriObj = new URI(encodedUri);
-                } catch (URISyntaxException ex) {
-                    log.warn("getUriParams() cannot parse encoded uri: {}" + ERROR_LOG + "{}", encodedUri, ex.getMessage());
-                    return new HashMap<>();
-                }
-            } else {
-                log.warn("getUriParams() cannot parse uri: {}" + ERROR_LOG + "{}", uri, e.getMessage());
-                return new HashMap<>();
-            }
+        UrlParser parser = UrlParser.parse(uri);
+        if (!parser.isValid()) {
+            log.warn("getUriParams() cannot parse uri: {}", uri);
+            return new HashMap<>();
         }
-
-        return getUriParams(uriObj);
-    }
-
-    private static boolean isHasIllegalChar(final URISyntaxException e) {
-        return e.getMessage().contains("Illegal character") || e.getMessage().contains("Malformed escape pair");
+        return parser.getQueryParameters();
     }
 
     public static String encodeUriString(final String pageUrlInput) {
@@ -196,44 +165,29 @@ public final class Util {
         }
 
         UrlParseResult result = new UrlParseResult();
-        try {
-            result = extractFromUrl(schemaUrl);
-        } catch (URISyntaxException e) {
-            log.warn("parseUrl(): cannot parse uri: {}" + ERROR_LOG + "{}", schemaUrl, e.getMessage());
-            if (isHasIllegalChar(e)) {
-                String encodedUri = encodeUriString(schemaUrl);
-                log.debug("parseUrl(): encoded uri: {}", encodedUri);
-                try {
-                    result = extractFromUrl(encodedUri);
-                } catch (URISyntaxException ex) {
-                    log.warn("parseUrl(): cannot parse encoded uri: {}" + ERROR_LOG + "{}", encodedUri, ex.getMessage());
-                }
-            }
+        UrlParser parser = UrlParser.parse(schemaUrl);
+        if (parser.isValid()) {
+            result.setHostName(parser.getHost());
+            result.setPath(parser.getPath());
+            result.setQueryString(parser.getQueryString());
+            result.setQueryParameters(parser.getQueryParameters());
+        } else {
+            log.warn("parseUrl(): cannot parse uri: {}", schemaUrl);
         }
         log.debug("parseUrl(): result host: {}",  result.getHostName());
         return Optional.of(result);
     }
 
-    private static UrlParseResult extractFromUrl(final String schemaUrl) throws URISyntaxException {
-        UrlParseResult result = new UrlParseResult();
-        URI uri = new URI(schemaUrl);
-        result.setHostName(uri.getHost());
-        result.setPath(uri.getPath());
-        result.setQueryString(deCodeUri(uri.getQuery()));
-        result.setQueryParameters(getUriParams(schemaUrl));
-        return result;
-    }
-
     public static String deCodeUri(final String uri) {
         if (uri == null) {
             return null;
         }
-        try {
-            return URLDecoder.decode(uri, StandardCharsets.UTF_8.toString());
-        } catch (Exception e) {
-            log.warn(e.getMessage() + ", uri:" + uri);
+        String decoded = UrlParser.decode(uri, 0, uri.length(), true);
+        if (decoded == null) {
+            log.warn("deCodeUri(): malformed escape, uri: {}", uri);
             return uri;
         }
+        return decoded;
     }
 
     public static Map<String, String> convertUriParamsToStrMap(final Map<String, List<String>> uriParams) {
@@ -17,6 +17,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import software.aws.solution.clickstream.common.Cache;
+import software.aws.solution.clickstream.common.CacheSnapshot;
 import software.aws.solution.clickstream.common.RuleConfig;
 import software.aws.solution.clickstream.common.Util;
 import software.aws.solution.clickstream.common.enrich.ts.CategoryTrafficSource;
@@ -29,7 +30,11 @@ import software.aws.solution.clickstream.common.enrich.ts.rule.ChannelRuleEvalua
 import software.aws.solution.clickstream.common.enrich.ts.rule.SourceCategoryAndTerms;
 import software.aws.solution.clickstream.common.exception.ExtractDataException;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -79,7 +84,11 @@ public final class RuleBasedTrafficSourceHelper implements TrafficSourceHelper {
     private final CategoryListEvaluator categoryListEvaluator;
     private final ChannelListEvaluator channelListEvaluator;
 
-    private final Cache<CategoryTrafficSource> categoryTrafficSourceCache = new Cache<>();
+    // a traffic source result holds about a dozen short strings
+    private static final int TRAFFIC_SOURCE_BYTES = 512;
+    private static final TrafficSourceCodec TRAFFIC_SOURCE_CODEC = new TrafficSourceCodec();
+    private final Cache<List<Object>, CategoryTrafficSource> urlTrafficSourceCache = new Cache<>("traffic_source_url", TRAFFIC_SOURCE_BYTES);
+    private final Cache<List<Object>, CategoryTrafficSource> utmTrafficSourceCache = new Cache<>("traffic_source_utm", TRAFFIC_SOURCE_BYTES);
     @Getter
     private final String appId;
 
@@ -128,6 +137,10 @@ public final class RuleBasedTrafficSourceHelper implements TrafficSourceHelper {
             log.error("Failed to load category or channel rules  channelRuleJson: {}, error: {}", channelRuleJson, Util.getStackTrace(e));
             throw new ExtractDataException(e);
         }
+
+        String rulesFingerprint = CacheSnapshot.fingerprint(categoryRuleJson, channelRuleJson);
+        CacheSnapshot.register(appId, () -> rulesFingerprint, urlTrafficSourceCache, TRAFFIC_SOURCE_CODEC);
+        CacheSnapshot.register(appId, () -> rulesFingerprint, utmTrafficSourceCache, TRAFFIC_SOURCE_CODEC);
     }
 
     public static RuleBasedTrafficSourceHelper getInstance(final String appId, final RuleConfig ruleConfig) {
@@ -181,11 +194,11 @@ public final class RuleBasedTrafficSourceHelper implements TrafficSourceHelper {
     public CategoryTrafficSource parse(final String pageUrl, final String pageReferrer, final String latestReferrer, final String latestReferrerHost) {
         log.debug("parser() enter pageUrl: {}, pageReferrer: {}, latestReferrer: {}, latestReferrerHost: {}", pageUrl, pageReferrer, latestReferrer, latestReferrerHost);
 
-        String cachedKey = getCachedKey(pageUrl, pageReferrer, latestReferrer);
+        return urlTrafficSourceCache.get(Arrays.asList(pageUrl, pageReferrer, latestReferrer, latestReferrerHost),
+                key -> parseUncached(pageUrl, pageReferrer, latestReferrer, latestReferrerHost));
+    }
 
-        if (categoryTrafficSourceCache.containsKey(cachedKey)) {
-            return categoryTrafficSourceCache.get(cachedKey);
-        }
+    private CategoryTrafficSource parseUncached(final String pageUrl, final String pageReferrer, final String latestReferrer, final String latestReferrerHost) {
         TrafficSourceUtm trafficSourceUtm = new TrafficSourceUtm();
         String pageHostName = null;
         if (pageUrl != null && !pageUrl.isEmpty()) {
@@ -195,9 +208,7 @@ public final class RuleBasedTrafficSourceHelper implements TrafficSourceHelper {
                 pageHostName = r.get().getHostName();
             }
         }
-        CategoryTrafficSource result = parse(trafficSourceUtm, pageHostName, pageReferrer, latestReferrer, latestReferrerHost);
-        categoryTrafficSourceCache.put(cachedKey, result);
-        return result;
+        return parse(trafficSourceUtm, pageHostName, pageReferrer, latestReferrer, latestReferrerHost);
     }
 
     private TrafficSourceUtm getUtmSourceFromUrl(final String urlInput) {
@@ -326,11 +337,15 @@ public final class RuleBasedTrafficSourceHelper implements TrafficSourceHelper {
         log.debug("parse() enter trafficSourceUtmInput: {}, pageHostName: {}, pageReferrer: {}, latestReferrer: {}, latestReferrerHost: {}",
                 trafficSourceUtmInput, pageHostName, pageReferrer, latestReferrer, latestReferrerHost);
 
-        String cachedKey = getCachedKey(trafficSourceUtmInput, pageReferrer, latestReferrer);
+        return utmTrafficSourceCache.get(getCachedKey(trafficSourceUtmInput, pageHostName, pageReferrer, latestReferrer, latestReferrerHost),
+                key -> parseUncached(trafficSourceUtmInput, pageHostName, pageReferrer, latestReferrer, latestReferrerHost));
+    }
 
-        if (categoryTrafficSourceCache.containsKey(cachedKey)) {
-            return categoryTrafficSourceCache.get(cachedKey);
-        }
+    private CategoryTrafficSource parseUncached(final TrafficSourceUtm trafficSourceUtmInput,
+                                                final String pageHostName,
+                                                final String pageReferrer,
+                                                final String latestReferrer,
+                                                final String latestReferrerHost) {
         TrafficSourceUtm trafficSourceUtm = normEmptyInTrafficSourceUtm(trafficSourceUtmInput);
 
         if (trafficSourceUtm.getSource() == null) {
@@ -365,30 +380,24 @@ public final class RuleBasedTrafficSourceHelper implements TrafficSourceHelper {
 
         handleUnassignedSource(categoryTrafficSource, pageReferrer, latestReferrer, isInternalReferrer, isInternalLatestReferrer);
 
-        categoryTrafficSourceCache.put(cachedKey, categoryTrafficSource);
-
         return categoryTrafficSource;
     }
 
-    private static String getCachedKey(final TrafficSourceUtm trafficSourceUtmInput, final String pageReferrer, final String latestReferrer) {
-        return String.join("|",
-                trafficSourceUtmInput.getSource() == null ? "1" : "1:" + trafficSourceUtmInput.getSource(),
-                trafficSourceUtmInput.getMedium() == null ? "2" : "2:" + trafficSourceUtmInput.getMedium(),
-                trafficSourceUtmInput.getClid() == null ? "3" : "3:" + trafficSourceUtmInput.getClid(),
-                trafficSourceUtmInput.getContent() == null ? "4" : "4:" + trafficSourceUtmInput.getContent(),
-                trafficSourceUtmInput.getTerm() == null ? "5" : "5:" + trafficSourceUtmInput.getTerm(),
-                trafficSourceUtmInput.getCampaignId() == null ? "6" : "6:" + trafficSourceUtmInput.getCampaignId(),
-                trafficSourceUtmInput.getCampaign() == null ? "7" : "7:" + trafficSourceUtmInput.getCampaign(),
-                trafficSourceUtmInput.getClidPlatform() == null ? "8" : "8:" + trafficSourceUtmInput.getClidPlatform(),
-                pageReferrer == null ? "9" : "9:" + pageReferrer,
-                latestReferrer == null ? "10" : "10:" + latestReferrer);
-    }
-
-    private static String getCachedKey(final String pageUrl, final String pageReferrer, final String latestReferrer) {
-      return String.join("|",
-                pageUrl == null ? "1" : "1:" + pageUrl,
-                pageReferrer == null ? "2" : "2:" + pageReferrer,
-                latestReferrer == null ? "3" : "3:" + latestReferrer);
+    private static List<Object> getCachedKey(final TrafficSourceUtm trafficSourceUtmInput, final String pageHostName,
+                                             final String pageReferrer, final String latestReferrer, final String latestReferrerHost) {
+        return Arrays.asList(
+                trafficSourceUtmInput.getSource(),
+                trafficSourceUtmInput.getMedium(),
+                trafficSourceUtmInput.getClid(),
+                trafficSourceUtmInput.getContent(),
+                trafficSourceUtmInput.getTerm(),
+                trafficSourceUtmInput.getCampaignId(),
+                trafficSourceUtmInput.getCampaign(),
+                trafficSourceUtmInput.getClidPlatform(),
+                pageHostName,
+                pageReferrer,
+                latestReferrer,
+                latestReferrerHost);
     }
 
     private void handleUnassignedSource(final CategoryTrafficSource categoryTrafficSource, final String pageReferrer,
@@ -497,4 +506,51 @@ public final class RuleBasedTrafficSourceHelper implements TrafficSourceHelper {
         return trafficSourceUtm;
     }
 
+
+    /**
+     * Keys are lists of strings, the rule results are rebuilt from their fields.
+     */
+    private static final class TrafficSourceCodec implements CacheSnapshot.Codec<List<Object>, CategoryTrafficSource> {
+        @Override
+        public void writeKey(final DataOutput out, final List<Object> key) throws IOException {
+            out.writeInt(key.size());
+            for (Object part : key) {
+                CacheSnapshot.writeString(out, (String) part);
+            }
+        }
+
+        @Override
+        public List<Object> readKey(final DataInput in) throws IOException {
+            int size = in.readInt();
+            List<Object> key = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                key.add(CacheSnapshot.readString(in));
+            }
+            return key;
+        }
+
+        @Override
+        public void writeValue(final DataOutput out, final CategoryTrafficSource value) throws IOException {
+            for (String field : new String[] {value.getSource(), value.getMedium(), value.getCampaign(), value.getContent(),
+                    value.getTerm(), value.getCampaignId(), value.getClidPlatform(), value.getClid(),
+                    value.getCategory(), value.getChannelGroup()}) {
+                CacheSnapshot.writeString(out, field);
+            }
+        }
+
+        @Override
+        public CategoryTrafficSource readValue(final DataInput in, final List<Object> key) throws IOException {
+            TrafficSourceUtm utm = new TrafficSourceUtm();
+            utm.setSource(CacheSnapshot.readString(in));
+            utm.setMedium(CacheSnapshot.readString(in));
+            utm.setCampaign(CacheSnapshot.readString(in));
+            utm.setContent(CacheSnapshot.readString(in));
+            utm.setTerm(CacheSnapshot.readString(in));
+            utm.setCampaignId(CacheSnapshot.readString(in));
+            utm.setClidPlatform(CacheSnapshot.readString(in));
+            utm.setClid(CacheSnapshot.readString(in));
+            String category = CacheSnapshot.readString(in);
+            return new CategoryTrafficSource(utm, category, CacheSnapshot.readString(in));
+        }
+    }
 }
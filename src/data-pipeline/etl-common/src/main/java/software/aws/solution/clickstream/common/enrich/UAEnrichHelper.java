@@ -14,34 +14,52 @@
 
 package software.aws.solution.clickstream.common.enrich;
 
-import com.fasterxml.jackson.core.*;
-import com.fasterxml.jackson.core.type.*;
-import com.fasterxml.jackson.databind.*;
 import lombok.extern.slf4j.*;
 import software.aws.solution.clickstream.common.Cache;
+import software.aws.solution.clickstream.common.CacheSnapshot;
+import software.aws.solution.clickstream.common.ParserMetrics;
+import software.aws.solution.clickstream.common.enrich.ua.UserAgentEngine;
 import software.aws.solution.clickstream.common.model.*;
 import ua_parser.*;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 @Slf4j
 public final class UAEnrichHelper {
-    private static final Parser UA_PARSER = new Parser();
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final UserAgentEngine UA_ENGINE = UserAgentEngine.fromUapResource();
     public static final String UA_STRING = "string";
     public static final String BOT = "Bot";
-    private static final Cache<ClickstreamUA> CACHED_UA = new Cache<>();
+    // the ua string is kept in the key and in uaMap, plus the parsed fields
+    private static final int UA_VALUE_BYTES = 1024;
+    private static final Cache<String, ClickstreamUA> CACHED_UA = new Cache<>("ua",
+            (userAgent, ua) -> 2 * Cache.estimateBytes(userAgent) + UA_VALUE_BYTES);
+    private static final String FAMILY = "family";
+
+    static {
+        CacheSnapshot.register(null, UA_ENGINE::getFingerprint, CACHED_UA, new UACodec());
+    }
+
     private UAEnrichHelper() {
     }
     public static ClickstreamUA parserUA(final String userAgent) {
-        ClickstreamUA clickstreamUA = new ClickstreamUA();
         if (userAgent == null || userAgent.isEmpty()) {
-            return clickstreamUA;
+            return new ClickstreamUA();
         }
-        if (CACHED_UA.containsKey(userAgent)) {
-            return CACHED_UA.get(userAgent);
-        }
-        Client client = UA_PARSER.parse(userAgent);
+        long start = ParserMetrics.start();
+        ClickstreamUA clickstreamUA = CACHED_UA.get(userAgent, UAEnrichHelper::parseUA);
+        ParserMetrics.record(ParserMetrics.Phase.UA, start);
+        return clickstreamUA;
+    }
+
+    private static ClickstreamUA parseUA(final String userAgent) {
+        return toClickstreamUA(UA_ENGINE.parse(userAgent), userAgent);
+    }
+
+    private static ClickstreamUA toClickstreamUA(final Client client, final String userAgent) {
+        ClickstreamUA clickstreamUA = new ClickstreamUA();
         if (client.userAgent != null) {
             clickstreamUA.setUaBrowser(client.userAgent.family);
             clickstreamUA.setUaBrowserVersion(getVersion(client.userAgent.major, client.userAgent.minor, client.userAgent.patch));
@@ -55,20 +73,96 @@ public final class UAEnrichHelper {
             clickstreamUA.setUaDeviceCategory(getCategory(client.device.family));
         }
 
-        Map<String, Object> uaMap = new HashMap<>();
+        clickstreamUA.setUaMap(getUaMap(client, userAgent));
+        return clickstreamUA;
+    }
 
-        try {
-            String uaJsonStr = OBJECT_MAPPER.writeValueAsString(client);
-            uaMap = OBJECT_MAPPER.readValue(uaJsonStr, new TypeReference<Map<String, Object>>(){});
-        } catch (JsonProcessingException e) {
-            log.error("parserUA::Error parsing user agent", e);
-            log.error("parserUA::User agent: {}", userAgent);
+    /**
+     * The client fields in the same order as they are serialized to json, plus the user agent string.
+     */
+    static Map<String, Object> getUaMap(final Client client, final String userAgent) {
+        Map<String, Object> uaMap = new LinkedHashMap<>();
+        Map<String, Object> userAgentMap = null;
+        if (client.userAgent != null) {
+            userAgentMap = new LinkedHashMap<>();
+            userAgentMap.put(FAMILY, client.userAgent.family);
+            userAgentMap.put("major", client.userAgent.major);
+            userAgentMap.put("minor", client.userAgent.minor);
+            userAgentMap.put("patch", client.userAgent.patch);
+        }
+        uaMap.put("userAgent", userAgentMap);
+        Map<String, Object> osMap = null;
+        if (client.os != null) {
+            osMap = new LinkedHashMap<>();
+            osMap.put(FAMILY, client.os.family);
+            osMap.put("major", client.os.major);
+            osMap.put("minor", client.os.minor);
+            osMap.put("patch", client.os.patch);
+            osMap.put("patchMinor", client.os.patchMinor);
         }
+        uaMap.put("os", osMap);
+        Map<String, Object> deviceMap = null;
+        if (client.device != null) {
+            deviceMap = new LinkedHashMap<>();
+            deviceMap.put(FAMILY, client.device.family);
+        }
+        uaMap.put("device", deviceMap);
         uaMap.put(UA_STRING, userAgent);
-        clickstreamUA.setUaMap(uaMap);
+        return uaMap;
+    }
 
-        CACHED_UA.put(userAgent, clickstreamUA);
-        return clickstreamUA;
+    /**
+     * Stores the parsed client as it is kept in uaMap, the other fields are derived from it again.
+     */
+    private static final class UACodec implements CacheSnapshot.Codec<String, ClickstreamUA> {
+        @Override
+        public void writeKey(final DataOutput out, final String userAgent) throws IOException {
+            CacheSnapshot.writeString(out, userAgent);
+        }
+
+        @Override
+        public String readKey(final DataInput in) throws IOException {
+            return CacheSnapshot.readString(in);
+        }
+
+        @Override
+        public void writeValue(final DataOutput out, final ClickstreamUA ua) throws IOException {
+            Map<String, Object> uaMap = ua.getUaMap();
+            writeFields(out, uaMap.get("userAgent"), FAMILY, "major", "minor", "patch");
+            writeFields(out, uaMap.get("os"), FAMILY, "major", "minor", "patch", "patchMinor");
+            writeFields(out, uaMap.get("device"), FAMILY);
+        }
+
+        @Override
+        public ClickstreamUA readValue(final DataInput in, final String userAgent) throws IOException {
+            String[] ua = readFields(in, 4);
+            String[] os = readFields(in, 5);
+            String[] device = readFields(in, 1);
+            Client client = new Client(ua == null ? null : new UserAgent(ua[0], ua[1], ua[2], ua[3]),
+                    os == null ? null : new OS(os[0], os[1], os[2], os[3], os[4]),
+                    device == null ? null : new Device(device[0]));
+            return toClickstreamUA(client, userAgent);
+        }
+
+        private static void writeFields(final DataOutput out, final Object fields, final String... keys) throws IOException {
+            out.writeBoolean(fields != null);
+            if (fields != null) {
+                for (String key : keys) {
+                    CacheSnapshot.writeString(out, (String) ((Map<?, ?>) fields).get(key));
+                }
+            }
+        }
+
+        private static String[] readFields(final DataInput in, final int count) throws IOException {
+            if (!in.readBoolean()) {
+                return null;
+            }
+            String[] fields = new String[count];
+            for (int i = 0; i < count; i++) {
+                fields[i] = CacheSnapshot.readString(in);
+            }
+            return fields;
+        }
     }
 
     private static String getCategory(final String family) {
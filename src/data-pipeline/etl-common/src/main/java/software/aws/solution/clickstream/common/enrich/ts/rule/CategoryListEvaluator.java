@@ -16,6 +16,7 @@ package software.aws.solution.clickstream.common.enrich.ts.rule;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -45,9 +46,11 @@ public final class CategoryListEvaluator {
     public static  final  Pattern HOST_NAME_AND_CONNTRY_PATTERN = Pattern.compile("(.*\\.[a-z]{2,3})\\.[a-z]{2}");
 
     public static final String UNASSIGNED = "Unassigned";
-    @Setter
     Map<String, CategoryItem> categoryMap;
 
+    @Getter(AccessLevel.NONE)
+    private CategoryUrlIndex categoryUrlIndex;
+
     @Setter
     Map<String, String> sourceCategoryMap;
 
@@ -77,6 +80,11 @@ public final class CategoryListEvaluator {
     }
 
 
+    public void setCategoryMap(final Map<String, CategoryItem> categoryMap) {
+        this.categoryMap = categoryMap;
+        this.categoryUrlIndex = CategoryUrlIndex.build(categoryMap);
+    }
+
     public static CategoryListEvaluator fromJsonFile(final String fileName) throws IOException {
         File f = new File(fileName);
         if (f.exists() && !f.isDirectory()) {
@@ -115,18 +123,10 @@ public final class CategoryListEvaluator {
              urlParams = r.get().getQueryParameters();
         }
 
-        List<String> candidateUrls = getCandidateUrls(theReferrerUrl, hostName, path);
-
-        CategoryItem categoryItem = null;
-        for (String candidateUrl : candidateUrls) {
-            categoryItem = this.categoryMap.get(candidateUrl);
-            if (categoryItem != null) {
-                log.debug("Category found for url: {}", theReferrerUrl);
-                break;
-            }
-        }
+        CategoryItem categoryItem = this.categoryUrlIndex.lookup(theReferrerUrl, hostName, path);
 
         if (categoryItem != null) {
+            log.debug("Category found for url: {}", theReferrerUrl);
             categoryAndTerms.setCategory(categoryItem.getCategory());
             List<String> terms = new ArrayList<>();
 
@@ -151,6 +151,10 @@ public final class CategoryListEvaluator {
         return categoryAndTerms;
     }
 
+    /**
+     * Candidate urls of a referrer ordered by preference, {@link CategoryUrlIndex} resolves the same candidates
+     * without building them.
+     */
    static List<String> getCandidateUrls(final String theReferrerUrl, final String hostNameInput, final String pathInput) {
         List<String> candidateUrls = new ArrayList<>();
         if (theReferrerUrl.contains("://")) {
@@ -0,0 +1,283 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+package software.aws.solution.clickstream.common.enrich.ts.rule;
+
+import java.util.Map;
+
+/**
+ * Compiled lookup structure for the category rule urls, built once per rule set.
+ * <p>
+ * Rule urls are split into host and path, hosts are stored in a trie keyed by reversed domain labels
+ * and paths are stored on the node of their host. A referrer is resolved by walking its host labels
+ * from right to left, the same candidates as {@link CategoryListEvaluator#getCandidateUrls} are checked
+ * and the longest matching one wins, without building any candidate string.
+ */
+final class CategoryUrlIndex {
+    private static final String WWW_PREFIX = "www.";
+    private static final String GOOGLE_REFERRER_MARKER = ".google.";
+    private static final String GOOGLE_DEFAULT_URL = "google.com";
+
+    private final Node root = new Node();
+    private final RegionMap<CategoryItem> urlMap = new RegionMap<>();
+    private final CategoryItem googleItem;
+
+    private CategoryUrlIndex(final Map<String, CategoryItem> categoryMap) {
+        for (Map.Entry<String, CategoryItem> entry : categoryMap.entrySet()) {
+            String url = entry.getKey();
+            if (url == null) {
+                continue;
+            }
+            urlMap.put(url, entry.getValue());
+            int pathStart = url.indexOf('/');
+            String host = pathStart < 0 ? url : url.substring(0, pathStart);
+            Node node = root.getOrCreatePath(host);
+            if (pathStart < 0) {
+                node.hostItem = entry.getValue();
+            } else {
+                node.putPathItem(url.substring(pathStart), entry.getValue());
+            }
+        }
+        this.googleItem = categoryMap.get(GOOGLE_DEFAULT_URL);
+    }
+
+    static CategoryUrlIndex build(final Map<String, CategoryItem> categoryMap) {
+        return new CategoryUrlIndex(categoryMap);
+    }
+
+    /**
+     * Find the category item of the longest matching candidate url.
+     *
+     * @param referrerUrl the raw referrer url
+     * @param hostNameInput host name parsed from the referrer, may be null
+     * @param pathInput path parsed from the referrer, may be null
+     * @return the matched item or null
+     */
+    CategoryItem lookup(final String referrerUrl, final String hostNameInput, final String pathInput) {
+        Match match = new Match();
+
+        // referrer url without the scheme
+        int restStart = referrerUrl.indexOf("://");
+        restStart = restStart < 0 ? 0 : restStart + 3;
+        int restEnd = referrerUrl.indexOf("://", restStart);
+        restEnd = restEnd < 0 ? referrerUrl.length() : restEnd;
+        match.offer(urlMap.get(referrerUrl, restStart, restEnd), restEnd - restStart);
+
+        String hostName = hostNameInput == null ? "" : hostNameInput;
+        String path = pathInput;
+        boolean hasPath = path != null && !path.isEmpty() && !path.equals("/");
+        if (hasPath && !path.startsWith("/")) {
+            path = "/" + path; // NOSONAR
+        }
+        int pathLength = hasPath ? path.length() : 0;
+        int hostLength = hostName.length();
+        boolean hasWww = hostName.startsWith(WWW_PREFIX);
+        int hostStart = hasWww ? WWW_PREFIX.length() : 0;
+
+        Node hostWithout3wNode = root.find(hostName, hostStart, hostLength);
+        Node hostNode = hasWww ? Node.child(hostWithout3wNode, hostName, 0, WWW_PREFIX.length() - 1) : hostWithout3wNode;
+        if (hasPath) {
+            match.offer(Node.pathItem(hostNode, path), hostLength + pathLength);
+        }
+        match.offer(Node.hostItem(hostNode), hostLength);
+        if (hasWww) {
+            match.offer(Node.hostItem(hostWithout3wNode), hostLength - hostStart);
+            if (hasPath) {
+                match.offer(Node.pathItem(hostWithout3wNode, path), hostLength - hostStart + pathLength);
+            }
+        }
+
+        // host name with the trailing country code removed, e.g. google.com.hk -> google.com
+        int countryStart = countryCodeStart(hostName, 0);
+        if (countryStart > 0) {
+            match.offer(Node.hostItem(root.find(hostName, 0, countryStart)), countryStart);
+            if (hasWww && countryCodeStart(hostName, hostStart) > 0) {
+                match.offer(Node.hostItem(root.find(hostName, hostStart, countryStart)), countryStart - hostStart);
+            }
+        }
+
+        if (referrerUrl.contains(GOOGLE_REFERRER_MARKER)) {
+            match.offer(googleItem, GOOGLE_DEFAULT_URL.length());
+        }
+        return match.item;
+    }
+
+    /**
+     * Equivalent of {@link CategoryListEvaluator#HOST_NAME_AND_CONNTRY_PATTERN} applied to the host from {@code from}:
+     * returns the end of group 1 when the host ends with a two-letter label preceded by a two or three letter label,
+     * otherwise -1.
+     */
+    private static int countryCodeStart(final String host, final int from) {
+        int len = host.length();
+        if (len - from < 3 || host.charAt(len - 3) != '.' || !isLowerLetter(host.charAt(len - 2)) || !isLowerLetter(host.charAt(len - 1))) {
+            return -1;
+        }
+        int groupEnd = len - 3;
+        int letters = 0;
+        int i = groupEnd - 1;
+        while (i >= from && letters < 3 && isLowerLetter(host.charAt(i))) {
+            letters++;
+            i--;
+        }
+        for (int k = letters; k >= 2; k--) {
+            int dot = groupEnd - k - 1;
+            if (dot >= from && host.charAt(dot) == '.') {
+                return groupEnd;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isLowerLetter(final char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    private static final class Match {
+        private CategoryItem item;
+        private int length = -1;
+
+        void offer(final CategoryItem candidate, final int candidateLength) {
+            if (candidate != null && candidateLength > length) {
+                item = candidate;
+                length = candidateLength;
+            }
+        }
+    }
+
+    private static final class Node {
+        private RegionMap<Node> children;
+        private RegionMap<CategoryItem> pathItems;
+        private CategoryItem hostItem;
+
+        Node getOrCreatePath(final String host) {
+            Node node = this;
+            int end = host.length();
+            while (end >= 0) {
+                int dot = host.lastIndexOf('.', end - 1);
+                String label = host.substring(dot + 1, end);
+                if (node.children == null) {
+                    node.children = new RegionMap<>();
+                }
+                Node next = node.children.get(label, 0, label.length());
+                if (next == null) {
+                    next = new Node();
+                    node.children.put(label, next);
+                }
+                node = next;
+                end = dot;
+            }
+            return node;
+        }
+
+        Node find(final String host, final int from, final int to) {
+            Node node = this;
+            int end = to;
+            while (node != null && end >= from) {
+                int dot = host.lastIndexOf('.', end - 1);
+                int labelStart = dot < from ? from : dot + 1;
+                node = child(node, host, labelStart, end);
+                end = labelStart - 1;
+            }
+            return node;
+        }
+
+        void putPathItem(final String path, final CategoryItem item) {
+            if (pathItems == null) {
+                pathItems = new RegionMap<>();
+            }
+            pathItems.put(path, item);
+        }
+
+        static Node child(final Node node, final String s, final int from, final int to) {
+            if (node == null || node.children == null) {
+                return null;
+            }
+            return node.children.get(s, from, to);
+        }
+
+        static CategoryItem hostItem(final Node node) {
+            return node == null ? null : node.hostItem;
+        }
+
+        static CategoryItem pathItem(final Node node, final String path) {
+            if (node == null || node.pathItems == null) {
+                return null;
+            }
+            return node.pathItems.get(path, 0, path.length());
+        }
+    }
+
+    /**
+     * Open addressing hash map with String keys that can be probed by a region of another string.
+     */
+    private static final class RegionMap<V> {
+        private String[] keys = new String[8];
+        private Object[] values = new Object[8];
+        private int size;
+
+        void put(final String key, final V value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = hash(key, 0, key.length()) & mask;
+            while (keys[i] != null) {
+                if (keys[i].equals(key)) {
+                    values[i] = value;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(final String s, final int from, final int to) {
+            int len = to - from;
+            int mask = keys.length - 1;
+            int i = hash(s, from, to) & mask;
+            while (keys[i] != null) {
+                String key = keys[i];
+                if (key.length() == len && s.regionMatches(from, key, 0, len)) {
+                    return (V) values[i];
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void resize() {
+            String[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new String[oldKeys.length * 2];
+            values = new Object[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    put(oldKeys[i], (V) oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(final String s, final int from, final int to) {
+            int h = 0;
+            for (int i = from; i < to; i++) {
+                h = 31 * h + s.charAt(i);
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import software.aws.solution.clickstream.common.Cache;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import static software.aws.solution.clickstream.common.Util.readResourceFile;
@@ -33,7 +34,10 @@ public final class ChannelListEvaluator {
     public static final String UNASSIGNED = "Unassigned";
     @Getter
     private List<ChannelRule> channelRules;
-    private final Cache<String> channelCached = new Cache<>();
+    private List<CompiledChannelRule> compiledRules;
+    // the evaluator input holds up to 11 short strings
+    private static final int CHANNEL_INPUT_BYTES = 512;
+    private final Cache<ChannelRuleEvaluatorInput, String> channelCached = new Cache<>("channel", CHANNEL_INPUT_BYTES);
 
     private ChannelListEvaluator() {
 
@@ -45,9 +49,19 @@ public final class ChannelListEvaluator {
         });
         ChannelListEvaluator channelListEvaluator = new ChannelListEvaluator();
         channelListEvaluator.channelRules = ruleList;
+        channelListEvaluator.compiledRules = compile(ruleList);
         return channelListEvaluator;
     }
 
+    private static List<CompiledChannelRule> compile(final List<ChannelRule> ruleList) {
+        ChannelRuleEvaluator evaluator = ChannelRuleEvaluator.getInstance();
+        List<CompiledChannelRule> compiledRuleList = new ArrayList<>(ruleList.size());
+        for (ChannelRule rule : ruleList) {
+            compiledRuleList.add(evaluator.compile(rule));
+        }
+        return compiledRuleList;
+    }
+
     public static ChannelListEvaluator fromJsonFile(final String fileName) throws IOException {
         File f = new File(fileName);
         if (f.exists() && !f.isDirectory()) {
@@ -67,21 +81,15 @@ public final class ChannelListEvaluator {
     public String evaluate(final ChannelRuleEvaluatorInput channelRuleEvaluatorInput) {
         log.debug("Evaluating channel rule for: {}", channelRuleEvaluatorInput.toString());
 
-        String cachedKey = channelRuleEvaluatorInput.hashCode() + "";
-        if (channelCached.containsKey(cachedKey)) {
-            return channelCached.get(cachedKey);
-        }
-
-        String channel = UNASSIGNED;
-        ChannelRuleEvaluator evaluator = ChannelRuleEvaluator.getInstance();
+        return channelCached.get(channelRuleEvaluatorInput, this::evaluateRules);
+    }
 
-        for (ChannelRule rule : this.channelRules) {
-            if (evaluator.evaluate(rule, channelRuleEvaluatorInput)) {
-                channel = rule.getChannel();
-                break;
+    private String evaluateRules(final ChannelRuleEvaluatorInput channelRuleEvaluatorInput) {
+        for (CompiledChannelRule rule : this.compiledRules) {
+            if (rule.evaluate(channelRuleEvaluatorInput)) {
+                return rule.getChannel();
             }
         }
-        channelCached.put(cachedKey, channel);
-        return channel;
+        return UNASSIGNED;
     }
 }
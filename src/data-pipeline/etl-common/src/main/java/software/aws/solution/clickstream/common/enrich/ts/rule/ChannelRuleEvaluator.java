@@ -17,20 +17,53 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import software.aws.solution.clickstream.common.Constant;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 @Slf4j
 public final class ChannelRuleEvaluator {
     public static final String EMPTY_VALUE_FLAG = "__empty__";
 
+    private static final Map<String, Function<ChannelRuleEvaluatorInput, String>> FIELD_ACCESSORS = createFieldAccessors();
+
     @Getter
     private static ChannelRuleEvaluator instance = new ChannelRuleEvaluator();
 
     private ChannelRuleEvaluator() {
     }
 
+    private static Map<String, Function<ChannelRuleEvaluatorInput, String>> createFieldAccessors() {
+        Map<String, Function<ChannelRuleEvaluatorInput, String>> accessors = new HashMap<>();
+        accessors.put(Constant.TRAFFIC_SOURCE_CATEGORY, ChannelRuleEvaluatorInput::getTrafficSourceCategory);
+        accessors.put(Constant.TRAFFIC_SOURCE_SOURCE, ChannelRuleEvaluatorInput::getTrafficSourceSource);
+        accessors.put(Constant.TRAFFIC_SOURCE_MEDIUM, ChannelRuleEvaluatorInput::getTrafficSourceMedium);
+        accessors.put(Constant.TRAFFIC_SOURCE_CAMPAIGN, ChannelRuleEvaluatorInput::getTrafficSourceCampaign);
+        accessors.put(Constant.TRAFFIC_SOURCE_CAMPAIGN_ID, ChannelRuleEvaluatorInput::getTrafficSourceCampaignId);
+        accessors.put(Constant.TRAFFIC_SOURCE_CONTENT, ChannelRuleEvaluatorInput::getTrafficSourceContent);
+        accessors.put(Constant.TRAFFIC_SOURCE_TERM, ChannelRuleEvaluatorInput::getTrafficSourceTerm);
+        accessors.put(Constant.TRAFFIC_SOURCE_CLID, ChannelRuleEvaluatorInput::getTrafficSourceClid);
+        accessors.put(Constant.TRAFFIC_SOURCE_CLID_PLATFORM, ChannelRuleEvaluatorInput::getTrafficSourceClidPlatform);
+        accessors.put(Constant.PAGE_VIEW_LATEST_REFERRER, ChannelRuleEvaluatorInput::getPageViewLatestReferrer);
+        accessors.put(Constant.PAGE_VIEW_LATEST_REFERRER_HOST, ChannelRuleEvaluatorInput::getPageViewLatestReferrerHost);
+        return accessors;
+    }
+
     public boolean evaluate(final ChannelRule channelRule, final ChannelRuleEvaluatorInput channelRuleEvaluatorInput) {
+        return compile(channelRule).evaluate(channelRuleEvaluatorInput);
+    }
+
+    /**
+     * Validate the rule and turn it into an executable plan: field names are resolved to accessors,
+     * values are lowercased, IN sets and regex patterns are built once here instead of per evaluation.
+     */
+    public CompiledChannelRule compile(final ChannelRule channelRule) {
 
         List<ChannelRuleConditionItem> andList = channelRule.getCondition().getOpAndList();
 
@@ -46,37 +79,43 @@ public final class ChannelRuleEvaluator {
             throw new IllegalArgumentException("Channel rule condition has both AND and OR conditions");
         }
 
-        if (andList != null) {
-            return evaluateAndList(channelRuleEvaluatorInput, andList);
-        }
-
-        return evaluateOrList(channelRuleEvaluatorInput, orList);
-
+        Predicate<ChannelRuleEvaluatorInput> condition = andList != null ? compileAndList(andList) : compileOrList(orList);
+        return new CompiledChannelRule(channelRule.getId(), channelRule.getChannel(), condition);
     }
 
-    private boolean evaluateOrList(final ChannelRuleEvaluatorInput channelRuleEvaluatorInput, final List<ChannelRuleConditionItem> orList) {
-        for (ChannelRuleConditionItem item : orList) {
-            if (evaluateConditionItem(item, channelRuleEvaluatorInput)) {
-                log.debug("evaluateOrList rule matched: {}", item);
-                return true;
+    private Predicate<ChannelRuleEvaluatorInput> compileOrList(final List<ChannelRuleConditionItem> orList) {
+        final List<Predicate<ChannelRuleEvaluatorInput>> items = compileItems(orList);
+        return input -> {
+            for (Predicate<ChannelRuleEvaluatorInput> item : items) {
+                if (item.test(input)) {
+                    return true;
+                }
             }
-        }
-        log.debug("evaluateOrList rule not matched");
-        return false;
+            return false;
+        };
     }
 
-    private boolean evaluateAndList(final ChannelRuleEvaluatorInput channelRuleEvaluatorInput, final List<ChannelRuleConditionItem> andList) {
-        for (ChannelRuleConditionItem item : andList) {
-            if (!evaluateConditionItem(item, channelRuleEvaluatorInput)) {
-                log.debug("evaluateAndList rule not matched: {}", item);
-                return false;
+    private Predicate<ChannelRuleEvaluatorInput> compileAndList(final List<ChannelRuleConditionItem> andList) {
+        final List<Predicate<ChannelRuleEvaluatorInput>> items = compileItems(andList);
+        return input -> {
+            for (Predicate<ChannelRuleEvaluatorInput> item : items) {
+                if (!item.test(input)) {
+                    return false;
+                }
             }
+            return true;
+        };
+    }
+
+    private List<Predicate<ChannelRuleEvaluatorInput>> compileItems(final List<ChannelRuleConditionItem> itemList) {
+        List<Predicate<ChannelRuleEvaluatorInput>> items = new ArrayList<>(itemList.size());
+        for (ChannelRuleConditionItem item : itemList) {
+            items.add(compileConditionItem(item));
         }
-        log.debug("evaluateAndList rule matched");
-        return true;
+        return items;
     }
 
-    private boolean evaluateConditionItem(final ChannelRuleConditionItem item, final ChannelRuleEvaluatorInput channelRuleEvaluatorInput) {
+    private Predicate<ChannelRuleEvaluatorInput> compileConditionItem(final ChannelRuleConditionItem item) {
 
         if (item.getField() == null && item.getOpAndList() == null && item.getOpOrList() == null) {
             throw new IllegalArgumentException("Channel rule condition item is empty");
@@ -95,18 +134,18 @@ public final class ChannelRuleEvaluator {
         }
 
         if (item.getField() != null) {
-            return evaluateConditionItemField(item, channelRuleEvaluatorInput);
+            return compileConditionItemField(item);
         }
 
         if (item.getOpAndList() != null) {
-            return evaluateAndList(channelRuleEvaluatorInput, item.getOpAndList());
+            return compileAndList(item.getOpAndList());
         }
 
-        return evaluateOrList(channelRuleEvaluatorInput, item.getOpOrList());
+        return compileOrList(item.getOpOrList());
 
     }
 
-    private boolean evaluateConditionItemField(final ChannelRuleConditionItem item, final ChannelRuleEvaluatorInput channelRuleEvaluatorInput) {
+    private Predicate<ChannelRuleEvaluatorInput> compileConditionItemField(final ChannelRuleConditionItem item) {
         String field = item.getField();
         String op = item.getOp();
         String value = item.getValue();
@@ -114,38 +153,15 @@ public final class ChannelRuleEvaluator {
 
         validateInput(field, op, value, values);
 
-        String actualValue = null;
-
-        if (field.equals(Constant.TRAFFIC_SOURCE_CATEGORY)) {
-            actualValue = channelRuleEvaluatorInput.getTrafficSourceCategory();
-        } else if (field.equals(Constant.TRAFFIC_SOURCE_SOURCE)) {
-            actualValue = channelRuleEvaluatorInput.getTrafficSourceSource();
-        } else if (field.equals(Constant.TRAFFIC_SOURCE_MEDIUM)) {
-            actualValue = channelRuleEvaluatorInput.getTrafficSourceMedium();
-        } else if (field.equals(Constant.TRAFFIC_SOURCE_CAMPAIGN)) {
-            actualValue = channelRuleEvaluatorInput.getTrafficSourceCampaign();
-        } else if (field.equals(Constant.TRAFFIC_SOURCE_CAMPAIGN_ID)) {
-            actualValue = channelRuleEvaluatorInput.getTrafficSourceCampaignId();
-        } else if (field.equals(Constant.TRAFFIC_SOURCE_CONTENT)) {
-            actualValue = channelRuleEvaluatorInput.getTrafficSourceContent();
-        } else if (field.equals(Constant.TRAFFIC_SOURCE_TERM)) {
-            actualValue = channelRuleEvaluatorInput.getTrafficSourceTerm();
-        } else if (field.equals(Constant.TRAFFIC_SOURCE_CLID)) {
-            actualValue = channelRuleEvaluatorInput.getTrafficSourceClid();
-        } else if (field.equals(Constant.TRAFFIC_SOURCE_CLID_PLATFORM)) {
-            actualValue = channelRuleEvaluatorInput.getTrafficSourceClidPlatform();
-        } else if (field.equals(Constant.PAGE_VIEW_LATEST_REFERRER)) {
-            actualValue = channelRuleEvaluatorInput.getPageViewLatestReferrer();
-        } else if (field.equals(Constant.PAGE_VIEW_LATEST_REFERRER_HOST)) {
-            actualValue = channelRuleEvaluatorInput.getPageViewLatestReferrerHost();
-        } else {
+        Function<ChannelRuleEvaluatorInput, String> accessor = FIELD_ACCESSORS.get(field);
+        if (accessor == null) {
             throw new IllegalArgumentException("Config Error::Channel rule condition item field has unknown field: " + field + ", config detail: " + item);
         }
 
         if ((op.equals(OpEnum.IN.getOp()) || op.equals(OpEnum.NOT_IN.getOp()))) {
-            return compareIn(actualValue, op, values);
+            return compileIn(accessor, op, values);
         } else {
-            return compare(actualValue, op, value);
+            return compileCompare(accessor, op, value);
         }
 
     }
@@ -164,57 +180,56 @@ public final class ChannelRuleEvaluator {
         }
     }
 
-    private boolean compare(final String actualValueInput, final String op, final String valueInput) {
-        String actualValue = actualValueInput;
-        String value = valueInput;
+    private static String lowerActualValue(final Function<ChannelRuleEvaluatorInput, String> accessor, final ChannelRuleEvaluatorInput input) {
+        String actualValue = accessor.apply(input);
+        return actualValue == null ? "" : actualValue.toLowerCase();
+    }
 
-        if (actualValue == null) {
-            actualValue = "";
-        } else {
-            actualValue = actualValue.toLowerCase();
-        }
-        if (EMPTY_VALUE_FLAG.equals(value)) {
-            value = "";
-        } else {
-            value = value.toLowerCase();
-        }
+    private Predicate<ChannelRuleEvaluatorInput> compileCompare(final Function<ChannelRuleEvaluatorInput, String> accessor,
+                                                                final String op, final String valueInput) {
+        final String value = EMPTY_VALUE_FLAG.equals(valueInput) ? "" : valueInput.toLowerCase();
 
         if (op.equals(OpEnum.EQ.getOp())) {
-            return actualValue.equals(value);
+            return input -> lowerActualValue(accessor, input).equals(value);
         } else if (op.equals(OpEnum.NOT_EQ.getOp())) {
-            return !actualValue.equals(value);
+            return input -> !lowerActualValue(accessor, input).equals(value);
         } else if (op.equals(OpEnum.CONTAIN.getOp())) {
-            return actualValue.contains(value);
+            return input -> lowerActualValue(accessor, input).contains(value);
         } else if (op.equals(OpEnum.NOT_CONTAIN.getOp())) {
-            return !actualValue.contains(value);
+            return input -> !lowerActualValue(accessor, input).contains(value);
         } else if (op.equals(OpEnum.START_WITH.getOp())) {
-            return actualValue.startsWith(value);
+            return input -> lowerActualValue(accessor, input).startsWith(value);
         } else if (op.equals(OpEnum.NOT_START_WITH.getOp())) {
-            return !actualValue.startsWith(value);
+            return input -> !lowerActualValue(accessor, input).startsWith(value);
         } else if (op.equals(OpEnum.END_WITH.getOp())) {
-            return actualValue.endsWith(value);
+            return input -> lowerActualValue(accessor, input).endsWith(value);
         } else if (op.equals(OpEnum.NOT_END_WITH.getOp())) {
-            return !actualValue.endsWith(value);
+            return input -> !lowerActualValue(accessor, input).endsWith(value);
         } else if (op.equals(OpEnum.MATCH.getOp())) {
-            return compareMatch(actualValue, value);
+            final Pattern pattern = Pattern.compile(value);
+            return input -> pattern.matcher(lowerActualValue(accessor, input)).matches();
         } else if (op.equals(OpEnum.NOT_MATCH.getOp())) {
-            return !compareMatch(actualValue, value);
+            final Pattern pattern = Pattern.compile(value);
+            return input -> !pattern.matcher(lowerActualValue(accessor, input)).matches();
         }
         throw new IllegalArgumentException("Channel rule condition item field has unknown operator " + op);
     }
 
-    private boolean compareIn(final String expectedValue, final String op, final List<String> values) {
-        String expectedValueLower = expectedValue !=null? expectedValue.toLowerCase(): null;
-        List<String> valueListLower = values.stream().map(String::toLowerCase).collect(Collectors.toList());
-        if (op.equals(OpEnum.IN.getOp())) {
-            return valueListLower.contains(expectedValueLower);
-        } else if (op.equals(OpEnum.NOT_IN.getOp())) {
-            return !valueListLower.contains(expectedValueLower);
+    private Predicate<ChannelRuleEvaluatorInput> compileIn(final Function<ChannelRuleEvaluatorInput, String> accessor,
+                                                           final String op, final List<String> values) {
+        final Set<String> valueSetLower = new HashSet<>();
+        for (String v : values) {
+            valueSetLower.add(v.toLowerCase());
         }
-        return false;
-    }
-
-    private boolean compareMatch(final String actualValue, final String regex) {
-        return actualValue.matches(regex);
+        if (op.equals(OpEnum.IN.getOp())) {
+            return input -> {
+                String actualValue = accessor.apply(input);
+                return actualValue != null && valueSetLower.contains(actualValue.toLowerCase());
+            };
+        }
+        return input -> {
+            String actualValue = accessor.apply(input);
+            return actualValue == null || !valueSetLower.contains(actualValue.toLowerCase());
+        };
     }
 }
@@ -0,0 +1,39 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+package software.aws.solution.clickstream.common.enrich.ts.rule;
+
+import lombok.Getter;
+
+import java.util.function.Predicate;
+
+/**
+ * Immutable, executable form of a {@link ChannelRule}, created by {@link ChannelRuleEvaluator#compile(ChannelRule)}.
+ */
+public final class CompiledChannelRule {
+    @Getter
+    private final String id;
+    @Getter
+    private final String channel;
+    private final Predicate<ChannelRuleEvaluatorInput> condition;
+
+    CompiledChannelRule(final String id, final String channel, final Predicate<ChannelRuleEvaluatorInput> condition) {
+        this.id = id;
+        this.channel = channel;
+        this.condition = condition;
+    }
+
+    public boolean evaluate(final ChannelRuleEvaluatorInput channelRuleEvaluatorInput) {
+        return condition.test(channelRuleEvaluatorInput);
+    }
+}
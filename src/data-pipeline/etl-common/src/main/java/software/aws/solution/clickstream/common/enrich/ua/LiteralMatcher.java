@@ -0,0 +1,146 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+package software.aws.solution.clickstream.common.enrich.ua;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Aho-Corasick automaton finding all of a fixed set of ascii literals in a text in one pass.
+ * <p>
+ * Literals must be lower case, the text is lower-cased on the fly, so matching is ascii case-insensitive.
+ * Transitions are stored as a dense table over the chars used by the literals, any other char leads back
+ * to the root state.
+ */
+final class LiteralMatcher {
+    private static final int ASCII_SIZE = 128;
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final int[] charIndex = new int[ASCII_SIZE];
+    private final int alphabetSize;
+    private final int[][] transitions;
+    private final int[][] outputs;
+
+    /**
+     * @param literals lower-cased ascii literals, the literal ids reported by {@link #match} are indexes into this list
+     */
+    LiteralMatcher(final List<String> literals) {
+        Arrays.fill(charIndex, -1);
+        int size = 0;
+        for (String literal : literals) {
+            for (int i = 0; i < literal.length(); i++) {
+                char c = literal.charAt(i);
+                if (c >= ASCII_SIZE || c != RegexLiterals.toLowerAscii(c)) {
+                    throw new IllegalArgumentException("Literal must be lower-cased ascii: " + literal);
+                }
+                if (charIndex[c] < 0) {
+                    charIndex[c] = size++;
+                }
+            }
+        }
+        this.alphabetSize = size;
+
+        // trie
+        List<int[]> next = new ArrayList<>();
+        List<int[]> output = new ArrayList<>();
+        next.add(newState());
+        output.add(NO_OUTPUT);
+        for (int id = 0; id < literals.size(); id++) {
+            String literal = literals.get(id);
+            if (literal.isEmpty()) {
+                throw new IllegalArgumentException("Literal must not be empty");
+            }
+            int state = 0;
+            for (int i = 0; i < literal.length(); i++) {
+                int c = charIndex[literal.charAt(i)];
+                if (next.get(state)[c] < 0) {
+                    next.get(state)[c] = next.size();
+                    next.add(newState());
+                    output.add(NO_OUTPUT);
+                }
+                state = next.get(state)[c];
+            }
+            output.set(state, append(output.get(state), id));
+        }
+
+        // failure links resolved into the transition table in breadth first order
+        int[] fail = new int[next.size()];
+        Deque<Integer> queue = new ArrayDeque<>();
+        int[] root = next.get(0);
+        for (int c = 0; c < alphabetSize; c++) {
+            if (root[c] < 0) {
+                root[c] = 0;
+            } else {
+                queue.add(root[c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int[] transition = next.get(state);
+            int[] failTransition = next.get(fail[state]);
+            for (int c = 0; c < alphabetSize; c++) {
+                int child = transition[c];
+                if (child < 0) {
+                    transition[c] = failTransition[c];
+                } else {
+                    fail[child] = failTransition[c];
+                    output.set(child, concat(output.get(child), output.get(fail[child])));
+                    queue.add(child);
+                }
+            }
+        }
+        this.transitions = next.toArray(new int[0][]);
+        this.outputs = output.toArray(new int[0][]);
+    }
+
+    /**
+     * Report the id of every literal occurrence in the text, a literal found more than once is reported more than once.
+     */
+    void match(final CharSequence text, final IntConsumer literalConsumer) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = RegexLiterals.toLowerAscii(text.charAt(i));
+            int index = c < ASCII_SIZE ? charIndex[c] : -1;
+            state = index < 0 ? 0 : transitions[state][index];
+            for (int id : outputs[state]) {
+                literalConsumer.accept(id);
+            }
+        }
+    }
+
+    private int[] newState() {
+        int[] state = new int[alphabetSize];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    private static int[] append(final int[] values, final int value) {
+        int[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+
+    private static int[] concat(final int[] first, final int[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+        int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
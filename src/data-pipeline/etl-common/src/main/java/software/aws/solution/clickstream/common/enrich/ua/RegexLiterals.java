@@ -0,0 +1,328 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+package software.aws.solution.clickstream.common.enrich.ua;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Extracts from a java regex the literals that any match of it must contain.
+ * <p>
+ * The result is a list of ascii literals in lower case, every string found by the regex contains
+ * at least one of them when both are lower-cased, whether the regex is case-insensitive or not.
+ * Literals are only taken from parts of the regex that cannot be skipped: the top level sequence,
+ * non-optional groups and every branch of an alternation. Anything this parser does not fully
+ * understand, e.g. quoting, unicode classes or comments mode, gives no literals, so the regex is
+ * always tried.
+ */
+final class RegexLiterals {
+    private final String regex;
+    private int pos;
+
+    private RegexLiterals(final String regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * @param regex java regex
+     * @return lower-cased literals, at least one of which is in every match, or null when none was found
+     */
+    static List<String> requiredLiterals(final String regex) {
+        RegexLiterals parser = new RegexLiterals(regex);
+        try {
+            List<String> literals = parser.alternation();
+            if (parser.pos != regex.length()) {
+                return null;
+            }
+            return literals == null ? null : Collections.unmodifiableList(literals);
+        } catch (UnsupportedRegexException e) {
+            return null;
+        }
+    }
+
+    private List<String> alternation() {
+        List<String> literals = new ArrayList<>();
+        boolean required = true;
+        while (true) {
+            List<String> branch = sequence();
+            if (branch == null) {
+                required = false;
+            } else if (required) {
+                literals.addAll(branch);
+            }
+            if (pos < regex.length() && regex.charAt(pos) == '|') {
+                pos++;
+            } else {
+                return required ? literals : null;
+            }
+        }
+    }
+
+    private List<String> sequence() {
+        StringBuilder run = new StringBuilder();
+        List<String> best = null;
+        while (pos < regex.length()) {
+            char c = regex.charAt(pos);
+            if (c == '|' || c == ')') {
+                break;
+            }
+            int literal = -1;
+            List<String> group = null;
+            if (c == '(') {
+                group = group();
+            } else if (c == '[') {
+                skipClass();
+            } else if (c == '\\') {
+                literal = escape();
+            } else if (c == '.' || c == '^' || c == '$') {
+                pos++;
+            } else if (c == '*' || c == '+' || c == '?' || c == '{') {
+                throw new UnsupportedRegexException();
+            } else {
+                literal = c;
+                pos++;
+            }
+
+            Quantifier quantifier = quantifier();
+            if (literal >= 0 && literal < 128 && quantifier != Quantifier.OPTIONAL) {
+                run.append(toLowerAscii((char) literal));
+                if (quantifier == Quantifier.ONCE) {
+                    continue;
+                }
+                // a repeated char is in the match, but the next atom is not next to it
+            }
+            best = better(best, run);
+            run.setLength(0);
+            if (group != null && quantifier != Quantifier.OPTIONAL) {
+                best = better(best, group);
+            }
+        }
+        return better(best, run);
+    }
+
+    /**
+     * @return literals required by the group content, null for lookarounds, inline flags and groups without literals
+     */
+    private List<String> group() {
+        pos++;
+        boolean required = true;
+        if (peek('?')) {
+            pos++;
+            if (peek(':') || peek('>')) {
+                pos++;
+            } else if (peek('=') || peek('!')) {
+                pos++;
+                required = false;
+            } else if (peek('<')) {
+                pos++;
+                if (peek('=') || peek('!')) {
+                    pos++;
+                    required = false;
+                } else {
+                    skipGroupName();
+                }
+            } else if (inlineFlags()) {
+                return null;
+            }
+        }
+        List<String> literals = alternation();
+        if (!peek(')')) {
+            throw new UnsupportedRegexException();
+        }
+        pos++;
+        return required ? literals : null;
+    }
+
+    private void skipGroupName() {
+        int end = regex.indexOf('>', pos);
+        if (end < 0) {
+            throw new UnsupportedRegexException();
+        }
+        pos = end + 1;
+    }
+
+    /**
+     * Skip inline flags, e.g. {@code (?i)} or {@code (?i:}. Case flags do not matter as literals are
+     * compared in lower case, flags changing how literals are read are not supported.
+     *
+     * @return true if the flags were a group on their own
+     */
+    private boolean inlineFlags() {
+        while (pos < regex.length()) {
+            char c = regex.charAt(pos++);
+            if (c == ')') {
+                return true;
+            } else if (c == ':') {
+                return false;
+            } else if (c != '-' && c != 'i' && c != 'd' && c != 'm' && c != 's') {
+                throw new UnsupportedRegexException();
+            }
+        }
+        throw new UnsupportedRegexException();
+    }
+
+    private void skipClass() {
+        pos++;
+        if (peek('^')) {
+            pos++;
+        }
+        if (peek(']')) {
+            throw new UnsupportedRegexException();
+        }
+        int depth = 1;
+        while (pos < regex.length()) {
+            char c = regex.charAt(pos++);
+            if (c == '\\') {
+                if (peek('Q')) {
+                    throw new UnsupportedRegexException();
+                }
+                pos++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return;
+            }
+        }
+        throw new UnsupportedRegexException();
+    }
+
+    /**
+     * @return the escaped char if it is a literal, otherwise -1
+     */
+    private int escape() {
+        if (pos + 1 >= regex.length()) {
+            throw new UnsupportedRegexException();
+        }
+        char c = regex.charAt(pos + 1);
+        pos += 2;
+        if (!Character.isLetterOrDigit(c)) {
+            return c;
+        }
+        switch (c) {
+            case 'd':
+            case 'D':
+            case 'w':
+            case 'W':
+            case 's':
+            case 'S':
+            case 'h':
+            case 'H':
+            case 'v':
+            case 'V':
+            case 'b':
+            case 'B':
+            case 'A':
+            case 'z':
+            case 'Z':
+            case 'G':
+            case 't':
+            case 'n':
+            case 'r':
+            case 'f':
+                return -1;
+            default:
+                // quoting, back references, unicode classes and char codes
+                throw new UnsupportedRegexException();
+        }
+    }
+
+    private Quantifier quantifier() {
+        if (pos >= regex.length()) {
+            return Quantifier.ONCE;
+        }
+        Quantifier quantifier;
+        char c = regex.charAt(pos);
+        if (c == '?' || c == '*') {
+            pos++;
+            quantifier = Quantifier.OPTIONAL;
+        } else if (c == '+') {
+            pos++;
+            quantifier = Quantifier.REPEATED;
+        } else if (c == '{') {
+            quantifier = bounds();
+        } else {
+            return Quantifier.ONCE;
+        }
+        // lazy or possessive
+        if (peek('?') || peek('+')) {
+            pos++;
+        }
+        return quantifier;
+    }
+
+    private Quantifier bounds() {
+        int end = regex.indexOf('}', pos);
+        if (end < 0) {
+            throw new UnsupportedRegexException();
+        }
+        String bounds = regex.substring(pos + 1, end);
+        pos = end + 1;
+        if (!bounds.matches("\\d+(,\\d*)?")) {
+            throw new UnsupportedRegexException();
+        }
+        int comma = bounds.indexOf(',');
+        String min = comma < 0 ? bounds : bounds.substring(0, comma);
+        if (Integer.parseInt(min) == 0) {
+            return Quantifier.OPTIONAL;
+        }
+        return bounds.equals("1") || bounds.equals("1,1") ? Quantifier.ONCE : Quantifier.REPEATED;
+    }
+
+    private boolean peek(final char c) {
+        return pos < regex.length() && regex.charAt(pos) == c;
+    }
+
+    private static List<String> better(final List<String> best, final CharSequence run) {
+        if (run.length() == 0) {
+            return best;
+        }
+        return better(best, Collections.singletonList(run.toString()));
+    }
+
+    /**
+     * The set whose shortest literal is the longest is the most selective.
+     */
+    private static List<String> better(final List<String> best, final List<String> candidate) {
+        if (candidate == null || candidate.isEmpty() || minLength(candidate) == 0) {
+            return best;
+        }
+        if (best == null || minLength(candidate) > minLength(best)) {
+            return candidate;
+        }
+        return best;
+    }
+
+    private static int minLength(final List<String> literals) {
+        int min = Integer.MAX_VALUE;
+        for (String literal : literals) {
+            min = Math.min(min, literal.length());
+        }
+        return min;
+    }
+
+    static char toLowerAscii(final char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private enum Quantifier {
+        ONCE,
+        OPTIONAL,
+        REPEATED
+    }
+
+    private static final class UnsupportedRegexException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
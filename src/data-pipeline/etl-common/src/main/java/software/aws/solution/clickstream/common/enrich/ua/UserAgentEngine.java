@@ -0,0 +1,231 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+package software.aws.solution.clickstream.common.enrich.ua;
+
+import lombok.extern.slf4j.Slf4j;
+import org.yaml.snakeyaml.Yaml;
+import software.aws.solution.clickstream.common.CacheSnapshot;
+import ua_parser.Client;
+import ua_parser.Device;
+import ua_parser.DeviceParser;
+import ua_parser.OS;
+import ua_parser.OSParser;
+import ua_parser.Parser;
+import ua_parser.UserAgent;
+import ua_parser.UserAgentParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * User agent parser over the uap-java regex set which only tries the regexes that can match.
+ * <p>
+ * uap-java tries the user agent, os and device regexes in order until one matches, for a typical
+ * user agent that is hundreds of regexes. Here every regex is indexed by literals that any of its
+ * matches must contain, see {@link RegexLiterals}, one {@link LiteralMatcher} pass over the user
+ * agent finds the candidates and only those are tried, still in the original order. Fields are
+ * extracted by uap-java itself from the first matching regex, so the result is the same as
+ * {@link Parser#parse(String)}.
+ */
+@Slf4j
+public final class UserAgentEngine {
+    public static final String REGEX_YAML = "/ua_parser/regexes.yaml";
+    private static final String REGEX = "regex";
+    private static final String REGEX_FLAG = "regex_flag";
+
+    private final PatternSet<UserAgent> userAgents;
+    private final PatternSet<OS> oses;
+    private final PatternSet<Device> devices;
+    private final LiteralMatcher literalMatcher;
+    private final int[][] literalPatterns;
+    private final BitSet alwaysTried;
+    private final int patternCount;
+    private final String fingerprint;
+
+    private UserAgentEngine(final Map<String, List<Map<String, String>>> regexConfig, final String fingerprint) {
+        this.fingerprint = fingerprint;
+        this.userAgents = new PatternSet<>(0, getConfigs(regexConfig, "user_agent_parsers"), "family_replacement",
+                configs -> UserAgentParser.fromList(configs)::parse);
+        this.oses = new PatternSet<>(userAgents.end(), getConfigs(regexConfig, "os_parsers"), "os_replacement",
+                configs -> OSParser.fromList(configs)::parse);
+        this.devices = new PatternSet<>(oses.end(), getConfigs(regexConfig, "device_parsers"), "device_replacement",
+                configs -> DeviceParser.fromList(configs)::parse);
+        this.patternCount = devices.end();
+
+        Map<String, List<Integer>> patternsByLiteral = new LinkedHashMap<>();
+        this.alwaysTried = new BitSet(patternCount);
+        for (PatternSet<?> patternSet : List.of(userAgents, oses, devices)) {
+            for (int i = 0; i < patternSet.entries.size(); i++) {
+                int id = patternSet.offset + i;
+                List<String> literals = RegexLiterals.requiredLiterals(patternSet.entries.get(i).pattern.pattern());
+                if (literals == null) {
+                    alwaysTried.set(id);
+                    continue;
+                }
+                for (String literal : literals) {
+                    patternsByLiteral.computeIfAbsent(literal, k -> new ArrayList<>()).add(id);
+                }
+            }
+        }
+        this.literalMatcher = new LiteralMatcher(new ArrayList<>(patternsByLiteral.keySet()));
+        this.literalPatterns = patternsByLiteral.values().stream()
+                .map(ids -> ids.stream().mapToInt(Integer::intValue).toArray())
+                .toArray(int[][]::new);
+        log.info("UserAgentEngine indexed {} regexes by {} literals, {} regexes are always tried",
+                patternCount, literalPatterns.length, alwaysTried.cardinality());
+    }
+
+    /**
+     * Load the regex set bundled with uap-java.
+     */
+    public static UserAgentEngine fromUapResource() {
+        try (InputStream in = Parser.class.getResourceAsStream(REGEX_YAML)) {
+            if (in == null) {
+                throw new IllegalStateException("Cannot find " + REGEX_YAML);
+            }
+            return fromYaml(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static UserAgentEngine fromYaml(final InputStream regexYaml) throws IOException {
+        String yaml = new String(regexYaml.readAllBytes(), StandardCharsets.UTF_8);
+        Map<String, List<Map<String, String>>> regexConfig = new Yaml().load(yaml);
+        return new UserAgentEngine(regexConfig, CacheSnapshot.fingerprint(yaml));
+    }
+
+    /**
+     * @return fingerprint of the regex set, changes whenever the parse results can change
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    private static List<Map<String, String>> getConfigs(final Map<String, List<Map<String, String>>> regexConfig, final String key) {
+        List<Map<String, String>> configs = regexConfig.get(key);
+        if (configs == null) {
+            throw new IllegalArgumentException(key + " is missing from yaml");
+        }
+        return configs;
+    }
+
+    /**
+     * @param agentString user agent, not null
+     * @return the same client as uap-java parses
+     */
+    public Client parse(final String agentString) {
+        BitSet candidates = candidates(agentString);
+        return new Client(userAgents.parse(agentString, candidates),
+                oses.parse(agentString, candidates),
+                devices.parse(agentString, candidates));
+    }
+
+    BitSet candidates(final String agentString) {
+        BitSet candidates = (BitSet) alwaysTried.clone();
+        BitSet seenLiterals = new BitSet(literalPatterns.length);
+        literalMatcher.match(agentString, literal -> {
+            if (!seenLiterals.get(literal)) {
+                seenLiterals.set(literal);
+                for (int id : literalPatterns[literal]) {
+                    candidates.set(id);
+                }
+            }
+        });
+        return candidates;
+    }
+
+    int patternCount() {
+        return patternCount;
+    }
+
+    /**
+     * @return true if the regex with the given id finds a match in the user agent
+     */
+    boolean finds(final int id, final String agentString) {
+        PatternSet<?> patternSet = id < oses.offset ? userAgents : id < devices.offset ? oses : devices;
+        return patternSet.entries.get(id - patternSet.offset).pattern.matcher(agentString).find();
+    }
+
+    /**
+     * The regexes of one of the uap-java parsers, each wrapped in a single-regex uap-java parser.
+     */
+    private static final class PatternSet<T> {
+        private final int offset;
+        private final List<Entry<T>> entries = new ArrayList<>();
+        private final T fallback;
+
+        PatternSet(final int offset, final List<Map<String, String>> configs, final String replacementKey,
+                   final Function<List<Map<String, String>>, Function<String, T>> parserFactory) {
+            this.offset = offset;
+            this.fallback = parserFactory.apply(Collections.emptyList()).apply("");
+            for (Map<String, String> config : configs) {
+                String regex = config.get(REGEX);
+                if (regex == null) {
+                    throw new IllegalArgumentException("Regex is missing from " + config);
+                }
+                Pattern pattern = "i".equals(config.get(REGEX_FLAG)) ? Pattern.compile(regex, Pattern.CASE_INSENSITIVE) : Pattern.compile(regex);
+                entries.add(new Entry<>(pattern, config.get(replacementKey) != null,
+                        parserFactory.apply(Collections.singletonList(config))));
+            }
+        }
+
+        int end() {
+            return offset + entries.size();
+        }
+
+        T parse(final String agentString, final BitSet candidates) {
+            for (int id = candidates.nextSetBit(offset); id >= 0 && id < end(); id = candidates.nextSetBit(id + 1)) {
+                Entry<T> entry = entries.get(id - offset);
+                Matcher matcher = entry.pattern.matcher(agentString);
+                if (!matcher.find()) {
+                    continue;
+                }
+                T result = entry.parser.apply(agentString);
+                if (!result.equals(fallback) || entry.hasFamily(matcher)) {
+                    return result;
+                }
+                // uap-java skips a match without a family and goes on with the next regex
+            }
+            return fallback;
+        }
+    }
+
+    private static final class Entry<T> {
+        private final Pattern pattern;
+        private final boolean hasReplacement;
+        private final Function<String, T> parser;
+
+        Entry(final Pattern pattern, final boolean hasReplacement, final Function<String, T> parser) {
+            this.pattern = pattern;
+            this.hasReplacement = hasReplacement;
+            this.parser = parser;
+        }
+
+        boolean hasFamily(final Matcher matcher) {
+            return hasReplacement || matcher.groupCount() >= 1 && matcher.group(1) != null;
+        }
+    }
+}
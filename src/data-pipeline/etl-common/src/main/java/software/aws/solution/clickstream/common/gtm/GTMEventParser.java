@@ -14,8 +14,7 @@
 package software.aws.solution.clickstream.common.gtm;
 
 import com.fasterxml.jackson.core.*;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.extern.slf4j.*;
 import software.aws.solution.clickstream.common.*;
 import software.aws.solution.clickstream.common.gtm.event.*;
@@ -40,9 +39,9 @@ import static software.aws.solution.clickstream.common.Util.deCodeUri;
 public final class GTMEventParser extends BaseEventParser {
     private static final Map<String, String> EVENT_NAME_MAP = createEventNameMap();
     private static GTMEventParser instance;
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     private final TransformConfig transformConfig;
+    private final ObjectReader eventReader = getObjectMapper().readerFor(GTMEvent.class);
     private GTMEventParser(final TransformConfig transformConfig) {
         this.transformConfig = transformConfig;
     }
@@ -71,11 +70,11 @@ public final class GTMEventParser extends BaseEventParser {
     }
 
     @Override
-    public JsonNode getData(final String ingestDataField) throws JsonProcessingException {
+    protected String decodeData(final String ingestDataField) {
         if (ingestDataField == null || ingestDataField.trim().isEmpty()) {
             return null;
         }
-        return OBJECT_MAPPER.readTree(ingestDataField);
+        return ingestDataField;
     }
 
     @Override
@@ -85,21 +84,32 @@ public final class GTMEventParser extends BaseEventParser {
 
     @Override
     public ParseDataResult parseData(final String dataString, final ExtraParams extraParams, final int index) throws JsonProcessingException {
-        ParseDataResult parseDataResult = new ParseDataResult();
-        List<ClickstreamEvent> clickstreamEventList = new ArrayList<>();
-        parseDataResult.setClickstreamEventList(clickstreamEventList);
-        parseDataResult.setClickstreamItemList(new ArrayList<>());
-
         log.debug("Parsing data: " + dataString);
         if (dataString == null || dataString.isEmpty()) {
             log.warn("Data field is empty, skipping the row");
-            return parseDataResult;
+            return emptyParseDataResult();
         }
         GTMEvent gtmEvent = ingestDataToEvent(dataString);
         if (gtmEvent.getEventName() == null || gtmEvent.getEventName().isEmpty()) {
             log.warn("Event name is empty, skipping the row, dataString:" + dataString);
-            return parseDataResult;
+            return emptyParseDataResult();
+        }
+        return parseGTMEvent(gtmEvent, extraParams, index);
+    }
+
+    @Override
+    public ParseDataResult parseData(final JsonParser dataParser, final ExtraParams extraParams, final int index) throws JsonProcessingException {
+        GTMEvent gtmEvent = readDataValue(eventReader, dataParser);
+        if (gtmEvent == null || gtmEvent.getEventName() == null || gtmEvent.getEventName().isEmpty()) {
+            log.warn("Event name is empty, skipping the row, index:" + index);
+            return emptyParseDataResult();
         }
+        return parseGTMEvent(gtmEvent, extraParams, index);
+    }
+
+    private ParseDataResult parseGTMEvent(final GTMEvent gtmEvent, final ExtraParams extraParams, final int index) throws JsonProcessingException {
+        ParseDataResult parseDataResult = new ParseDataResult();
+        List<ClickstreamEvent> clickstreamEventList = new ArrayList<>();
 
         ClickstreamEvent clickstreamEvent = getClickstreamEvent(gtmEvent, index, extraParams);
         clickstreamEventList.add(clickstreamEvent);
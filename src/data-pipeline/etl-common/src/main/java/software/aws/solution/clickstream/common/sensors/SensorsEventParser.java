@@ -13,11 +13,15 @@
 
 package software.aws.solution.clickstream.common.sensors;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.extern.slf4j.Slf4j;
 import software.aws.solution.clickstream.common.BaseEventParser;
+import software.aws.solution.clickstream.common.DataElementIterator;
 import software.aws.solution.clickstream.common.ExtraParams;
 import software.aws.solution.clickstream.common.ParseDataResult;
 import software.aws.solution.clickstream.common.TransformConfig;
@@ -39,6 +43,7 @@ import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import static software.aws.solution.clickstream.common.ClickstreamEventParser.EVENT_PAGE_VIEW;
 import static software.aws.solution.clickstream.common.ClickstreamEventParser.EVENT_PROFILE_SET;
@@ -59,6 +64,7 @@ public final class SensorsEventParser extends BaseEventParser {
     private static final String GZIP_DATA = "data=";
     private static SensorsEventParser instance;
     private final TransformConfig transformConfig;
+    private final ObjectReader eventReader = getObjectMapper().readerFor(SensorsEvent.class);
 
     private SensorsEventParser(final TransformConfig transformConfig) {
         this.transformConfig = transformConfig;
@@ -107,21 +113,32 @@ public final class SensorsEventParser extends BaseEventParser {
 
     @Override
     public ParseDataResult parseData(final String dataString, final ExtraParams extraParams, final int index) throws JsonProcessingException {
-        ParseDataResult parseDataResult = new ParseDataResult();
-        List<ClickstreamEvent> clickstreamEventList = new ArrayList<>();
-        parseDataResult.setClickstreamEventList(clickstreamEventList);
-        parseDataResult.setClickstreamItemList(new ArrayList<>());
-
         log.debug("Parsing data: " + dataString);
         if (dataString == null || dataString.isEmpty()) {
             log.warn("Data field is empty, skipping the row");
-            return parseDataResult;
+            return emptyParseDataResult();
         }
         SensorsEvent sensorsEvent = ingestDataToEvent(dataString);
         if (sensorsEvent.getEvent() == null || sensorsEvent.getEvent().isEmpty()) {
             log.warn("Event name is empty, skipping the row, dataString:" + dataString);
-            return parseDataResult;
+            return emptyParseDataResult();
+        }
+        return parseSensorsEvent(sensorsEvent, extraParams, index);
+    }
+
+    @Override
+    public ParseDataResult parseData(final JsonParser dataParser, final ExtraParams extraParams, final int index) throws JsonProcessingException {
+        SensorsEvent sensorsEvent = readDataValue(eventReader, dataParser);
+        if (sensorsEvent == null || sensorsEvent.getEvent() == null || sensorsEvent.getEvent().isEmpty()) {
+            log.warn("Event name is empty, skipping the row, index:" + index);
+            return emptyParseDataResult();
         }
+        return parseSensorsEvent(sensorsEvent, extraParams, index);
+    }
+
+    private ParseDataResult parseSensorsEvent(final SensorsEvent sensorsEvent, final ExtraParams extraParams, final int index) throws JsonProcessingException {
+        ParseDataResult parseDataResult = new ParseDataResult();
+        List<ClickstreamEvent> clickstreamEventList = new ArrayList<>();
 
         ClickstreamEvent clickstreamEvent = getClickstreamEvent(sensorsEvent, index, extraParams);
 
@@ -153,7 +170,7 @@ public final class SensorsEventParser extends BaseEventParser {
     }
 
     @Override
-    public JsonNode getData(final String ingestDataField) throws JsonProcessingException {
+    protected String decodeData(final String ingestDataField) {
         try {
             String rawStringData = ingestDataField.trim();
             if (!rawStringData.startsWith("[") && !rawStringData.startsWith("{")) {
@@ -161,6 +178,20 @@ public final class SensorsEventParser extends BaseEventParser {
                 byte[] bytes = Base64.getDecoder().decode(base64Data);
                 rawStringData = tryDecompress(bytes);
             }
+            return rawStringData;
+        } catch (Exception e) {
+            log.error("Failed to parse data: " + ingestDataField + ", error:" + getStackTrace(e));
+            return null;
+        }
+    }
+
+    @Override
+    public JsonNode getData(final String ingestDataField) throws JsonProcessingException {
+        String rawStringData = decodeData(ingestDataField);
+        if (rawStringData == null) {
+            return null;
+        }
+        try {
             return OBJECT_MAPPER.readTree(rawStringData);
         } catch (Exception e) {
             log.error("Failed to parse data: " + ingestDataField + ", error:" + getStackTrace(e));
@@ -168,6 +199,27 @@ public final class SensorsEventParser extends BaseEventParser {
         }
     }
 
+    @Override
+    public boolean parseDataElements(final String ingestDataField, final ExtraParams extraParams,
+                                     final Consumer<ParseDataResult> resultConsumer) throws JsonProcessingException {
+        try {
+            return super.parseDataElements(ingestDataField, extraParams, resultConsumer);
+        } catch (JsonParseException e) {
+            log.error("Failed to parse data: " + ingestDataField + ", error:" + getStackTrace(e));
+            return false;
+        }
+    }
+
+    @Override
+    public DataElementIterator iterateDataElements(final String ingestDataField, final ExtraParams extraParams) throws JsonProcessingException {
+        try {
+            return super.iterateDataElements(ingestDataField, extraParams);
+        } catch (JsonParseException e) {
+            log.error("Failed to parse data: " + ingestDataField + ", error:" + getStackTrace(e));
+            return null;
+        }
+    }
+
     @Override
     protected TransformConfig getTransformConfig() {
         return this.transformConfig;
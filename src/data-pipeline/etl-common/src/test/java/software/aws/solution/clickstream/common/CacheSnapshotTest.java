@@ -0,0 +1,124 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+package software.aws.solution.clickstream.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheSnapshotTest {
+    private static final CacheSnapshot.Codec<String, String> STRING_CODEC = new CacheSnapshot.Codec<String, String>() {
+        @Override
+        public void writeKey(final DataOutput out, final String key) throws IOException {
+            CacheSnapshot.writeString(out, key);
+        }
+
+        @Override
+        public String readKey(final DataInput in) throws IOException {
+            return CacheSnapshot.readString(in);
+        }
+
+        @Override
+        public void writeValue(final DataOutput out, final String value) throws IOException {
+            CacheSnapshot.writeString(out, value);
+        }
+
+        @Override
+        public String readValue(final DataInput in, final String key) throws IOException {
+            return CacheSnapshot.readString(in);
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        CacheSnapshot.clear();
+    }
+
+    @Test
+    void shouldRestoreEntriesWhenCacheIsRegistered() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.CacheSnapshotTest.shouldRestoreEntriesWhenCacheIsRegistered
+        String longKey = String.join("", Collections.nCopies(70000, "k"));
+        Cache<String, String> cache = new Cache<>("test_snapshot", Cache.DEFAULT_VALUE_BYTES);
+        CacheSnapshot.register("app1", () -> "rules1", cache, STRING_CODEC);
+        cache.put("k1", "v1");
+        cache.put("k2", "v2");
+        cache.put(longKey, "v3");
+        byte[] snapshot = CacheSnapshot.export(10);
+        CacheSnapshot.clear();
+
+        // nothing is registered in a new JVM yet
+        assertEquals(0, CacheSnapshot.load(new ByteArrayInputStream(snapshot)));
+        Cache<String, String> otherApp = new Cache<>("test_snapshot", Cache.DEFAULT_VALUE_BYTES);
+        CacheSnapshot.register("app2", () -> "rules1", otherApp, STRING_CODEC);
+        assertEquals(0, otherApp.estimatedSize());
+
+        Cache<String, String> restored = new Cache<>("test_snapshot", Cache.DEFAULT_VALUE_BYTES);
+        CacheSnapshot.register("app1", () -> "rules1", restored, STRING_CODEC);
+        assertEquals("v1", restored.get("k1"));
+        assertEquals("v2", restored.get("k2"));
+        assertEquals("v3", restored.get(longKey));
+    }
+
+    @Test
+    void shouldDiscardSnapshotWhenFingerprintOrVersionChanges() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.CacheSnapshotTest.shouldDiscardSnapshotWhenFingerprintOrVersionChanges
+        Cache<String, String> cache = new Cache<>("test_snapshot", Cache.DEFAULT_VALUE_BYTES);
+        CacheSnapshot.register(null, () -> "rules1", cache, STRING_CODEC);
+        cache.put("k1", "v1");
+        byte[] snapshot = CacheSnapshot.export(10);
+        CacheSnapshot.clear();
+
+        Cache<String, String> changedRules = new Cache<>("test_snapshot", Cache.DEFAULT_VALUE_BYTES);
+        CacheSnapshot.register(null, () -> "rules2", changedRules, STRING_CODEC);
+        assertEquals(0, CacheSnapshot.load(new ByteArrayInputStream(snapshot)));
+        assertNull(changedRules.get("k1"));
+
+        ByteArrayOutputStream otherVersion = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(otherVersion)) {
+            out.write(new byte[] {0x43, 0x53, 0x4E, 0x50, 0, 0, 0, CacheSnapshot.FORMAT_VERSION + 1, 0, 0, 0, 0});
+        }
+        assertEquals(0, CacheSnapshot.load(new ByteArrayInputStream(otherVersion.toByteArray())));
+    }
+
+    @Test
+    void shouldMergeEntriesHotInMostSnapshotsFirst() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.CacheSnapshotTest.shouldMergeEntriesHotInMostSnapshotsFirst
+        Cache<String, String> cache = new Cache<>("test_snapshot", Cache.DEFAULT_VALUE_BYTES);
+        CacheSnapshot.register(null, () -> "rules1", cache, STRING_CODEC);
+        cache.put("shared", "v1");
+        byte[] first = CacheSnapshot.export(10);
+        cache.put("only_second", "v2");
+        byte[] second = CacheSnapshot.export(10);
+
+        ByteArrayOutputStream merged = new ByteArrayOutputStream();
+        CacheSnapshot.merge(Arrays.asList(first, second, new byte[0]), 1, merged);
+        CacheSnapshot.clear();
+
+        assertEquals(0, CacheSnapshot.load(new ByteArrayInputStream(merged.toByteArray())));
+        Cache<String, String> restored = new Cache<>("test_snapshot", Cache.DEFAULT_VALUE_BYTES);
+        CacheSnapshot.register(null, () -> "rules1", restored, STRING_CODEC);
+        assertEquals("v1", restored.get("shared"));
+        assertNull(restored.get("only_second"));
+    }
+}
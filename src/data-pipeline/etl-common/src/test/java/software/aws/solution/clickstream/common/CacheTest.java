@@ -13,13 +13,19 @@
 
 package software.aws.solution.clickstream.common;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class CacheTest {
-    private Cache<String> cache;
+    private Cache<String, String> cache;
 
     @BeforeEach
     void setUp() {
@@ -42,7 +48,7 @@ class CacheTest {
 
     @Test
     void latestPutKeyShouldExistWhenCacheIsFull() {
-        Cache<String> cache = new Cache<>(2);
+        Cache<String, String> cache = new Cache<>(2);
         cache.put("key1", "data1");
         cache.put("key2", "data2");
         cache.put("key3", "data3");
@@ -53,4 +59,62 @@ class CacheTest {
     void shouldReturnNullWhenKeyDoesNotExist() {
         assertNull(cache.get("nonexistentKey"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldLoadOnceWithCompositeKey() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.CacheTest.shouldLoadOnceWithCompositeKey
+        Cache<List<Object>, String> compositeCache = new Cache<>("test_composite", Cache.DEFAULT_VALUE_BYTES);
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("v", compositeCache.get(Arrays.asList("a", 1L, null), k -> {
+                loads.incrementAndGet();
+                return "v";
+            }));
+        }
+        assertEquals(1, loads.get());
+        assertEquals("v", compositeCache.get(Arrays.asList("a", 1L, null)));
+        assertNull(compositeCache.get(Arrays.asList("a", 2L, null)));
+
+        CacheStats stats = Cache.stats().get("test_composite");
+        assertEquals(3, stats.hitCount());
+        assertEquals(2, stats.missCount());
+    }
+
+    @Test
+    void shouldEvictByWeight() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.CacheTest.shouldEvictByWeight
+        Cache<Integer, String> weightedCache = new Cache<>("test_weight", 1000L, (k, v) -> 100);
+        for (int i = 0; i < 100; i++) {
+            weightedCache.put(i, "data" + i);
+        }
+        weightedCache.cleanUp();
+        assertTrue(weightedCache.estimatedSize() <= 10);
+        assertTrue(Cache.stats().get("test_weight").evictionCount() >= 90);
+    }
+
+    @Test
+    void shouldRecordCountsToTaskParserMetrics() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.CacheTest.shouldRecordCountsToTaskParserMetrics
+        ParserMetrics.setEnabled(true);
+        ParserMetrics.Recorder recorder = ParserMetrics.startTaskRecording();
+        try {
+            Cache<Integer, String> taskCache = new Cache<>("test_task", 1000L, (k, v) -> 100);
+            assertNull(taskCache.get(-1));
+            taskCache.put(-1, "data");
+            assertEquals("data", taskCache.get(-1));
+            for (int i = 0; i < 20; i++) {
+                taskCache.put(i, "data" + i);
+            }
+            taskCache.cleanUp();
+        } finally {
+            ParserMetrics.stopTaskRecording(recorder);
+            ParserMetrics.setEnabled(false);
+        }
+
+        Map<String, Long> stats = recorder.drain().getCacheStats();
+        assertEquals(1L, stats.get("test_task hit"));
+        assertEquals(1L, stats.get("test_task miss"));
+        assertTrue(stats.get("test_task eviction") >= 10);
+        assertTrue(ParserMetrics.drain().getCacheStats().isEmpty());
+    }
+}
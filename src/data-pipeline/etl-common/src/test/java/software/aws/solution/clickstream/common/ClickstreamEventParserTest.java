@@ -26,8 +26,14 @@ import software.aws.solution.clickstream.common.ingest.*;
 import software.aws.solution.clickstream.common.model.*;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static software.aws.solution.clickstream.common.Util.objectToJsonString;
 
@@ -138,6 +144,26 @@ public class ClickstreamEventParserTest extends BaseTest {
         Assertions.assertEquals(expectedJson, prettyJson(eventV2.toJson()));
     }
 
+    @Test
+    void test_parse_line_to_db_row_shares_row_context() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.ClickstreamEventParserTest.test_parse_line_to_db_row_shares_row_context
+        setEnableEventTimeShift(false);
+        String line = resourceFileContent("/original_data_nozip_upload_time.json");
+        ClickstreamEventParser clickstreamEventParser = getClickstreamEventParser();
+
+        ParseRowResult rowResult = clickstreamEventParser.parseLineToDBRow(line, "test_project_id", "original_data_nozip_upload_time.json");
+
+        List<ClickstreamEvent> events = rowResult.getClickstreamEventList();
+        Assertions.assertTrue(events.size() > 1);
+        ClickstreamEvent first = events.get(0);
+        Assertions.assertNotNull(first.getProcessInfo().get("upload_time"));
+        for (ClickstreamEvent event : events) {
+            Assertions.assertSame(first.getProcessInfo(), event.getProcessInfo());
+            Assertions.assertSame(first.getDeviceUa(), event.getDeviceUa());
+            Assertions.assertEquals(first.getEventBundleSequenceId(), event.getEventBundleSequenceId());
+        }
+    }
+
     @Test
     public void test_parse_line_to_db_row_disable_time_shift() throws IOException {
         // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.ClickstreamEventParserTest.test_parse_line_to_db_row_disable_time_shift
@@ -340,6 +366,199 @@ public class ClickstreamEventParserTest extends BaseTest {
         Assertions.assertNull(r.getClickstreamUser());
     }
 
+    @Test
+    void test_parse_data_elements_streaming() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.ClickstreamEventParserTest.test_parse_data_elements_streaming
+        setEnableEventTimeShift(false);
+        String line = resourceFileContent("/original_data.json");
+        ClickstreamEventParser clickstreamEventParser = getClickstreamEventParser();
+        ClickstreamIngestRow row = clickstreamEventParser.ingestLineToRow(line);
+        ExtraParams extraParams = ExtraParams.builder()
+                .appId(row.getAppId())
+                .projectId("test_project_id")
+                .ingestTimestamp(row.getIngestTime())
+                .uri(row.getUri())
+                .ua(row.getUa())
+                .ip(row.getIp())
+                .build();
+
+        JsonNode dataNode = clickstreamEventParser.getData(row.getData());
+        List<ParseDataResult> expectedResults = new ArrayList<>();
+        int index = 0;
+        for (JsonNode element : dataNode) {
+            expectedResults.add(clickstreamEventParser.parseData(element.toString(), extraParams, index++));
+        }
+
+        List<ParseDataResult> streamResults = new ArrayList<>();
+        Assertions.assertTrue(clickstreamEventParser.parseDataElements(row.getData(), extraParams, streamResults::add));
+
+        Assertions.assertEquals(expectedResults.size(), streamResults.size());
+        for (int i = 0; i < expectedResults.size(); i++) {
+            ClickstreamEvent expected = expectedResults.get(i).getClickstreamEventList().get(0);
+            ClickstreamEvent actual = streamResults.get(i).getClickstreamEventList().get(0);
+            Assertions.assertEquals(expected.getEventId(), actual.getEventId());
+            Assertions.assertEquals(expected.getEventName(), actual.getEventName());
+            Assertions.assertEquals(objectToJsonString(expected.getCustomParameters()), objectToJsonString(actual.getCustomParameters()));
+            Assertions.assertEquals(expectedResults.get(i).getClickstreamItemList().size(), streamResults.get(i).getClickstreamItemList().size());
+        }
+    }
+
+    @Test
+    void test_iterate_data_elements() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.ClickstreamEventParserTest.test_iterate_data_elements
+        setEnableEventTimeShift(false);
+        String line = resourceFileContent("/original_data.json");
+        ClickstreamEventParser clickstreamEventParser = getClickstreamEventParser();
+        ClickstreamIngestRow row = clickstreamEventParser.ingestLineToRow(line);
+        ExtraParams extraParams = ExtraParams.builder()
+                .appId(row.getAppId())
+                .projectId("test_project_id")
+                .ingestTimestamp(row.getIngestTime())
+                .uri(row.getUri())
+                .ua(row.getUa())
+                .ip(row.getIp())
+                .build();
+
+        List<ParseDataResult> expectedResults = new ArrayList<>();
+        Assertions.assertTrue(clickstreamEventParser.parseDataElements(row.getData(), extraParams, expectedResults::add));
+
+        List<ParseDataResult> iteratedResults = new ArrayList<>();
+        DataElementIterator iterator = clickstreamEventParser.iterateDataElements(row.getData(), extraParams);
+        Assertions.assertNotNull(iterator);
+        iterator.forEachRemaining(iteratedResults::add);
+        Assertions.assertFalse(iterator.hasNext());
+
+        Assertions.assertEquals(expectedResults.size(), iteratedResults.size());
+        for (int i = 0; i < expectedResults.size(); i++) {
+            Assertions.assertEquals(expectedResults.get(i).getClickstreamEventList().get(0).getEventId(),
+                    iteratedResults.get(i).getClickstreamEventList().get(0).getEventId());
+        }
+
+        String singleEvent = clickstreamEventParser.getData(row.getData()).get(0).toString();
+        DataElementIterator single = clickstreamEventParser.iterateDataElements(singleEvent, extraParams);
+        Assertions.assertTrue(single.hasNext());
+        single.next();
+        Assertions.assertFalse(single.hasNext());
+    }
+
+    @Test
+    void test_parse_data_elements_with_validation() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.ClickstreamEventParserTest.test_parse_data_elements_with_validation
+        setEnableEventTimeShift(false);
+        ClickstreamEventParser clickstreamEventParser = getClickstreamEventParser();
+        ClickstreamIngestRow row = clickstreamEventParser.ingestLineToRow(resourceFileContent("/original_data_single.json"));
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode valid = (ObjectNode) clickstreamEventParser.getData(row.getData());
+        long eventTimestamp = valid.get("timestamp").asLong();
+
+        ObjectNode stringTimestamp = valid.deepCopy().put("timestamp", String.valueOf(eventTimestamp));
+        ObjectNode noEventId = valid.deepCopy();
+        noEventId.remove("event_id");
+        ObjectNode otherApp = valid.deepCopy().put("app_id", "other-app");
+        ObjectNode stale = valid.deepCopy().put("timestamp", eventTimestamp - 73 * 3600 * 1000L);
+        String data = objectMapper.createArrayNode().add(valid).add(stringTimestamp).add(noEventId).add(otherApp).add(stale).toString();
+
+        Set<String> longFields = new HashSet<>(Arrays.asList("timestamp", "screen_height", "screen_width"));
+        ExtraParams extraParams = ExtraParams.builder()
+                .appId(row.getAppId())
+                .projectId("test_project_id")
+                .ingestTimestamp(eventTimestamp + 1000L)
+                .uri(row.getUri())
+                .ua(row.getUa())
+                .ip(row.getIp())
+                .validation(new IngestValidation(Collections.singleton("uba-app"), 72 * 3600 * 1000L, eventTimestamp + 3600 * 1000L,
+                        longFields, Collections.singleton("event_value_in_usd")))
+                .build();
+
+        List<ParseDataResult> results = new ArrayList<>();
+        Assertions.assertTrue(clickstreamEventParser.parseDataElements(data, extraParams, results::add));
+
+        Assertions.assertEquals(5, results.size());
+        Assertions.assertNull(results.get(0).getCorruptRecord());
+        Assertions.assertEquals(valid.get("event_id").asText(), results.get(0).getClickstreamEventList().get(0).getEventId());
+        Assertions.assertTrue(results.get(1).getCorruptRecord().contains("field timestamp is not a long"));
+        Assertions.assertTrue(results.get(2).getCorruptRecord().contains("event_id is null"));
+        for (int i = 1; i < 5; i++) {
+            Assertions.assertTrue(results.get(i).getClickstreamEventList().isEmpty());
+        }
+        Assertions.assertNull(results.get(3).getCorruptRecord());
+        Assertions.assertNull(results.get(4).getCorruptRecord());
+    }
+
+    @Test
+    void test_parse_data_elements_with_validation_requires_array() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.ClickstreamEventParserTest.test_parse_data_elements_with_validation_requires_array
+        setEnableEventTimeShift(false);
+        ClickstreamEventParser clickstreamEventParser = getClickstreamEventParser();
+        ClickstreamIngestRow row = clickstreamEventParser.ingestLineToRow(resourceFileContent("/original_data_single.json"));
+        String event = clickstreamEventParser.getData(row.getData()).toString();
+        long eventTimestamp = clickstreamEventParser.getData(row.getData()).get("timestamp").asLong();
+
+        ExtraParams extraParams = ExtraParams.builder()
+                .appId(row.getAppId())
+                .projectId("test_project_id")
+                .ingestTimestamp(eventTimestamp + 1000L)
+                .uri(row.getUri())
+                .ua(row.getUa())
+                .ip(row.getIp())
+                .validation(new IngestValidation(Collections.singleton("uba-app"), 72 * 3600 * 1000L, eventTimestamp + 3600 * 1000L,
+                        Collections.singleton("timestamp"), Collections.singleton("event_value_in_usd")))
+                .build();
+
+        List<ParseDataResult> results = new ArrayList<>();
+        Assertions.assertTrue(clickstreamEventParser.parseDataElements(event, extraParams, results::add));
+        Assertions.assertEquals(1, results.size());
+        Assertions.assertTrue(results.get(0).getCorruptRecord().contains("data is not a JSON array"));
+        Assertions.assertTrue(results.get(0).getClickstreamEventList().isEmpty());
+
+        DataElementIterator iterator = clickstreamEventParser.iterateDataElements("[" + event + "]", extraParams);
+        ParseDataResult result = iterator.next();
+        Assertions.assertNull(result.getCorruptRecord());
+        Assertions.assertEquals(1, result.getClickstreamEventList().size());
+        Assertions.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    void test_parse_data_elements_with_validation_drops_future_and_not_ingested_events() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.ClickstreamEventParserTest.test_parse_data_elements_with_validation_drops_future_and_not_ingested_events
+        setEnableEventTimeShift(false);
+        ClickstreamEventParser clickstreamEventParser = getClickstreamEventParser();
+        ClickstreamIngestRow row = clickstreamEventParser.ingestLineToRow(resourceFileContent("/original_data_single.json"));
+        ObjectNode valid = (ObjectNode) clickstreamEventParser.getData(row.getData());
+        long eventTimestamp = valid.get("timestamp").asLong();
+        ObjectNode future = valid.deepCopy().put("timestamp", eventTimestamp + 2000L);
+        String data = new ObjectMapper().createArrayNode().add(valid).add(future).toString();
+
+        IngestValidation validation = new IngestValidation(Collections.singleton("uba-app"), 72 * 3600 * 1000L, eventTimestamp + 1000L,
+                Collections.singleton("timestamp"), Collections.singleton("event_value_in_usd"));
+        ExtraParams.ExtraParamsBuilder extraParams = ExtraParams.builder()
+                .appId(row.getAppId())
+                .projectId("test_project_id")
+                .uri(row.getUri())
+                .ua(row.getUa())
+                .ip(row.getIp())
+                .validation(validation);
+
+        ParserMetrics.setEnabled(true);
+        ParserMetrics.drain();
+        List<ParseDataResult> results = new ArrayList<>();
+        try {
+            Assertions.assertTrue(clickstreamEventParser.parseDataElements(data, extraParams.ingestTimestamp(eventTimestamp + 3000L).build(), results::add));
+        } finally {
+            ParserMetrics.setEnabled(false);
+        }
+        Assertions.assertEquals(2, results.size());
+        Assertions.assertEquals(1, results.get(0).getClickstreamEventList().size());
+        Assertions.assertTrue(results.get(1).getClickstreamEventList().isEmpty());
+        Assertions.assertNull(results.get(1).getCorruptRecord());
+        Assertions.assertEquals(1L, ParserMetrics.drain().getErrors().get("future_event"));
+
+        results.clear();
+        Assertions.assertTrue(clickstreamEventParser.parseDataElements(data, extraParams.ingestTimestamp(null).build(), results::add));
+        Assertions.assertEquals(2, results.size());
+        Assertions.assertTrue(results.get(0).getClickstreamEventList().isEmpty());
+        Assertions.assertNull(results.get(0).getCorruptRecord());
+    }
 
     @Test
     void testGetSetForTimeShiftInfo() {
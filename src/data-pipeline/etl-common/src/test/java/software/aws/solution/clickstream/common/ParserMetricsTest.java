@@ -0,0 +1,104 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.common;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParserMetricsTest {
+
+    @AfterEach
+    void disable() {
+        ParserMetrics.setEnabled(false);
+        ParserMetrics.drain();
+    }
+
+    @Test
+    void shouldNotRecordWhenDisabled() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.ParserMetricsTest.shouldNotRecordWhenDisabled
+        ParserMetrics.setEnabled(false);
+        long start = ParserMetrics.start();
+        ParserMetrics.record(ParserMetrics.Phase.UA, start);
+        ParserMetrics.recordError("JsonParseException");
+
+        assertEquals(0L, start);
+        assertTrue(ParserMetrics.drain().isEmpty());
+    }
+
+    @Test
+    void shouldDrainRecordedPhasesOnce() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.ParserMetricsTest.shouldDrainRecordedPhasesOnce
+        ParserMetrics.setEnabled(true);
+        for (int i = 0; i < 100; i++) {
+            ParserMetrics.record(ParserMetrics.Phase.URI_PARSE, ParserMetrics.start());
+        }
+        ParserMetrics.recordError("JsonParseException");
+
+        ParserMetricsSnapshot snapshot = ParserMetrics.drain();
+        assertEquals(100L, snapshot.getCount(ParserMetrics.Phase.URI_PARSE.name()));
+        assertEquals(0L, snapshot.getCount(ParserMetrics.Phase.UA.name()));
+        assertEquals(1L, snapshot.getErrors().get("JsonParseException"));
+        assertTrue(ParserMetrics.drain().isEmpty());
+
+        ParserMetricsSnapshot merged = snapshot.copy();
+        merged.merge(snapshot);
+        assertEquals(200L, merged.getCount(ParserMetrics.Phase.URI_PARSE.name()));
+        Map<String, Object> summary = merged.toSummary();
+        assertTrue(((Map<?, ?>) summary.get("phases")).containsKey("uri_parse"));
+        assertEquals(2L, ((Map<?, ?>) summary.get("errors")).get("JsonParseException"));
+    }
+
+    @Test
+    void shouldKeepTaskRecordsApartFromOtherThreads() throws InterruptedException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.ParserMetricsTest.shouldKeepTaskRecordsApartFromOtherThreads
+        ParserMetrics.setEnabled(true);
+        ParserMetrics.Recorder recorder = ParserMetrics.startTaskRecording();
+        Thread other = new Thread(() -> {
+            ParserMetrics.Recorder otherRecorder = ParserMetrics.startTaskRecording();
+            ParserMetrics.record(ParserMetrics.Phase.UA, ParserMetrics.start());
+            ParserMetrics.stopTaskRecording(otherRecorder);
+            ParserMetrics.recordError("JsonParseException");
+        });
+        other.start();
+        other.join();
+        ParserMetrics.record(ParserMetrics.Phase.URI_PARSE, ParserMetrics.start());
+        ParserMetrics.stopTaskRecording(recorder);
+        ParserMetrics.record(ParserMetrics.Phase.URI_PARSE, ParserMetrics.start());
+
+        ParserMetricsSnapshot task = recorder.drain();
+        assertEquals(1L, task.getCount(ParserMetrics.Phase.URI_PARSE.name()));
+        assertEquals(0L, task.getCount(ParserMetrics.Phase.UA.name()));
+        assertTrue(task.getErrors().isEmpty());
+
+        ParserMetricsSnapshot shared = ParserMetrics.drain();
+        assertEquals(1L, shared.getCount(ParserMetrics.Phase.URI_PARSE.name()));
+        assertEquals(1L, shared.getErrors().get("JsonParseException"));
+    }
+
+    @Test
+    void shouldBucketLatenciesWithinOneEighth() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.ParserMetricsTest.shouldBucketLatenciesWithinOneEighth
+        for (long nanos : new long[]{0L, 15L, 16L, 31L, 1_000L, 123_456_789L, Long.MAX_VALUE}) {
+            long lowerBound = ParserMetrics.lowerBoundOf(ParserMetrics.bucketOf(nanos));
+            assertTrue(lowerBound <= nanos);
+            assertTrue(nanos - lowerBound <= nanos / 8);
+        }
+        assertEquals(ParserMetrics.BUCKETS - 1, ParserMetrics.bucketOf(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadDecoderTest {
+
+    private static byte[] gzip(final String text) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void shouldInflateBase64GzipPayload() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.PayloadDecoderTest.shouldInflateBase64GzipPayload
+        String json = "[{\"event_name\":\"_page_view\",\"title\":\"中文\"},\n{\"event_name\":\"_click\"}]";
+        String base64 = Base64.getEncoder().encodeToString(gzip(json));
+
+        assertEquals(json, PayloadDecoder.readUtf8(PayloadDecoder.openBase64Gzip(base64)));
+        assertEquals(json, Util.decompress(gzip(json)));
+    }
+
+    @Test
+    void shouldInflateMultiMemberPayload() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.PayloadDecoderTest.shouldInflateMultiMemberPayload
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(gzip("[1,"));
+        out.write(gzip("2]"));
+        out.write("trailing".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("[1,2]", PayloadDecoder.readUtf8(PayloadDecoder.openGzip(out.toByteArray())));
+    }
+
+    @Test
+    void shouldInflateNestedStreamsOfOneThread() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.PayloadDecoderTest.shouldInflateNestedStreamsOfOneThread
+        InputStream first = PayloadDecoder.openGzip(gzip("first"));
+        InputStream second = PayloadDecoder.openGzip(gzip("second"));
+        assertEquals("second", PayloadDecoder.readUtf8(second));
+        assertEquals("first", PayloadDecoder.readUtf8(first));
+        assertEquals("third", PayloadDecoder.readUtf8(PayloadDecoder.openGzip(gzip("third"))));
+    }
+
+    @Test
+    void shouldFailOnInvalidPayload() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.PayloadDecoderTest.shouldFailOnInvalidPayload
+        assertThrows(IOException.class, () -> PayloadDecoder.openBase64Gzip("not base64 $$"));
+        assertThrows(IOException.class, () -> PayloadDecoder.openGzip("not gzip".getBytes(StandardCharsets.UTF_8)));
+
+        byte[] corrupt = gzip("hello world");
+        corrupt[corrupt.length - 6] ^= 1;
+        assertThrows(IOException.class, () -> PayloadDecoder.readUtf8(PayloadDecoder.openGzip(corrupt)));
+
+        // the thread inflater is released after a failure
+        assertEquals("ok", PayloadDecoder.readUtf8(PayloadDecoder.openGzip(gzip("ok"))));
+    }
+
+    @Test
+    void shouldReleaseThreadInflaterOfFullyReadStream() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.PayloadDecoderTest.shouldReleaseThreadInflaterOfFullyReadStream
+        ReusableGzipInputStream unclosed = new ReusableGzipInputStream(new ByteArrayInputStream(gzip("ab")));
+        assertTrue(unclosed.usesThreadInflater());
+        assertEquals('a', unclosed.read());
+        assertEquals('b', unclosed.read());
+        assertEquals(-1, unclosed.read());
+
+        try (ReusableGzipInputStream next = new ReusableGzipInputStream(new ByteArrayInputStream(gzip("next")))) {
+            assertTrue(next.usesThreadInflater());
+            assertEquals("next", PayloadDecoder.readUtf8(next));
+        }
+    }
+
+    @Test
+    void shouldTakeOverThreadInflaterOfDroppedStream() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.PayloadDecoderTest.shouldTakeOverThreadInflaterOfDroppedStream
+        openWithoutClose();
+        boolean shared = false;
+        for (int i = 0; i < 10 && !shared; i++) {
+            System.gc();
+            try (ReusableGzipInputStream next = new ReusableGzipInputStream(new ByteArrayInputStream(gzip("next")))) {
+                shared = next.usesThreadInflater();
+                assertEquals("next", PayloadDecoder.readUtf8(next));
+            }
+        }
+        assertTrue(shared);
+    }
+
+    private static void openWithoutClose() throws IOException {
+        InputStream dropped = new ReusableGzipInputStream(new ByteArrayInputStream(gzip("dropped")));
+        assertEquals('d', dropped.read());
+    }
+}
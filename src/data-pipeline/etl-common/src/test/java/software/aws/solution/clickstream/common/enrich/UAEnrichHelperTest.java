@@ -13,10 +13,17 @@
 
 package software.aws.solution.clickstream.common.enrich;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import software.aws.solution.clickstream.BaseTest;
+import software.aws.solution.clickstream.common.Util;
 import software.aws.solution.clickstream.common.model.ClickstreamUA;
+import ua_parser.Parser;
+
+import java.io.IOException;
+import java.util.Map;
 
 public class UAEnrichHelperTest extends BaseTest  {
 
@@ -68,4 +75,24 @@ public class UAEnrichHelperTest extends BaseTest  {
         Assertions.assertEquals("Other", clickstreamUA.getUaDevice());
         Assertions.assertEquals("Other", clickstreamUA.getUaDeviceCategory());
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldBuildUaMapSameAsSerializedClient() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.enrich.UAEnrichHelperTest.shouldBuildUaMapSameAsSerializedClient
+        ObjectMapper objectMapper = new ObjectMapper();
+        Parser parser = new Parser();
+        for (String userAgent : Util.readResourceFile("ua/user_agents.txt").split("\n")) {
+            if (userAgent.isEmpty()) {
+                continue;
+            }
+            Map<String, Object> expected = objectMapper.readValue(objectMapper.writeValueAsString(parser.parse(userAgent)),
+                    new TypeReference<Map<String, Object>>() {});
+            expected.put(UAEnrichHelper.UA_STRING, userAgent);
+
+            Map<String, Object> uaMap = UAEnrichHelper.parserUA(userAgent).getUaMap();
+
+            Assertions.assertEquals(expected, uaMap, userAgent);
+            Assertions.assertEquals(objectMapper.writeValueAsString(expected), objectMapper.writeValueAsString(uaMap), userAgent);
+        }
+    }
+}
@@ -17,11 +17,13 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import software.aws.solution.clickstream.BaseTest;
 import software.aws.solution.clickstream.common.Util;
+import software.aws.solution.clickstream.common.enrich.UrlParseResult;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 
 public class CategoryListEvaluatorTest extends BaseTest {
 
@@ -185,4 +187,41 @@ public class CategoryListEvaluatorTest extends BaseTest {
         Assertions.assertEquals(expectedStrList, urls);
     }
 
-}
\ No newline at end of file
+    @Test
+    void shouldMatchCandidateUrlsWithIndex() throws IOException {
+        //  ./gradlew clean test --info --tests software.aws.solution.clickstream.common.enrich.ts.rule.CategoryListEvaluatorTest.shouldMatchCandidateUrlsWithIndex
+        String content = Util.readResourceFile("ts/traffic_source_category_rule_v0.json");
+        CategoryListEvaluator categoryListEvaluator = CategoryListEvaluator.fromJson(content);
+
+        List<String> referrers = Arrays.asList(
+                "https://www.google.com.hk/search?q=hello",
+                "https://www.google.com/imgres?q=hello",
+                "https://www.bing.com/images/search?q=x",
+                "http://search.comcast.net/searchme?q=hello",
+                "https://www.toile.com?q=2hello",
+                "https://news.google.co.uk/",
+                "za.pinterest.com",
+                "https://unknown.example.org/a/b",
+                "https://www.example.co.jp"
+        );
+        for (String referrer : referrers) {
+            Optional<UrlParseResult> r = Util.parseUrl(referrer);
+            String hostName = r.map(UrlParseResult::getHostName).orElse("");
+            String path = r.map(UrlParseResult::getPath).orElse("");
+            CategoryItem expected = null;
+            for (String candidateUrl : CategoryListEvaluator.getCandidateUrls(referrer, hostName, path)) {
+                expected = categoryListEvaluator.getCategoryMap().get(candidateUrl);
+                if (expected != null) {
+                    break;
+                }
+            }
+            SourceCategoryAndTerms result = categoryListEvaluator.evaluate(referrer);
+            if (expected == null) {
+                Assertions.assertEquals(CategoryListEvaluator.UNASSIGNED, result.getCategory(), referrer);
+            } else {
+                Assertions.assertEquals(expected.getCategory(), result.getCategory(), referrer);
+                Assertions.assertEquals(expected.getSource(), result.getSource(), referrer);
+            }
+        }
+    }
+}
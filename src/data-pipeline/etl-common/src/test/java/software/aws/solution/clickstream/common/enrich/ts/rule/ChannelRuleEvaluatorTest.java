@@ -478,4 +478,48 @@ public class ChannelRuleEvaluatorTest extends BaseTest {
         ChannelRuleEvaluator evaluator = ChannelRuleEvaluator.getInstance();
         Assertions.assertTrue(evaluator.evaluate(channelRule, input2));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldReuseCompiledRuleForManyInputs() throws JsonProcessingException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.enrich.ts.rule.ChannelRuleEvaluatorTest.shouldReuseCompiledRuleForManyInputs
+        String ruleJson = "{\"id\": \"rule#5\", \"channel\": \"Paid Other\", \"condition\": {\"op::or\": [" +
+                "{\"field\": \"traffic_source_source\", \"op\": \"in\", \"values\": [\"Google\", \"BING\"]}," +
+                "{\"field\": \"traffic_source_medium\", \"op\": \"match\", \"value\": \"^(CPC|ppc)$\"}]}}";
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        ChannelRule channelRule = objectMapper.readValue(ruleJson, ChannelRule.class);
+        CompiledChannelRule compiledRule = ChannelRuleEvaluator.getInstance().compile(channelRule);
+        Assertions.assertEquals("Paid Other", compiledRule.getChannel());
+        Assertions.assertEquals("rule#5", compiledRule.getId());
+
+        ChannelRuleEvaluatorInput input1 = new ChannelRuleEvaluatorInput();
+        input1.setTrafficSourceSource("bing");
+        Assertions.assertTrue(compiledRule.evaluate(input1));
+
+        ChannelRuleEvaluatorInput input2 = new ChannelRuleEvaluatorInput();
+        input2.setTrafficSourceSource("yahoo");
+        input2.setTrafficSourceMedium("CpC");
+        Assertions.assertTrue(compiledRule.evaluate(input2));
+
+        ChannelRuleEvaluatorInput input3 = new ChannelRuleEvaluatorInput();
+        input3.setTrafficSourceMedium("organic");
+        Assertions.assertFalse(compiledRule.evaluate(input3));
+    }
+
+    @Test
+    void shouldFailToCompileUnknownOperator() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.enrich.ts.rule.ChannelRuleEvaluatorTest.shouldFailToCompileUnknownOperator
+        ChannelRuleConditionItem item1 = new ChannelRuleConditionItem();
+        item1.setField("traffic_source_category");
+        item1.setOp("gt");
+        item1.setValue("Search");
+
+        ChannelRuleCondition condition = new ChannelRuleCondition();
+        condition.setOpAndList(Collections.singletonList(item1));
+
+        ChannelRule rule = new ChannelRule();
+        rule.setCondition(condition);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChannelRuleEvaluator.getInstance().compile(rule));
+    }
+}
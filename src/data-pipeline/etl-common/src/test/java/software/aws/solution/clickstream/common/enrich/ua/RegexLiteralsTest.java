@@ -0,0 +1,79 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.common.enrich.ua;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RegexLiteralsTest {
+
+    @Test
+    void shouldExtractLongestRequiredLiteral() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.enrich.ua.RegexLiteralsTest.shouldExtractLongestRequiredLiteral
+        Assertions.assertEquals(Collections.singletonList("chrome"), RegexLiterals.requiredLiterals("(Chrome)/(\\d+)\\.(\\d+)"));
+        Assertions.assertEquals(Collections.singletonList("opera mini"), RegexLiterals.requiredLiterals("(Opera Mini)(?:/att|)/?(\\d+|)"));
+        Assertions.assertEquals(Collections.singletonList("android "), RegexLiterals.requiredLiterals("Android \\d+; [^;]+; wv\\)"));
+        Assertions.assertEquals(Collections.singletonList("; wv)"), RegexLiterals.requiredLiterals("[^;]+; wv\\)"));
+        Assertions.assertEquals(Collections.singletonList("hrome"), RegexLiterals.requiredLiterals("[Cc]hrome"));
+        Assertions.assertEquals(Collections.singletonList("sm-"), RegexLiterals.requiredLiterals("; *(SM-[^;/]+)"));
+        Assertions.assertEquals(Collections.singletonList("bot"), RegexLiterals.requiredLiterals("(?i)(?:fake)?bot"));
+    }
+
+    @Test
+    void shouldNotTakeLiteralsFromOptionalParts() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.enrich.ua.RegexLiteralsTest.shouldNotTakeLiteralsFromOptionalParts
+        Assertions.assertEquals(Collections.singletonList("ab"), RegexLiterals.requiredLiterals("abx?yz?"));
+        Assertions.assertEquals(Collections.singletonList("bar"), RegexLiterals.requiredLiterals("(Foobar)?bar"));
+        Assertions.assertEquals(Collections.singletonList("bar"), RegexLiterals.requiredLiterals("(?=Foobar)bar"));
+        Assertions.assertEquals(Collections.singletonList("bar"), RegexLiterals.requiredLiterals("(?<!Foobar)bar"));
+        Assertions.assertEquals(Collections.singletonList("bar"), RegexLiterals.requiredLiterals("(Foo){0,2}bar"));
+        Assertions.assertEquals(Collections.singletonList("xa"), RegexLiterals.requiredLiterals("xa+y"));
+        Assertions.assertEquals(Collections.singletonList("foo"), RegexLiterals.requiredLiterals("(?:Foo)+y"));
+    }
+
+    @Test
+    void shouldExtractOneLiteralPerBranch() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.enrich.ua.RegexLiteralsTest.shouldExtractOneLiteralPerBranch
+        Assertions.assertEquals(Arrays.asList("firefox", "fxios"), RegexLiterals.requiredLiterals("(?:Firefox|FxiOS)/(\\d+)"));
+        Assertions.assertEquals(Arrays.asList("iphone", "ipad"), RegexLiterals.requiredLiterals("iPhone|iPad"));
+        Assertions.assertEquals(Collections.singletonList("x"), RegexLiterals.requiredLiterals("(?:iPhone|)x"));
+        Assertions.assertNull(RegexLiterals.requiredLiterals("Mobile|.*"));
+    }
+
+    @Test
+    void shouldGiveNoLiteralsForUnsupportedRegex() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.enrich.ua.RegexLiteralsTest.shouldGiveNoLiteralsForUnsupportedRegex
+        List<String> regexes = Arrays.asList(
+                "\\QChrome\\E",
+                "(?x)Chrome",
+                "(?iu)Chrome",
+                "\\p{L}+",
+                "(a)\\1",
+                "\\x41bc",
+                "[^\\d]",
+                "Chrome)",
+                "(Chrome",
+                "[]Chrome]",
+                ".*"
+        );
+        for (String regex : regexes) {
+            Assertions.assertNull(RegexLiterals.requiredLiterals(regex), regex);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.common.enrich.ua;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import software.aws.solution.clickstream.common.Util;
+import ua_parser.Client;
+import ua_parser.Parser;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class UserAgentEngineTest {
+    private static final String USER_AGENTS_FILE = "ua/user_agents.txt";
+    private static UserAgentEngine engine;
+    private static List<String> userAgents;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        engine = UserAgentEngine.fromUapResource();
+        userAgents = Arrays.stream(Util.readResourceFile(USER_AGENTS_FILE).split("\n"))
+                .filter(line -> !line.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void shouldParseSameAsUapParser() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.enrich.ua.UserAgentEngineTest.shouldParseSameAsUapParser
+        Parser parser = new Parser();
+        for (String userAgent : userAgents) {
+            Client expected = parser.parse(userAgent);
+            Client actual = engine.parse(userAgent);
+
+            Assertions.assertEquals(expected.userAgent, actual.userAgent, userAgent);
+            Assertions.assertEquals(expected.os, actual.os, userAgent);
+            Assertions.assertEquals(expected.device, actual.device, userAgent);
+        }
+    }
+
+    @Test
+    void shouldTryEveryRegexThatFindsMatch() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.enrich.ua.UserAgentEngineTest.shouldTryEveryRegexThatFindsMatch
+        for (String userAgent : userAgents) {
+            BitSet candidates = engine.candidates(userAgent);
+            for (int id = 0; id < engine.patternCount(); id++) {
+                if (engine.finds(id, userAgent)) {
+                    Assertions.assertTrue(candidates.get(id), "regex " + id + " skipped for " + userAgent);
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldSkipMostRegexes() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.enrich.ua.UserAgentEngineTest.shouldSkipMostRegexes
+        String userAgent = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
+
+        BitSet candidates = engine.candidates(userAgent);
+
+        Assertions.assertTrue(candidates.cardinality() < engine.patternCount() / 2,
+                candidates.cardinality() + " of " + engine.patternCount() + " regexes tried");
+    }
+}
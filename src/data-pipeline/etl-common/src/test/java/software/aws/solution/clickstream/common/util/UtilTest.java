@@ -25,6 +25,8 @@ import software.aws.solution.clickstream.common.model.ClickstreamUserPropValue;
 import java.io.File;
 import java.io.IOException;
 
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.HashMap;
@@ -196,4 +198,53 @@ public class UtilTest extends BaseTest {
         params = Util.getUriParams("https://www.example.com/?abc=12|aa#!~*$(-)][");
         assertEquals("12|aa#!~*$(-)][", params.get("abc").get(0));
     }
+
+    @Test
+    void test_getUriParams_same_as_uri() throws URISyntaxException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.util.UtilTest.test_getUriParams_same_as_uri
+        String[] urls = new String[] {
+                "https://www.example.com/?a=1&&b=2&&",
+                "https://www.example.com/?=x&y=&z&y=2",
+                "https://www.example.com/?a=%E4%B8%AD%E6%96%87&b=a+b&c=%2B%26",
+                "https://user:pw@www.example.com:8080/p?q=1#frag",
+                "https://[2001:db8::1]:443/p?q=1",
+                "mailto:abc@example.com?subject=1",
+                "x.com/a?b=c",
+        };
+        for (String url : urls) {
+            assertEquals(Util.getUriParams(new URI(url)), Util.getUriParams(url), url);
+        }
+    }
+
+    @Test
+    void test_parseUrl_host_and_escapes() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.common.util.UtilTest.test_parseUrl_host_and_escapes
+        UrlParseResult result = Util.parseUrl("https://a-b.example.com:8080/%E4%B8%AD?x=%E4%B8%AD+1").get();
+        assertEquals("a-b.example.com", result.getHostName());
+        assertEquals("/中", result.getPath());
+        assertEquals("x=中 1", result.getQueryString());
+        assertEquals("中 1", result.getQueryParameters().get("x").get(0));
+
+        result = Util.parseUrl("https://www.exa_mple.com/p?a=1").get();
+        assertNull(result.getHostName());
+        assertEquals("/p", result.getPath());
+
+        result = Util.parseUrl("https://192.168.1.300/p").get();
+        assertNull(result.getHostName());
+
+        // illegal chars, the query runs to the end and '+' is kept
+        result = Util.parseUrl("a-b.example.com:80/p?x=1|2+3&y=%zz&z=a-b:c#f").get();
+        assertEquals("a-b.example.com", result.getHostName());
+        assertEquals("/p", result.getPath());
+        assertEquals("1|2+3", result.getQueryParameters().get("x").get(0));
+        assertEquals("%zz", result.getQueryParameters().get("y").get(0));
+        assertEquals("a-b:c#f", result.getQueryParameters().get("z").get(0));
+
+        result = Util.parseUrl("://x.com").get();
+        assertNull(result.getHostName());
+        assertNull(result.getQueryParameters());
+
+        assertEquals("a b", Util.deCodeUri("a+b"));
+        assertEquals("100%", Util.deCodeUri("100%"));
+    }
 }
@@ -0,0 +1,443 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SaveMode;
+import org.apache.spark.sql.SparkSession;
+import software.aws.solution.clickstream.ETLRunner;
+import software.aws.solution.clickstream.Transformer;
+import software.aws.solution.clickstream.TransformerV3;
+import software.aws.solution.clickstream.benchmark.generator.GenerationSummary;
+import software.aws.solution.clickstream.benchmark.generator.IngestDataGenerator;
+import software.aws.solution.clickstream.benchmark.generator.IngestGeneratorConfig;
+import software.aws.solution.clickstream.benchmark.generator.PayloadFormat;
+import software.aws.solution.clickstream.gtm.GTMServerDataTransformerV2;
+import software.aws.solution.clickstream.sensors.SensorsDataTransformerV2;
+import software.aws.solution.clickstream.transformer.BaseTransformerV3;
+import software.aws.solution.clickstream.transformer.Cleaner;
+import software.aws.solution.clickstream.util.ContextUtil;
+import software.aws.solution.clickstream.util.ETLMetric;
+import software.aws.solution.clickstream.util.ETLRunnerConfig;
+import software.aws.solution.clickstream.util.TableName;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static software.aws.solution.clickstream.util.ContextUtil.DATABASE_PROP;
+import static software.aws.solution.clickstream.util.ContextUtil.ITEM_KEEP_DAYS_PROP;
+import static software.aws.solution.clickstream.util.ContextUtil.JOB_NAME_PROP;
+import static software.aws.solution.clickstream.util.ContextUtil.USER_KEEP_DAYS_PROP;
+import static software.aws.solution.clickstream.util.ContextUtil.WAREHOUSE_DIR_PROP;
+
+/**
+ * Runs {@link ETLRunner#run()} end to end in local mode for the V3, legacy, GTM and Sensors transformer chains,
+ * on input written by {@link IngestDataGenerator} from the {@code generator.*} settings, and reports the events
+ * per second of the median iteration, the wall time of each table write, and the shuffle, spill and peak memory
+ * of the run. The read, clean, convert and enrich phases are measured
+ * separately, each by a noop write of the pipeline up to that phase, since the stages of a full run overlap.
+ * <p>
+ * The events per second of each chain are compared with a baseline file, the run fails when a chain is
+ * slower than the baseline by more than {@code benchmark.threshold}. Run with {@code ./gradlew pipelineBenchmark},
+ * add {@code -PbenchmarkUpdateBaseline} to store the results as the new baseline.
+ */
+@Slf4j
+public final class PipelineBenchmark {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String PROJECT_ID = "benchmark_project";
+    private static final String EVENTS_PER_SEC = "events_per_sec";
+    private static final String CHAINS = "chains";
+    private static final long LISTENER_WAIT_MILLIS = 60_000L;
+    private static final String SINK_PREFIX = ETLRunner.SINK + " ";
+    private static final String MILLIS_SUFFIX = " millis";
+    private static final String GEO_DB_FILE = "GeoLite2-City.mmdb";
+
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    private final SparkSession spark;
+    private final Path workDir;
+    private final Map<PayloadFormat, GenerationSummary> inputs;
+    private final long startTimestamp;
+    private final long endTimestamp;
+    private final long freshnessHours;
+    private final boolean geoEnabled;
+
+    enum Chain {
+        V3(PayloadFormat.CLICKSTREAM, Arrays.asList(TransformerV3.class.getName(),
+                "software.aws.solution.clickstream.UAEnrichmentV2",
+                "software.aws.solution.clickstream.IPEnrichmentV2"),
+                cleanV3(TransformerV3::new), convertV3(TransformerV3::new)),
+        LEGACY(PayloadFormat.CLICKSTREAM, Arrays.asList(Transformer.class.getName(),
+                "software.aws.solution.clickstream.UAEnrichment",
+                "software.aws.solution.clickstream.IPEnrichment"),
+                (runner, dataset) -> new Cleaner().clean(dataset, Transformer.DATA_SCHEMA_FILE_PATH),
+                (runner, dataset) -> new Transformer().transform(dataset)),
+        GTM(PayloadFormat.GTM, Arrays.asList(GTMServerDataTransformerV2.class.getName(),
+                "software.aws.solution.clickstream.UAEnrichmentV2",
+                "software.aws.solution.clickstream.IPEnrichmentV2"),
+                cleanV3(GTMServerDataTransformerV2::new), convertV3(GTMServerDataTransformerV2::new)),
+        SENSORS(PayloadFormat.SENSORS, Arrays.asList(SensorsDataTransformerV2.class.getName(),
+                "software.aws.solution.clickstream.UAEnrichmentV2",
+                "software.aws.solution.clickstream.IPEnrichmentV2"),
+                cleanV3(SensorsDataTransformerV2::new), convertV3(SensorsDataTransformerV2::new));
+
+        private final PayloadFormat format;
+        private final List<String> transformers;
+        private final BiFunction<ETLRunner, Dataset<Row>, Dataset<Row>> clean;
+        private final BiFunction<ETLRunner, Dataset<Row>, Dataset<Row>> convert;
+
+        Chain(final PayloadFormat format, final List<String> transformers,
+              final BiFunction<ETLRunner, Dataset<Row>, Dataset<Row>> clean,
+              final BiFunction<ETLRunner, Dataset<Row>, Dataset<Row>> convert) {
+            this.format = format;
+            this.transformers = transformers;
+            this.clean = clean;
+            this.convert = convert;
+        }
+
+        private static BiFunction<ETLRunner, Dataset<Row>, Dataset<Row>> cleanV3(final Supplier<BaseTransformerV3> transformer) {
+            return (runner, dataset) -> configured(transformer, runner).getCleanedDataset(dataset);
+        }
+
+        private static BiFunction<ETLRunner, Dataset<Row>, Dataset<Row>> convertV3(final Supplier<BaseTransformerV3> transformer) {
+            return (runner, dataset) -> configured(transformer, runner).transform(dataset).get(TableName.EVENT_V2);
+        }
+
+        private static BaseTransformerV3 configured(final Supplier<BaseTransformerV3> supplier, final ETLRunner runner) {
+            BaseTransformerV3 transformer = supplier.get();
+            transformer.config(runner.getTransformConfig());
+            return transformer;
+        }
+    }
+
+    PipelineBenchmark(final SparkSession spark, final Path workDir, final Map<PayloadFormat, GenerationSummary> inputs,
+                      final long startTimestamp, final long endTimestamp, final long freshnessHours, final boolean geoEnabled) {
+        this.spark = spark;
+        this.workDir = workDir;
+        this.inputs = inputs;
+        this.startTimestamp = startTimestamp;
+        this.endTimestamp = endTimestamp;
+        this.freshnessHours = freshnessHours;
+        this.geoEnabled = geoEnabled;
+    }
+
+    public static void main(final String[] args) throws IOException {
+        int warmups = Integer.getInteger("benchmark.warmups", 1);
+        int iterations = Integer.getInteger("benchmark.iterations", 3);
+        double threshold = Double.parseDouble(System.getProperty("benchmark.threshold", "0.1"));
+        List<Chain> chains = Stream.of(System.getProperty("benchmark.chains", "v3,legacy").split(","))
+                .map(String::trim).filter(s -> !s.isEmpty())
+                .map(s -> Chain.valueOf(s.toUpperCase())).collect(Collectors.toList());
+        Path resultFile = Paths.get(System.getProperty("benchmark.result.file", "build/reports/benchmark/results.json"));
+        Path baselineFile = Paths.get(System.getProperty("benchmark.baseline.file", "src/benchmark/baseline.json"));
+        String updateBaseline = System.getProperty("benchmark.update.baseline");
+
+        // the ingest time of the input is now, unless generator.now is set to reproduce an earlier input
+        long benchmarkStart = System.currentTimeMillis();
+        IngestGeneratorConfig generatorConfig = IngestGeneratorConfig.fromProperties(System.getProperties());
+        if (System.getProperty(IngestGeneratorConfig.PREFIX + "now") == null) {
+            generatorConfig = generatorConfig.withNow(benchmarkStart);
+        }
+        Path workDir = Files.createTempDirectory("clickstream-benchmark");
+        Map<PayloadFormat, GenerationSummary> inputs = new EnumMap<>(PayloadFormat.class);
+        for (Chain chain : chains) {
+            if (!inputs.containsKey(chain.format)) {
+                GenerationSummary summary = new IngestDataGenerator(generatorConfig.withFormat(chain.format))
+                        .generate(inputDir(workDir, chain.format));
+                report("generated {} input: {}", chain.format, summary);
+                inputs.put(chain.format, summary);
+            }
+        }
+        // input files are selected by modification time and read from the day directories of the time range
+        long startTimestamp = Math.min(benchmarkStart, generatorConfig.getNow()) - 60_000L;
+        long endTimestamp = System.currentTimeMillis() + 60_000L;
+        for (PayloadFormat format : inputs.keySet()) {
+            for (long day = startTimestamp; day < endTimestamp + HOUR_MILLIS * 24; day += HOUR_MILLIS * 24) {
+                Files.createDirectories(IngestDataGenerator.dayDir(inputDir(workDir, format), Math.min(day, endTimestamp)));
+            }
+        }
+        long freshnessHours = Math.max(72L, (benchmarkStart - generatorConfig.getNow() + generatorConfig.getSpreadMillis()) / HOUR_MILLIS + 2);
+
+        System.setProperty(JOB_NAME_PROP, "pipeline-benchmark");
+        System.setProperty(WAREHOUSE_DIR_PROP, workDir.resolve("warehouse").toString());
+        System.setProperty(DATABASE_PROP, "default");
+        System.setProperty(USER_KEEP_DAYS_PROP, String.valueOf(365 * 100));
+        System.setProperty(ITEM_KEEP_DAYS_PROP, String.valueOf(365 * 100));
+
+        SparkSession spark = SparkSession.builder()
+                .appName("Pipeline Benchmark")
+                .master(System.getProperty("benchmark.master", "local[*]"))
+                .config("spark.driver.bindAddress", "127.0.0.1")
+                .config("spark.sql.warehouse.dir", ContextUtil.getWarehouseDir())
+                .config("spark.sql.mapKeyDedupPolicy", "LAST_WIN")
+                .config("spark.sql.session.timeZone", "UTC")
+                .config("spark.ui.enabled", "false")
+                .getOrCreate();
+
+        ObjectNode result = MAPPER.createObjectNode();
+        try {
+            PipelineBenchmark benchmark = new PipelineBenchmark(spark, workDir, inputs, startTimestamp, endTimestamp,
+                    freshnessHours, addGeoDb(spark));
+            result.put("generator_seed", generatorConfig.getSeed());
+            result.put("generator_now", generatorConfig.getNow());
+            result.put("cores", Runtime.getRuntime().availableProcessors());
+            result.put("max_heap_bytes", Runtime.getRuntime().maxMemory());
+            ObjectNode chainResults = result.putObject(CHAINS);
+            for (Chain chain : chains) {
+                chainResults.set(chain.name().toLowerCase(), benchmark.runChain(chain, warmups, iterations));
+            }
+        } finally {
+            spark.stop();
+            deleteRecursively(workDir);
+        }
+
+        Files.createDirectories(resultFile.toAbsolutePath().getParent());
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(resultFile.toFile(), result);
+        report("{}", result.toPrettyString());
+        report("results written to {}", resultFile);
+
+        if (updateBaseline != null && !"false".equalsIgnoreCase(updateBaseline)) {
+            Files.createDirectories(baselineFile.toAbsolutePath().getParent());
+            MAPPER.writerWithDefaultPrettyPrinter().writeValue(baselineFile.toFile(), result);
+            report("baseline updated: {}", baselineFile);
+            return;
+        }
+        if (!Files.exists(baselineFile)) {
+            report("no baseline at {}, comparison skipped", baselineFile);
+            return;
+        }
+        List<String> regressions = compare(MAPPER.readTree(baselineFile.toFile()), result, threshold);
+        if (!regressions.isEmpty()) {
+            throw new IllegalStateException("throughput regression against " + baselineFile + ": " + String.join("; ", regressions));
+        }
+        report("no regression against {} with threshold {}", baselineFile, threshold);
+    }
+
+    /**
+     * Returns a message for each chain whose events per second is below the baseline by more than the threshold,
+     * chains missing from the baseline are not compared.
+     */
+    static List<String> compare(final JsonNode baseline, final JsonNode result, final double threshold) {
+        List<String> regressions = new ArrayList<>();
+        result.path(CHAINS).fields().forEachRemaining(entry -> {
+            JsonNode base = baseline.path(CHAINS).path(entry.getKey()).path(EVENTS_PER_SEC);
+            if (!base.isNumber()) {
+                return;
+            }
+            double current = entry.getValue().path(EVENTS_PER_SEC).asDouble();
+            double change = current / base.asDouble() - 1;
+            report("{}", String.format("%s: %.1f events/s, baseline %.1f events/s (%+.1f%%)", entry.getKey(), current, base.asDouble(), change * 100));
+            if (change < -threshold) {
+                regressions.add(String.format("%s %.1f events/s is %.1f%% below %.1f events/s",
+                        entry.getKey(), current, -change * 100, base.asDouble()));
+            }
+        });
+        return regressions;
+    }
+
+    ObjectNode runChain(final Chain chain, final int warmups, final int iterations) throws IOException {
+        List<String> transformers = chain.transformers.stream()
+                .filter(name -> geoEnabled || !name.contains("IPEnrichment"))
+                .collect(Collectors.toList());
+        String name = chain.name().toLowerCase();
+        for (int i = 0; i < warmups; i++) {
+            runOnce(chain, transformers, name + "-warmup-" + i);
+        }
+        List<ObjectNode> runs = new ArrayList<>();
+        for (int i = 0; i < iterations; i++) {
+            runs.add(runOnce(chain, transformers, name + "-" + i));
+        }
+        List<ObjectNode> sorted = new ArrayList<>(runs);
+        sorted.sort(Comparator.comparingDouble(run -> run.get(EVENTS_PER_SEC).asDouble()));
+
+        ObjectNode chainResult = sorted.get(sorted.size() / 2).deepCopy();
+        ArrayNode all = chainResult.putArray("iterations_" + EVENTS_PER_SEC);
+        runs.forEach(run -> all.add(run.get(EVENTS_PER_SEC).asDouble()));
+        chainResult.set("phase_millis", measurePhases(chain, transformers));
+        chainResult.set("transformers", MAPPER.valueToTree(transformers));
+        chainResult.set("input", MAPPER.valueToTree(inputs.get(chain.format).toMap()));
+        return chainResult;
+    }
+
+    private ObjectNode runOnce(final Chain chain, final List<String> transformers, final String name) throws IOException {
+        ETLRunnerConfig config = getRunnerConfig(chain, transformers, name);
+        ETLRunner runner = new ETLRunner(spark, config);
+        spark.catalog().clearCache();
+
+        ObjectNode run = MAPPER.createObjectNode();
+        try (TaskMetricsListener listener = new TaskMetricsListener()) {
+            spark.sparkContext().addSparkListener(listener);
+            long start = System.nanoTime();
+            try {
+                runner.run();
+            } finally {
+                waitForListeners();
+                spark.sparkContext().removeSparkListener(listener);
+            }
+            long wallMillis = (System.nanoTime() - start) / 1_000_000L;
+            run.put("wall_millis", wallMillis);
+            run.put(EVENTS_PER_SEC, inputs.get(chain.format).getEvents() * 1000.0 / Math.max(wallMillis, 1));
+
+            ObjectNode sinks = run.putObject("sink_millis");
+            for (Map.Entry<String, Long> entry : ETLMetric.getCounts().entrySet()) {
+                String key = entry.getKey();
+                if (key.startsWith(SINK_PREFIX) && key.endsWith(MILLIS_SUFFIX)) {
+                    sinks.put(key.substring(SINK_PREFIX.length(), key.length() - MILLIS_SUFFIX.length()), entry.getValue());
+                }
+            }
+            listener.toMap().forEach(run::put);
+        } finally {
+            deleteRecursively(Paths.get(config.getOutputPath()));
+        }
+        report("{}: {}", name, run);
+        return run;
+    }
+
+    /**
+     * Task metrics of a run are complete once the listener bus has delivered its events.
+     */
+    private void waitForListeners() {
+        try {
+            spark.sparkContext().listenerBus().waitUntilEmpty(LISTENER_WAIT_MILLIS);
+        } catch (TimeoutException e) {
+            log.warn("listener bus not empty after {} ms, task metrics of this run may be incomplete", LISTENER_WAIT_MILLIS);
+        }
+    }
+
+    /**
+     * All results and progress of the benchmark are reported here.
+     */
+    private static void report(final String format, final Object... args) {
+        log.info(format, args);
+    }
+
+    /**
+     * Each phase is timed by a noop write of the pipeline up to the end of that phase, the time of a phase
+     * is the difference with the previous one.
+     */
+    private ObjectNode measurePhases(final Chain chain, final List<String> transformers) {
+        ETLRunnerConfig config = getRunnerConfig(chain, transformers, chain.name().toLowerCase() + "-phases");
+        ETLRunner runner = new ETLRunner(spark, config);
+        ContextUtil.setContextProperties(config);
+        List<String> enrichments = transformers.subList(1, transformers.size());
+
+        Map<String, BiFunction<ETLRunner, Dataset<Row>, Dataset<Row>>> phases = new LinkedHashMap<>();
+        phases.put("read", (r, dataset) -> dataset);
+        phases.put("clean", chain.clean);
+        phases.put("convert", chain.convert);
+        phases.put("enrich", (r, dataset) -> enrich(chain.convert.apply(r, dataset), enrichments));
+
+        ObjectNode phaseMillis = MAPPER.createObjectNode();
+        long previous = 0;
+        for (Map.Entry<String, BiFunction<ETLRunner, Dataset<Row>, Dataset<Row>>> phase : phases.entrySet()) {
+            spark.catalog().clearCache();
+            long start = System.nanoTime();
+            phase.getValue().apply(runner, runner.readInputDataset(true))
+                    .write().format("noop").mode(SaveMode.Overwrite).save();
+            long cumulative = (System.nanoTime() - start) / 1_000_000L;
+            phaseMillis.put(phase.getKey(), Math.max(cumulative - previous, 0));
+            previous = cumulative;
+        }
+        return phaseMillis;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Dataset<Row> enrich(final Dataset<Row> dataset, final List<String> enrichments) {
+        Dataset<Row> result = dataset;
+        for (String className : enrichments) {
+            try {
+                Class<?> aClass = Class.forName(className);
+                Object instance = aClass.getDeclaredConstructor().newInstance();
+                result = (Dataset<Row>) aClass.getMethod(ETLRunner.TRANSFORM_METHOD_NAME, Dataset.class).invoke(instance, result);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("cannot run " + className, e);
+            }
+        }
+        return result;
+    }
+
+    private ETLRunnerConfig getRunnerConfig(final Chain chain, final List<String> transformers, final String name) {
+        URL ruleConfigDir = PipelineBenchmark.class.getResource("/rule_config/");
+        if (ruleConfigDir == null) {
+            throw new IllegalStateException("rule_config is not on the classpath");
+        }
+        return new ETLRunnerConfig(
+                new ETLRunnerConfig.TransformationConfig(
+                        transformers, PROJECT_ID, System.getProperty(IngestGeneratorConfig.PREFIX + "app.id", "uba-app"), freshnessHours,
+                        365 * 100, 365 * 100, new File(ruleConfigDir.getPath()).getPath(), "true"),
+                new ETLRunnerConfig.InputOutputConfig(
+                        "false", "default", "benchmarkSourceTable",
+                        inputDir(workDir, chain.format) + "/",
+                        workDir.resolve("job-data") + "/",
+                        workDir.resolve("output").resolve(name) + "/",
+                        System.getProperty("benchmark.format", "parquet")),
+                new ETLRunnerConfig.TimestampConfig(startTimestamp, endTimestamp),
+                new ETLRunnerConfig.PartitionConfig(1, 1));
+    }
+
+    private static Path inputDir(final Path workDir, final PayloadFormat format) {
+        return workDir.resolve("input-" + format.name().toLowerCase());
+    }
+
+    /**
+     * IP enrichment reads the GeoLite2 database through SparkFiles, the chains skip it when the file is not found.
+     */
+    private static boolean addGeoDb(final SparkSession spark) {
+        String geoDb = System.getProperty("benchmark.geo.db", "/tmp/" + GEO_DB_FILE);
+        URL resource = PipelineBenchmark.class.getResource("/" + GEO_DB_FILE);
+        if (!new File(geoDb).exists() && resource != null) {
+            geoDb = resource.getPath();
+        }
+        if (!new File(geoDb).exists()) {
+            report("{} not found, IP enrichment is skipped", GEO_DB_FILE);
+            return false;
+        }
+        spark.sparkContext().addFile(geoDb);
+        return true;
+    }
+
+    private static void deleteRecursively(final Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.benchmark;
+
+import org.apache.spark.executor.TaskMetrics;
+import org.apache.spark.scheduler.SparkListener;
+import org.apache.spark.scheduler.SparkListenerTaskEnd;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Sums the shuffle and spill metrics of the finished tasks. In local mode the executor runs in the driver
+ * JVM, so the peak executor memory is the peak of the sampled heap usage, next to the largest
+ * peakExecutionMemory reported by a single task.
+ */
+public final class TaskMetricsListener extends SparkListener implements AutoCloseable {
+    private static final long HEAP_SAMPLE_MILLIS = 50;
+
+    private final AtomicLong tasks = new AtomicLong();
+    private final AtomicLong shuffleWriteBytes = new AtomicLong();
+    private final AtomicLong shuffleReadBytes = new AtomicLong();
+    private final AtomicLong memorySpilledBytes = new AtomicLong();
+    private final AtomicLong diskSpilledBytes = new AtomicLong();
+    private final LongAccumulator peakExecutionMemory = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator peakHeapBytes = new LongAccumulator(Math::max, 0);
+    private final ScheduledExecutorService heapSampler;
+
+    public TaskMetricsListener() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        this.heapSampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "benchmark-heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.heapSampler.scheduleAtFixedRate(() -> peakHeapBytes.accumulate(memory.getHeapMemoryUsage().getUsed()),
+                0, HEAP_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onTaskEnd(final SparkListenerTaskEnd taskEnd) {
+        TaskMetrics metrics = taskEnd.taskMetrics();
+        if (metrics == null) {
+            return;
+        }
+        tasks.incrementAndGet();
+        shuffleWriteBytes.addAndGet(metrics.shuffleWriteMetrics().bytesWritten());
+        shuffleReadBytes.addAndGet(metrics.shuffleReadMetrics().totalBytesRead());
+        memorySpilledBytes.addAndGet(metrics.memoryBytesSpilled());
+        diskSpilledBytes.addAndGet(metrics.diskBytesSpilled());
+        peakExecutionMemory.accumulate(metrics.peakExecutionMemory());
+    }
+
+    public Map<String, Long> toMap() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        map.put("tasks", tasks.get());
+        map.put("shuffle_write_bytes", shuffleWriteBytes.get());
+        map.put("shuffle_read_bytes", shuffleReadBytes.get());
+        map.put("memory_spilled_bytes", memorySpilledBytes.get());
+        map.put("disk_spilled_bytes", diskSpilledBytes.get());
+        map.put("peak_task_execution_memory_bytes", peakExecutionMemory.get());
+        map.put("peak_heap_bytes", peakHeapBytes.get());
+        return map;
+    }
+
+    @Override
+    public void close() {
+        heapSampler.shutdownNow();
+    }
+}
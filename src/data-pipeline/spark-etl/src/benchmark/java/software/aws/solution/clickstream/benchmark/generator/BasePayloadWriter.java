@@ -0,0 +1,86 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.benchmark.generator;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Json and gzip buffers shared by the payload writers. Events are streamed with a {@link JsonGenerator} so the
+ * field order, and with it the output bytes, depend only on the generated values.
+ */
+abstract class BasePayloadWriter implements PayloadWriter {
+    static final JsonFactory JSON_FACTORY = new JsonFactory();
+    static final String SITE_URL = "https://shop.example.com";
+    static final String PURCHASE = "purchase";
+    static final String SEARCH = "search";
+    static final String CURRENCY = "USD";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    protected final GeneratorPools pools;
+    private final ByteArrayOutputStream jsonBuffer = new ByteArrayOutputStream(BUFFER_SIZE);
+    private final ByteArrayOutputStream gzipBuffer = new ByteArrayOutputStream(BUFFER_SIZE);
+
+    BasePayloadWriter(final GeneratorPools pools) {
+        this.pools = pools;
+    }
+
+    @FunctionalInterface
+    interface JsonBody {
+        void write(JsonGenerator gen) throws IOException;
+    }
+
+    protected byte[] json(final JsonBody body) throws IOException {
+        jsonBuffer.reset();
+        try (JsonGenerator gen = JSON_FACTORY.createGenerator(jsonBuffer)) {
+            body.write(gen);
+        }
+        return jsonBuffer.toByteArray();
+    }
+
+    /**
+     * The gzip header written by {@link GZIPOutputStream} has no modification time, the output is reproducible.
+     */
+    protected String gzipBase64(final byte[] bytes) throws IOException {
+        gzipBuffer.reset();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipBuffer)) {
+            gzip.write(bytes);
+        }
+        return Base64.getEncoder().encodeToString(gzipBuffer.toByteArray());
+    }
+
+    protected static void writeOptional(final JsonGenerator gen, final String field, final String value) throws IOException {
+        if (value != null) {
+            gen.writeStringField(field, value);
+        }
+    }
+
+    protected static String pageUrl(final Batch.GeneratedEvent event) {
+        return SITE_URL + GeneratorPools.pagePath(event.page);
+    }
+
+    protected static String pageTitle(final Batch.GeneratedEvent event) {
+        return "Demo Store - " + GeneratorPools.SECTIONS[event.page % GeneratorPools.SECTIONS.length];
+    }
+
+    protected static String searchTerm(final Batch.GeneratedEvent event) {
+        return "term" + event.page;
+    }
+}
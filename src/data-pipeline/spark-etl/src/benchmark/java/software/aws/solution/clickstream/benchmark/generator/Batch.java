@@ -0,0 +1,77 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.benchmark.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The events of one ingest line, all sent by one user in one request.
+ */
+final class Batch {
+    final UserProfile user;
+    final String userAgent;
+    final boolean bot;
+    final long ingestTime;
+    final long bundleSequenceId;
+    final String rid;
+    final String appId;
+    final List<GeneratedEvent> events = new ArrayList<>();
+
+    Batch(final UserProfile user, final String userAgent, final boolean bot, final long ingestTime,
+          final long bundleSequenceId, final String rid, final String appId) {
+        this.user = user;
+        this.userAgent = userAgent;
+        this.bot = bot;
+        this.ingestTime = ingestTime;
+        this.bundleSequenceId = bundleSequenceId;
+        this.rid = rid;
+        this.appId = appId;
+    }
+
+    static final class GeneratedEvent {
+        final String kind;
+        final String eventId;
+        final long timestamp;
+        final long sequenceId;
+        final int page;
+        final String referrer;
+        final long engagementMillis;
+        final List<GeneratorPools.Item> items;
+        final List<Integer> quantities;
+
+        GeneratedEvent(final String kind, final String eventId, final long timestamp, final long sequenceId, final int page,
+                       final String referrer, final long engagementMillis,
+                       final List<GeneratorPools.Item> items, final List<Integer> quantities) {
+            this.kind = kind;
+            this.eventId = eventId;
+            this.timestamp = timestamp;
+            this.sequenceId = sequenceId;
+            this.page = page;
+            this.referrer = referrer;
+            this.engagementMillis = engagementMillis;
+            this.items = items;
+            this.quantities = quantities;
+        }
+
+        double value() {
+            double value = 0;
+            for (int i = 0; i < items.size(); i++) {
+                value += items.get(i).price * quantities.get(i);
+            }
+            return Math.round(value * 100) / 100.0;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.benchmark.generator;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Writes events the way the Clickstream SDKs send them, see original_data.json in the test resources.
+ */
+final class ClickstreamPayloadWriter extends BasePayloadWriter {
+    private static final String[] CARRIERS = {"T-Mobile", "Verizon", "Vodafone", "China Mobile", "UNKNOWN"};
+    private static final String[] NETWORK_TYPES = {"WIFI", "Mobile", "WIFI", "5G"};
+    private static final String SET_TIMESTAMP = "set_timestamp";
+    private static final String VALUE = "value";
+
+    ClickstreamPayloadWriter(final GeneratorPools pools) {
+        super(pools);
+    }
+
+    @Override
+    public String encode(final Batch batch) throws IOException {
+        return gzipBase64(json(gen -> {
+            gen.writeStartArray();
+            for (Batch.GeneratedEvent event : batch.events) {
+                writeEvent(gen, batch, event);
+            }
+            gen.writeEndArray();
+        }));
+    }
+
+    @Override
+    public String sourceType() {
+        return "http";
+    }
+
+    @Override
+    public String compression() {
+        return "gzip";
+    }
+
+    @Override
+    public String uri(final Batch batch) {
+        return "/collect?appId=" + batch.appId + "&compression=gzip&event_bundle_sequence_id=" + batch.bundleSequenceId;
+    }
+
+    @Override
+    public String platform(final Batch batch) {
+        return batch.user.platform.getClickstreamName();
+    }
+
+    static String eventName(final String kind, final UserProfile.Platform platform) {
+        switch (kind) {
+            case "view":
+                return platform == UserProfile.Platform.WEB ? "_page_view" : "_screen_view";
+            case "engagement":
+                return "_user_engagement";
+            case "session_start":
+                return "_session_start";
+            case "first_open":
+                return "_first_open";
+            case "profile_set":
+                return "_profile_set";
+            default:
+                return kind;
+        }
+    }
+
+    private void writeEvent(final JsonGenerator gen, final Batch batch, final Batch.GeneratedEvent event) throws IOException {
+        UserProfile user = batch.user;
+        boolean web = user.platform == UserProfile.Platform.WEB;
+        gen.writeStartObject();
+        gen.writeStringField("hashCode", Integer.toHexString(event.eventId.hashCode()));
+        gen.writeStringField("app_id", batch.appId);
+        gen.writeStringField("unique_id", user.pseudoId);
+        gen.writeStringField("device_id", user.deviceId);
+        gen.writeStringField("device_unique_id", "u" + user.deviceId);
+        gen.writeStringField("event_type", eventName(event.kind, user.platform));
+        gen.writeStringField("event_id", event.eventId);
+        gen.writeNumberField("event_sequence_id", event.sequenceId);
+        gen.writeNumberField("timestamp", event.timestamp);
+        gen.writeStringField("platform", user.platform.getClickstreamName());
+        gen.writeStringField("os_version", user.osVersion);
+        gen.writeStringField("make", user.make);
+        gen.writeStringField("brand", user.make);
+        writeOptional(gen, "model", user.model);
+        if (!web) {
+            gen.writeStringField("carrier", CARRIERS[user.index % CARRIERS.length]);
+            gen.writeStringField("network_type", NETWORK_TYPES[user.index % NETWORK_TYPES.length]);
+        }
+        gen.writeNumberField("screen_height", user.screenHeight);
+        gen.writeNumberField("screen_width", user.screenWidth);
+        gen.writeNumberField("zone_offset", user.zoneOffset);
+        gen.writeStringField("locale", user.locale);
+        gen.writeStringField("system_language", user.language);
+        gen.writeStringField("country_code", user.country);
+        gen.writeStringField("sdk_version", "0.12.0");
+        gen.writeStringField("sdk_name", web ? "aws-solution-clickstream-sdk-web" : "aws-solution-clickstream-sdk");
+        gen.writeStringField("app_version", user.appVersion);
+        gen.writeStringField("app_package_name", web ? "shop.example.com" : "com.example.demoapp");
+        gen.writeStringField("app_title", "DemoApp");
+
+        gen.writeObjectFieldStart("user");
+        if (user.userId != null) {
+            gen.writeObjectFieldStart("_user_id");
+            gen.writeStringField(VALUE, user.userId);
+            gen.writeNumberField(SET_TIMESTAMP, user.firstTouchTimestamp);
+            gen.writeEndObject();
+        }
+        gen.writeObjectFieldStart("_user_first_touch_timestamp");
+        gen.writeNumberField(VALUE, user.firstTouchTimestamp);
+        gen.writeNumberField(SET_TIMESTAMP, user.firstTouchTimestamp);
+        gen.writeEndObject();
+        if ("profile_set".equals(event.kind)) {
+            gen.writeObjectFieldStart("_user_name");
+            gen.writeStringField(VALUE, "user " + user.index);
+            gen.writeNumberField(SET_TIMESTAMP, event.timestamp);
+            gen.writeEndObject();
+            gen.writeObjectFieldStart("level");
+            gen.writeNumberField(VALUE, 1 + user.index % 20);
+            gen.writeNumberField(SET_TIMESTAMP, event.timestamp);
+            gen.writeEndObject();
+        }
+        gen.writeEndObject();
+
+        gen.writeObjectFieldStart("attributes");
+        gen.writeStringField("_session_id", user.sessionId(event.timestamp));
+        gen.writeNumberField("_session_start_timestamp", user.sessionStart(event.timestamp));
+        gen.writeNumberField("_session_duration", event.timestamp - user.sessionStart(event.timestamp));
+        gen.writeNumberField("_session_number", user.sessionNumber(event.timestamp));
+        gen.writeBooleanField("_is_first_time", "first_open".equals(event.kind));
+        gen.writeBooleanField("_is_first_day", event.timestamp - user.firstTouchTimestamp < 86_400_000L);
+        gen.writeStringField("_channel", "benchmark");
+        if (web) {
+            gen.writeStringField("_page_url", pageUrl(event));
+            gen.writeStringField("_page_title", pageTitle(event));
+        } else {
+            gen.writeStringField("_screen_name", "Activity" + event.page % GeneratorPools.SECTIONS.length);
+            gen.writeStringField("_screen_id", "id_" + event.page);
+        }
+        if (event.referrer != null) {
+            gen.writeStringField(web ? "_page_referrer" : "_latest_referrer", event.referrer);
+        }
+        if (event.engagementMillis > 0) {
+            gen.writeNumberField("_engagement_time_msec", event.engagementMillis);
+        }
+        if (SEARCH.equals(event.kind)) {
+            gen.writeStringField("_search_key", "q");
+            gen.writeStringField("_search_term", searchTerm(event));
+        }
+        if (PURCHASE.equals(event.kind)) {
+            gen.writeStringField("currency", CURRENCY);
+            gen.writeNumberField(VALUE, event.value());
+        }
+        gen.writeEndObject();
+
+        if (!event.items.isEmpty()) {
+            gen.writeArrayFieldStart("items");
+            for (int i = 0; i < event.items.size(); i++) {
+                GeneratorPools.Item item = event.items.get(i);
+                gen.writeStartObject();
+                gen.writeStringField("id", item.id);
+                gen.writeStringField("name", item.name);
+                gen.writeStringField("category", item.category);
+                gen.writeStringField("brand", item.brand);
+                gen.writeNumberField("price", item.price);
+                gen.writeNumberField("quantity", event.quantities.get(i));
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+        gen.writeEndObject();
+    }
+}
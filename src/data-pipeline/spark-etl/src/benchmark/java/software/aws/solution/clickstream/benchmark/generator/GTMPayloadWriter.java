@@ -0,0 +1,133 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.benchmark.generator;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Writes GA4 events the way a GTM server container forwards them, see gtm-server/server-items.json in the test resources.
+ */
+final class GTMPayloadWriter extends BasePayloadWriter {
+
+    GTMPayloadWriter(final GeneratorPools pools) {
+        super(pools);
+    }
+
+    @Override
+    public String encode(final Batch batch) throws IOException {
+        return new String(json(gen -> {
+            gen.writeStartArray();
+            for (Batch.GeneratedEvent event : batch.events) {
+                writeEvent(gen, batch, event);
+            }
+            gen.writeEndArray();
+        }), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String sourceType() {
+        return "http_server";
+    }
+
+    @Override
+    public String compression() {
+        return null;
+    }
+
+    @Override
+    public String uri(final Batch batch) {
+        return "/collect?appId=" + batch.appId;
+    }
+
+    @Override
+    public String platform(final Batch batch) {
+        return null;
+    }
+
+    static String eventName(final String kind) {
+        switch (kind) {
+            case "view":
+                return "page_view";
+            case "engagement":
+                return "user_engagement";
+            case "first_open":
+                return "first_visit";
+            case "profile_set":
+                return "login";
+            default:
+                return kind;
+        }
+    }
+
+    private void writeEvent(final JsonGenerator gen, final Batch batch, final Batch.GeneratedEvent event) throws IOException {
+        UserProfile user = batch.user;
+        long sessionStart = user.sessionStart(event.timestamp);
+        String clientId = Integer.toUnsignedString(user.pseudoId.hashCode()) + "." + user.firstTouchTimestamp / 1000;
+        gen.writeStartObject();
+        gen.writeStringField("event_name", eventName(event.kind));
+        if (!event.items.isEmpty()) {
+            gen.writeArrayFieldStart("items");
+            for (int i = 0; i < event.items.size(); i++) {
+                GeneratorPools.Item item = event.items.get(i);
+                gen.writeStartObject();
+                gen.writeStringField("item_id", item.id);
+                gen.writeStringField("item_name", item.name);
+                gen.writeStringField("item_category", item.category);
+                gen.writeStringField("item_brand", item.brand);
+                gen.writeNumberField("price", item.price);
+                gen.writeNumberField("quantity", event.quantities.get(i));
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+        if (PURCHASE.equals(event.kind)) {
+            gen.writeStringField("currency", CURRENCY);
+            gen.writeNumberField("value", event.value());
+            gen.writeStringField("transaction_id", "T-" + event.eventId);
+        }
+        if (SEARCH.equals(event.kind)) {
+            gen.writeStringField("search_term", searchTerm(event));
+        }
+        if (event.engagementMillis > 0) {
+            gen.writeNumberField("engagement_time_msec", event.engagementMillis);
+        }
+        gen.writeStringField("x-ga-protocol_version", "2");
+        gen.writeStringField("x-ga-measurement_id", "G-BENCHMARK1");
+        gen.writeStringField("x-ga-gtm_version", "45je3820");
+        gen.writeNumberField("x-ga-page_id", 1_000_000 + event.page);
+        gen.writeStringField("client_id", clientId);
+        writeOptional(gen, "user_id", user.userId);
+        gen.writeStringField("language", user.locale.replace('_', '-').toLowerCase(Locale.ROOT));
+        gen.writeStringField("screen_resolution", user.screenWidth + "x" + user.screenHeight);
+        gen.writeNumberField("x-ga-request_count", event.sequenceId);
+        gen.writeObjectFieldStart("x-sst-system_properties");
+        gen.writeStringField("uc", user.country);
+        gen.writeNumberField("request_start_time_ms", event.timestamp);
+        gen.writeEndObject();
+        gen.writeStringField("ga_session_id", String.valueOf(sessionStart / 1000));
+        gen.writeNumberField("ga_session_number", user.sessionNumber(event.timestamp));
+        gen.writeStringField("page_location", pageUrl(event));
+        writeOptional(gen, "page_referrer", event.referrer);
+        gen.writeStringField("page_title", pageTitle(event));
+        gen.writeStringField("ip_override", user.ip);
+        gen.writeStringField("user_agent", batch.userAgent);
+        gen.writeStringField("x-ga-js_client_id", clientId);
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.benchmark.generator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What a generator run wrote, events of corrupt lines are counted in both events and corruptEvents.
+ */
+public final class GenerationSummary {
+    private long files;
+    private long lines;
+    private long events;
+    private long corruptLines;
+    private long corruptEvents;
+    private long botLines;
+    private long bytes;
+
+    void addLine(final int lineEvents, final boolean corrupt, final boolean bot) {
+        lines++;
+        events += lineEvents;
+        if (corrupt) {
+            corruptLines++;
+            corruptEvents += lineEvents;
+        }
+        if (bot) {
+            botLines++;
+        }
+    }
+
+    void addFile(final long fileBytes) {
+        files++;
+        bytes += fileBytes;
+    }
+
+    void add(final GenerationSummary other) {
+        files += other.files;
+        lines += other.lines;
+        events += other.events;
+        corruptLines += other.corruptLines;
+        corruptEvents += other.corruptEvents;
+        botLines += other.botLines;
+        bytes += other.bytes;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getCorruptEvents() {
+        return corruptEvents;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public Map<String, Long> toMap() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        map.put("files", files);
+        map.put("lines", lines);
+        map.put("events", events);
+        map.put("corrupt_lines", corruptLines);
+        map.put("corrupt_events", corruptEvents);
+        map.put("bot_lines", botLines);
+        map.put("bytes", bytes);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return "GenerationSummary" + toMap();
+    }
+}
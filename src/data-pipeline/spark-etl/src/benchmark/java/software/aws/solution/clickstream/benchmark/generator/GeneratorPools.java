@@ -0,0 +1,214 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.benchmark.generator;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The value pools a generator draws from, sized by the configured cardinalities and filled from the seed, so
+ * every file of a run sees the same users, IPs, user agents, referrers and items.
+ */
+final class GeneratorPools {
+    static final String[] BOT_USER_AGENTS = {
+            "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+            "Mozilla/5.0 (compatible; bingbot/2.0; +http://www.bing.com/bingbot.htm)",
+            "Mozilla/5.0 (compatible; YandexBot/3.0; +http://yandex.com/bots)",
+            "Mozilla/5.0 (compatible; Baiduspider/2.0; +http://www.baidu.com/search/spider.html)",
+            "facebookexternalhit/1.1 (+http://www.facebook.com/externalhit_uatext.php)",
+    };
+    static final String[] CATEGORIES = {"housewares", "electronics", "apparel", "books", "beauty", "sports", "toys", "grocery"};
+    static final String[] SECTIONS = {"home", "product", "category", "cart", "checkout", "search", "account", "help"};
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final String[] SEARCH_ENGINES = {"https://www.google.com/search?q=", "https://www.bing.com/search?q=",
+            "https://duckduckgo.com/?q=", "https://search.yahoo.com/search?p="};
+    private static final String[] SOCIAL = {"https://www.facebook.com/", "https://t.co/", "https://www.linkedin.com/feed/",
+            "https://www.reddit.com/r/"};
+    private static final String[] BROWSER_USER_AGENTS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/%d.0.%d.%d Safari/537.36",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/%d.%d Safari/605.1.%d",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:%d.0) Gecko/20100101 Firefox/%d.%d",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/%d.0.%d.%d Safari/537.36 Edg/%d.0.%d.%d",
+    };
+    private static final String[] ANDROID_USER_AGENTS = {
+            "Dalvik/2.1.0 (Linux; U; Android %d; SM-G99%dB Build/TP1A.%d.001)",
+            "Mozilla/5.0 (Linux; Android %d; Pixel %d) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/%d.0.0.0 Mobile Safari/537.36",
+    };
+    private static final String[] IOS_USER_AGENTS = {
+            "Mozilla/5.0 (iPhone; CPU iPhone OS %d_%d like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Mobile/15E%d",
+            "demoapp/%d.%d CFNetwork/1404.0.%d Darwin/22.4.0",
+    };
+
+    private final IngestGeneratorConfig config;
+    private final String[] ips;
+    private final String[][] userAgents;
+    private final String[] referrers;
+    private final Item[] items;
+    private final String[] kinds;
+    private final double[] cumulativeWeights;
+
+    GeneratorPools(final IngestGeneratorConfig config) {
+        this.config = config;
+        Random random = new Random(config.getSeed());
+        this.ips = new String[config.getIps()];
+        for (int i = 0; i < ips.length; i++) {
+            ips[i] = publicIpv4(random);
+        }
+        this.userAgents = new String[UserProfile.Platform.values().length][];
+        for (UserProfile.Platform platform : UserProfile.Platform.values()) {
+            String[] pool = new String[Math.max(1, config.getUserAgents() / userAgents.length)];
+            for (int i = 0; i < pool.length; i++) {
+                pool[i] = userAgent(platform, i, random);
+            }
+            userAgents[platform.ordinal()] = pool;
+        }
+        this.referrers = new String[config.getReferrers()];
+        for (int i = 0; i < referrers.length; i++) {
+            referrers[i] = referrer(i, random);
+        }
+        this.items = new Item[config.getItems()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new Item("item-" + i, "Product " + i, CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    "Brand" + random.nextInt(50), (100 + random.nextInt(50_000)) / 100.0);
+        }
+        Map<String, Double> mix = config.getEventMix();
+        this.kinds = mix.keySet().toArray(new String[0]);
+        this.cumulativeWeights = new double[kinds.length];
+        double total = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            total += mix.get(kinds[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    IngestGeneratorConfig getConfig() {
+        return config;
+    }
+
+    String pickKind(final Random random) {
+        double value = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        for (int i = 0; i < kinds.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return kinds[i];
+            }
+        }
+        return kinds[kinds.length - 1];
+    }
+
+    UserProfile user(final int index) {
+        Random random = new Random(mix(config.getSeed() + GOLDEN_GAMMA * (index + 1L)));
+        UserProfile.Platform platform;
+        // GTM server side tagging only receives web traffic
+        if (random.nextDouble() < config.getWebRatio() || config.getFormat() == PayloadFormat.GTM) {
+            platform = UserProfile.Platform.WEB;
+        } else {
+            platform = random.nextBoolean() ? UserProfile.Platform.ANDROID : UserProfile.Platform.IOS;
+        }
+        String[] platformUserAgents = userAgents[platform.ordinal()];
+        return new UserProfile(index, platform, random,
+                platformUserAgents[random.nextInt(platformUserAgents.length)],
+                ips[random.nextInt(ips.length)], config.getNow());
+    }
+
+    /**
+     * Returns a referrer, or null for direct traffic.
+     */
+    String referrer(final Random random) {
+        if (referrers.length == 0 || random.nextInt(10) < 3) {
+            return null;
+        }
+        return referrers[random.nextInt(referrers.length)];
+    }
+
+    Item item(final Random random) {
+        return items[random.nextInt(items.length)];
+    }
+
+    String botUserAgent(final Random random) {
+        return BOT_USER_AGENTS[random.nextInt(BOT_USER_AGENTS.length)];
+    }
+
+    static String pagePath(final int page) {
+        return "/" + SECTIONS[page % SECTIONS.length] + (page < SECTIONS.length ? "" : "/" + page);
+    }
+
+    /**
+     * Seed for a file or user derived from the run seed, a SplitMix64 finalizer so nearby indexes get unrelated sequences.
+     */
+    static long mix(final long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    static long fileSeed(final long seed, final int fileIndex) {
+        return mix(seed ^ GOLDEN_GAMMA * (fileIndex + 1L) ^ 0x5DEECE66DL);
+    }
+
+    private static String publicIpv4(final Random random) {
+        int first;
+        do {
+            first = 1 + random.nextInt(223);
+        } while (first == 10 || first == 127 || first == 172 || first == 192 || first == 100 || first == 169);
+        return first + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + (1 + random.nextInt(254));
+    }
+
+    private static String userAgent(final UserProfile.Platform platform, final int index, final Random random) {
+        int major = 90 + random.nextInt(35);
+        switch (platform) {
+            case ANDROID:
+                return String.format(Locale.ROOT, ANDROID_USER_AGENTS[index % ANDROID_USER_AGENTS.length],
+                        10 + index % 5, index % 10, 200_000 + index);
+            case IOS:
+                return String.format(Locale.ROOT, IOS_USER_AGENTS[index % IOS_USER_AGENTS.length],
+                        14 + index % 4, index % 7, 100 + index);
+            default:
+                return String.format(Locale.ROOT, BROWSER_USER_AGENTS[index % BROWSER_USER_AGENTS.length],
+                        major, index, random.nextInt(200), major, index, random.nextInt(200));
+        }
+    }
+
+    private static String referrer(final int index, final Random random) {
+        switch (index % 4) {
+            case 0:
+                return SEARCH_ENGINES[random.nextInt(SEARCH_ENGINES.length)] + "keyword" + index;
+            case 1:
+                return SOCIAL[random.nextInt(SOCIAL.length)] + "post" + index;
+            case 2:
+                return "https://partner" + index + ".example.net/page?utm_source=partner" + index
+                        + "&utm_medium=referral&utm_campaign=campaign" + index % 10;
+            default:
+                return "https://blog" + index + ".example.org/article/" + random.nextInt(1000);
+        }
+    }
+
+    static final class Item {
+        final String id;
+        final String name;
+        final String category;
+        final String brand;
+        final double price;
+
+        Item(final String id, final String name, final String category, final String brand, final double price) {
+            this.id = id;
+            this.name = name;
+            this.category = category;
+            this.brand = brand;
+            this.price = price;
+        }
+    }
+}
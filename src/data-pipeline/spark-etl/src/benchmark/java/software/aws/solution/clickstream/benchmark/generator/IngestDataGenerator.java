@@ -0,0 +1,195 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.benchmark.generator;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates ingest files in the layout and line format of the ingestion sink, {@code year=/month=/day=}
+ * directories of json lines, which {@code ETLRunner.readInputDataset} reads directly.
+ * <p>
+ * Every file is generated from its own seed derived from {@code generator.seed} and the file index, and the
+ * value pools from the seed alone, so the output is the same for any number of threads. Pass
+ * {@code generator.now} as well to reproduce a run bit for bit, it is the ingest time of the lines.
+ * <p>
+ * Run with {@code ./gradlew generateIngestData -PgeneratorOutput=<dir> [-Pgenerator.events=<n>] [-Pgenerator.format=gtm]},
+ * see {@link IngestGeneratorConfig} for the other {@code generator.*} settings.
+ */
+@Slf4j
+public final class IngestDataGenerator {
+    static final int PAGES = 200;
+    private static final int MAX_EVENT_GAP_MILLIS = 5_000;
+    private static final int MAX_INGEST_DELAY_MILLIS = 60_000;
+    private static final Set<String> ITEM_KINDS = Set.of("view_item", "select_item", "add_to_cart", "remove_from_cart",
+            "add_to_wishlist", "view_cart", "begin_checkout", "purchase");
+
+    private final IngestGeneratorConfig config;
+    private final GeneratorPools pools;
+
+    public IngestDataGenerator(final IngestGeneratorConfig config) {
+        this.config = config;
+        this.pools = new GeneratorPools(config);
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("usage: IngestDataGenerator <output dir>");
+        }
+        IngestGeneratorConfig config = IngestGeneratorConfig.fromProperties(System.getProperties());
+        long start = System.currentTimeMillis();
+        GenerationSummary summary = new IngestDataGenerator(config).generate(Paths.get(args[0]));
+        log.info("{} in {} ms, ingest time {}", summary, System.currentTimeMillis() - start, config.getNow());
+    }
+
+    public static Path dayDir(final Path inputDir, final long timestamp) {
+        ZonedDateTime day = Instant.ofEpochMilli(timestamp).atZone(ZoneOffset.UTC);
+        return inputDir.resolve(String.format("year=%04d/month=%02d/day=%02d", day.getYear(), day.getMonthValue(), day.getDayOfMonth()));
+    }
+
+    public GenerationSummary generate(final Path inputDir) throws IOException {
+        Path dayDir = dayDir(inputDir, config.getNow());
+        Files.createDirectories(dayDir);
+        int files = (int) ((config.getEvents() + config.getEventsPerFile() - 1) / config.getEventsPerFile());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(config.getThreads(), files)), r -> {
+            Thread thread = new Thread(r, "ingest-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<GenerationSummary>> futures = new ArrayList<>();
+            for (int i = 0; i < files; i++) {
+                int fileIndex = i;
+                long quota = Math.min(config.getEventsPerFile(), config.getEvents() - i * config.getEventsPerFile());
+                Path file = dayDir.resolve(String.format("part-%05d.json", fileIndex));
+                futures.add(executor.submit(() -> writeFile(file, fileIndex, quota)));
+            }
+            GenerationSummary summary = new GenerationSummary();
+            for (Future<GenerationSummary> future : futures) {
+                summary.add(future.get());
+            }
+            return summary;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("ingest data generation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("ingest data generation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    GenerationSummary writeFile(final Path file, final int fileIndex, final long quota) throws IOException {
+        Random random = new Random(GeneratorPools.fileSeed(config.getSeed(), fileIndex));
+        PayloadWriter writer = config.getFormat().newWriter(pools);
+        GenerationSummary summary = new GenerationSummary();
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+             JsonGenerator gen = BasePayloadWriter.JSON_FACTORY.createGenerator(out)) {
+            gen.setRootValueSeparator(new SerializedString("\n"));
+            long written = 0;
+            while (written < quota) {
+                int batchSize = (int) Math.min(quota - written, config.getMinBatchSize()
+                        + random.nextInt(config.getMaxBatchSize() - config.getMinBatchSize() + 1));
+                Batch batch = nextBatch(random, batchSize);
+                String data = writer.encode(batch);
+                boolean corrupt = random.nextDouble() < config.getCorruptRatio();
+                if (corrupt) {
+                    data = data.substring(0, 1 + random.nextInt(data.length() - 1));
+                }
+                writeLine(gen, writer, batch, data);
+                summary.addLine(batchSize, corrupt, batch.bot);
+                written += batchSize;
+            }
+            gen.writeRaw('\n');
+        }
+        summary.addFile(Files.size(file));
+        return summary;
+    }
+
+    Batch nextBatch(final Random random, final int size) {
+        UserProfile user = pools.user(random.nextInt(config.getUsers()));
+        boolean bot = random.nextDouble() < config.getBotRatio();
+        long ingestTime = config.getNow() - random.nextInt(MAX_INGEST_DELAY_MILLIS);
+        Batch batch = new Batch(user, bot ? pools.botUserAgent(random) : user.userAgent, bot, ingestTime,
+                1 + random.nextInt(1_000_000), Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()),
+                config.getAppId());
+
+        long timestamp = ingestTime - (long) (random.nextDouble() * config.getSpreadMillis());
+        long sequenceId = random.nextInt(1_000);
+        for (int i = 0; i < size; i++) {
+            String kind = pools.pickKind(random);
+            timestamp = Math.min(timestamp + random.nextInt(MAX_EVENT_GAP_MILLIS), ingestTime);
+            String referrer = "view".equals(kind) || "session_start".equals(kind) || "first_open".equals(kind)
+                    ? pools.referrer(random) : null;
+            long engagementMillis = "engagement".equals(kind) ? 1_000 + random.nextInt(120_000) : 0;
+            List<GeneratorPools.Item> items = Collections.emptyList();
+            List<Integer> quantities = Collections.emptyList();
+            if (ITEM_KINDS.contains(kind) && config.getMaxItemsPerEvent() > 0) {
+                int count = 1 + random.nextInt(config.getMaxItemsPerEvent());
+                items = new ArrayList<>(count);
+                quantities = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    items.add(pools.item(random));
+                    quantities.add(1 + random.nextInt(3));
+                }
+            }
+            batch.events.add(new Batch.GeneratedEvent(kind, new UUID(random.nextLong(), random.nextLong()).toString(),
+                    timestamp, ++sequenceId, random.nextInt(PAGES), referrer, engagementMillis, items, quantities));
+        }
+        return batch;
+    }
+
+    private static void writeLine(final JsonGenerator gen, final PayloadWriter writer, final Batch batch, final String data) throws IOException {
+        String ingestDate = Instant.ofEpochMilli(batch.ingestTime).toString();
+        gen.writeStartObject();
+        gen.writeStringField("date", ingestDate);
+        gen.writeStringField("data", data);
+        gen.writeStringField("ip", batch.user.ip);
+        gen.writeStringField("source_type", writer.sourceType());
+        gen.writeStringField("rid", batch.rid);
+        gen.writeStringField("ua", batch.userAgent);
+        gen.writeStringField("m", "POST");
+        gen.writeStringField("uri", writer.uri(batch));
+        gen.writeStringField("platform", writer.platform(batch));
+        gen.writeStringField("path", "/collect");
+        gen.writeStringField("appId", batch.appId);
+        gen.writeStringField("compression", writer.compression());
+        gen.writeNumberField("ingest_time", batch.ingestTime);
+        gen.writeNumberField("server_ingest_time", batch.ingestTime);
+        gen.writeStringField("timestamp", ingestDate);
+        gen.writeEndObject();
+    }
+}
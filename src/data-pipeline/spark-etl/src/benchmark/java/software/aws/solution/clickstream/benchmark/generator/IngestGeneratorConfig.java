@@ -0,0 +1,233 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.benchmark.generator;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Settings of {@link IngestDataGenerator}, read from {@code generator.*} properties. Two runs with the same
+ * settings, including {@code generator.seed} and {@code generator.now}, write identical files.
+ */
+public final class IngestGeneratorConfig {
+    public static final String PREFIX = "generator.";
+    static final String DEFAULT_EVENT_MIX = "view:45,engagement:15,session_start:8,first_open:2,profile_set:3,"
+            + "view_item:12,add_to_cart:8,purchase:4,search:3";
+
+    private PayloadFormat format;
+    private long seed;
+    private long events;
+    private long eventsPerFile;
+    private int minBatchSize;
+    private int maxBatchSize;
+    private String appId;
+    private int users;
+    private int ips;
+    private int userAgents;
+    private int referrers;
+    private int items;
+    private int maxItemsPerEvent;
+    private double corruptRatio;
+    private double botRatio;
+    private double webRatio;
+    private Map<String, Double> eventMix;
+    private long now;
+    private long spreadMillis;
+    private int threads;
+
+    private IngestGeneratorConfig() {
+    }
+
+    public static IngestGeneratorConfig fromProperties(final Properties props) {
+        IngestGeneratorConfig config = new IngestGeneratorConfig();
+        config.format = PayloadFormat.valueOf(get(props, "format", "clickstream").toUpperCase());
+        config.seed = Long.parseLong(get(props, "seed", "42"));
+        config.events = Long.parseLong(get(props, "events", "100000"));
+        config.eventsPerFile = Long.parseLong(get(props, "events.per.file", "100000"));
+        String[] batchSize = get(props, "batch.size", "5-15").split("-");
+        config.minBatchSize = Integer.parseInt(batchSize[0].trim());
+        config.maxBatchSize = Integer.parseInt(batchSize[batchSize.length - 1].trim());
+        config.appId = get(props, "app.id", "uba-app");
+        config.users = Integer.parseInt(get(props, "users", "10000"));
+        config.ips = Integer.parseInt(get(props, "ips", "5000"));
+        config.userAgents = Integer.parseInt(get(props, "user.agents", "300"));
+        config.referrers = Integer.parseInt(get(props, "referrers", "200"));
+        config.items = Integer.parseInt(get(props, "items", "1000"));
+        config.maxItemsPerEvent = Integer.parseInt(get(props, "items.per.event", "3"));
+        config.corruptRatio = Double.parseDouble(get(props, "corrupt.ratio", "0"));
+        config.botRatio = Double.parseDouble(get(props, "bot.ratio", "0"));
+        config.webRatio = Double.parseDouble(get(props, "web.ratio", "0.3"));
+        config.eventMix = parseEventMix(get(props, "event.mix", DEFAULT_EVENT_MIX));
+        config.now = Long.parseLong(get(props, "now", String.valueOf(System.currentTimeMillis())));
+        config.spreadMillis = Long.parseLong(get(props, "spread.millis", "3600000"));
+        config.threads = Integer.parseInt(get(props, "threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        config.validate();
+        return config;
+    }
+
+    public IngestGeneratorConfig withFormat(final PayloadFormat newFormat) {
+        IngestGeneratorConfig copy = copy();
+        copy.format = newFormat;
+        return copy;
+    }
+
+    public IngestGeneratorConfig withNow(final long newNow) {
+        IngestGeneratorConfig copy = copy();
+        copy.now = newNow;
+        return copy;
+    }
+
+    static Map<String, Double> parseEventMix(final String mix) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split(":");
+            double weight = parts.length > 1 ? Double.parseDouble(parts[1].trim()) : 1;
+            if (weight < 0) {
+                throw new IllegalArgumentException("negative weight in event mix: " + entry);
+            }
+            weights.put(parts[0].trim(), weight);
+        }
+        return weights;
+    }
+
+    private void validate() {
+        if (minBatchSize < 1 || maxBatchSize < minBatchSize) {
+            throw new IllegalArgumentException("invalid batch size " + minBatchSize + "-" + maxBatchSize);
+        }
+        if (users < 1 || ips < 1 || userAgents < 1 || items < 1 || threads < 1 || eventsPerFile < 1) {
+            throw new IllegalArgumentException("users, ips, user agents, items, threads and events per file must be positive");
+        }
+        if (corruptRatio < 0 || corruptRatio > 1 || botRatio < 0 || botRatio > 1 || webRatio < 0 || webRatio > 1) {
+            throw new IllegalArgumentException("ratios must be between 0 and 1");
+        }
+        if (eventMix.values().stream().mapToDouble(Double::doubleValue).sum() <= 0) {
+            throw new IllegalArgumentException("event mix has no positive weight");
+        }
+    }
+
+    private IngestGeneratorConfig copy() {
+        IngestGeneratorConfig copy = new IngestGeneratorConfig();
+        copy.format = format;
+        copy.seed = seed;
+        copy.events = events;
+        copy.eventsPerFile = eventsPerFile;
+        copy.minBatchSize = minBatchSize;
+        copy.maxBatchSize = maxBatchSize;
+        copy.appId = appId;
+        copy.users = users;
+        copy.ips = ips;
+        copy.userAgents = userAgents;
+        copy.referrers = referrers;
+        copy.items = items;
+        copy.maxItemsPerEvent = maxItemsPerEvent;
+        copy.corruptRatio = corruptRatio;
+        copy.botRatio = botRatio;
+        copy.webRatio = webRatio;
+        copy.eventMix = eventMix;
+        copy.now = now;
+        copy.spreadMillis = spreadMillis;
+        copy.threads = threads;
+        return copy;
+    }
+
+    private static String get(final Properties props, final String key, final String defaultValue) {
+        return props.getProperty(PREFIX + key, defaultValue);
+    }
+
+    public PayloadFormat getFormat() {
+        return format;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getEventsPerFile() {
+        return eventsPerFile;
+    }
+
+    public int getMinBatchSize() {
+        return minBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public String getAppId() {
+        return appId;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public int getIps() {
+        return ips;
+    }
+
+    public int getUserAgents() {
+        return userAgents;
+    }
+
+    public int getReferrers() {
+        return referrers;
+    }
+
+    public int getItems() {
+        return items;
+    }
+
+    public int getMaxItemsPerEvent() {
+        return maxItemsPerEvent;
+    }
+
+    public double getCorruptRatio() {
+        return corruptRatio;
+    }
+
+    public double getBotRatio() {
+        return botRatio;
+    }
+
+    public double getWebRatio() {
+        return webRatio;
+    }
+
+    public Map<String, Double> getEventMix() {
+        return Collections.unmodifiableMap(eventMix);
+    }
+
+    public long getNow() {
+        return now;
+    }
+
+    public long getSpreadMillis() {
+        return spreadMillis;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.benchmark.generator;
+
+/**
+ * The sources the ETL parses, each writes the data field of an ingest line the way its SDK or server sends it.
+ */
+public enum PayloadFormat {
+    /**
+     * Clickstream SDK batches, a json array of events, gzip compressed and base64 encoded.
+     */
+    CLICKSTREAM {
+        @Override
+        PayloadWriter newWriter(final GeneratorPools pools) {
+            return new ClickstreamPayloadWriter(pools);
+        }
+    },
+    /**
+     * GTM server side tagging requests, a plain json array of GA4 events.
+     */
+    GTM {
+        @Override
+        PayloadWriter newWriter(final GeneratorPools pools) {
+            return new GTMPayloadWriter(pools);
+        }
+    },
+    /**
+     * Sensors SDK batches, a gzip compressed and base64 encoded json array sent as the data_list form field.
+     */
+    SENSORS {
+        @Override
+        PayloadWriter newWriter(final GeneratorPools pools) {
+            return new SensorsPayloadWriter(pools);
+        }
+    };
+
+    abstract PayloadWriter newWriter(GeneratorPools pools);
+}
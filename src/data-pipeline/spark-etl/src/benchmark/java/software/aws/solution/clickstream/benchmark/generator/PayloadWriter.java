@@ -0,0 +1,33 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.benchmark.generator;
+
+import java.io.IOException;
+
+/**
+ * Encodes the events of a batch as the data field of an ingest line. A writer keeps reusable buffers and is
+ * used by one thread.
+ */
+interface PayloadWriter {
+    String encode(Batch batch) throws IOException;
+
+    String sourceType();
+
+    String compression();
+
+    String uri(Batch batch);
+
+    String platform(Batch batch);
+}
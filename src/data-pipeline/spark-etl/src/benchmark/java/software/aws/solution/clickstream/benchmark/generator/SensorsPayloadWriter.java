@@ -0,0 +1,170 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.benchmark.generator;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes events the way the Sensors SDKs send them, a gzip compressed data_list form field, see
+ * sensordata/web_sdk_data.json in the test resources.
+ */
+final class SensorsPayloadWriter extends BasePayloadWriter {
+    private static final String WEB_LIB_VERSION = "1.26.11";
+    private static final String MOBILE_LIB_VERSION = "6.7.2";
+
+    SensorsPayloadWriter(final GeneratorPools pools) {
+        super(pools);
+    }
+
+    @Override
+    public String encode(final Batch batch) throws IOException {
+        byte[] json = json(gen -> {
+            gen.writeStartArray();
+            for (Batch.GeneratedEvent event : batch.events) {
+                writeEvent(gen, batch, event);
+            }
+            gen.writeEndArray();
+        });
+        String dataList = gzipBase64(json);
+        return "crc=" + Integer.toUnsignedString(dataList.hashCode()) + "&gzip=1&data_list="
+                + URLEncoder.encode(dataList, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String sourceType() {
+        return "http_server";
+    }
+
+    @Override
+    public String compression() {
+        return null;
+    }
+
+    @Override
+    public String uri(final Batch batch) {
+        return "/collect?platform=" + batch.user.platform.getSensorsName() + "&appId=" + batch.appId;
+    }
+
+    @Override
+    public String platform(final Batch batch) {
+        return batch.user.platform.getSensorsName();
+    }
+
+    static String eventName(final String kind, final UserProfile.Platform platform) {
+        boolean web = platform == UserProfile.Platform.WEB;
+        switch (kind) {
+            case "view":
+            case "first_open":
+                return web ? "$pageview" : "$AppViewScreen";
+            case "engagement":
+                return web ? "$WebStay" : "$AppEnd";
+            case "session_start":
+                return web ? "$pageview" : "$AppStart";
+            case "profile_set":
+                return "$SignUp";
+            default:
+                return kind;
+        }
+    }
+
+    private static String identityField(final UserProfile.Platform platform) {
+        switch (platform) {
+            case ANDROID:
+                return "$identity_android_id";
+            case IOS:
+                return "$identity_ios_idfv";
+            default:
+                return "$identity_cookie_id";
+        }
+    }
+
+    private void writeEvent(final JsonGenerator gen, final Batch batch, final Batch.GeneratedEvent event) throws IOException {
+        UserProfile user = batch.user;
+        boolean web = user.platform == UserProfile.Platform.WEB;
+        String lib = web ? "js" : user.platform.getSensorsName();
+        String libVersion = web ? WEB_LIB_VERSION : MOBILE_LIB_VERSION;
+        gen.writeStartObject();
+        gen.writeNumberField("_track_id", event.eventId.hashCode());
+        gen.writeNumberField("time", event.timestamp);
+        gen.writeStringField("type", "track");
+        gen.writeStringField("distinct_id", user.userId != null ? user.userId : user.pseudoId);
+        gen.writeStringField("anonymous_id", user.pseudoId);
+        writeOptional(gen, "login_id", user.userId);
+        gen.writeObjectFieldStart("identities");
+        gen.writeStringField(identityField(user.platform), user.pseudoId);
+        writeOptional(gen, "$identity_login_id", user.userId);
+        gen.writeEndObject();
+        gen.writeStringField("event", eventName(event.kind, user.platform));
+        gen.writeObjectFieldStart("lib");
+        gen.writeStringField("$lib", lib);
+        gen.writeStringField("$lib_method", "code");
+        gen.writeStringField("$lib_version", libVersion);
+        gen.writeStringField("$app_version", user.appVersion);
+        gen.writeEndObject();
+
+        gen.writeObjectFieldStart("properties");
+        gen.writeStringField("$lib", lib);
+        gen.writeStringField("$lib_version", libVersion);
+        gen.writeNumberField("$timezone_offset", -user.zoneOffset / 60_000);
+        gen.writeNumberField("$screen_width", user.screenWidth);
+        gen.writeNumberField("$screen_height", user.screenHeight);
+        gen.writeBooleanField("$is_first_day", event.timestamp - user.firstTouchTimestamp < 86_400_000L);
+        gen.writeBooleanField("$is_first_time", "first_open".equals(event.kind));
+        gen.writeStringField("$url", pageUrl(event));
+        gen.writeStringField("$title", pageTitle(event));
+        if (web) {
+            gen.writeStringField("$url_path", GeneratorPools.pagePath(event.page));
+            gen.writeStringField("$referrer", event.referrer == null ? "" : event.referrer);
+            gen.writeStringField("$latest_referrer", event.referrer == null ? "" : event.referrer);
+        } else {
+            gen.writeStringField("$screen_name", "Activity" + event.page % GeneratorPools.SECTIONS.length);
+            gen.writeStringField("$os", user.platform.getSensorsName());
+            gen.writeStringField("$os_version", user.osVersion);
+            gen.writeStringField("$manufacturer", user.make);
+            gen.writeStringField("$brand", user.make);
+            gen.writeStringField("$model", user.model);
+            gen.writeStringField("$app_version", user.appVersion);
+            gen.writeStringField("$app_id", "com.example.demoapp");
+            gen.writeStringField("$app_name", "DemoApp");
+            gen.writeStringField("$network_type", "WIFI");
+            gen.writeBooleanField("$wifi", true);
+            gen.writeStringField("$device_id", user.deviceId);
+        }
+        if (event.engagementMillis > 0) {
+            gen.writeNumberField("event_duration", event.engagementMillis / 1000.0);
+        }
+        if (SEARCH.equals(event.kind)) {
+            gen.writeStringField("keyword", searchTerm(event));
+        }
+        if (!event.items.isEmpty()) {
+            GeneratorPools.Item item = event.items.get(0);
+            gen.writeStringField("product_id", item.id);
+            gen.writeStringField("product_name", item.name);
+            gen.writeStringField("product_category", item.category);
+            gen.writeNumberField("product_price", item.price);
+            gen.writeNumberField("product_quantity", event.quantities.get(0));
+        }
+        if (PURCHASE.equals(event.kind)) {
+            gen.writeNumberField("order_amount", event.value());
+        }
+        gen.writeEndObject();
+        gen.writeNumberField("_flush_time", batch.ingestTime);
+        gen.writeEndObject();
+    }
+}
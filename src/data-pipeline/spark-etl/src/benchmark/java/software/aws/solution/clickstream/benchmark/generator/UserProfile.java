@@ -0,0 +1,113 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.benchmark.generator;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * A simulated user and the device it sends from, derived from the user index and the seed only.
+ */
+final class UserProfile {
+    private static final String[][] DEVICES = {
+            {"samsung", "SM-G991B"}, {"Google", "Pixel 7"}, {"HUAWEI", "HUAWEI-P40"}, {"Xiaomi", "2201123G"}, {"OnePlus", "CPH2449"},
+    };
+    private static final String[][] LOCALES = {
+            {"en_US", "en", "US", "-18000000"}, {"en_GB", "en", "GB", "0"}, {"de_DE", "de", "DE", "3600000"},
+            {"zh_CN", "zh", "CN", "28800000"}, {"ja_JP", "ja", "JP", "32400000"}, {"pt_BR", "pt", "BR", "-10800000"},
+    };
+    private static final int[][] SCREENS = {{1080, 2400}, {1170, 2532}, {1440, 3200}, {1920, 1080}, {2560, 1440}, {1366, 768}};
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    enum Platform {
+        ANDROID("ANDROID", "Android"),
+        IOS("iOS", "iOS"),
+        WEB("Web", "Web");
+
+        private final String clickstreamName;
+        private final String sensorsName;
+
+        Platform(final String clickstreamName, final String sensorsName) {
+            this.clickstreamName = clickstreamName;
+            this.sensorsName = sensorsName;
+        }
+
+        String getClickstreamName() {
+            return clickstreamName;
+        }
+
+        String getSensorsName() {
+            return sensorsName;
+        }
+    }
+
+    final int index;
+    final Platform platform;
+    final String pseudoId;
+    final String deviceId;
+    final String userId;
+    final String userAgent;
+    final String ip;
+    final String make;
+    final String model;
+    final String osVersion;
+    final String appVersion;
+    final String locale;
+    final String language;
+    final String country;
+    final int zoneOffset;
+    final int screenWidth;
+    final int screenHeight;
+    final long firstTouchTimestamp;
+
+    UserProfile(final int index, final Platform platform, final Random random, final String userAgent, final String ip, final long now) {
+        this.index = index;
+        this.platform = platform;
+        this.pseudoId = new UUID(random.nextLong(), random.nextLong()).toString();
+        this.deviceId = Long.toHexString(random.nextLong());
+        this.userId = random.nextInt(10) < 6 ? "uid-" + index : null;
+        this.userAgent = userAgent;
+        this.ip = ip;
+        String[] device = platform == Platform.IOS ? new String[]{"Apple", "iPhone14," + (2 + random.nextInt(4))} : DEVICES[random.nextInt(DEVICES.length)];
+        this.make = device[0];
+        this.model = platform == Platform.WEB ? null : device[1];
+        this.osVersion = platform == Platform.IOS ? "16." + random.nextInt(7) : String.valueOf(11 + random.nextInt(4));
+        this.appVersion = "1." + random.nextInt(5) + "." + random.nextInt(10);
+        String[] userLocale = LOCALES[random.nextInt(LOCALES.length)];
+        this.locale = userLocale[0];
+        this.language = userLocale[1];
+        this.country = userLocale[2];
+        this.zoneOffset = Integer.parseInt(userLocale[3]);
+        int[] screen = platform == Platform.WEB ? SCREENS[3 + random.nextInt(3)] : SCREENS[random.nextInt(3)];
+        this.screenWidth = screen[0];
+        this.screenHeight = screen[1];
+        this.firstTouchTimestamp = now - (long) (random.nextDouble() * 90 * DAY_MILLIS);
+    }
+
+    /**
+     * Sessions are 30 minute buckets of the user timeline, numbered as if the user came back once a day.
+     */
+    long sessionStart(final long timestamp) {
+        return timestamp - Math.floorMod(timestamp, 1_800_000L);
+    }
+
+    String sessionId(final long timestamp) {
+        return pseudoId.substring(0, 8) + "-" + Long.toHexString(sessionStart(timestamp));
+    }
+
+    int sessionNumber(final long timestamp) {
+        return 1 + (int) ((sessionStart(timestamp) - firstTouchTimestamp) / DAY_MILLIS);
+    }
+}
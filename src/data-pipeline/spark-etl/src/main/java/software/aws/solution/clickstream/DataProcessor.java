@@ -133,6 +133,7 @@ public final class DataProcessor {
 
         ETLRunner etlRunner = new ETLRunner(spark, runnerConfig);
         etlRunner.run();
+        GeoDatabaseReader.close();
         spark.stop();
     }
 }
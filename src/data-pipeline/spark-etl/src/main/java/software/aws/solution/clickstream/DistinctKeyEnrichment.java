@@ -0,0 +1,125 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+package software.aws.solution.clickstream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.expressions.UserDefinedFunction;
+import org.apache.spark.sql.internal.SQLConf;
+import org.apache.spark.storage.StorageLevel;
+
+import java.util.List;
+
+import static org.apache.spark.sql.functions.approx_count_distinct;
+import static org.apache.spark.sql.functions.broadcast;
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.count;
+import static org.apache.spark.sql.functions.lit;
+import static org.apache.spark.sql.functions.struct;
+import static software.aws.solution.clickstream.util.ContextUtil.ENRICH_BROADCAST_MAX_KEYS_PROP;
+import static software.aws.solution.clickstream.util.ContextUtil.ENRICH_DISTINCT_KEY_RATIO_PROP;
+
+/**
+ * Applies an enrichment UDF either per row or once per distinct key.
+ * <p>
+ * Off unless {@code enrich.distinct.key.ratio} is set above 0. The input is then cached for the duration of the
+ * call, while its rows and distinct keys are counted. When the distinct keys are at most that fraction of the rows
+ * and few enough to broadcast, the distinct keys are enriched once, collected, and broadcast-joined back to the
+ * rows. Otherwise the UDF is applied to every row as before.
+ */
+@Slf4j
+public final class DistinctKeyEnrichment {
+    private static final String KEY_PREFIX = "_enrich_key_";
+    private static final double DEFAULT_DISTINCT_KEY_RATIO = 0;
+    // an enriched user agent or geo key takes a few hundred bytes, which keeps the broadcast around 10MB
+    private static final long DEFAULT_BROADCAST_MAX_KEYS = 20_000L;
+
+    private DistinctKeyEnrichment() {
+    }
+
+    /**
+     * Add {@code outColumn} to the dataset with the value of {@code enrichUdf} applied to {@code keyColumns}.
+     */
+    public static Dataset<Row> enrich(final Dataset<Row> dataset, final UserDefinedFunction enrichUdf,
+                                      final String outColumn, final Column... keyColumns) {
+        double distinctKeyRatio = Double.parseDouble(System.getProperty(ENRICH_DISTINCT_KEY_RATIO_PROP, String.valueOf(DEFAULT_DISTINCT_KEY_RATIO)));
+        long broadcastMaxKeys = Long.parseLong(System.getProperty(ENRICH_BROADCAST_MAX_KEYS_PROP, String.valueOf(DEFAULT_BROADCAST_MAX_KEYS)));
+        if (distinctKeyRatio <= 0 || SQLConf.get().autoBroadcastJoinThreshold() < 0) {
+            return dataset.withColumn(outColumn, enrichUdf.apply(keyColumns));
+        }
+
+        Dataset<Row> enrichedKeys;
+        Dataset<Row> cachedDataset = dataset.persist(StorageLevel.MEMORY_AND_DISK());
+        try {
+            enrichedKeys = enrichDistinctKeys(cachedDataset, enrichUdf, outColumn, keyColumns, distinctKeyRatio, broadcastMaxKeys);
+        } finally {
+            cachedDataset.unpersist();
+        }
+        if (enrichedKeys == null) {
+            log.info("enrich " + outColumn + " per row");
+            return dataset.withColumn(outColumn, enrichUdf.apply(keyColumns));
+        }
+
+        log.info("enrich " + outColumn + " by distinct keys with broadcast join");
+        // keys can be null, join with null-safe equality
+        Column joinCondition = null;
+        for (int i = 0; i < keyColumns.length; i++) {
+            Column keyEq = keyColumns[i].eqNullSafe(enrichedKeys.col(KEY_PREFIX + i));
+            joinCondition = joinCondition == null ? keyEq : joinCondition.and(keyEq);
+        }
+
+        String[] datasetColumns = dataset.columns();
+        Column[] outColumns = new Column[datasetColumns.length + 1];
+        for (int i = 0; i < datasetColumns.length; i++) {
+            outColumns[i] = dataset.col(datasetColumns[i]);
+        }
+        outColumns[datasetColumns.length] = enrichedKeys.col(outColumn);
+        return dataset.join(broadcast(enrichedKeys), joinCondition, "left").select(outColumns);
+    }
+
+    /**
+     * The enriched distinct keys collected into a local dataset, null if the keys are too many to enrich by key.
+     */
+    private static Dataset<Row> enrichDistinctKeys(final Dataset<Row> cachedDataset, final UserDefinedFunction enrichUdf,
+                                                   final String outColumn, final Column[] keyColumns,
+                                                   final double distinctKeyRatio, final long broadcastMaxKeys) {
+        Row estimate = cachedDataset.select(
+                count(lit(1)),
+                approx_count_distinct(struct(keyColumns))
+        ).first();
+        long rows = estimate.getLong(0);
+        long distinctKeys = estimate.getLong(1);
+        log.info("enrich " + outColumn + ", rows: " + rows + ", estimated distinct keys: " + distinctKeys);
+        if (rows == 0 || distinctKeys > rows * distinctKeyRatio || distinctKeys > broadcastMaxKeys) {
+            return null;
+        }
+
+        Column[] keyAliasColumns = new Column[keyColumns.length];
+        Column[] keyNameColumns = new Column[keyColumns.length];
+        for (int i = 0; i < keyColumns.length; i++) {
+            keyAliasColumns[i] = keyColumns[i].alias(KEY_PREFIX + i);
+            keyNameColumns[i] = col(KEY_PREFIX + i);
+        }
+        Dataset<Row> enrichedKeys = cachedDataset.select(keyAliasColumns).distinct()
+                .withColumn(outColumn, enrichUdf.apply(keyNameColumns));
+        // the estimate is approximate, the limit bounds what is collected to the driver
+        List<Row> keyRows = enrichedKeys.limit((int) Math.min(Integer.MAX_VALUE, broadcastMaxKeys + 1)).collectAsList();
+        if (keyRows.size() > broadcastMaxKeys) {
+            return null;
+        }
+        return cachedDataset.sparkSession().createDataFrame(keyRows, enrichedKeys.schema());
+    }
+}
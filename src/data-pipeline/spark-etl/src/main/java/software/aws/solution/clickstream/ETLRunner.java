@@ -19,11 +19,13 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.spark.sql.Column;
 import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Observation;
 import org.apache.spark.sql.SaveMode;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.SparkSession;
 import org.apache.spark.sql.functions;
+import org.apache.spark.sql.internal.SQLConf;
 import org.apache.spark.sql.types.DataTypes;
 import org.apache.spark.sql.types.StructField;
 import org.apache.spark.sql.types.StructType;
@@ -37,6 +39,7 @@ import software.aws.solution.clickstream.util.*;
 import javax.validation.constraints.NotEmpty;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.math.BigInteger;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.ZoneId;
@@ -53,10 +56,12 @@ import java.util.stream.Stream;
 
 import static org.apache.spark.sql.functions.col;
 import static org.apache.spark.sql.functions.concat;
+import static org.apache.spark.sql.functions.count;
 import static org.apache.spark.sql.functions.decode;
 import static org.apache.spark.sql.functions.expr;
 import static org.apache.spark.sql.functions.input_file_name;
 import static org.apache.spark.sql.functions.date_format;
+import static org.apache.spark.sql.functions.lit;
 
 import static software.aws.solution.clickstream.TransformerV3.CLIENT_TIMESTAMP;
 import static software.aws.solution.clickstream.TransformerV3.INPUT_FILE_NAME;
@@ -64,6 +69,10 @@ import static software.aws.solution.clickstream.util.ContextUtil.DISABLE_TRAFFIC
 import static software.aws.solution.clickstream.util.ContextUtil.JOB_NAME_PROP;
 import static software.aws.solution.clickstream.util.ContextUtil.WAREHOUSE_DIR_PROP;
 import static software.aws.solution.clickstream.util.ContextUtil.OUTPUT_COALESCE_PARTITIONS_PROP;
+import static software.aws.solution.clickstream.util.ContextUtil.OUTPUT_SHUFFLE_BYTES_RATIO_PROP;
+import static software.aws.solution.clickstream.util.ContextUtil.OUTPUT_TARGET_FILE_BYTES_PROP;
+import static software.aws.solution.clickstream.util.ContextUtil.SINK_SCHEDULER_POOL_PROP;
+import static software.aws.solution.clickstream.util.ContextUtil.SINK_WRITE_PARALLELISM_PROP;
 
 @Slf4j
 public class ETLRunner {
@@ -77,7 +86,9 @@ public class ETLRunner {
     public static final String EVENT_DATE = "event_date";
     public static final String CONFIG_METHOD = "config";
     public static final String APP_ID_EVENT_DATE = "app_id_event_date";
+    public static final String PARSER_METRICS_DIR = "etl_parser_metrics";
     private final SparkSession spark;
+    private SinkWriter sinkWriter;
     private final ETLRunnerConfig runConfig;
     private TableName eventTableName = null;
 
@@ -226,14 +237,33 @@ public class ETLRunner {
         log.info(JOB_NAME_PROP + ":" + System.getProperty(JOB_NAME_PROP));
         log.info(WAREHOUSE_DIR_PROP + ":" + System.getProperty(WAREHOUSE_DIR_PROP));
 
-        Dataset<Row> dataset = readInputDataset(true);
+        ETLMetric.reset();
+        if (ContextUtil.isParserMetricsEnabled()) {
+            ETLMetric.registerParserMetrics(spark);
+        }
+        CacheSnapshotStore.distribute(spark);
+        Dataset<Row> dataset = ETLMetric.observe(readInputDataset(true), "source");
         ContextUtil.cacheDataset(dataset);
-        log.info(new ETLMetric(dataset, "source").toString());
 
         Dataset<Row> dataset2 = executeTransformers(dataset, runConfig.getTransformerClassNames());
 
         long resultCount = writeResultEventDataset(dataset2);
-        log.info(new ETLMetric(resultCount, SINK).toString());
+        ETLMetric.record(resultCount, SINK);
+        ETLMetric.summary();
+        ETLMetric.writeParserMetrics(spark, getSaveOutputPath(runConfig.getOutputPath(), PARSER_METRICS_DIR)
+                + "/" + getParserMetricsName() + ".json");
+        CacheSnapshotStore.save(spark);
+    }
+
+    /**
+     * The job name, or the start time of the spark application when the job has no name.
+     */
+    private String getParserMetricsName() {
+        String jobName = ContextUtil.getJobName();
+        if (jobName != null && !jobName.isEmpty()) {
+            return jobName;
+        }
+        return "job-" + spark.sparkContext().startTime();
     }
 
     private Dataset<Row> rePartitionInputDataset(final Dataset<Row> dataset) {
@@ -250,12 +280,32 @@ public class ETLRunner {
         return repDataset;
     }
 
+    /**
+     * Writes the event table and waits for the other tables of the job still being written.
+     */
     public long writeResultEventDataset(final Dataset<Row> dataset2) {
         String outPath = runConfig.getOutputPath();
         if (this.eventTableName == null) {
             throw new IllegalStateException("eventTableName is null");
         }
-        return writeResult(outPath, dataset2, this.eventTableName);
+        String sinkName = SINK + " " + this.eventTableName.getTableName();
+        SinkWriter writer = getSinkWriter();
+        try {
+            TableName tableName = this.eventTableName;
+            writer.submit(sinkName, () -> writeResult(outPath, dataset2, tableName));
+            return writer.awaitAll().get(sinkName);
+        } finally {
+            writer.close();
+            this.sinkWriter = null;
+        }
+    }
+
+    private synchronized SinkWriter getSinkWriter() {
+        if (this.sinkWriter == null) {
+            int parallelism = Integer.parseInt(System.getProperty(SINK_WRITE_PARALLELISM_PROP, "1"));
+            this.sinkWriter = new SinkWriter(spark.sparkContext(), parallelism, System.getProperty(SINK_SCHEDULER_POOL_PROP, SINK));
+        }
+        return this.sinkWriter;
     }
 
     public Dataset<Row> readInputDataset(final boolean checkModifiedTime) {
@@ -313,26 +363,17 @@ public class ETLRunner {
             options.put("modifiedAfter", modifiedAfter);
             options.put("modifiedBefore", modifiedBefore);
         }
+        // one read over all day partitions, so Spark plans a single file index and listing
         Dataset<Row> dataset = spark.read()
                 .options(options)
                 .schema(inputDataSchema)
-                .json(sourcePathsArray[0])
+                .json(sourcePathsArray)
                 .withColumn(INPUT_FILE_NAME, input_file_name());
-        log.info("read source " + 0 + ", path:" + sourcePathsArray[0]);
-        for (int i = 1; i < sourcePathsArray.length; i++) {
-            Dataset<Row> datasetTemp = spark.read()
-                    .options(options)
-                    .schema(inputDataSchema)
-                    .json(sourcePathsArray[i])
-                    .withColumn(INPUT_FILE_NAME, input_file_name());
-            log.info("read source " + i + ", path:" + sourcePathsArray[i]);
-            dataset = dataset.unionAll(datasetTemp);
-        }
-
-        List<Row> inputFiles = dataset.select(col(INPUT_FILE_NAME).alias("fileName")).distinct().collectAsList();
-        inputFiles.forEach(row -> log.info(row.getAs("fileName")));
-        long fileNameCount = inputFiles.size();
-        log.info(new ETLMetric(fileNameCount, "loaded input files").toString());
+
+        // the file list comes from the file index listing, no data is scanned here
+        String[] inputFiles = dataset.inputFiles();
+        Arrays.stream(inputFiles).forEach(log::info);
+        ETLMetric.record(inputFiles.length, "loaded input files");
 
         return rePartitionInputDataset(dataset);
     }
@@ -405,17 +446,12 @@ public class ETLRunner {
         Dataset<Row> evenParamDataset = transformedDatasets.get(1);
         Dataset<Row> itemDataset = transformedDatasets.get(2);
         Dataset<Row> userDataset = transformedDatasets.get(3);
-        String outPath = runConfig.getOutputPath();
-        long evenParamDatasetCount = writeResult(outPath, evenParamDataset, TableName.EVEN_PARAMETER);
-        log.info(new ETLMetric(evenParamDatasetCount, SINK + " " + TableName.EVEN_PARAMETER.getTableName()).toString());
-
+        submitWriteResult(evenParamDataset, TableName.EVEN_PARAMETER);
         if (itemDataset != null) {
-            long itemDatasetCount = writeResult(outPath, itemDataset, TableName.ITEM);
-            log.info(new ETLMetric(itemDatasetCount, SINK + " " + TableName.ITEM.getTableName()).toString());
+            submitWriteResult(itemDataset, TableName.ITEM);
         }
         if (userDataset != null) {
-            long userDatasetCount = writeResult(outPath, userDataset, TableName.USER);
-            log.info(new ETLMetric(userDatasetCount, SINK + " " + TableName.USER.getTableName()).toString());
+            submitWriteResult(userDataset, TableName.USER);
         }
     }
 
@@ -426,16 +462,22 @@ public class ETLRunner {
             if (tableName == TableName.EVENT_V2) {
                 continue;
             }
-            Dataset<Row> dataset = entry.getValue();
-            String outPath = runConfig.getOutputPath();
-            long datasetCount = writeResult(outPath, dataset, tableName);
-            log.info(new ETLMetric(datasetCount, SINK + " " + tableName.getTableName()).toString());
+            submitWriteResult(entry.getValue(), tableName);
         }
     }
 
+    private void submitWriteResult(final Dataset<Row> dataset, final TableName tableName) {
+        String outPath = runConfig.getOutputPath();
+        getSinkWriter().submit(SINK + " " + tableName.getTableName(), () -> writeResult(outPath, dataset, tableName));
+    }
+
     protected long writeResult(final String outputPath, final Dataset<Row> dataset, final TableName tbName) {
         log.info("writeResult for table " + tbName);
         Dataset<Row> partitionedDataset = prepareForPartition(dataset, tbName);
+        long targetFileBytes = Long.parseLong(System.getProperty(OUTPUT_TARGET_FILE_BYTES_PROP, "-1"));
+        if (targetFileBytes > 0 && !"json".equalsIgnoreCase(runConfig.getOutPutFormat())) {
+            return writeResultBySize(getSaveOutputPath(outputPath, tbName.getTableName()), partitionedDataset, tbName, targetFileBytes);
+        }
         partitionedDataset.cache();
         long resultCount = partitionedDataset.count();
         log.info(new ETLMetric(resultCount, "writeResult for table " + tbName).toString());
@@ -443,13 +485,7 @@ public class ETLRunner {
         if (resultCount == 0) {
             return 0L;
         }
-        String saveOutputPath = outputPath;
-        if (!(saveOutputPath.endsWith(tbName.getTableName() + "/")
-                || saveOutputPath.endsWith(tbName.getTableName()))) {
-            saveOutputPath = Paths.get(outputPath, tbName.getTableName()).toString()
-                    .replace("s3:/", "s3://");
-        }
-        log.info("saveOutputPath: " + saveOutputPath);
+        String saveOutputPath = getSaveOutputPath(outputPath, tbName.getTableName());
 
         String[] partitionBy = new String[]{PARTITION_APP, PARTITION_YEAR, PARTITION_MONTH, PARTITION_DAY};
         if ("json".equalsIgnoreCase(runConfig.getOutPutFormat())) {
@@ -490,6 +526,70 @@ public class ETLRunner {
         return resultCount;
     }
 
+    private static String getSaveOutputPath(final String outputPath, final String tableName) {
+        String saveOutputPath = outputPath;
+        if (!(saveOutputPath.endsWith(tableName + "/")
+                || saveOutputPath.endsWith(tableName))) {
+            saveOutputPath = Paths.get(outputPath, tableName).toString()
+                    .replace("s3:/", "s3://");
+        }
+        log.info("saveOutputPath: " + saveOutputPath);
+        return saveOutputPath;
+    }
+
+    /**
+     * Writes parquet files of about targetFileBytes without counting or sampling the dataset first.
+     * The rows are repartitioned by app and event date into the size estimated by the optimizer divided by
+     * the target, estimated bytes are converted to file bytes with output.shuffle.bytes.ratio. Each output
+     * partition is then written by one task as one file, and each task writes about targetFileBytes in total.
+     * Adaptive execution does not resize a repartition to an explicit number, so the session conf shared
+     * with the concurrent writes is left as it is. The row count is observed during the write.
+     */
+    private long writeResultBySize(final String saveOutputPath, final Dataset<Row> partitionedDataset,
+                                   final TableName tbName, final long targetFileBytes) {
+        int numPartitions = estimateWritePartitions(partitionedDataset, targetFileBytes);
+        log.info("targetFileBytes: " + targetFileBytes + ", write partitions of " + tbName + ": " + numPartitions);
+
+        Observation observation = new Observation("writeResult " + tbName);
+        partitionedDataset
+                .observe(observation, count(lit(1)).alias("count"))
+                .repartition(numPartitions, col(APP_ID_EVENT_DATE))
+                .drop(APP_ID_EVENT_DATE)
+                .write()
+                .option("compression", "snappy")
+                .partitionBy(PARTITION_APP, PARTITION_YEAR, PARTITION_MONTH, PARTITION_DAY)
+                .mode(SaveMode.Append)
+                .parquet(saveOutputPath);
+        long resultCount;
+        try {
+            resultCount = ((Number) observation.getAsJava().get("count")).longValue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecuteTransformerException(e);
+        }
+        log.info(new ETLMetric(resultCount, "writeResult for table " + tbName).toString());
+        return resultCount;
+    }
+
+    /**
+     * The estimated size of the dataset divided by the bytes per write task, at most spark.sql.shuffle.partitions,
+     * which is also used when the optimizer has no estimate.
+     */
+    private static int estimateWritePartitions(final Dataset<Row> dataset, final long targetFileBytes) {
+        SQLConf sqlConf = dataset.sparkSession().sessionState().conf();
+        BigInteger maxPartitions = BigInteger.valueOf(sqlConf.numShufflePartitions());
+        BigInteger estimatedBytes = dataset.queryExecution().optimizedPlan().stats().sizeInBytes().bigInteger();
+        if (estimatedBytes.compareTo(BigInteger.valueOf(sqlConf.defaultSizeInBytes())) >= 0) {
+            log.warn("no size estimate for the output, write with " + maxPartitions + " partitions");
+            return maxPartitions.intValue();
+        }
+        double shuffleBytesRatio = Double.parseDouble(System.getProperty(OUTPUT_SHUFFLE_BYTES_RATIO_PROP, "3"));
+        BigInteger bytesPerPartition = BigInteger.valueOf(Math.max(1L, (long) (targetFileBytes * shuffleBytesRatio)));
+        log.info("estimated output bytes: " + estimatedBytes + ", bytes per write partition: " + bytesPerPartition);
+        return estimatedBytes.add(bytesPerPartition).subtract(BigInteger.ONE).divide(bytesPerPartition)
+                .max(BigInteger.ONE).min(maxPartitions).intValue();
+    }
+
     private Dataset<Row> prepareForPartition(final Dataset<Row> dataset, final TableName tbName) {
         if (Arrays.asList(TableName.EVENT_V2,
                 TableName.USER_V2,
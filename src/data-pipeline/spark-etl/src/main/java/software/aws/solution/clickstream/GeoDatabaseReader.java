@@ -0,0 +1,127 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+package software.aws.solution.clickstream;
+
+import com.maxmind.db.CHMCache;
+import com.maxmind.db.DatabaseRecord;
+import com.maxmind.db.Metadata;
+import com.maxmind.db.Reader;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.SparkEnv;
+import org.apache.spark.SparkFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static software.aws.solution.clickstream.common.Util.getStackTrace;
+
+/**
+ * One memory-mapped GeoLite2 reader per JVM, shared by all tasks of an executor.
+ * The reader and its node cache are thread-safe. It is opened on first lookup and
+ * is owned by the JVM: tasks never close it, as other tasks may be reading from it.
+ */
+@Slf4j
+public final class GeoDatabaseReader {
+    public static final String GEO_DB_FILE = "GeoLite2-City.mmdb";
+    private static final int NODE_CACHE_SIZE = 1024 * 128;
+    private static final AtomicLong READER_OPEN_COUNT = new AtomicLong();
+    private static final AtomicLong LOOKUP_COUNT = new AtomicLong();
+    private static volatile Reader reader;
+    private static volatile String readerFile;
+    // the SparkEnv the database file was resolved for
+    private static volatile SparkEnv readerEnv;
+
+    private GeoDatabaseReader() {
+    }
+
+    public static <T> T lookup(final InetAddress address, final Class<T> cls) throws IOException {
+        LOOKUP_COUNT.incrementAndGet();
+        return getReader().get(address, cls);
+    }
+
+    /**
+     * Lookup by address bytes, the record holds the network of the database node the address was
+     * found in, also when the database has no data for it.
+     */
+    public static <T> DatabaseRecord<T> getRecord(final byte[] address, final Class<T> cls) throws IOException {
+        LOOKUP_COUNT.incrementAndGet();
+        // an address from bytes is never resolved
+        return getReader().getRecord(InetAddress.getByAddress(address), cls);
+    }
+
+    static Reader getReader() throws IOException {
+        Reader current = reader;
+        SparkEnv env = SparkEnv.get();
+        if (current != null && env == readerEnv) {
+            return current;
+        }
+        synchronized (GeoDatabaseReader.class) {
+            if (reader != null && env == readerEnv) {
+                return reader;
+            }
+            // SparkFiles root changes when a new SparkContext is created in the same JVM
+            String dbFile = SparkFiles.get(GEO_DB_FILE);
+            if (reader == null || !dbFile.equals(readerFile)) {
+                // a replaced reader is left to the GC, tasks of the previous context may still read from it
+                reader = new Reader(new File(dbFile), Reader.FileMode.MEMORY_MAPPED, new CHMCache(NODE_CACHE_SIZE));
+                readerFile = dbFile;
+                long openCount = READER_OPEN_COUNT.incrementAndGet();
+                log.info("opened geo database reader: " + dbFile + ", readerOpenCount: " + openCount);
+            }
+            readerEnv = env;
+            return reader;
+        }
+    }
+
+    /**
+     * @return type and build time of the geo database, changes whenever the lookup results can change
+     */
+    public static String getFingerprint() {
+        try {
+            Metadata metadata = getReader().getMetadata();
+            return metadata.getDatabaseType() + "@" + metadata.getBuildDate().getTime();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Close the reader of the driver once the job is done, no task may be running in this JVM.
+     */
+    public static synchronized void close() {
+        if (reader == null) {
+            return;
+        }
+        log.info("closing geo database reader, readerOpenCount: " + getReaderOpenCount() + ", lookupCount: " + getLookupCount());
+        try {
+            reader.close();
+        } catch (IOException e) {
+            log.warn("failed to close geo database reader: " + getStackTrace(e));
+        }
+        reader = null;
+        readerFile = null;
+        readerEnv = null;
+    }
+
+    public static long getReaderOpenCount() {
+        return READER_OPEN_COUNT.get();
+    }
+
+    public static long getLookupCount() {
+        return LOOKUP_COUNT.get();
+    }
+}
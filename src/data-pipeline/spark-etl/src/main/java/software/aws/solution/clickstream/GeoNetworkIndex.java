@@ -0,0 +1,177 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+package software.aws.solution.clickstream;
+
+import com.maxmind.db.DatabaseRecord;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Geo database lookups cached per database network instead of per address.
+ * <p>
+ * Every geo database record belongs to a network, e.g. a /24 or a /48, all addresses of which have
+ * the same data. The networks looked up so far are kept as ranges of numeric addresses, sorted by
+ * their first address, separately for ipv4 and ipv6. An address inside a known range is answered
+ * without touching the database, including the ranges the database has no data for. The index is
+ * cleared when it outgrows {@code maxNetworks} and when a database lookup finds that the geo
+ * database reader has been reopened.
+ */
+@Slf4j
+final class GeoNetworkIndex<T> {
+    private final Class<T> cls;
+    private final int maxNetworks;
+    private final ConcurrentSkipListMap<Address, Network<T>> ipv4Networks = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Address, Network<T>> ipv6Networks = new ConcurrentSkipListMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile long readerOpenCount = -1;
+
+    GeoNetworkIndex(final Class<T> cls, final int maxNetworks) {
+        this.cls = cls;
+        this.maxNetworks = maxNetworks;
+    }
+
+    /**
+     * @param address 4 or 16 address bytes, see {@link IpAddressParser}
+     * @return the data of the network the address is in, null if the database has none
+     */
+    T lookup(final byte[] address) throws IOException {
+        checkReader();
+        Address key = Address.of(address);
+        ConcurrentSkipListMap<Address, Network<T>> networks = address.length == IpAddressParser.IPV4_BYTES ? ipv4Networks : ipv6Networks;
+        Map.Entry<Address, Network<T>> floor = networks.floorEntry(key);
+        if (floor != null && floor.getValue().last.compareTo(key) >= 0) {
+            return floor.getValue().data;
+        }
+
+        DatabaseRecord<T> record = GeoDatabaseReader.getRecord(address, cls);
+        // the reader may have been reopened by this lookup
+        checkReader();
+        if (size.incrementAndGet() > maxNetworks) {
+            log.info("geo network index is full with {} networks, clearing it", maxNetworks);
+            clear();
+            size.incrementAndGet();
+        }
+        int hostBits = address.length * Byte.SIZE - record.getNetwork().getPrefixLength();
+        if (networks.put(key.first(hostBits), new Network<>(key.last(hostBits), record.getData())) != null) {
+            size.decrementAndGet();
+        }
+        return record.getData();
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    private void checkReader() {
+        long openCount = GeoDatabaseReader.getReaderOpenCount();
+        if (openCount != readerOpenCount) {
+            clear();
+            readerOpenCount = openCount;
+        }
+    }
+
+    private void clear() {
+        ipv4Networks.clear();
+        ipv6Networks.clear();
+        size.set(0);
+    }
+
+    private static final class Network<T> {
+        private final Address last;
+        private final T data;
+
+        Network(final Address last, final T data) {
+            this.last = last;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Unsigned 128 bit address, ipv4 addresses only use the low 32 bits.
+     */
+    static final class Address implements Comparable<Address> {
+        private static final int LONG_BITS = 64;
+        private final long high;
+        private final long low;
+
+        Address(final long high, final long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        static Address of(final byte[] address) {
+            long high = 0;
+            long low = 0;
+            for (int i = 0; i < address.length; i++) {
+                high = (high << Byte.SIZE) | (low >>> (LONG_BITS - Byte.SIZE));
+                low = (low << Byte.SIZE) | (address[i] & 0xff);
+            }
+            return new Address(high, low);
+        }
+
+        /**
+         * @return the first address of the network with the given number of host bits
+         */
+        Address first(final int hostBits) {
+            return new Address(high & ~highMask(hostBits), low & ~lowMask(hostBits));
+        }
+
+        /**
+         * @return the last address of the network with the given number of host bits
+         */
+        Address last(final int hostBits) {
+            return new Address(high | highMask(hostBits), low | lowMask(hostBits));
+        }
+
+        private static long lowMask(final int hostBits) {
+            if (hostBits >= LONG_BITS) {
+                return -1L;
+            }
+            return (1L << hostBits) - 1;
+        }
+
+        private static long highMask(final int hostBits) {
+            return hostBits <= LONG_BITS ? 0 : lowMask(hostBits - LONG_BITS);
+        }
+
+        @Override
+        public int compareTo(final Address other) {
+            int result = Long.compareUnsigned(high, other.high);
+            return result != 0 ? result : Long.compareUnsigned(low, other.low);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Address)) {
+                return false;
+            }
+            Address other = (Address) obj;
+            return high == other.high && low == other.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high) * 31 + Long.hashCode(low);
+        }
+
+        @Override
+        public String toString() {
+            return Long.toHexString(high) + ":" + Long.toHexString(low);
+        }
+    }
+}
@@ -14,13 +14,10 @@
 
 package software.aws.solution.clickstream;
 
-import com.maxmind.db.CHMCache;
 import com.maxmind.db.MaxMindDbConstructor;
 import com.maxmind.db.MaxMindDbParameter;
-import com.maxmind.db.Reader;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.spark.SparkFiles;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SaveMode;
@@ -30,10 +27,14 @@ import org.apache.spark.sql.expressions.UserDefinedFunction;
 import org.apache.spark.sql.types.DataTypes;
 import org.apache.spark.sql.types.StructField;
 import software.aws.solution.clickstream.common.Cache;
+import software.aws.solution.clickstream.common.CacheSnapshot;
 import software.aws.solution.clickstream.util.*;
 
-import java.io.File;
-import java.net.InetAddress;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -46,7 +47,17 @@ import static software.aws.solution.clickstream.ETLRunner.DEBUG_LOCAL_PATH;
 
 @Slf4j
 public class IPEnrichment {
-    private static final Cache<Row> CACHED_IP = new Cache<>();
+    // geo row of 7 short strings
+    private static final int GEO_ROW_BYTES = 256;
+    // the locale is part of the result row, so it is part of the key
+    private static final Cache<List<String>, Row> CACHED_IP = new Cache<>("ip", GEO_ROW_BYTES);
+    // addresses rarely repeat exactly, their networks do
+    private static final GeoNetworkIndex<LookupResult> GEO_INDEX = new GeoNetworkIndex<>(LookupResult.class, ContextUtil.getGeoIndexMaxNetworks());
+
+    static {
+        CacheSnapshot.register(null, GeoDatabaseReader::getFingerprint, CACHED_IP, new GeoRowCodec());
+    }
+
     public Dataset<Row> transform(final Dataset<Row> dataset) {
         UserDefinedFunction udfEnrichIP = udf(enrich(), DataTypes.createStructType(
                 new StructField[]{
@@ -74,34 +85,76 @@ public class IPEnrichment {
 
     static UDF2<String, String, Row> enrich() {
         return (ipValue, localeValue) -> {
-            if (CACHED_IP.containsKey(ipValue)) {
-                return CACHED_IP.get(ipValue);
+            CacheSnapshotStore.preload();
+            return CACHED_IP.get(Arrays.asList(ipValue, localeValue), key -> lookup(ipValue, localeValue));
+        };
+    }
+
+    private static Row lookup(final String ipValue, final String localeValue) {
+        GenericRow defaultRow = new GenericRow(
+                new Object[]{null, null, null, null, null, null, localeValue}
+        );
+        GenericRow resultRow = defaultRow;
+        try {
+            byte[] address = IpAddressParser.parse(ipValue);
+            if (address == null) {
+                return defaultRow;
             }
-            GenericRow defaultRow = new GenericRow(
-                    new Object[]{null, null, null, null, null, null, localeValue}
-            );
-            GenericRow resultRow = defaultRow;
-            try (Reader reader = new Reader(new File(SparkFiles.get("GeoLite2-City.mmdb")),
-                    new CHMCache(1024 * 128))) {
-                InetAddress address = InetAddress.getByName(ipValue);
-                LookupResult result = reader.get(address, LookupResult.class);
-                resultRow = Optional.ofNullable(result)
-                        .map(geo -> new GenericRow(new Object[]{
-                                Optional.ofNullable(geo.getCity()).map(LookupResult.City::getName).orElse(null),
-                                Optional.ofNullable(geo.getContinent()).map(LookupResult.Continent::getName).orElse(null),
-                                Optional.ofNullable(geo.getCountry()).map(LookupResult.Country::getName).orElse(null),
-                                null,
-                                null,
-                                null,
-                                localeValue
-                        }))
-                        .orElse(defaultRow);
-            } catch (Exception e) {
-                log.warn("failed to enrich IP: " + ipValue + ", " + getStackTrace(e));
+            LookupResult result = GEO_INDEX.lookup(address);
+            resultRow = Optional.ofNullable(result)
+                    .map(geo -> new GenericRow(new Object[]{
+                            Optional.ofNullable(geo.getCity()).map(LookupResult.City::getName).orElse(null),
+                            Optional.ofNullable(geo.getContinent()).map(LookupResult.Continent::getName).orElse(null),
+                            Optional.ofNullable(geo.getCountry()).map(LookupResult.Country::getName).orElse(null),
+                            null,
+                            null,
+                            null,
+                            localeValue
+                    }))
+                    .orElse(defaultRow);
+        } catch (Exception e) {
+            log.warn("failed to enrich IP: " + ipValue + ", " + getStackTrace(e));
+        }
+        return resultRow;
+    }
+
+    /**
+     * Keys are the ip and locale, values rows of nullable strings.
+     */
+    private static final class GeoRowCodec implements CacheSnapshot.Codec<List<String>, Row> {
+        @Override
+        public void writeKey(final DataOutput out, final List<String> key) throws IOException {
+            out.writeInt(key.size());
+            for (String part : key) {
+                CacheSnapshot.writeString(out, part);
             }
-            CACHED_IP.put(ipValue, resultRow);
-            return resultRow;
-        };
+        }
+
+        @Override
+        public List<String> readKey(final DataInput in) throws IOException {
+            String[] key = new String[in.readInt()];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = CacheSnapshot.readString(in);
+            }
+            return Arrays.asList(key);
+        }
+
+        @Override
+        public void writeValue(final DataOutput out, final Row row) throws IOException {
+            out.writeInt(row.length());
+            for (int i = 0; i < row.length(); i++) {
+                CacheSnapshot.writeString(out, row.getString(i));
+            }
+        }
+
+        @Override
+        public Row readValue(final DataInput in, final List<String> key) throws IOException {
+            Object[] values = new Object[in.readInt()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = CacheSnapshot.readString(in);
+            }
+            return new GenericRow(values);
+        }
     }
 
     public static class LookupResult {
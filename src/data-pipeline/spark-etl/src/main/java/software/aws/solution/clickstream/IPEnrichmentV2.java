@@ -41,11 +41,9 @@ public class IPEnrichmentV2 {
                         DataTypes.createStructField("locale", DataTypes.StringType, true),
                 }
         ));
-        Dataset<Row> ipEnrichDataset = dataset.withColumn(IP_ENRICH_OUT,
-                udfEnrichIP.apply(
+        Dataset<Row> ipEnrichDataset = DistinctKeyEnrichment.enrich(dataset, udfEnrichIP, IP_ENRICH_OUT,
                         split(col(Constant.IP), ",").getItem(0),
-                        col(Constant.GEO_LOCALE)
-                ))
+                        col(Constant.GEO_LOCALE))
                 .withColumn(Constant.GEO_CITY, coalesce(col(IP_ENRICH_OUT).getField("city"), col(Constant.GEO_CITY)))
                 .withColumn(Constant.GEO_CONTINENT, coalesce(col(IP_ENRICH_OUT).getField("continent"), col(Constant.GEO_CONTINENT)))
                 .withColumn(Constant.GEO_COUNTRY, coalesce(col(IP_ENRICH_OUT).getField("country"), col(Constant.GEO_COUNTRY)))
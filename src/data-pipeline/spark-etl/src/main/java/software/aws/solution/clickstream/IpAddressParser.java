@@ -0,0 +1,216 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+package software.aws.solution.clickstream;
+
+import java.util.Arrays;
+
+/**
+ * Parses ip address literals into their bytes without {@link java.net.InetAddress}, so no
+ * host name is ever resolved. Accepts the literals {@link java.net.InetAddress#getByName(String)} accepts:
+ * ipv4 in dotted form, including the short forms like {@code 127.1}, ipv6 with {@code ::} compression,
+ * a trailing dotted ipv4 part, a numeric zone id, or in brackets. Zone ids naming an interface are not accepted. An ipv4-mapped ipv6 address is returned
+ * as ipv4, like {@code InetAddress} does.
+ */
+public final class IpAddressParser {
+    public static final int IPV4_BYTES = 4;
+    public static final int IPV6_BYTES = 16;
+    private static final int MAX_IPV4_CHARS = 15;
+    private static final int BYTE_MASK = 0xff;
+    private static final int GROUP_MAX = 0xffff;
+    private static final int MAPPED_PREFIX_BYTES = 10;
+
+    private IpAddressParser() {
+    }
+
+    /**
+     * @return 4 or 16 bytes, or null if the value is not an ip address literal
+     */
+    public static byte[] parse(final String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        String literal = value;
+        if (literal.charAt(0) == '[') {
+            if (literal.length() < 2 || literal.charAt(literal.length() - 1) != ']') {
+                return null;
+            }
+            literal = literal.substring(1, literal.length() - 1);
+        }
+        if (literal.indexOf(':') < 0) {
+            return literal.length() == value.length() ? parseIpv4(literal) : null;
+        }
+        int zone = literal.indexOf('%');
+        if (zone >= 0) {
+            // a numeric scope id, interface names are resolved by InetAddress
+            if (!isNumeric(literal, zone + 1)) {
+                return null;
+            }
+            literal = literal.substring(0, zone);
+        }
+        byte[] address = parseIpv6(literal);
+        return address != null && isIpv4Mapped(address) ? Arrays.copyOfRange(address, IPV6_BYTES - IPV4_BYTES, IPV6_BYTES) : address;
+    }
+
+    /**
+     * Dotted ipv4 where the last part fills the remaining bytes, e.g. {@code 10.1} is {@code 10.0.0.1}.
+     */
+    static byte[] parseIpv4(final String literal) {
+        int length = literal.length();
+        if (length == 0 || length > MAX_IPV4_CHARS) {
+            return null;
+        }
+        byte[] address = new byte[IPV4_BYTES];
+        long part = 0;
+        int index = 0;
+        boolean newPart = true;
+        for (int i = 0; i < length; i++) {
+            char c = literal.charAt(i);
+            if (c == '.') {
+                if (newPart || part > BYTE_MASK || index == IPV4_BYTES - 1) {
+                    return null;
+                }
+                address[index++] = (byte) part;
+                part = 0;
+                newPart = true;
+            } else if (c >= '0' && c <= '9') {
+                part = part * 10 + (c - '0');
+                newPart = false;
+            } else {
+                return null;
+            }
+        }
+        int remainingBytes = IPV4_BYTES - index;
+        if (newPart || part >= 1L << (remainingBytes * Byte.SIZE)) {
+            return null;
+        }
+        for (int i = IPV4_BYTES - 1; i >= index; i--) {
+            address[i] = (byte) part;
+            part >>>= Byte.SIZE;
+        }
+        return address;
+    }
+
+    private static byte[] parseIpv6(final String literal) {
+        byte[] address = new byte[IPV6_BYTES];
+        int length = literal.length();
+        int compressedAt = -1;
+        int index = 0;
+        int i = 0;
+        if (literal.startsWith("::")) {
+            compressedAt = 0;
+            i = 2;
+        } else if (length > 0 && literal.charAt(0) == ':') {
+            return null;
+        }
+        while (i < length) {
+            int groupEnd = i;
+            int group = 0;
+            while (groupEnd < length && hexDigit(literal.charAt(groupEnd)) >= 0) {
+                group = (group << 4) | hexDigit(literal.charAt(groupEnd));
+                if (group > GROUP_MAX) {
+                    return null;
+                }
+                groupEnd++;
+            }
+            if (groupEnd < length && literal.charAt(groupEnd) == '.') {
+                // trailing dotted ipv4 part
+                byte[] ipv4 = parseDottedQuad(literal.substring(i));
+                if (ipv4 == null || index + IPV4_BYTES > IPV6_BYTES) {
+                    return null;
+                }
+                System.arraycopy(ipv4, 0, address, index, IPV4_BYTES);
+                index += IPV4_BYTES;
+                break;
+            }
+            if (groupEnd == i || index + 2 > IPV6_BYTES) {
+                return null;
+            }
+            address[index++] = (byte) (group >>> Byte.SIZE);
+            address[index++] = (byte) group;
+            i = groupEnd;
+            if (i == length) {
+                break;
+            }
+            if (literal.charAt(i) != ':') {
+                return null;
+            }
+            i++;
+            if (i < length && literal.charAt(i) == ':') {
+                if (compressedAt >= 0) {
+                    return null;
+                }
+                compressedAt = index;
+                i++;
+            } else if (i == length) {
+                // trailing single colon
+                return null;
+            }
+        }
+        if (compressedAt >= 0) {
+            if (index == IPV6_BYTES) {
+                return null;
+            }
+            int tail = index - compressedAt;
+            System.arraycopy(address, compressedAt, address, IPV6_BYTES - tail, tail);
+            Arrays.fill(address, compressedAt, IPV6_BYTES - tail, (byte) 0);
+        } else if (index != IPV6_BYTES) {
+            return null;
+        }
+        return address;
+    }
+
+    private static byte[] parseDottedQuad(final String literal) {
+        int dots = 0;
+        for (int i = 0; i < literal.length(); i++) {
+            if (literal.charAt(i) == '.') {
+                dots++;
+            }
+        }
+        return dots == IPV4_BYTES - 1 ? parseIpv4(literal) : null;
+    }
+
+    private static boolean isIpv4Mapped(final byte[] address) {
+        for (int i = 0; i < MAPPED_PREFIX_BYTES; i++) {
+            if (address[i] != 0) {
+                return false;
+            }
+        }
+        return address[MAPPED_PREFIX_BYTES] == (byte) BYTE_MASK && address[MAPPED_PREFIX_BYTES + 1] == (byte) BYTE_MASK;
+    }
+
+    private static boolean isNumeric(final String value, final int start) {
+        if (start >= value.length()) {
+            return false;
+        }
+        for (int i = start; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hexDigit(final char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+}
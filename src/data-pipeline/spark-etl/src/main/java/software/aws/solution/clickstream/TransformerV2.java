@@ -354,10 +354,10 @@ public final class TransformerV2 {
     }
 
     public List<Dataset<Row>> transform(final Dataset<Row> dataset) {
-        log.info(new ETLMetric(dataset, "transform enter").toString());
-        Dataset<Row> cleanedDataset = cleaner.clean(dataset, DATA_SCHEMA_V2_FILE_PATH);
+        ContextUtil.checkKeyedStateStoreUnsupported(TransformerV2.class.getSimpleName());
+        Dataset<Row> cleanedDataset = cleaner.clean(ETLMetric.observe(dataset, "transform enter"), DATA_SCHEMA_V2_FILE_PATH);
         ContextUtil.cacheDataset(cleanedDataset);
-        log.info(new ETLMetric(cleanedDataset, "after clean").toString());
+        cleanedDataset = ETLMetric.observe(cleanedDataset, "after clean");
         Column dataCol = col("data");
 
         Dataset<Row> dataset0 = cleanedDataset.withColumn(APP_ID, dataCol.getField(APP_ID))
@@ -370,17 +370,13 @@ public final class TransformerV2 {
                 .withColumn(USER_ID, get_json_object(dataCol.getField("user"), "$._user_id.value").cast(DataTypes.StringType));
         Dataset<Row> dataset1 = convertAppInfo(dataset0);
 
-        Dataset<Row> eventDataset = extractEvent(dataset1);
-        log.info(new ETLMetric(eventDataset, "eventDataset").toString());
+        Dataset<Row> eventDataset = ETLMetric.observe(extractEvent(dataset1), "eventDataset");
 
-        Dataset<Row> eventParameterDataset = extractEventParameter(dataset1);
-        log.info(new ETLMetric(eventParameterDataset, "eventParameterDataset").toString());
+        Dataset<Row> eventParameterDataset = ETLMetric.observe(extractEventParameter(dataset1), "eventParameterDataset");
 
-        Optional<Dataset<Row>> itemDataset = extractItem(dataset1);
-        itemDataset.ifPresent(rowDataset -> log.info(new ETLMetric(rowDataset, "itemDataset").toString()));
+        Optional<Dataset<Row>> itemDataset = extractItem(dataset1).map(rowDataset -> ETLMetric.observe(rowDataset, "itemDataset"));
 
-        Optional<Dataset<Row>> userDataset = extractUser(dataset1);
-        userDataset.ifPresent(rowDataset -> log.info(new ETLMetric(rowDataset, "userDataset").toString()));
+        Optional<Dataset<Row>> userDataset = extractUser(dataset1).map(rowDataset -> ETLMetric.observe(rowDataset, "userDataset"));
 
         return Arrays.asList(eventDataset,
                 eventParameterDataset,
@@ -30,6 +30,10 @@ import software.aws.solution.clickstream.common.TransformConfig;
 import software.aws.solution.clickstream.transformer.TransformerNameEnum;
 import software.aws.solution.clickstream.util.ContextUtil;
 import software.aws.solution.clickstream.util.DatasetUtil;
+import software.aws.solution.clickstream.util.ETLMetric;
+import software.aws.solution.clickstream.util.KeyedStateStore;
+
+import java.util.List;
 
 import static org.apache.spark.sql.functions.col;
 import static org.apache.spark.sql.functions.expr;
@@ -91,7 +95,7 @@ public class TransformerV3 extends BaseTransformerV3 {
                         first(Constant.PROCESS_INFO).alias(Constant.PROCESS_INFO)
                 );
 
-        log.info("aggUserDataset() userIdDataset count: {}, info: {}", userIdDataset.count(), info);
+        userIdDataset = ETLMetric.observe(userIdDataset, "aggUserDataset() userIdDataset " + info);
 
         boolean debugLocal = Boolean.parseBoolean(System.getProperty(DEBUG_LOCAL_PROP));
 
@@ -106,8 +110,6 @@ public class TransformerV3 extends BaseTransformerV3 {
                         .and(col(latestEventName).equalTo(EVENT_PROFILE_SET))
         );
 
-        log.info("aggUserDataset() profileSetUserPropsDataset count: {}, info: {}", profileSetUserPropsDataset.count(), info);
-
         Dataset<Row> latestUserPropsDataset1 = profileSetUserPropsDataset
                 .groupBy(Constant.APP_ID, Constant.USER_PSEUDO_ID)
                 .agg(
@@ -126,7 +128,7 @@ public class TransformerV3 extends BaseTransformerV3 {
                 col(latest + latestEventName).alias(latestEventName)
         );
 
-        log.info("aggUserDataset() latestUserPropsDataset count: {}, info: {}", latestUserPropsDataset.count(), info);
+        latestUserPropsDataset = ETLMetric.observe(latestUserPropsDataset, "aggUserDataset() latestUserPropsDataset " + info);
         if (debugLocal && latestUserPropsDataset.count() > 0) {
             log.info("{} - latestUserPropsDataset: {}", info, latestUserPropsDataset.first().prettyJson());
         }
@@ -139,7 +141,6 @@ public class TransformerV3 extends BaseTransformerV3 {
                         EVENT_FIRST_VISIT,
                         EVENT_SESSION_START,
                         EVENT_SCREEN_VIEW));
-        log.info("aggUserDataset() userFirstDataSet count: {}, info: {}", userFirstDataSet.count(), info);
 
         Dataset<Row> firstUserPropsDataset1 = userFirstDataSet
                 .groupBy(Constant.APP_ID, Constant.USER_PSEUDO_ID)
@@ -182,13 +183,13 @@ public class TransformerV3 extends BaseTransformerV3 {
                 col(first + Constant.FIRST_APP_INSTALL_SOURCE).alias(Constant.FIRST_APP_INSTALL_SOURCE)
         );
 
-        log.info("aggUserDataset() firstUserPropsDataset count: {}, info: {}", firstUserPropsDataset.count(), info);
+        firstUserPropsDataset = ETLMetric.observe(firstUserPropsDataset, "aggUserDataset() firstUserPropsDataset " + info);
         if (debugLocal && firstUserPropsDataset.count() > 0) {
             log.info("{} - firstUserPropsDataset: {}", info, firstUserPropsDataset.first().prettyJson());
         }
         Dataset<Row> userFinalDataset = joinUserDatasets(userIdDataset, latestUserPropsDataset, firstUserPropsDataset, latestEventName, firstEventName);
 
-        log.info("aggUserDataset() return count: {}, info: {}", userFinalDataset.count(), info);
+        userFinalDataset = ETLMetric.observe(userFinalDataset, "aggUserDataset() return " + info);
         if (debugLocal && userFinalDataset.count() > 0) {
             log.info("{} - userFinalDataset: {}", info, userFinalDataset.first().prettyJson());
         }
@@ -252,6 +253,10 @@ public class TransformerV3 extends BaseTransformerV3 {
         if (this.getTransformConfig() == null) {
             throw new ExecuteTransformerException("Transform config is not set");
         }
+        if (ContextUtil.isSingleParseCleanEnabled()) {
+            return new ClickstreamDataConverterV3(
+                    this.transformConfig.withIngestValidation(this.cleaner.getIngestValidation(DATA_SCHEMA_V2_FILE_PATH)));
+        }
         return new ClickstreamDataConverterV3(this.transformConfig);
     }
 
@@ -267,30 +272,36 @@ public class TransformerV3 extends BaseTransformerV3 {
 
         // agg new
         Dataset<Row> newUserAggDataset = aggUserDataset(userDataset, "newUserAggDataset");
-        log.info("newUserAggDataset count: {}", newUserAggDataset.count());
 
         String tableName = getUserPropsTableName();
         DatasetUtil.PathInfo pathInfo = addSchemaToMap(newUserAggDataset, tableName, TABLE_VERSION_SUFFIX_V3);
         log.info("tableName: {}", tableName);
         log.info("pathInfo - incremental: " + pathInfo.getIncremental() + ", full: " + pathInfo.getFull());
 
-        if (userDataset.count() == 0) {
+        if (userDataset.isEmpty()) {
             log.info("extractUser return empty dataset");
             return userDataset;
         }
 
-        // save new (append)
-        String path = saveIncrementalDatasetToPath(pathInfo.getIncremental(), newUserAggDataset);
+        Dataset<Row> fullUserAggDataset;
+        if (ContextUtil.isKeyedStateStoreEnabled()) {
+            // upsert into the keyed state, only the buckets of the new users are read back
+            fullUserAggDataset = new KeyedStateStore(pathInfo.getState(), List.of(Constant.APP_ID, Constant.USER_PSEUDO_ID),
+                    ds -> aggUserDataset(ds, "stateUserAggDataset"), ContextUtil.getUserKeepDays()
+            ).upsert(newUserAggDataset);
+        } else {
+            // save new (append)
+            String path = saveIncrementalDatasetToPath(pathInfo.getIncremental(), newUserAggDataset);
 
-        // read back full from incremental path
-        Dataset<Row> fullUserDataset = readDatasetFromPath(eventDataset.sparkSession(), path, ContextUtil.getUserKeepDays());
-        log.info("fullUserDataset count: {}", +fullUserDataset.count());
+            // read back full from incremental path
+            Dataset<Row> fullUserDataset = readDatasetFromPath(eventDataset.sparkSession(), path, ContextUtil.getUserKeepDays());
 
-        // agg full
-        Dataset<Row> fullUserAggDataset = aggUserDataset(fullUserDataset, "fullUserAggDataset");
+            // agg full
+            fullUserAggDataset = aggUserDataset(fullUserDataset, "fullUserAggDataset");
 
-        // save full(overwrite) to full path
-        saveFullDatasetToPath(pathInfo.getFull(), fullUserAggDataset);
+            // save full(overwrite) to full path
+            saveFullDatasetToPath(pathInfo.getFull(), fullUserAggDataset);
+        }
 
         // get new updated
         Dataset<Row> newUserIdDataset = newUserAggDataset.select(Constant.APP_ID, Constant.USER_PSEUDO_ID);
@@ -323,18 +334,19 @@ public class TransformerV3 extends BaseTransformerV3 {
                         lit(null).cast(DataTypes.StringType).alias(Constant.EVENT_NAME)
                 );
 
-        log.info("extractUser return userDatasetFinal count: {}", userDatasetFinal.count());
-
         return addProcessInfo(runMaxLengthTransformerForUserV2(userDatasetFinal));
     }
 
     @Override
     public  Dataset<Row> getCleanedDataset(final Dataset<Row> dataset) {
+        boolean singleParse = ContextUtil.isSingleParseCleanEnabled() && this.transformConfig != null;
+        if (singleParse) {
+            log.info("single parse clean is enabled");
+            return this.cleaner.cleanForSingleParse(dataset);
+        }
         Dataset<Row> cleanedDataset = this.cleaner.clean(dataset, DATA_SCHEMA_V2_FILE_PATH);
         cleanedDataset = cleanedDataset.drop(DATA)
                 .withColumnRenamed(DATA_STR, DATA);
-
-        log.info("getCleanedDataset() count: {}", dataset.count());
         return cleanedDataset;
     }
 
@@ -34,7 +34,10 @@ import static software.aws.solution.clickstream.model.ModelV2.STR_TO_STR_MAP_TYP
 @Slf4j
 public class UAEnrichmentV2 {
     static UDF1<String, Row> enrich() {
+        ParserMetricsAccumulator parserMetrics = ETLMetric.getParserMetrics();
         return uaString -> {
+           ETLMetric.collectParserMetrics(parserMetrics);
+           CacheSnapshotStore.preload();
            ClickstreamUA clickstreamUA = UAEnrichHelper.parserUA(uaString);
             return new GenericRow(
                     new Object[]{
@@ -64,7 +67,7 @@ public class UAEnrichmentV2 {
                         DataTypes.createStructField(Constant.DEVICE_UA, STR_TO_STR_MAP_TYPE, true),
                 }
         ));
-        Dataset<Row> datasetUa = dataset.withColumn(UA_ENRICH, udfEnrichUserAgent.apply(col(Constant.UA)));
+        Dataset<Row> datasetUa = DistinctKeyEnrichment.enrich(dataset, udfEnrichUserAgent, UA_ENRICH, col(Constant.UA));
 
         Dataset<Row> enrichedDataset = datasetUa
                 .withColumn(Constant.DEVICE_UA_BROWSER, col(UA_ENRICH).getField(Constant.DEVICE_UA_BROWSER))
@@ -82,13 +85,11 @@ public class UAEnrichmentV2 {
         Dataset<Row> enrichedDatasetFiltered = enrichedDataset;
         String filterBotByUAStr = System.getProperty(FILTER_BOT_BY_UA_PROP);
         if (filterBotByUAStr == null || Boolean.parseBoolean(filterBotByUAStr)) {
-            long beforeFilterCount = enrichedDataset.count();
-            enrichedDatasetFiltered = enrichedDataset.filter(
+            enrichedDatasetFiltered = ETLMetric.observe(enrichedDataset, "before filter by Bot").filter(
                     col(Constant.DEVICE_UA_DEVICE_CATEGORY).notEqual(UAEnrichHelper.BOT)
                             .or(col(Constant.DEVICE_UA_DEVICE_CATEGORY).isNull())
             );
-            long afterFilterCount = enrichedDatasetFiltered.count();
-            log.info(new ETLMetric(beforeFilterCount - afterFilterCount, "filtered by Bot").toString());
+            enrichedDatasetFiltered = ETLMetric.observe(enrichedDatasetFiltered, "after filter by Bot");
         }
         return enrichedDatasetFiltered;
     }
@@ -306,6 +306,7 @@ public class GTMServerDataTransformer {
     }
 
     public List<Dataset<Row>> transform(final Dataset<Row> dataset) {
+        ContextUtil.checkKeyedStateStoreUnsupported(GTMServerDataTransformer.class.getSimpleName());
         Dataset<Row> dataset0 = serverDataConverter.transform(dataset);
         Column dataCol = dataset0.col(DATA_OUT);
 
@@ -325,17 +326,13 @@ public class GTMServerDataTransformer {
 
         Dataset<Row> userFirstVisitDataset = getUserFirstVisitDataset(dataset1);
 
-        Dataset<Row> eventDataset = extractEvent(dataset1);
-        log.info(new ETLMetric(eventDataset, "eventDataset").toString());
+        Dataset<Row> eventDataset = ETLMetric.observe(extractEvent(dataset1), "eventDataset");
 
-        Dataset<Row> eventParameterDataset = extractEventParameter(dataset1);
-        log.info(new ETLMetric(eventParameterDataset, "eventParameterDataset").toString());
+        Dataset<Row> eventParameterDataset = ETLMetric.observe(extractEventParameter(dataset1), "eventParameterDataset");
 
-        Optional<Dataset<Row>> itemDataset = extractItem(dataset1);
-        itemDataset.ifPresent(rowDataset -> log.info(new ETLMetric(rowDataset, "itemDataset").toString()));
+        Optional<Dataset<Row>> itemDataset = extractItem(dataset1).map(rowDataset -> ETLMetric.observe(rowDataset, "itemDataset"));
 
-        Optional<Dataset<Row>> userDataset = extractUser(dataset1, userFirstVisitDataset);
-        userDataset.ifPresent(rowDataset -> log.info(new ETLMetric(rowDataset, "userDataset").toString()));
+        Optional<Dataset<Row>> userDataset = extractUser(dataset1, userFirstVisitDataset).map(rowDataset -> ETLMetric.observe(rowDataset, "userDataset"));
 
         return Arrays.asList(
                 eventDataset,
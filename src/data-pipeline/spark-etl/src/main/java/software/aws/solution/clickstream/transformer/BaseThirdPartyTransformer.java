@@ -23,9 +23,12 @@ import software.aws.solution.clickstream.udfconverter.DatasetConverter;
 import software.aws.solution.clickstream.model.ModelV2;
 import software.aws.solution.clickstream.util.ContextUtil;
 import software.aws.solution.clickstream.util.DatasetUtil;
+import software.aws.solution.clickstream.util.ETLMetric;
+import software.aws.solution.clickstream.util.KeyedStateStore;
 import software.aws.solution.clickstream.util.TableName;
 
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.apache.spark.sql.functions.col;
@@ -231,18 +234,26 @@ public abstract class BaseThirdPartyTransformer extends BaseTransformerV3 {
             return userDataset;
         }
 
-        // save new (append)
-        String path = saveIncrementalDatasetToPath(pathInfo.getIncremental(), newUserAggDataset);
-
-        // read back full from incremental path
-        Dataset<Row> fullUserDataset = readDatasetFromPath(eventDataset.sparkSession(), path, ContextUtil.getUserKeepDays());
-        log.info("fullUserDataset count: {}", +fullUserDataset.count());
-
-        // agg full
-        Dataset<Row> fullUserAggDataset = aggUserDataset(fullUserDataset, "fullUserAggDataset");
-
-        // save full(overwrite) to full path
-        saveFullDatasetToPath(pathInfo.getFull(), fullUserAggDataset);
+        Dataset<Row> fullUserAggDataset;
+        if (ContextUtil.isKeyedStateStoreEnabled()) {
+            // upsert into the keyed state, only the buckets of the new users are read back
+            fullUserAggDataset = new KeyedStateStore(pathInfo.getState(), List.of(Constant.APP_ID, Constant.USER_PSEUDO_ID),
+                    ds -> aggUserDataset(ds, "stateUserAggDataset"), ContextUtil.getUserKeepDays()
+            ).upsert(newUserAggDataset);
+        } else {
+            // save new (append)
+            String path = saveIncrementalDatasetToPath(pathInfo.getIncremental(), newUserAggDataset);
+
+            // read back full from incremental path
+            Dataset<Row> fullUserDataset = ETLMetric.observe(
+                    readDatasetFromPath(eventDataset.sparkSession(), path, ContextUtil.getUserKeepDays()), "fullUserDataset count");
+
+            // agg full
+            fullUserAggDataset = aggUserDataset(fullUserDataset, "fullUserAggDataset");
+
+            // save full(overwrite) to full path
+            saveFullDatasetToPath(pathInfo.getFull(), fullUserAggDataset);
+        }
 
         // get new updated
         Dataset<Row> newUserIdDataset = newUserAggDataset.select(Constant.APP_ID, Constant.USER_PSEUDO_ID);
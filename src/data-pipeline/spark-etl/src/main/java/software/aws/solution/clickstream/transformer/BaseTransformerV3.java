@@ -104,9 +104,8 @@ public abstract class BaseTransformerV3 implements TransformerInterfaceV3 {
 
     @Override
     public Map<TableName, Dataset<Row>> transform(final Dataset<Row> dataset) {
-        Dataset<Row> cleanedDataset = getCleanedDataset(dataset);
+        Dataset<Row> cleanedDataset = ETLMetric.observe(getCleanedDataset(dataset), "after clean");
         ContextUtil.cacheDataset(cleanedDataset);
-        log.info(new ETLMetric(cleanedDataset, "after clean").toString());
 
         log.debug(cleanedDataset.schema().prettyJson());
 
@@ -116,20 +115,16 @@ public abstract class BaseTransformerV3 implements TransformerInterfaceV3 {
             cleanedDataset = cleanedDataset.withColumn(UPLOAD_TIMESTAMP, lit(null).cast(DataTypes.LongType));
         }
 
-        Dataset<Row> convertedDataset = getDatasetTransformer().transform(cleanedDataset);
+        Dataset<Row> convertedDataset = ETLMetric.observe(getDatasetTransformer().transform(cleanedDataset), "convertedDataset");
 
         convertedDataset.cache();
-        log.info("convertedDataset count:" + convertedDataset.count());
 
         Dataset<Row> eventDataset = extractEvent(convertedDataset);
-        Dataset<Row> itemDataset = extractItem(convertedDataset);
-        Dataset<Row> userDataset = extractUser(eventDataset, convertedDataset).filter(col(Constant.USER_PSEUDO_ID).isNotNull());
-        Dataset<Row> sessionDataset = extractSessionFromEvent(eventDataset);
-
-        log.info("eventDataset count:" + eventDataset.count());
-        log.info("itemDataset count:" + itemDataset.count());
-        log.info("userDataset count:" + userDataset.count());
-        log.info("sessionDataset count:" + sessionDataset.count());
+        Dataset<Row> itemDataset = ETLMetric.observe(extractItem(convertedDataset), "itemDataset");
+        Dataset<Row> userDataset = ETLMetric.observe(
+                extractUser(eventDataset, convertedDataset).filter(col(Constant.USER_PSEUDO_ID).isNotNull()), "userDataset");
+        Dataset<Row> sessionDataset = ETLMetric.observe(extractSessionFromEvent(eventDataset), "sessionDataset");
+        eventDataset = ETLMetric.observe(eventDataset, "eventDataset");
 
         Map<TableName, Dataset<Row>> result = new EnumMap<>(TableName.class);
         // table name -> dataset
@@ -180,7 +175,6 @@ public abstract class BaseTransformerV3 implements TransformerInterfaceV3 {
                 );
 
         sessionEventDataset.cache();
-        log.info("sessionEventDataset count: {}", sessionEventDataset.count());
 
         Dataset<Row> sessionDatasetNonDirectAgg = getAggSessionDataset(
                 sessionEventDataset.filter(
@@ -197,7 +191,6 @@ public abstract class BaseTransformerV3 implements TransformerInterfaceV3 {
 
         Dataset<Row> sessionDatasetAgg = sessionDatasetNonDirectAgg.union(sessionDatasetDirectAgg);
 
-        log.info("sessionDatasetAgg count: {}", sessionDatasetAgg.count());
         return addProcessInfo(runMaxLengthTransformerForSession(sessionDatasetAgg));
     }
 
@@ -250,6 +243,10 @@ public abstract class BaseTransformerV3 implements TransformerInterfaceV3 {
     }
 
     private void mergeIncrementalTables(final SparkSession sparkSession) {
+        if (ContextUtil.isKeyedStateStoreEnabled()) {
+            // the keyed state store compacts its own buckets
+            return;
+        }
         log.info("start merging incremental tables");
         int userKeepDays = ContextUtil.getUserKeepDays();
 
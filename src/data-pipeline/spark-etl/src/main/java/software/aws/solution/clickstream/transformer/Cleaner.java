@@ -14,13 +14,11 @@
 
 package software.aws.solution.clickstream.transformer;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.io.Resources;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.hadoop.shaded.org.apache.http.util.Asserts;
 import org.apache.logging.log4j.util.Strings;
-import org.apache.spark.api.java.function.FilterFunction;
 import org.apache.spark.sql.Column;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
@@ -29,16 +27,26 @@ import org.apache.spark.sql.api.java.UDF1;
 import org.apache.spark.sql.expressions.UserDefinedFunction;
 import org.apache.spark.sql.types.ArrayType;
 import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.DoubleType;
+import org.apache.spark.sql.types.FloatType;
+import org.apache.spark.sql.types.IntegerType;
+import org.apache.spark.sql.types.LongType;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import software.aws.solution.clickstream.common.IngestValidation;
+import software.aws.solution.clickstream.common.ParserMetrics;
+import software.aws.solution.clickstream.common.PayloadDecoder;
 import software.aws.solution.clickstream.common.exception.*;
+import software.aws.solution.clickstream.exception.ExecuteTransformerException;
 import software.aws.solution.clickstream.util.*;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Arrays;
-import java.util.Base64;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import static java.util.Objects.requireNonNull;
 import static org.apache.spark.sql.functions.col;
@@ -63,8 +71,8 @@ import static software.aws.solution.clickstream.util.DatasetUtil.EVENT_FIRST_VIS
 import static software.aws.solution.clickstream.util.DatasetUtil.EVENT_PROFILE_SET;
 import static software.aws.solution.clickstream.util.DatasetUtil.JOB_NAME_COL;
 import static software.aws.solution.clickstream.ETLRunner.DEBUG_LOCAL_PATH;
-import static software.aws.solution.clickstream.common.Util.decompress;
 import static software.aws.solution.clickstream.util.DatasetUtil.hasColumn;
+import static software.aws.solution.clickstream.udfconverter.BaseDataConverter.INGEST_APPID;
 
 
 @Slf4j
@@ -75,7 +83,9 @@ public class Cleaner {
     }
 
     private static UDF1<String, String> extractData() {
+        ParserMetricsAccumulator parserMetrics = ETLMetric.getParserMetrics();
         return data -> {
+            ETLMetric.collectParserMetrics(parserMetrics);
             if (data == null) {
                 return "[\"error: data is null\"]";
             }
@@ -84,15 +94,19 @@ public class Cleaner {
             if (dataTrim.startsWith("[") && dataTrim.endsWith("]")) {
                 return dataTrim;
             }
+            long start = ParserMetrics.start();
             try {
-                byte[] binGzipData = Base64.getDecoder().decode(data);
-                return decompress(binGzipData);
+                // the decoded column is parsed by from_json in the plan, so this path needs the String
+                return PayloadDecoder.readUtf8(PayloadDecoder.openBase64Gzip(data));
             } catch (Exception e) {
+                ParserMetrics.recordError(e.getClass().getSimpleName());
                 log.error("extractData error:" + e.getMessage());
                 return "[\"error: extractData error"
                         + ", message: " + e.getMessage()
                         + ", inputData: " + data
                         + "\"]";
+            } finally {
+                ParserMetrics.record(ParserMetrics.Phase.DECODE, start);
             }
         };
     }
@@ -114,21 +128,18 @@ public class Cleaner {
     }
 
     public Dataset<Row> clean(final Dataset<Row> datasetInput, final String schemaFile) {
-        log.info(new ETLMetric(datasetInput, "clean enter").toString());
-        Dataset<Row> dataset = datasetInput;
+        Dataset<Row> dataset = ETLMetric.observe(datasetInput, "clean enter");
         if (!hasColumn(datasetInput, INPUT_FILE_NAME)) {
-            dataset = datasetInput.withColumn(INPUT_FILE_NAME, input_file_name());
+            dataset = dataset.withColumn(INPUT_FILE_NAME, input_file_name());
         }
-        Dataset<Row> decodedDataset = decodeDataColumn(dataset);
+        dataset = prefilterByIngestAppId(dataset);
+        Dataset<Row> decodedDataset = ETLMetric.observe(decodeDataColumn(dataset), "after decodeDataColumn");
         ContextUtil.cacheDataset(decodedDataset);
 
-        log.info(new ETLMetric(decodedDataset, "after decodeDataColumn").toString());
-        Dataset<Row> flattedDataset = flatDataColumn(decodedDataset);
-        log.info(new ETLMetric(flattedDataset, "flatted source").toString());
-        Dataset<Row> structuredDataset = processDataColumnSchema(flattedDataset, schemaFile);
-        log.info(new ETLMetric(structuredDataset, "after processDataColumnSchema").toString());
-        Dataset<Row> filteredDataSet = filter(structuredDataset);
-        log.info(new ETLMetric(filteredDataSet, "after filter").toString());
+        Dataset<Row> flattedDataset = ETLMetric.observe(flatDataColumn(decodedDataset), "flatted source");
+        Dataset<Row> structuredDataset = ETLMetric.observe(processDataColumnSchema(flattedDataset, schemaFile),
+                "after processDataColumnSchema");
+        Dataset<Row> filteredDataSet = ETLMetric.observe(filter(structuredDataset), "after filter");
         if (ContextUtil.isDebugLocal()) {
             decodedDataset.write().mode(SaveMode.Overwrite).json(DEBUG_LOCAL_PATH + "/clean-0-decodedDataset/");
             flattedDataset.write().mode(SaveMode.Overwrite).json(DEBUG_LOCAL_PATH + "/clean-1-flattedDataset/");
@@ -136,14 +147,63 @@ public class Cleaner {
         }
         return filteredDataSet;
     }
-    private Dataset<Row> processDataColumnSchema(final Dataset<Row> dataset, final String schemaFile) {
+
+    /**
+     * The data column is left as it is, the event parser validates, filters and converts the
+     * data elements in one pass with the {@link IngestValidation} from {@link #getIngestValidation}.
+     */
+    public Dataset<Row> cleanForSingleParse(final Dataset<Row> datasetInput) {
+        Dataset<Row> dataset = ETLMetric.observe(datasetInput, "clean enter");
+        if (!hasColumn(datasetInput, INPUT_FILE_NAME)) {
+            dataset = dataset.withColumn(INPUT_FILE_NAME, input_file_name());
+        }
+        dataset = prefilterByIngestAppId(dataset);
+        return dataset;
+    }
+
+    /**
+     * The validation checks the top-level long and float fields of the schema, so a schema with other
+     * field types, which from_json would check too, is rejected rather than partially checked.
+     * Future events are those after the time the validation is created, once for the job.
+     */
+    public IngestValidation getIngestValidation(final String schemaFile) {
+        Set<String> appIds = new HashSet<>();
+        for (Object appId : getAppIds()) {
+            appIds.add((String) appId);
+        }
+        long dataFreshnessInHour = Long.parseLong(System.getProperty(DATA_FRESHNESS_HOUR_PROP, "72"));
+        log.info("dataFreshnessInHour:" + dataFreshnessInHour);
+
+        Set<String> longFields = new HashSet<>();
+        Set<String> floatFields = new HashSet<>();
+        for (StructField field : ((StructType) loadSchema(schemaFile)).fields()) {
+            DataType type = field.dataType();
+            if (type instanceof LongType || type instanceof IntegerType) {
+                longFields.add(field.name());
+            } else if (type instanceof FloatType || type instanceof DoubleType) {
+                floatFields.add(field.name());
+            } else if (!StringType.equals(type)) {
+                throw new ExecuteTransformerException("clean.single.parse cannot validate field " + field.name()
+                        + " of type " + type.simpleString() + " in " + schemaFile);
+            }
+        }
+        long jobStartTimestamp = Instant.now().toEpochMilli();
+        return new IngestValidation(appIds,
+                dataFreshnessInHour * 60 * 60 * 1000L, jobStartTimestamp, longFields, floatFields);
+    }
+
+    private DataType loadSchema(final String schemaFile) {
         String schemaString;
         try {
             schemaString = Resources.toString(requireNonNull(getClass().getResource(schemaFile)), StandardCharsets.UTF_8);
         } catch (IOException e) {
             throw new ExtractDataException(e);
         }
-        DataType dataType = DataType.fromJson(schemaString);
+        return DataType.fromJson(schemaString);
+    }
+
+    private Dataset<Row> processDataColumnSchema(final Dataset<Row> dataset, final String schemaFile) {
+        DataType dataType = loadSchema(schemaFile);
 
         Map<String, String> options = Maps.newHashMap();
         options.put("mode", "PERMISSIVE");
@@ -151,13 +211,11 @@ public class Cleaner {
         Dataset<Row> rowDataset = dataset
                 .withColumn(DATA_STR, col(DATA).cast(StringType))
                 .withColumn(DATA, from_json(col(DATA), dataType, options));
-        log.info(new ETLMetric(rowDataset, "after load data schema").toString());
         if (ContextUtil.isDebugLocal()) {
             rowDataset.write().mode(SaveMode.Overwrite)
                     .json(DEBUG_LOCAL_PATH + "/clean-schemaDataset/");
         }
-        Dataset<Row> normalDataset = processCorruptRecords(rowDataset);
-        log.info(new ETLMetric(normalDataset, "after processCorruptRecords").toString());
+        Dataset<Row> normalDataset = ETLMetric.observe(processCorruptRecords(rowDataset), "after processCorruptRecords");
 
         return normalDataset;
     }
@@ -171,7 +229,7 @@ public class Cleaner {
         Dataset<Row> corruptedDataset = dataset.filter(corruptCondition);
 
         long corruptedDatasetCount = corruptedDataset.count();
-        log.info(new ETLMetric(corruptedDatasetCount, "corrupted").toString());
+        ETLMetric.record(corruptedDatasetCount, "corrupted");
         if (corruptedDatasetCount > 0) {
             String jobName = System.getProperty(JOB_NAME_PROP);
             corruptedDataset = corruptedDataset
@@ -196,51 +254,51 @@ public class Cleaner {
     }
 
     private Dataset<Row> filter(final Dataset<Row> dataset) {
-        long beforeCount = dataset.count();
-        log.info("dataset before filter count: {}", beforeCount);
-
-        Dataset<Row> freshDataset = filterByDataFreshnessAndFuture(dataset);
-        long afterFilterFreshCount = freshDataset.count();
-
-        log.info(new ETLMetric(beforeCount - afterFilterFreshCount, "filtered by DataFreshnessAndFuture").toString());
-
-        Dataset<Row> filteredDataset = filterByAppIds(freshDataset);
-        long afterFilterAppIdsCount = filteredDataset.count();
-
-        log.info(new ETLMetric(afterFilterFreshCount - afterFilterAppIdsCount , "filtered by AppIds").toString());
-        log.info("dataset after filter count: {}", afterFilterAppIdsCount);
-        return filteredDataset;
+        // the number filtered out by each step is the difference of the observed counts,
+        // the count after filter by AppIds is observed as "after filter" by the caller
+        Dataset<Row> beforeDataset = ETLMetric.observe(dataset, "before filter");
+        Dataset<Row> freshDataset = ETLMetric.observe(filterByDataFreshnessAndFuture(beforeDataset),
+                "after filter by DataFreshnessAndFuture");
+        return filterByAppIds(freshDataset);
     }
 
+    /**
+     * The event timestamp is compared with the job start time, so the filter is a plain column predicate.
+     */
     private Dataset<Row> filterByDataFreshnessAndFuture(final Dataset<Row> dataset) {
         long dataFreshnessInHour = Long.parseLong(System.getProperty(DATA_FRESHNESS_HOUR_PROP, "72"));
         log.info("dataFreshnessInHour:" + dataFreshnessInHour);
-        return dataset.filter((FilterFunction<Row>) row -> {
-            long ingestTimestamp = row.getAs("ingest_time");
-            long eventTimestamp = row.getStruct(row.fieldIndex("data")).getAs("timestamp");
-            String eventName = row.getStruct(row.fieldIndex("data")).getAs("event_type");
+        long jobStartTimestamp = Instant.now().toEpochMilli();
+        Column eventTimestamp = col(DATA).getItem("timestamp");
+        Column exempted = col(DATA).getItem("event_type").isin(EVENT_FIRST_OPEN, EVENT_FIRST_VISIT, EVENT_PROFILE_SET);
+        Column fresh = eventTimestamp.leq(jobStartTimestamp)
+                .and(col("ingest_time").minus(eventTimestamp).leq(dataFreshnessInHour * 60 * 60 * 1000L));
+        return dataset.filter(exempted.or(fresh));
+    }
 
-            if (Arrays.asList(EVENT_FIRST_OPEN, EVENT_FIRST_VISIT, EVENT_PROFILE_SET).contains(eventName)) {
-                return true;
-            }
+    private Dataset<Row> filterByAppIds(final Dataset<Row> dataset) {
+        return dataset.filter(col(DATA).getItem("app_id").isin(getAppIds()));
+    }
 
-            if (eventTimestamp > Instant.now().toEpochMilli()) {
-                String eventId = row.getStruct(row.fieldIndex("data")).getAs("event_id");
-                log.warn("eventTimestamp is in the future, eventTimestamp:" + eventTimestamp + ", eventId:" + eventId);
-                return false;
-            }
-            return ingestTimestamp - eventTimestamp <= dataFreshnessInHour * 60 * 60 * 1000L;
-        });
+    /**
+     * Drops the ingest rows sent for an unknown app before their data is decoded, rows without an
+     * appId are kept for the event level filter.
+     */
+    private static Dataset<Row> prefilterByIngestAppId(final Dataset<Row> dataset) {
+        if (!ContextUtil.isCleanPrefilterAppIdEnabled() || !hasColumn(dataset, INGEST_APPID)) {
+            return dataset;
+        }
+        return ETLMetric.observe(dataset.filter(col(INGEST_APPID).isNull().or(col(INGEST_APPID).isin(getAppIds()))),
+                "after prefilter by ingest appId");
     }
 
-    private Dataset<Row> filterByAppIds(final Dataset<Row> dataset) {
+    /**
+     * The valid app ids, a large list is evaluated by Spark as a hash set.
+     */
+    private static Object[] getAppIds() {
         String appIds = System.getProperty(APP_IDS_PROP);
         log.info("filterByAppIds[" + appIds + "]");
         Asserts.check(!Strings.isBlank(appIds), "valid appIds [app.ids] should not be blank");
-        List<String> appIdList = Lists.newArrayList(appIds.split(","));
-        return dataset.filter((FilterFunction<Row>) row -> {
-            String appId = row.getStruct(row.fieldIndex("data")).getAs("app_id");
-            return Strings.isNotBlank(appId) && appIdList.contains(appId);
-        });
+        return Arrays.stream(appIds.split(",")).filter(Strings::isNotBlank).distinct().toArray();
     }
 }
@@ -14,25 +14,29 @@
 package software.aws.solution.clickstream.transformer;
 
 import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.sql.Column;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SaveMode;
-import org.apache.spark.sql.api.java.UDF2;
-import org.apache.spark.sql.catalyst.expressions.GenericRow;
-import org.apache.spark.sql.expressions.UserDefinedFunction;
+import org.apache.spark.sql.catalyst.expressions.Expression;
+import org.apache.spark.sql.catalyst.expressions.objects.StaticInvoke;
+import org.apache.spark.sql.types.AbstractDataType;
 import org.apache.spark.sql.types.DataTypes;
-import org.apache.spark.sql.types.StructField;
+import org.apache.spark.unsafe.Platform;
+import org.apache.spark.unsafe.types.UTF8String;
+import scala.jdk.javaapi.CollectionConverters;
 import software.aws.solution.clickstream.util.*;
 
-import java.nio.charset.StandardCharsets;
-
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import static org.apache.spark.sql.functions.coalesce;
 import static org.apache.spark.sql.functions.col;
 import static org.apache.spark.sql.functions.expr;
 import static org.apache.spark.sql.functions.lit;
-import static org.apache.spark.sql.functions.udf;
+import static org.apache.spark.sql.functions.octet_length;
 import static software.aws.solution.clickstream.util.ContextUtil.WAREHOUSE_DIR_PROP;
 import static software.aws.solution.clickstream.util.ContextUtil.getJobName;
 import static software.aws.solution.clickstream.util.DatasetUtil.APP_ID;
@@ -61,47 +65,81 @@ import static software.aws.solution.clickstream.util.DatasetUtil.USER_PSEUDO_ID;
 @Slf4j
 public class MaxLengthTransformer {
 
-     static UDF2<String, Integer, Row> truncateWithMaxByteLength() {
-        return (value, maxByteLen) -> {
-            if (value != null && value.getBytes(StandardCharsets.UTF_8).length > maxByteLen) {
-                return new GenericRow(new Object[]{checkStringValueLength(value, maxByteLen), Boolean.TRUE});
-            } else {
-                return new GenericRow(new Object[]{value, Boolean.FALSE});
-            }
-        };
-    }
-
     public static String checkStringValueLength(final String sValue, final int len) {
         if (sValue == null) {
             return null;
         }
-        String reString = sValue;
-        if (reString.length() > len) {
-            reString = reString.substring(0, len);
+        // count the UTF-8 bytes char by char instead of encoding the string
+        int byteLen = 0;
+        int end = 0;
+        while (end < sValue.length()) {
+            char c = sValue.charAt(end);
+            int charBytes;
+            int charLen = 1;
+            if (c < 0x80) {
+                charBytes = 1;
+            } else if (c < 0x800) {
+                charBytes = 2;
+            } else if (Character.isHighSurrogate(c) && end + 1 < sValue.length() && Character.isLowSurrogate(sValue.charAt(end + 1))) {
+                charBytes = 4;
+                charLen = 2;
+            } else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate is encoded as '?'
+                charBytes = 1;
+            } else {
+                charBytes = 3;
+            }
+            if (byteLen + charBytes > len) {
+                break;
+            }
+            byteLen += charBytes;
+            end += charLen;
         }
-        while (reString.getBytes(StandardCharsets.UTF_8).length > len) {
-            reString = reString.substring(0, reString.length() - 1);
+        return end == sValue.length() ? sValue : sValue.substring(0, end);
+    }
+
+    /**
+     * Truncate the value to at most {@code maxByteLen} UTF-8 bytes without splitting a character.
+     * Called from the generated code of {@link #truncateColumns}, the value is only copied when it is truncated.
+     */
+    public static UTF8String truncateUtf8(final UTF8String value, final int maxByteLen) {
+        if (value.numBytes() <= maxByteLen) {
+            return value;
         }
-        return reString;
+        Object base = value.getBaseObject();
+        long offset = value.getBaseOffset();
+        int end = maxByteLen;
+        // continuation bytes are 10xxxxxx, back up to the first byte of the character that is cut
+        while (end > 0 && (Platform.getByte(base, offset + end) & 0xC0) == 0x80) {
+            end--;
+        }
+        return UTF8String.fromAddress(base, offset, end).clone();
     }
 
-    public Dataset<Row> transform(final Dataset<Row> dataset, final List<String> colNameList, final int maxLength) {
+    /**
+     * Truncate all given columns in one projection and add a {@code <column>_truncated} flag for each.
+     * Both are built-in expressions, so the projection is code generated without a UDF per column.
+     */
+    public static Dataset<Row> truncateColumns(final Dataset<Row> dataset, final Map<String, Integer> maxLengthByColumn) {
+        Map<String, Column> columns = new LinkedHashMap<>();
+        maxLengthByColumn.forEach((colName, maxLength) -> {
+            Column value = col(colName);
+            List<Expression> arguments = Arrays.asList(value.expr(), lit(maxLength).expr());
+            List<AbstractDataType> inputTypes = Arrays.asList(DataTypes.StringType, DataTypes.IntegerType);
+            Expression truncated = new StaticInvoke(MaxLengthTransformer.class, DataTypes.StringType, "truncateUtf8",
+                    CollectionConverters.asScala(arguments).toSeq(),
+                    CollectionConverters.asScala(inputTypes).toSeq(),
+                    true, true, true);
+            columns.put(colName, new Column(truncated));
+            columns.put(colName + TRUNCATED, coalesce(octet_length(value).gt(maxLength), lit(false)));
+        });
+        return dataset.withColumns(columns);
+    }
 
-        UserDefinedFunction truncateWithMaxByteLengthUdf = udf(truncateWithMaxByteLength(), DataTypes.createStructType(
-                        new StructField[]{
-                                DataTypes.createStructField("value", DataTypes.StringType, true),
-                                DataTypes.createStructField(TRUNCATED, DataTypes.BooleanType, true),
-                        }
-                ));
-
-        Dataset<Row> datasetOut = dataset;
-        for (String colName : colNameList) {
-            datasetOut = datasetOut.withColumn(colName + "_new", truncateWithMaxByteLengthUdf.apply(col(colName), lit(maxLength)))
-                    .withColumn(colName + TRUNCATED, expr(colName + "_new." + TRUNCATED))
-                    .withColumn(colName, expr(colName + "_new.value"))
-                    .drop(colName + "_new");
-        }
-        return datasetOut;
+    public Dataset<Row> transform(final Dataset<Row> dataset, final List<String> colNameList, final int maxLength) {
+        Map<String, Integer> maxLengthByColumn = new LinkedHashMap<>();
+        colNameList.forEach(colName -> maxLengthByColumn.put(colName, maxLength));
+        return truncateColumns(dataset, maxLengthByColumn);
     }
 
 
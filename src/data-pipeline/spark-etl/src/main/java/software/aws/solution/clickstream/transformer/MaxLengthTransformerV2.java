@@ -37,10 +37,6 @@ public class MaxLengthTransformerV2 {
     private static final int MAX_STRING_VALUE_LEN_MAX = 65535;
     private static final int MAX_STRING_VALUE_LEN_2K = 2048;
 
-    private static UDF2<String, Integer, Row> truncateWithMaxByteLength() {
-      return MaxLengthTransformer.truncateWithMaxByteLength();
-    }
-
     public static Dataset<Row> runMaxLengthTransformerForItemV2(final Dataset<Row> newItemsDataset1) {
         List<ColumnsMaxLength> columnsMaxLengthList = new ArrayList<>();
         columnsMaxLengthList.add(
@@ -227,23 +223,13 @@ public class MaxLengthTransformerV2 {
             return dataset;
         }
 
-        UserDefinedFunction truncateWithMaxByteLengthUdf = udf(truncateWithMaxByteLength(), DataTypes.createStructType(
-                new StructField[]{
-                        DataTypes.createStructField("value", DataTypes.StringType, true),
-                        DataTypes.createStructField(TRUNCATED, DataTypes.BooleanType, true),
-                }
-        ));
-
-        Dataset<Row> datasetOut = dataset;
+        Map<String, Integer> maxLengthByColumn = new LinkedHashMap<>();
         for (ColumnsMaxLength columnsMaxLength : columnsMaxLengthList) {
             for (String colName : columnsMaxLength.columns) {
-                datasetOut = datasetOut.withColumn(colName + "_new", truncateWithMaxByteLengthUdf.apply(col(colName), lit(columnsMaxLength.maxLength)))
-                        .withColumn(colName + TRUNCATED, expr(colName + "_new." + TRUNCATED))
-                        .withColumn(colName, expr(colName + "_new.value"))
-                        .drop(colName + "_new");
+                maxLengthByColumn.put(colName, columnsMaxLength.maxLength);
             }
         }
-        return datasetOut;
+        return MaxLengthTransformer.truncateColumns(dataset, maxLengthByColumn);
     }
 
     @AllArgsConstructor
@@ -17,9 +17,11 @@ import org.apache.spark.sql.Column;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SaveMode;
+import org.apache.spark.sql.catalyst.encoders.RowEncoder;
 import org.apache.spark.sql.expressions.UserDefinedFunction;
 import org.apache.spark.sql.functions;
 import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
 import software.aws.solution.clickstream.transformer.TransformConfigurable;
 import software.aws.solution.clickstream.transformer.TransformerNameEnum;
 import software.aws.solution.clickstream.util.DatasetUtil;
@@ -27,6 +29,7 @@ import software.aws.solution.clickstream.util.DatasetUtil;
 import static org.apache.spark.sql.functions.col;
 import static org.apache.spark.sql.functions.explode;
 import static org.apache.spark.sql.functions.lit;
+import static org.apache.spark.sql.functions.struct;
 import static org.apache.spark.sql.functions.udf;
 import static software.aws.solution.clickstream.ETLRunner.DEBUG_LOCAL_PATH;
 import static software.aws.solution.clickstream.TransformerV3.INPUT_FILE_NAME;
@@ -41,13 +44,14 @@ import static software.aws.solution.clickstream.util.DatasetUtil.hasColumn;
 public abstract class BaseDataConverter implements DatasetConverter, TransformConfigurable {
 
     public static final String INGEST_APPID = "appId";
+    private static final String CONVERT_PARAMS = "_convert_params";
 
     public abstract TransformerNameEnum getName();
 
     @Override
     public Dataset<Row> transform(final Dataset<Row> dataset) {
 
-        Dataset<Row> convertedDataset = convertByUDF(dataset);
+        Dataset<Row> convertedDataset = convertByPartition(dataset);
 
         boolean debugLocal = Boolean.parseBoolean(System.getProperty(DEBUG_LOCAL_PROP));
         if (debugLocal) {
@@ -71,6 +75,20 @@ public abstract class BaseDataConverter implements DatasetConverter, TransformCo
                 ));
     }
 
+    /**
+     * Same output as {@link #convertByUDF} for rows that convert, but events are parsed and emitted one by one
+     * per partition instead of building and exploding the array of all events of an ingest row. A row failing
+     * after some of its events keeps those events, see {@link PartitionDataConverter}.
+     */
+    public Dataset<Row> convertByPartition(final Dataset<Row> dataset) {
+        StructType inputSchema = dataset.schema();
+        StructType outputSchema = inputSchema.add(DATA_OUT, UDFHelper.getUdfOutput().elementType(), true);
+        return filterEmptyAppId(dataset)
+                .withColumn(CONVERT_PARAMS, struct(getUDFParamsColumns(dataset)))
+                .mapPartitions(new PartitionDataConverter(this.getName(), this.getTransformConfig(), inputSchema.size()),
+                        RowEncoder.apply(outputSchema));
+    }
+
     public Column[] getUDFParamsColumns(final Dataset<Row> dataset) {
         String projectId = System.getProperty(PROJECT_ID_PROP);
         Column[] columns = new Column[]{
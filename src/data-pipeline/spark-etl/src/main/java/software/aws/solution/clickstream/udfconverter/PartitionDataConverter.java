@@ -0,0 +1,245 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.udfconverter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.api.java.function.MapPartitionsFunction;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.catalyst.expressions.GenericRow;
+import org.apache.spark.sql.types.ArrayType;
+import org.apache.spark.sql.types.DataType;
+import org.apache.spark.sql.types.MapType;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import scala.jdk.javaapi.CollectionConverters;
+import software.aws.solution.clickstream.common.DataElementIterator;
+import software.aws.solution.clickstream.common.EventParser;
+import software.aws.solution.clickstream.common.ExtraParams;
+import software.aws.solution.clickstream.common.TransformConfig;
+import software.aws.solution.clickstream.transformer.TransformerNameEnum;
+import software.aws.solution.clickstream.util.CacheSnapshotStore;
+import software.aws.solution.clickstream.util.ETLMetric;
+import software.aws.solution.clickstream.util.ParserMetricsAccumulator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static software.aws.solution.clickstream.common.Util.ERROR_LOG;
+import static software.aws.solution.clickstream.common.Util.VALUE_LOG;
+import static software.aws.solution.clickstream.common.Util.getStackTrace;
+
+/**
+ * Converts ingest rows partition by partition. The event parser is resolved once per task. The events
+ * of an ingest row are streamed from the parser and never held together. So unlike the udf, which emits
+ * only a corrupt row when any event of the ingest row fails, the events parsed before the failure are
+ * emitted followed by the corrupt row. Each output row is the input row followed by the same dataOut struct that {@link UDFHelper#getUdfOutput()}
+ * produces per element.
+ * <p>
+ * The input row must end with a struct of the converter parameters, in the order of
+ * {@link BaseDataConverter#getUDFParamsColumns}, it is not copied to the output.
+ */
+@Slf4j
+public class PartitionDataConverter implements MapPartitionsFunction<Row, Row> {
+    private static final long serialVersionUID = 1L;
+
+    private final TransformerNameEnum name;
+    private final TransformConfig transformConfig;
+    private final int paramsIndex;
+    private final StructType dataOutType;
+    private final ParserMetricsAccumulator parserMetrics;
+
+    public PartitionDataConverter(final TransformerNameEnum name, final TransformConfig transformConfig, final int paramsIndex) {
+        this.name = name;
+        this.transformConfig = transformConfig;
+        this.paramsIndex = paramsIndex;
+        this.dataOutType = (StructType) UDFHelper.getUdfOutput().elementType();
+        this.parserMetrics = ETLMetric.getParserMetrics();
+    }
+
+    @Override
+    public Iterator<Row> call(final Iterator<Row> input) {
+        ETLMetric.collectParserMetrics(parserMetrics);
+        CacheSnapshotStore.preload();
+        return new ConvertedRowIterator(input, EventParserFactory.getEventParser(name, transformConfig));
+    }
+
+    /**
+     * Pulls the events of the current ingest row from the parser one at a time. When an event fails,
+     * the events already returned stay emitted and a corrupt row for the ingest row follows them.
+     */
+    private final class ConvertedRowIterator implements Iterator<Row> {
+        private final Iterator<Row> input;
+        private final EventParser eventParser;
+        private Row row;
+        private String value;
+        private DataElementIterator elements;
+        private Row nextRow;
+
+        ConvertedRowIterator(final Iterator<Row> input, final EventParser eventParser) {
+            this.input = input;
+            this.eventParser = eventParser;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (nextRow == null) {
+                if (elements != null) {
+                    nextRow = nextElement();
+                } else if (input.hasNext()) {
+                    nextRow = open(input.next());
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Row result = nextRow;
+            nextRow = null;
+            return result;
+        }
+
+        /**
+         * Start parsing the ingest row, returns a corrupt row if the data cannot be opened.
+         */
+        private Row open(final Row ingestRow) {
+            row = ingestRow;
+            Row params = row.getStruct(paramsIndex);
+            value = params.getString(0);
+            try {
+                elements = eventParser.iterateDataElements(value, ExtraParams.builder()
+                        .ingestTimestamp(getLong(params, 1))
+                        .uploadTimestamp(getLong(params, 2))
+                        .rid(params.getString(3))
+                        .uri(params.getString(4))
+                        .ua(params.getString(5))
+                        .ip(params.getString(6))
+                        .projectId(params.getString(7))
+                        .inputFileName(params.getString(8))
+                        .appId(params.getString(9))
+                        .validation(UDFHelper.getIngestValidation(transformConfig))
+                        .build());
+                if (elements == null) {
+                    log.warn("Cannot parse data: " + value);
+                }
+                return null;
+            } catch (Exception e) {
+                return corruptRow(e);
+            }
+        }
+
+        /**
+         * The next event of the ingest row, null when the row is exhausted.
+         */
+        private Row nextElement() {
+            try {
+                if (elements.hasNext()) {
+                    return outputRow(row, UDFHelper.getGenericRow(elements.next()));
+                }
+                elements = null;
+                return null;
+            } catch (Exception e) {
+                elements.close();
+                elements = null;
+                return corruptRow(e);
+            }
+        }
+
+        private Row corruptRow(final Exception e) {
+            log.error("cannot convert data to ClickstreamEvent"
+                    + ERROR_LOG + e.getMessage() + VALUE_LOG + value);
+            log.error(getStackTrace(e));
+            return outputRow(row, UDFHelper.getCorruptGenericRow(value, e));
+        }
+
+        private Row outputRow(final Row row, final GenericRow dataOut) {
+            Object[] values = new Object[paramsIndex + 1];
+            for (int i = 0; i < paramsIndex; i++) {
+                values[i] = row.get(i);
+            }
+            values[paramsIndex] = toExternal(dataOut, dataOutType);
+            return new GenericRow(values);
+        }
+    }
+
+    private static Long getLong(final Row row, final int index) {
+        return row.isNullAt(index) ? null : ((Number) row.get(index)).longValue();
+    }
+
+    /**
+     * The row converters build java collections, which the udf result conversion accepts but the
+     * row encoder does not, wrap them as scala collections without copying where possible.
+     */
+    static Object toExternal(final Object value, final DataType dataType) {
+        if (value == null || !hasCollection(dataType)) {
+            return value;
+        }
+        if (dataType instanceof StructType) {
+            Row row = (Row) value;
+            StructField[] fields = ((StructType) dataType).fields();
+            Object[] values = new Object[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                values[i] = toExternal(row.get(i), fields[i].dataType());
+            }
+            return new GenericRow(values);
+        }
+        if (dataType instanceof ArrayType && value instanceof List) {
+            DataType elementType = ((ArrayType) dataType).elementType();
+            List<?> list = (List<?>) value;
+            if (!hasCollection(elementType)) {
+                return CollectionConverters.asScala(list);
+            }
+            List<Object> converted = new ArrayList<>(list.size());
+            for (Object element : list) {
+                converted.add(toExternal(element, elementType));
+            }
+            return CollectionConverters.asScala(converted);
+        }
+        if (dataType instanceof MapType && value instanceof Map) {
+            DataType valueType = ((MapType) dataType).valueType();
+            Map<?, ?> map = (Map<?, ?>) value;
+            if (!hasCollection(valueType)) {
+                return CollectionConverters.asScala(map);
+            }
+            Map<Object, Object> converted = new LinkedHashMap<>();
+            map.forEach((k, v) -> converted.put(k, toExternal(v, valueType)));
+            return CollectionConverters.asScala(converted);
+        }
+        return value;
+    }
+
+    private static boolean hasCollection(final DataType dataType) {
+        if (dataType instanceof ArrayType || dataType instanceof MapType) {
+            return true;
+        }
+        if (dataType instanceof StructType) {
+            for (StructField field : ((StructType) dataType).fields()) {
+                if (hasCollection(field.dataType())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
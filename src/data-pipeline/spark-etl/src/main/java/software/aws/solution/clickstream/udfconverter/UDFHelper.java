@@ -14,7 +14,6 @@
 package software.aws.solution.clickstream.udfconverter;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.spark.sql.api.java.UDF10;
 import org.apache.spark.sql.catalyst.expressions.GenericRow;
@@ -23,7 +22,9 @@ import org.apache.spark.sql.types.DataTypes;
 import org.apache.spark.sql.types.StructField;
 import software.aws.solution.clickstream.common.EventParser;
 import software.aws.solution.clickstream.common.ExtraParams;
+import software.aws.solution.clickstream.common.IngestValidation;
 import software.aws.solution.clickstream.common.ParseDataResult;
+import software.aws.solution.clickstream.common.ParserMetrics;
 import software.aws.solution.clickstream.common.TransformConfig;
 import software.aws.solution.clickstream.common.model.ClickstreamEvent;
 import software.aws.solution.clickstream.common.model.ClickstreamItem;
@@ -31,10 +32,12 @@ import software.aws.solution.clickstream.common.model.ClickstreamUser;
 import software.aws.solution.clickstream.rowconv.ItemGenericRowConverter;
 import software.aws.solution.clickstream.rowconv.UserGenericRowConverter;
 import software.aws.solution.clickstream.transformer.TransformerNameEnum;
+import software.aws.solution.clickstream.util.CacheSnapshotStore;
+import software.aws.solution.clickstream.util.ETLMetric;
+import software.aws.solution.clickstream.util.ParserMetricsAccumulator;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 
 import static software.aws.solution.clickstream.common.Util.ERROR_LOG;
@@ -52,12 +55,38 @@ public final class UDFHelper {
     }
     public static UDF10<String, Long, Long, String, String, String, String, String, String, String, List<GenericRow>>
     getConvertDataUdf(final TransformerNameEnum name, final TransformConfig transformConfig) {
-        return (String value,
-                Long ingestTimestamp, Long uploadTimestamp,
-                String rid, String uri, String ua, String ip,
-                String projectId, String inputFileName, String appId) -> {
+        return new ConvertDataUdf(name, transformConfig, ETLMetric.getParserMetrics());
+    }
+
+    /**
+     * The udf is deserialized with the plan of every task, the transient event parser is only set up once per
+     * task, so the parser metrics and the cache snapshot are set up once per partition instead of per row.
+     */
+    private static final class ConvertDataUdf
+            implements UDF10<String, Long, Long, String, String, String, String, String, String, String, List<GenericRow>> {
+        private static final long serialVersionUID = 1L;
+        private final TransformerNameEnum name;
+        private final TransformConfig transformConfig;
+        private final ParserMetricsAccumulator parserMetrics;
+        private transient EventParser eventParser;
+
+        ConvertDataUdf(final TransformerNameEnum name, final TransformConfig transformConfig, final ParserMetricsAccumulator parserMetrics) {
+            this.name = name;
+            this.transformConfig = transformConfig;
+            this.parserMetrics = parserMetrics;
+        }
+
+        @Override
+        public List<GenericRow> call(final String value,
+                                     final Long ingestTimestamp, final Long uploadTimestamp,
+                                     final String rid, final String uri, final String ua, final String ip,
+                                     final String projectId, final String inputFileName, final String appId) {
             try {
-                EventParser eventParser = EventParserFactory.getEventParser(name, transformConfig);
+                if (eventParser == null) {
+                    ETLMetric.collectParserMetrics(parserMetrics);
+                    CacheSnapshotStore.preload();
+                    eventParser = EventParserFactory.getEventParser(name, transformConfig);
+                }
 
                 return UDFHelper.getGenericRowList(value, ExtraParams.builder()
                         .ingestTimestamp(ingestTimestamp)
@@ -69,6 +98,7 @@ public final class UDFHelper {
                         .ua(ua)
                         .ip(ip)
                         .appId(appId)
+                        .validation(getIngestValidation(transformConfig))
                         .build(), eventParser);
             } catch (Exception e) {
                 log.error("cannot convert data to ClickstreamEvent"
@@ -76,42 +106,43 @@ public final class UDFHelper {
                 log.error(getStackTrace(e));
                 return UDFHelper.getCorruptGenericRows(value, e);
             }
-        };
+        }
+    }
+
+    static IngestValidation getIngestValidation(final TransformConfig transformConfig) {
+        return transformConfig == null ? null : transformConfig.getIngestValidation();
     }
 
     public static List<GenericRow> getCorruptGenericRows(final String value, final Exception e) {
+        return Collections.singletonList(getCorruptGenericRow(value, e));
+    }
 
-        return Collections.singletonList(new GenericRow(new Object[]{
+    public static GenericRow getCorruptGenericRow(final String value, final Exception e) {
+        ParserMetrics.recordError(e.getClass().getSimpleName());
+        return new GenericRow(new Object[]{
                 "Cannot convert data to ClickstreamEvent" + ERROR_LOG + e.getMessage() + VALUE_LOG + value + ", stackTrace:" + getStackTrace(e),
                 null,
                 null,
                 null,
-        }));
+        });
     }
 
     public static List<GenericRow> getGenericRowList(final String rawDataString, final ExtraParams extraParams, final EventParser eventParser) throws JsonProcessingException {
-        JsonNode jsonNode = eventParser.getData(rawDataString);
         List<GenericRow> rows = new ArrayList<>();
-        if (jsonNode == null) {
+        boolean parsed = eventParser.parseDataElements(rawDataString, extraParams, result -> rows.add(getGenericRow(result)));
+        if (!parsed) {
             log.warn("Cannot parse data: " + rawDataString);
-            return rows;
-        }
-        int index = 0;
-        if (jsonNode.isArray()) {
-            for (Iterator<JsonNode> elementsIt = jsonNode.elements(); elementsIt.hasNext(); ) {
-                rows.add(getGenericRow(elementsIt.next().toString(), index, extraParams, eventParser));
-                index++;
-            }
-        } else {
-            rows.add(getGenericRow(jsonNode.toString(), index, extraParams, eventParser));
+            return new ArrayList<>();
         }
         return rows;
 
     }
 
-    private static GenericRow getGenericRow(final String rawDataString, final int index, final ExtraParams extraParams, final EventParser eventParser) throws JsonProcessingException {
-        ParseDataResult result = eventParser.parseData(rawDataString, extraParams, index);
-
+    public static GenericRow getGenericRow(final ParseDataResult result) {
+        if (result.getCorruptRecord() != null) {
+            return new GenericRow(new Object[]{result.getCorruptRecord(), null, null, null});
+        }
+        long start = ParserMetrics.start();
         List<GenericRow> eventRows = new ArrayList<>();
         for (ClickstreamEvent event : result.getClickstreamEventList()) {
             eventRows.add(toGenericRow(event));
@@ -122,6 +153,7 @@ public final class UDFHelper {
         }
         ClickstreamUser user = result.getClickstreamUser();
         GenericRow userRow = user == null || user.getUserPseudoId() == null ? null : UserGenericRowConverter.toGenericRow(user);
+        ParserMetrics.record(ParserMetrics.Phase.ROW_BUILD, start);
         return new GenericRow(new Object[]{null, eventRows, userRow, itemRows});
     }
 
@@ -0,0 +1,186 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+package software.aws.solution.clickstream.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.SparkFiles;
+import org.apache.spark.TaskContext;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.sql.SparkSession;
+import software.aws.solution.clickstream.common.CacheSnapshot;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Keeps the enrichment caches warm across runs with a {@link CacheSnapshot} in the warehouse dir.
+ * <p>
+ * At the end of a run the hottest entries of the executor caches are collected, merged and saved
+ * as a new snapshot file. At the start of the next run the latest snapshot is shipped to the
+ * executors with {@link org.apache.spark.SparkContext#addFile(String)}, where it is loaded once
+ * per SparkFiles root by the first task calling {@link #preload()}. Snapshot files are named by
+ * their creation time, a name is never reused, so a long-lived SparkContext never gets two
+ * different files of the same name. Snapshot failures are logged and never fail the job.
+ */
+@Slf4j
+public final class CacheSnapshotStore {
+    public static final String SNAPSHOT_DIR = "enrich_cache_snapshot";
+    private static final String SNAPSHOT_PREFIX = "enrich-cache-";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final ThreadLocal<Long> PRELOADING_TASK = new ThreadLocal<>();
+    private static String loadedFile;
+
+    private CacheSnapshotStore() {
+    }
+
+    /**
+     * Driver side, ship the latest snapshot to the executors.
+     */
+    public static void distribute(final SparkSession spark) {
+        Path dir = getSnapshotDir();
+        if (dir == null) {
+            return;
+        }
+        try {
+            FileSystem fs = dir.getFileSystem(spark.sparkContext().hadoopConfiguration());
+            List<Path> snapshots = listSnapshots(fs, dir);
+            if (snapshots.isEmpty()) {
+                log.info("no enrichment cache snapshot in " + dir);
+                return;
+            }
+            Path latest = snapshots.get(snapshots.size() - 1);
+            spark.sparkContext().addFile(latest.toString());
+            log.info("enrichment cache snapshot added: " + latest);
+        } catch (IOException | RuntimeException e) {
+            log.warn("cannot add enrichment cache snapshot from " + dir + ", error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Executor side, load the latest shipped snapshot into the caches, once per task and at most
+     * once per snapshot file.
+     */
+    public static void preload() {
+        TaskContext context = TaskContext.get();
+        if (context == null) {
+            return;
+        }
+        Long taskAttemptId = context.taskAttemptId();
+        if (taskAttemptId.equals(PRELOADING_TASK.get())) {
+            return;
+        }
+        PRELOADING_TASK.set(taskAttemptId);
+        File[] files = new File(SparkFiles.getRootDirectory())
+                .listFiles((d, name) -> name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX));
+        if (files == null || files.length == 0) {
+            return;
+        }
+        File latest = Arrays.stream(files).max(Comparator.comparing(File::getName)).get();
+        load(latest);
+    }
+
+    private static synchronized void load(final File file) {
+        String path = file.getAbsolutePath();
+        if (path.equals(loadedFile)) {
+            return;
+        }
+        loadedFile = path;
+        try (InputStream in = new FileInputStream(file)) {
+            int entries = CacheSnapshot.load(in);
+            log.info("enrichment cache snapshot loaded: " + path + ", entries: " + entries);
+        } catch (IOException | RuntimeException e) {
+            log.warn("cannot load enrichment cache snapshot " + path + ", error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Driver side, collect the hottest cache entries of the executors and save them as the latest snapshot.
+     */
+    public static void save(final SparkSession spark) {
+        Path dir = getSnapshotDir();
+        if (dir == null) {
+            return;
+        }
+        int limit = ContextUtil.getEnrichSnapshotEntries();
+        try {
+            JavaSparkContext jsc = JavaSparkContext.fromSparkContext(spark.sparkContext());
+            // one slot per core, so that most executors run one of the tasks, each executor is counted once
+            int slots = Math.max(1, jsc.defaultParallelism());
+            List<byte[]> exports = jsc.parallelize(IntStream.range(0, slots).boxed().collect(Collectors.toList()), slots)
+                    .map(slot -> CacheSnapshot.export(limit))
+                    .collect();
+            Set<ByteBuffer> distinct = new LinkedHashSet<>();
+            exports.forEach(bytes -> distinct.add(ByteBuffer.wrap(bytes)));
+            distinct.add(ByteBuffer.wrap(CacheSnapshot.export(limit)));
+            List<byte[]> snapshots = distinct.stream().map(ByteBuffer::array).collect(Collectors.toList());
+
+            FileSystem fs = dir.getFileSystem(spark.sparkContext().hadoopConfiguration());
+            List<Path> previous = listSnapshots(fs, dir);
+            Path path = new Path(dir, String.format("%s%020d%s", SNAPSHOT_PREFIX, System.currentTimeMillis(), SNAPSHOT_SUFFIX));
+            try (FSDataOutputStream out = fs.create(path, true)) {
+                CacheSnapshot.merge(snapshots, limit, out);
+            }
+            for (Path old : previous) {
+                fs.delete(old, false);
+            }
+            log.info("enrichment cache snapshot saved to " + path + ", executor snapshots: " + snapshots.size());
+        } catch (IOException | RuntimeException e) {
+            log.warn("cannot save enrichment cache snapshot to " + dir + ", error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the snapshot dir, or null if snapshots are disabled
+     */
+    private static Path getSnapshotDir() {
+        String warehouseDir = ContextUtil.getWarehouseDir();
+        if (ContextUtil.getEnrichSnapshotEntries() <= 0 || warehouseDir == null) {
+            return null;
+        }
+        return new Path(warehouseDir, SNAPSHOT_DIR);
+    }
+
+    /**
+     * @return snapshot files, oldest first
+     */
+    private static List<Path> listSnapshots(final FileSystem fs, final Path dir) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        if (!fs.exists(dir)) {
+            return snapshots;
+        }
+        for (FileStatus status : fs.listStatus(dir)) {
+            String name = status.getPath().getName();
+            if (status.isFile() && name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)) {
+                snapshots.add(status.getPath());
+            }
+        }
+        snapshots.sort(Comparator.comparing(Path::getName));
+        return snapshots;
+    }
+}
@@ -18,10 +18,12 @@ import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 import org.apache.spark.storage.StorageLevel;
 import software.aws.solution.clickstream.common.Constant;
+import software.aws.solution.clickstream.exception.ExecuteTransformerException;
 
 import java.util.Arrays;
 
 import static software.aws.solution.clickstream.common.ClickstreamEventParser.ENABLE_EVENT_TIME_SHIFT_PROP;
+import static software.aws.solution.clickstream.common.ParserMetrics.PARSER_METRICS_ENABLED_PROP;
 
 @Slf4j
 public final class ContextUtil {
@@ -29,6 +31,10 @@ public final class ContextUtil {
     public static final String WAREHOUSE_DIR_PROP = "warehouse.dir";
     public static final String DEBUG_LOCAL_PROP = "debug.local";
     public static final String OUTPUT_COALESCE_PARTITIONS_PROP = "output.coalesce.partitions";
+    public static final String OUTPUT_TARGET_FILE_BYTES_PROP = "output.target.file.bytes";
+    public static final String OUTPUT_SHUFFLE_BYTES_RATIO_PROP = "output.shuffle.bytes.ratio";
+    public static final String SINK_WRITE_PARALLELISM_PROP = "sink.write.parallelism";
+    public static final String SINK_SCHEDULER_POOL_PROP = "sink.scheduler.pool";
     public static final String DATA_FRESHNESS_HOUR_PROP = "data.freshness.hour";
     public static final String OUTPUT_PATH_PROP = "output.path";
     public static final String SOURCE_PATH_PROP = "source.path";
@@ -45,6 +51,21 @@ public final class ContextUtil {
     public static final String DISABLE_TRAFFIC_SOURCE_ENRICHMENT = "disable.traffic.source.enrichment";
     public static final String DISABLE_MAX_LENGTH_CHECK = "disable.max.length.check";
 
+    public static final String ENRICH_DISTINCT_KEY_RATIO_PROP = "enrich.distinct.key.ratio";
+    public static final String ENRICH_BROADCAST_MAX_KEYS_PROP = "enrich.broadcast.max.keys";
+    public static final String ENRICH_SNAPSHOT_ENTRIES_PROP = "enrich.snapshot.entries";
+    public static final int DEFAULT_ENRICH_SNAPSHOT_ENTRIES = 10000;
+    public static final String GEO_INDEX_MAX_NETWORKS_PROP = "geo.index.max.networks";
+    public static final int DEFAULT_GEO_INDEX_MAX_NETWORKS = 200000;
+
+    public static final String KEYED_STATE_STORE_PROP = "keyed.state.store";
+    public static final String STATE_STORE_BUCKETS_PROP = "state.store.buckets";
+    public static final String STATE_STORE_COMPACT_FILES_PROP = "state.store.compact.files";
+    public static final String STATE_STORE_SWEEP_HOURS_PROP = "state.store.sweep.hours";
+
+    public static final String SINGLE_PARSE_CLEAN_PROP = "clean.single.parse";
+    public static final String CLEAN_PREFILTER_APP_ID_PROP = "clean.prefilter.app.id";
+
     private static Dataset<Row> datasetCached;
 
     private ContextUtil() {
@@ -93,6 +114,43 @@ public final class ContextUtil {
         return Boolean.parseBoolean(System.getProperty(DEBUG_LOCAL_PROP));
     }
 
+    public static boolean isParserMetricsEnabled() {
+        return Boolean.parseBoolean(System.getProperty(PARSER_METRICS_ENABLED_PROP));
+    }
+
+    public static boolean isKeyedStateStoreEnabled() {
+        return Boolean.parseBoolean(System.getProperty(KEYED_STATE_STORE_PROP));
+    }
+
+    /**
+     * The keyed state store returns the state of the upserted keys only, the V1/V2 transformers
+     * join it with all users of the batch and keep their user and item tables on the full/incremental paths.
+     */
+    public static void checkKeyedStateStoreUnsupported(final String transformerName) {
+        if (isKeyedStateStoreEnabled()) {
+            throw new ExecuteTransformerException(KEYED_STATE_STORE_PROP + " is only supported by the V3 transformers, not by " + transformerName);
+        }
+    }
+
+    public static boolean isSingleParseCleanEnabled() {
+        return Boolean.parseBoolean(System.getProperty(SINGLE_PARSE_CLEAN_PROP));
+    }
+
+    public static boolean isCleanPrefilterAppIdEnabled() {
+        return Boolean.parseBoolean(System.getProperty(CLEAN_PREFILTER_APP_ID_PROP));
+    }
+
+    /**
+     * @return max entries per enrichment cache in the warm-start snapshot, 0 disables snapshots
+     */
+    public static int getEnrichSnapshotEntries() {
+        return Integer.getInteger(ENRICH_SNAPSHOT_ENTRIES_PROP, DEFAULT_ENRICH_SNAPSHOT_ENTRIES);
+    }
+
+    public static int getGeoIndexMaxNetworks() {
+        return Integer.getInteger(GEO_INDEX_MAX_NETWORKS_PROP, DEFAULT_GEO_INDEX_MAX_NETWORKS);
+    }
+
     public static String getJobName() {
         return System.getProperty(JOB_NAME_PROP);
     }
@@ -91,6 +91,7 @@ public final class DatasetUtil {
     public static final String TABLE_ETL_USER_CHANNEL = "etl_user_channel";
     public static final String INCREMENTAL_SUFFIX = "_incremental";
     public static final String FULL_SUFFIX = "_full";
+    public static final String STATE_SUFFIX = "_state";
     public static final String DATA_SCHEMA_V2_FILE_PATH = System.getProperty("data.schema.file.path.v2", "/data_schema_v2.json");
     public static final String PROPERTIES = "properties";
     public static final String TRAFFIC_SOURCE_MEDIUM = "_traffic_source_medium";
@@ -200,12 +201,13 @@ public final class DatasetUtil {
     public static final String SESSION_START_TIMESTAMP = "_session_start_timestamp";
     public static final String TRUNCATED = "_truncated";
 
-    public static final String TABLE_REGEX = String.format("^(%s)|((%s|%s|(etl_[^/]+))(%s|%s)_v\\d+)$",
+    public static final String TABLE_REGEX = String.format("^(%s)|((%s|%s|(etl_[^/]+))(%s|%s|%s)_v\\d+)$",
             TABLE_NAME_ETL_MERGE_STATE,
             TableName.ITEM.getTableName(),
             TableName.USER.getTableName(),
             FULL_SUFFIX,
-            INCREMENTAL_SUFFIX);
+            INCREMENTAL_SUFFIX,
+            STATE_SUFFIX);
     private static final Map<String, StructType> SCHEMA_MAP = new HashMap<>();
     public static Map<String, StructType> getSchemaMap() {
         return SCHEMA_MAP;
@@ -239,8 +241,8 @@ public final class DatasetUtil {
     public static Dataset<Row> loadPreviousUserSessionDataset(final Dataset<Row> newUserSessionDataset, final PathInfo pathInfo) {
         SparkSession spark = newUserSessionDataset.sparkSession();
         int sessionKeepDays = Integer.parseInt(System.getProperty(GTM_PREVIOUS_SESSION_KEEP_DAYS, "2"));
+        // cached by readDatasetFromPath
         Dataset<Row> allUserSessionDataset = readDatasetFromPath(spark, pathInfo.getIncremental(), sessionKeepDays);
-        allUserSessionDataset.cache();
         log.info("allUserSessionDataset count:" + allUserSessionDataset.count());
 
         Dataset<Row> aggAllUserSessionDataset = getAggUserSessionDataset(allUserSessionDataset);
@@ -361,7 +363,8 @@ public final class DatasetUtil {
         String pathIncremental = getPathForTable(tableName + INCREMENTAL_SUFFIX + versionSuffix);
         SCHEMA_MAP.put(pathFull, schema);
         SCHEMA_MAP.put(pathIncremental, schema);
-        return new PathInfo(pathFull, pathIncremental);
+        String pathState = getPathForTable(tableName + STATE_SUFFIX + versionSuffix);
+        return new PathInfo(pathFull, pathIncremental, pathState);
     }
 
 
@@ -380,7 +383,6 @@ public final class DatasetUtil {
         Dataset<Row> fullItemsDataset;
         try {
             Dataset<Row> fullItemsDatasetRead = spark.read().schema(schemaRead).parquet(path);
-            log.info(pathInfo + ", read count:" + fullItemsDatasetRead.count());
             log.debug("schema: {}", fullItemsDatasetRead.schema().treeString());
 
             if (isEventTimestampTypeLong) {
@@ -398,8 +400,8 @@ public final class DatasetUtil {
             }
 
             fullItemsDataset.cache();
-            // forces Spark to load the data immediately and cache it in memory
-            log.info(pathInfo + ", cache data count:" + fullItemsDataset.count());
+            // counted when the cache is materialized by the first action, observing before the filter would stop partition pruning
+            fullItemsDataset = ETLMetric.observe(fullItemsDataset, pathInfo + ", cache data count");
         } catch (Exception e) {
             log.error("readDatasetFromPath " + getStackTrace(e));
             if (e.getMessage().toLowerCase().contains("path does not exist")) {
@@ -512,10 +514,12 @@ public final class DatasetUtil {
     public static class PathInfo {
         private final String full;
         private final String incremental;
+        private final String state;
 
-        public PathInfo(final String full, final String incremental) {
+        public PathInfo(final String full, final String incremental, final String state) {
             this.full = full;
             this.incremental = incremental;
+            this.state = state;
         }
 
         public String getFull() {
@@ -525,6 +529,10 @@ public final class DatasetUtil {
         public String getIncremental() {
             return incremental;
         }
+
+        public String getState() {
+            return state;
+        }
     }
 
     public static boolean hasColumn(final Dataset<Row> datasetInput, final String inputFileName) {
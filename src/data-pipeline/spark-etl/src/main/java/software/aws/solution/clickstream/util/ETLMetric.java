@@ -13,10 +13,57 @@
 
 package software.aws.solution.clickstream.util;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.TaskContext;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.execution.QueryExecution;
+import org.apache.spark.sql.util.QueryExecutionListener;
+import scala.jdk.javaapi.CollectionConverters;
+import org.apache.spark.util.TaskCompletionListener;
+import software.aws.solution.clickstream.common.Cache;
+import software.aws.solution.clickstream.common.ParserMetrics;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.spark.sql.functions.count;
+import static org.apache.spark.sql.functions.lit;
+
+@Slf4j
 public class ETLMetric {
+    private static final String OBSERVATION_PREFIX = "etl_metric_";
+    private static final long SUMMARY_WAIT_MILLIS = 5000L;
+
+    private static final AtomicInteger OBSERVATION_SEQ = new AtomicInteger();
+    // observation name -> observed count, in registration order
+    private static final Map<String, ObservedCount> OBSERVATIONS = Collections.synchronizedMap(new LinkedHashMap<>());
+    // metric info -> count
+    private static final Map<String, Long> COUNTS = new ConcurrentHashMap<>();
+    private static final Set<SparkSession> LISTENED_SESSIONS = Collections.newSetFromMap(new WeakHashMap<>());
+    // the task attempt of this thread whose parser metrics are collected
+    private static final ThreadLocal<Long> COLLECTING_TASK = new ThreadLocal<>();
+    private static ParserMetricsAccumulator parserMetrics;
+
     private final Long count;
     private final String info;
 
@@ -30,6 +77,217 @@ public class ETLMetric {
         this.info = info;
     }
 
+    /**
+     * Attach a row counter to the dataset without running a job. The count is collected when
+     * the returned dataset is executed by a downstream action and reported by {@link #summary()}.
+     * The returned dataset must be used in place of the input one, otherwise nothing is counted.
+     */
+    public static Dataset<Row> observe(final Dataset<Row> dataset, final String info) {
+        listen(dataset.sparkSession());
+        String name = OBSERVATION_PREFIX + OBSERVATION_SEQ.incrementAndGet();
+        OBSERVATIONS.put(name, new ObservedCount(info));
+        return dataset.observe(name, count(lit(1)).alias("count"));
+    }
+
+    /**
+     * Record a count that is already known, e.g. returned by a write.
+     */
+    public static void record(final long count, final String info) {
+        COUNTS.put(info, count);
+        log.info(new ETLMetric(count, info).toString());
+    }
+
+    public static Map<String, Long> getCounts() {
+        return Collections.unmodifiableMap(COUNTS);
+    }
+
+    /**
+     * Start the metrics of a new run. The parser metrics accumulator is bound to the SparkContext it was
+     * registered with, {@link #registerParserMetrics(SparkSession)} registers a new one for the run.
+     */
+    public static synchronized void reset() {
+        OBSERVATIONS.clear();
+        COUNTS.clear();
+        parserMetrics = null;
+        ParserMetrics.setEnabled(false);
+        ParserMetrics.drain();
+    }
+
+    /**
+     * Log the metrics of this run as one json line and return them. Observed metrics are delivered
+     * asynchronously by the listener bus, each is waited for until a shared deadline. Observations whose
+     * dataset was never executed, or not reported in time, are left out and logged as missing.
+     */
+    public static Map<String, Long> summary() {
+        List<ObservedCount> observations;
+        synchronized (OBSERVATIONS) {
+            observations = new ArrayList<>(OBSERVATIONS.values());
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SUMMARY_WAIT_MILLIS);
+        Map<String, Long> result = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (ObservedCount observation : observations) {
+            Long observed = observation.await(deadline);
+            if (observed == null) {
+                missing.add(observation.info);
+            } else {
+                result.put(observation.info, observed);
+            }
+        }
+        COUNTS.forEach(result::putIfAbsent);
+        logJson("[ETLMetric] summary: {}", result);
+        if (!missing.isEmpty()) {
+            log.warn("[ETLMetric] no count reported within {} ms for: {}", SUMMARY_WAIT_MILLIS, missing);
+        }
+
+        logCacheStats();
+        return result;
+    }
+
+    /**
+     * With parser metrics collected, the cache counts of this run recorded by the tasks of all executors
+     * and by the driver. Otherwise the jvm-wide counts of the driver, which are not reset per run.
+     */
+    private static void logCacheStats() {
+        ParserMetricsAccumulator accumulator = getParserMetrics();
+        if (accumulator != null) {
+            accumulator.add(ParserMetrics.drain());
+            logJson("[ETLMetric] cache stats of the run: {}", accumulator.value().getCacheStats());
+            return;
+        }
+        Map<String, Long> cacheStats = new LinkedHashMap<>();
+        Cache.stats().forEach((name, stats) -> {
+            cacheStats.put(name + " hit", stats.hitCount());
+            cacheStats.put(name + " miss", stats.missCount());
+            cacheStats.put(name + " eviction", stats.evictionCount());
+        });
+        logJson("[ETLMetric] jvm-wide cache stats of the driver, and of the executors in local mode: {}", cacheStats);
+    }
+
+    private static void logJson(final String format, final Map<String, Long> metrics) {
+        try {
+            log.info(format, new ObjectMapper().writeValueAsString(metrics));
+        } catch (JsonProcessingException e) {
+            log.warn(format, metrics);
+        }
+    }
+
+    /**
+     * Register a new accumulator of the parser metrics for this run and turn recording on in the driver.
+     * Task code captures the accumulator returned by {@link #getParserMetrics()} and passes it to
+     * {@link #collectParserMetrics(ParserMetricsAccumulator)}.
+     */
+    public static synchronized ParserMetricsAccumulator registerParserMetrics(final SparkSession spark) {
+        parserMetrics = new ParserMetricsAccumulator();
+        spark.sparkContext().register(parserMetrics, "parser metrics");
+        ParserMetrics.setEnabled(true);
+        return parserMetrics;
+    }
+
+    /**
+     * The registered accumulator, null if parser metrics are not collected.
+     */
+    public static synchronized ParserMetricsAccumulator getParserMetrics() {
+        return parserMetrics;
+    }
+
+    /**
+     * Turn recording on in the executor and record the parser metrics of the current task apart
+     * from the other tasks of the executor, they are added to the accumulator when the task
+     * completes. Cheap to call for every record, the listener is added once per task.
+     */
+    public static void collectParserMetrics(final ParserMetricsAccumulator accumulator) {
+        TaskContext context = TaskContext.get();
+        if (accumulator == null || context == null) {
+            return;
+        }
+        Long taskAttemptId = context.taskAttemptId();
+        if (taskAttemptId.equals(COLLECTING_TASK.get())) {
+            return;
+        }
+        COLLECTING_TASK.set(taskAttemptId);
+        ParserMetrics.setEnabled(true);
+        ParserMetrics.Recorder recorder = ParserMetrics.startTaskRecording();
+        context.addTaskCompletionListener((TaskCompletionListener) taskContext -> {
+            ParserMetrics.stopTaskRecording(recorder);
+            accumulator.add(recorder.drain());
+        });
+    }
+
+    /**
+     * Write the collected parser metrics as a json file, a failure is logged and does not fail the job.
+     */
+    public static void writeParserMetrics(final SparkSession spark, final String filePath) {
+        ParserMetricsAccumulator accumulator = getParserMetrics();
+        if (accumulator == null) {
+            return;
+        }
+        // metrics recorded by the driver outside a task
+        accumulator.add(ParserMetrics.drain());
+        try {
+            String json = new ObjectMapper().writeValueAsString(accumulator.value().toSummary());
+            log.info("[ETLMetric] parser metrics: {}", json);
+            Path path = new Path(filePath);
+            FileSystem fs = path.getFileSystem(spark.sparkContext().hadoopConfiguration());
+            try (FSDataOutputStream out = fs.create(path, true)) {
+                out.write(json.getBytes(StandardCharsets.UTF_8));
+            }
+            log.info("parser metrics saved to " + filePath);
+        } catch (IOException e) {
+            log.warn("cannot save parser metrics to " + filePath + ", error: " + e.getMessage());
+        }
+    }
+
+    private static void listen(final SparkSession spark) {
+        synchronized (LISTENED_SESSIONS) {
+            if (LISTENED_SESSIONS.add(spark)) {
+                spark.listenerManager().register(new ObservedMetricsListener());
+            }
+        }
+    }
+
+    private static final class ObservedMetricsListener implements QueryExecutionListener {
+        @Override
+        public void onSuccess(final String funcName, final QueryExecution qe, final long durationNs) {
+            CollectionConverters.asJava(qe.observedMetrics()).forEach((name, row) -> {
+                ObservedCount observation = OBSERVATIONS.get(name);
+                if (observation != null && !row.isNullAt(0)) {
+                    long observed = row.getLong(0);
+                    COUNTS.put(observation.info, observed);
+                    observation.count.complete(observed);
+                    log.info(new ETLMetric(observed, observation.info).toString());
+                }
+            });
+        }
+
+        @Override
+        public void onFailure(final String funcName, final QueryExecution qe, final Exception exception) {
+            // metrics of failed queries are not reliable, the job fails anyway
+        }
+    }
+
+    private static final class ObservedCount {
+        private final String info;
+        private final CompletableFuture<Long> count = new CompletableFuture<>();
+
+        ObservedCount(final String info) {
+            this.info = info;
+        }
+
+        /**
+         * The observed count, null if it is not reported before the deadline of {@link System#nanoTime()}.
+         */
+        Long await(final long deadline) {
+            try {
+                return count.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return count.getNow(null);
+            } catch (ExecutionException | TimeoutException e) {
+                return count.getNow(null);
+            }
+        }
+    }
 
     @Override
     public String toString() {
@@ -0,0 +1,247 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.sql.Column;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.SaveMode;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.catalyst.catalog.ExternalCatalogUtils;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructType;
+import scala.jdk.javaapi.CollectionConverters;
+import software.aws.solution.clickstream.exception.ExecuteTransformerException;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.lit;
+import static org.apache.spark.sql.functions.pmod;
+import static org.apache.spark.sql.functions.xxhash64;
+import static software.aws.solution.clickstream.model.ModelV2.toColumnArray;
+import static software.aws.solution.clickstream.util.ContextUtil.STATE_STORE_BUCKETS_PROP;
+import static software.aws.solution.clickstream.util.ContextUtil.STATE_STORE_COMPACT_FILES_PROP;
+import static software.aws.solution.clickstream.util.ContextUtil.STATE_STORE_SWEEP_HOURS_PROP;
+import static software.aws.solution.clickstream.util.DatasetUtil.APP_ID;
+import static software.aws.solution.clickstream.util.DatasetUtil.COMPRESSION;
+import static software.aws.solution.clickstream.util.DatasetUtil.EVENT_TIMESTAMP;
+import static software.aws.solution.clickstream.util.DatasetUtil.SNAPPY;
+import static software.aws.solution.clickstream.util.DatasetUtil.STATE_SUFFIX;
+
+/**
+ * Keyed state for the user dimension of the V3 transformers, stored as parquet under the warehouse dir
+ * and partitioned by app_id and a hash bucket of the key.
+ * <p>
+ * {@link #upsert(Dataset)} appends the aggregated batch to the buckets of its keys and merges on read:
+ * only the directories of the touched buckets are listed and read back, and only the rows of the batch
+ * keys are aggregated. Buckets that collected too many files are compacted to one row per key, expired
+ * rows are dropped there. Buckets that are not touched again are removed by a sweep, run at most once per
+ * {@code state.store.sweep.hours}, once their newest file is older than the kept days. A file holds no event
+ * newer than the file itself, so all rows of such a bucket are expired.
+ * The aggregator must accept its own output, as the incremental/full tables already require.
+ */
+@Slf4j
+public class KeyedStateStore {
+    public static final String STATE_BUCKET = "state_bucket";
+    private static final int DEFAULT_BUCKETS = 64;
+    private static final int DEFAULT_COMPACT_FILES = 24;
+    private static final int DEFAULT_SWEEP_HOURS = 24;
+    private static final String SWEEP_MARKER = "_last_sweep";
+
+    private final String path;
+    private final List<String> keyFields;
+    private final UnaryOperator<Dataset<Row>> aggregator;
+    private final int keepDays;
+    private final int buckets;
+    private final int compactFiles;
+    private final int sweepHours;
+
+    public KeyedStateStore(final String path, final List<String> keyFields,
+                           final UnaryOperator<Dataset<Row>> aggregator, final int keepDays) {
+        if (!path.contains(STATE_SUFFIX + "_v")) {
+            throw new ExecuteTransformerException("KeyedStateStore invalid path: " + path);
+        }
+        if (keyFields.size() < 2 || !APP_ID.equals(keyFields.get(0))) {
+            throw new IllegalArgumentException("keyFields must start with " + APP_ID + ": " + keyFields);
+        }
+        this.path = path;
+        this.keyFields = keyFields;
+        this.aggregator = aggregator;
+        this.keepDays = keepDays;
+        this.buckets = Integer.parseInt(System.getProperty(STATE_STORE_BUCKETS_PROP, String.valueOf(DEFAULT_BUCKETS)));
+        this.compactFiles = Integer.parseInt(System.getProperty(STATE_STORE_COMPACT_FILES_PROP, String.valueOf(DEFAULT_COMPACT_FILES)));
+        this.sweepHours = Integer.parseInt(System.getProperty(STATE_STORE_SWEEP_HOURS_PROP, String.valueOf(DEFAULT_SWEEP_HOURS)));
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Upsert the aggregated batch and return the merged state of the batch keys.
+     */
+    public Dataset<Row> upsert(final Dataset<Row> newAggDataset) {
+        SparkSession spark = newAggDataset.sparkSession();
+        StructType schema = newAggDataset.schema();
+        FileSystem fs = getFileSystem(spark);
+        sweepIfDue(fs);
+
+        Dataset<Row> bucketedDataset = newAggDataset.withColumn(STATE_BUCKET, bucketColumn());
+        bucketedDataset.cache();
+        List<Row> touched = bucketedDataset.select(APP_ID, STATE_BUCKET).distinct().collectAsList();
+        if (touched.isEmpty()) {
+            bucketedDataset.unpersist();
+            return newAggDataset;
+        }
+        log.info("upsert state path={}, touched buckets: {}", path, touched.size());
+
+        write(bucketedDataset, SaveMode.Append);
+        bucketedDataset.unpersist();
+
+        StructType stateSchema = schema.add(STATE_BUCKET, DataTypes.IntegerType, true);
+        compact(spark, fs, stateSchema, touched);
+
+        // list the touched buckets again, compaction may have replaced their files
+        Dataset<Row> batchKeys = newAggDataset.select(toColumnArray(keyFields)).distinct();
+        Dataset<Row> keyedStateDataset = readBuckets(spark, stateSchema, touched)
+                .join(batchKeys, CollectionConverters.asScala(keyFields).toSeq(), "left_semi");
+        return aggregator.apply(notExpired(keyedStateDataset).drop(STATE_BUCKET))
+                .select(toColumnArray(List.of(schema.fieldNames())));
+    }
+
+    private void compact(final SparkSession spark, final FileSystem fs, final StructType stateSchema, final List<Row> touched) {
+        List<Row> toCompact = new ArrayList<>();
+        for (Row bucket : touched) {
+            if (countDataFiles(fs, bucketPath(bucket)) > compactFiles) {
+                toCompact.add(bucket);
+            }
+        }
+        if (toCompact.isEmpty()) {
+            return;
+        }
+        log.info("compact state path={}, buckets: {}", path, toCompact.size());
+        Dataset<Row> compacted = aggregator.apply(notExpired(readBuckets(spark, stateSchema, toCompact)).drop(STATE_BUCKET))
+                .withColumn(STATE_BUCKET, bucketColumn())
+                // materialize before overwriting the partitions it is read from
+                .localCheckpoint(true);
+        write(compacted, SaveMode.Overwrite);
+    }
+
+    /**
+     * Remove the buckets whose newest file is older than the kept days, at most once per sweep interval.
+     */
+    private void sweepIfDue(final FileSystem fs) {
+        if (sweepHours <= 0) {
+            return;
+        }
+        Path root = new Path(path);
+        Path marker = new Path(root, SWEEP_MARKER);
+        long now = System.currentTimeMillis();
+        try {
+            if (!fs.exists(root)
+                    || (fs.exists(marker) && fs.getFileStatus(marker).getModificationTime() > now - sweepHours * 3600_000L)) {
+                return;
+            }
+            long keepFrom = now - keepDays * 24 * 3600_000L;
+            int removed = 0;
+            for (FileStatus app : fs.listStatus(root, p -> p.getName().startsWith(APP_ID + "="))) {
+                for (FileStatus bucket : fs.listStatus(app.getPath(), p -> p.getName().startsWith(STATE_BUCKET + "="))) {
+                    long newest = 0L;
+                    for (FileStatus file : fs.listStatus(bucket.getPath())) {
+                        newest = Math.max(newest, file.getModificationTime());
+                    }
+                    if (newest < keepFrom && fs.delete(bucket.getPath(), true)) {
+                        removed++;
+                    }
+                }
+                if (fs.listStatus(app.getPath()).length == 0) {
+                    fs.delete(app.getPath(), true);
+                }
+            }
+            fs.create(marker, true).close();
+            log.info("sweep state path={}, removed expired buckets: {}", path, removed);
+        } catch (IOException e) {
+            throw new ExecuteTransformerException(e);
+        }
+    }
+
+    private void write(final Dataset<Row> dataset, final SaveMode saveMode) {
+        dataset.repartition(col(APP_ID), col(STATE_BUCKET))
+                .sortWithinPartitions(toColumnArray(keyFields))
+                .write()
+                .partitionBy(APP_ID, STATE_BUCKET)
+                .option(COMPRESSION, SNAPPY)
+                .option("partitionOverwriteMode", "dynamic")
+                .mode(saveMode)
+                .parquet(path);
+    }
+
+    /**
+     * Read only the given buckets, the other partitions of the state are not listed.
+     */
+    private Dataset<Row> readBuckets(final SparkSession spark, final StructType schema, final List<Row> bucketRows) {
+        String[] bucketPaths = bucketRows.stream().map(r -> bucketPath(r).toString()).toArray(String[]::new);
+        // partition columns are moved to the end on read, restore the stored column order
+        return spark.read().schema(schema).option("basePath", path).parquet(bucketPaths)
+                .select(toColumnArray(List.of(schema.fieldNames())));
+    }
+
+    private Path bucketPath(final Row bucket) {
+        return new Path(path, APP_ID + "=" + ExternalCatalogUtils.escapePathName(bucket.getString(0))
+                + "/" + STATE_BUCKET + "=" + bucket.getInt(1));
+    }
+
+    private FileSystem getFileSystem(final SparkSession spark) {
+        try {
+            return new Path(path).getFileSystem(spark.sparkContext().hadoopConfiguration());
+        } catch (IOException e) {
+            throw new ExecuteTransformerException(e);
+        }
+    }
+
+    private static long countDataFiles(final FileSystem fs, final Path bucketPath) {
+        try {
+            return Arrays.stream(fs.listStatus(bucketPath))
+                    .filter(f -> f.isFile() && !f.getPath().getName().startsWith("_") && !f.getPath().getName().startsWith("."))
+                    .count();
+        } catch (IOException e) {
+            throw new ExecuteTransformerException(e);
+        }
+    }
+
+    private Dataset<Row> notExpired(final Dataset<Row> dataset) {
+        Instant keepFrom = Instant.now().minusSeconds(keepDays * 24 * 3600L);
+        if (dataset.schema().apply(EVENT_TIMESTAMP).dataType() == DataTypes.LongType) {
+            return dataset.filter(col(EVENT_TIMESTAMP).$greater$eq(keepFrom.toEpochMilli()));
+        }
+        return dataset.filter(col(EVENT_TIMESTAMP).$greater$eq(new Timestamp(keepFrom.toEpochMilli())));
+    }
+
+    private Column bucketColumn() {
+        Column[] hashColumns = toColumnArray(keyFields.subList(1, keyFields.size()));
+        return pmod(xxhash64(hashColumns), lit(buckets)).cast(DataTypes.IntegerType);
+    }
+}
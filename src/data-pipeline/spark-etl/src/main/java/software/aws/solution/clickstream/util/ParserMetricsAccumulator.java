@@ -0,0 +1,59 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.util;
+
+import org.apache.spark.util.AccumulatorV2;
+import software.aws.solution.clickstream.common.ParserMetricsSnapshot;
+
+/**
+ * Merges the {@link ParserMetricsSnapshot} drained by the tasks into the driver.
+ */
+public class ParserMetricsAccumulator extends AccumulatorV2<ParserMetricsSnapshot, ParserMetricsSnapshot> {
+    private static final long serialVersionUID = 1L;
+
+    private ParserMetricsSnapshot snapshot = new ParserMetricsSnapshot();
+
+    @Override
+    public boolean isZero() {
+        return snapshot.isEmpty();
+    }
+
+    @Override
+    public AccumulatorV2<ParserMetricsSnapshot, ParserMetricsSnapshot> copy() {
+        ParserMetricsAccumulator copy = new ParserMetricsAccumulator();
+        copy.snapshot = snapshot.copy();
+        return copy;
+    }
+
+    @Override
+    public void reset() {
+        snapshot = new ParserMetricsSnapshot();
+    }
+
+    @Override
+    public void add(final ParserMetricsSnapshot v) {
+        snapshot.merge(v);
+    }
+
+    @Override
+    public void merge(final AccumulatorV2<ParserMetricsSnapshot, ParserMetricsSnapshot> other) {
+        snapshot.merge(other.value());
+    }
+
+    @Override
+    public ParserMetricsSnapshot value() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.spark.SparkContext;
+import software.aws.solution.clickstream.exception.ExecuteTransformerException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs the table writes of a job. With a parallelism of 1 each write runs in the caller thread when
+ * it is submitted. With more, the writes are submitted from a bounded pool of driver threads in the
+ * given scheduler pool, so the cluster keeps working while the driver plans the next write. In both
+ * cases a failed table does not stop the others, {@link #awaitAll()} fails after all writes are done.
+ */
+@Slf4j
+public class SinkWriter implements AutoCloseable {
+    private static final String SCHEDULER_POOL_PROPERTY = "spark.scheduler.pool";
+    private static final AtomicInteger THREAD_SEQ = new AtomicInteger();
+
+    private final SparkContext sparkContext;
+    private final String schedulerPool;
+    private final ExecutorService executor;
+    private final Map<String, Future<Long>> pending = new LinkedHashMap<>();
+
+    public SinkWriter(final SparkContext sparkContext, final int parallelism, final String schedulerPool) {
+        this.sparkContext = sparkContext;
+        this.schedulerPool = schedulerPool;
+        this.executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "sink-writer-" + THREAD_SEQ.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        log.info("SinkWriter parallelism: " + parallelism + ", schedulerPool: " + schedulerPool);
+    }
+
+    /**
+     * Write a table, the row count and the write time are recorded as metrics named after the sink.
+     */
+    public synchronized void submit(final String sinkName, final LongSupplier write) {
+        if (executor == null) {
+            // the failure is kept like the one of a pooled write, so the next tables are still written
+            try {
+                pending.put(sinkName, CompletableFuture.completedFuture(timedWrite(sinkName, write)));
+            } catch (RuntimeException e) {
+                pending.put(sinkName, CompletableFuture.failedFuture(e));
+            }
+            return;
+        }
+        pending.put(sinkName, executor.submit(() -> {
+            sparkContext.setLocalProperty(SCHEDULER_POOL_PROPERTY, schedulerPool);
+            try {
+                return timedWrite(sinkName, write);
+            } finally {
+                sparkContext.setLocalProperty(SCHEDULER_POOL_PROPERTY, null);
+            }
+        }));
+    }
+
+    /**
+     * Wait for the submitted writes, returns the row count by sink name of all writes since the last call.
+     */
+    public synchronized Map<String, Long> awaitAll() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        List<String> failedSinks = new ArrayList<>();
+        Exception failure = null;
+        for (Map.Entry<String, Future<Long>> entry : pending.entrySet()) {
+            try {
+                counts.put(entry.getKey(), entry.getValue().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ExecuteTransformerException(e);
+            } catch (ExecutionException e) {
+                log.error("write failed for " + entry.getKey() + ", error: " + e.getCause().getMessage());
+                failedSinks.add(entry.getKey());
+                Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                if (failure == null) {
+                    failure = cause;
+                } else {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        pending.clear();
+        if (failure != null) {
+            ExecuteTransformerException exception = new ExecuteTransformerException("write failed for " + failedSinks);
+            exception.initCause(failure);
+            throw exception;
+        }
+        return counts;
+    }
+
+    private static long timedWrite(final String sinkName, final LongSupplier write) {
+        long start = System.currentTimeMillis();
+        long count = write.getAsLong();
+        long millis = System.currentTimeMillis() - start;
+        ETLMetric.record(count, sinkName);
+        ETLMetric.record(millis, sinkName + " millis");
+        return count;
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
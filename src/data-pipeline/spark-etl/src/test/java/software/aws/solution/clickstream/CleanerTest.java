@@ -15,11 +15,17 @@ package software.aws.solution.clickstream;
 
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
+import org.apache.spark.sql.types.DataTypes;
 import org.junit.jupiter.api.Test;
 import software.aws.solution.clickstream.transformer.*;
+import software.aws.solution.clickstream.util.ETLMetric;
+
+import java.util.Map;
 
 import static java.util.Objects.requireNonNull;
+import static org.apache.spark.sql.functions.lit;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static software.aws.solution.clickstream.util.ContextUtil.*;
 
 class CleanerTest extends BaseSparkTest {
@@ -58,6 +64,23 @@ class CleanerTest extends BaseSparkTest {
 
     }
 
+    @Test
+    public void should_observe_clean_metrics_without_extra_count() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.CleanerTest.should_observe_clean_metrics_without_extra_count
+        System.setProperty(APP_IDS_PROP, "uba-app");
+        ETLMetric.reset();
+
+        Dataset<Row> dataset = spark.read().json(requireNonNull(getClass().getResource("/original_data.json")).getPath());
+        Dataset<Row> cleanedDataset = cleaner.clean(dataset, "/data_schema.json");
+        long cleanedCount = cleanedDataset.collectAsList().size();
+
+        Map<String, Long> metrics = ETLMetric.summary();
+        assertEquals(2, cleanedCount);
+        assertEquals(cleanedCount, metrics.get("after filter"));
+        assertTrue(metrics.get("before filter") >= cleanedCount);
+        assertTrue(metrics.containsKey("corrupted"));
+    }
+
     @Test
     public void should_clean_when_data_has_corrupt_records() {
         String path = requireNonNull(getClass().getResource("/")).getPath();
@@ -110,4 +133,19 @@ class CleanerTest extends BaseSparkTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void should_prefilter_rows_of_unknown_ingest_app() {
+        //  DOWNLOAD_FILE=0 ./gradlew clean test --info --tests software.aws.solution.clickstream.CleanerTest.should_prefilter_rows_of_unknown_ingest_app
+        System.setProperty(APP_IDS_PROP, "uba-app");
+        System.setProperty(CLEAN_PREFILTER_APP_ID_PROP, "true");
+
+        Dataset<Row> dataset = spark.read().json(requireNonNull(getClass().getResource("/original_data.json")).getPath());
+        Dataset<Row> otherAppDataset = cleaner.clean(dataset.withColumn("appId", lit("other-app")), "/data_schema.json");
+        Dataset<Row> noAppDataset = cleaner.clean(dataset.withColumn("appId", lit(null).cast(DataTypes.StringType)), "/data_schema.json");
+        System.clearProperty(CLEAN_PREFILTER_APP_ID_PROP);
+
+        assertEquals(0, otherAppDataset.count());
+        assertEquals(2, noAppDataset.count());
+    }
+
+}
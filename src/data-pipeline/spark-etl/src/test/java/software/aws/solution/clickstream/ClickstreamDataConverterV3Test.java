@@ -13,14 +13,26 @@
 
 package software.aws.solution.clickstream;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.apache.spark.sql.*;
+import org.apache.spark.sql.types.StructType;
 import org.junit.jupiter.api.*;
+import software.aws.solution.clickstream.common.ParserMetrics;
 import software.aws.solution.clickstream.udfconverter.ClickstreamDataConverterV3;
+import software.aws.solution.clickstream.udfconverter.PartitionDataConverter;
+import software.aws.solution.clickstream.udfconverter.UDFHelper;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import static org.apache.spark.sql.functions.*;
 import static software.aws.solution.clickstream.util.ContextUtil.PROJECT_ID_PROP;
+import static software.aws.solution.clickstream.util.DatasetUtil.CORRUPT_RECORD;
 
 public class ClickstreamDataConverterV3Test extends BaseSparkTest {
     private ClickstreamDataConverterV3 converter;
@@ -88,4 +100,85 @@ public class ClickstreamDataConverterV3Test extends BaseSparkTest {
         Assertions.assertTrue(new File(corruptedDir).exists(), corruptedDir + " should exist");
     }
 
+    @Test
+    public void test_convert_by_partition_same_as_udf() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.ClickstreamDataConverterV3Test.test_convert_by_partition_same_as_udf
+        Dataset<Row> dataset = addFileName(readJsonDataset("/empty_latest_referrer.json"));
+        System.setProperty(PROJECT_ID_PROP, "projectId1");
+
+        Dataset<Row> byUdf = converter.convertByUDF(dataset);
+        Dataset<Row> byPartition = converter.convertByPartition(dataset);
+
+        Assertions.assertArrayEquals(byUdf.schema().fieldNames(), byPartition.schema().fieldNames());
+        Assertions.assertEquals(sortedJson(byUdf), sortedJson(byPartition));
+    }
+
+    @Test
+    public void test_convert_by_partition_streams_events_of_a_row() throws Exception {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.ClickstreamDataConverterV3Test.test_convert_by_partition_streams_events_of_a_row
+        Dataset<Row> dataset = addFileName(readJsonDataset("/empty_latest_referrer.json")).limit(1);
+        System.setProperty(PROJECT_ID_PROP, "projectId1");
+        String event = new ObjectMapper().readTree(dataset.first().<String>getAs("data")).get(0).toString();
+        int eventCount = 1000;
+        String data = "[" + String.join(",", Collections.nCopies(eventCount, event)) + "]";
+        Dataset<Row> bigRow = dataset.withColumn("data", lit(data));
+        int paramsIndex = bigRow.schema().size();
+        Row input = bigRow.withColumn("params", struct(converter.getUDFParamsColumns(bigRow))).first();
+
+        ParserMetrics.setEnabled(true);
+        ParserMetrics.Recorder recorder = ParserMetrics.startTaskRecording();
+        try {
+            Iterator<Row> output = new PartitionDataConverter(converter.getName(), converter.getTransformConfig(), paramsIndex)
+                    .call(List.of(input).iterator());
+            Assertions.assertTrue(output.hasNext());
+            output.next();
+            Assertions.assertEquals(1L, recorder.drain().getCount(ParserMetrics.Phase.JSON_PARSE.name()));
+
+            int rows = 1;
+            while (output.hasNext()) {
+                output.next();
+                rows++;
+            }
+            Assertions.assertEquals(eventCount, rows);
+            Assertions.assertEquals(eventCount - 1L, recorder.drain().getCount(ParserMetrics.Phase.JSON_PARSE.name()));
+        } finally {
+            ParserMetrics.stopTaskRecording(recorder);
+            ParserMetrics.setEnabled(false);
+        }
+    }
+
+    @Test
+    public void test_convert_by_partition_keeps_events_before_a_failure() throws Exception {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.ClickstreamDataConverterV3Test.test_convert_by_partition_keeps_events_before_a_failure
+        Dataset<Row> dataset = addFileName(readJsonDataset("/empty_latest_referrer.json")).limit(1);
+        System.setProperty(PROJECT_ID_PROP, "projectId1");
+        String event = new ObjectMapper().readTree(dataset.first().<String>getAs("data")).get(0).toString();
+        Dataset<Row> badRow = dataset.withColumn("data", lit("[" + event + "," + event + ",{\"event_type\":"));
+        int paramsIndex = badRow.schema().size();
+        Row input = badRow.withColumn("params", struct(converter.getUDFParamsColumns(badRow))).first();
+
+        Iterator<Row> output = new PartitionDataConverter(converter.getName(), converter.getTransformConfig(), paramsIndex)
+                .call(List.of(input).iterator());
+        List<Row> rows = new ArrayList<>();
+        output.forEachRemaining(rows::add);
+
+        int corruptIndex = ((StructType) UDFHelper.getUdfOutput().elementType()).fieldIndex(CORRUPT_RECORD);
+        List<Boolean> corrupt = new ArrayList<>();
+        for (Row row : rows) {
+            corrupt.add(!row.getStruct(paramsIndex).isNullAt(corruptIndex));
+        }
+        Assertions.assertEquals(List.of(false, false, true), corrupt);
+    }
+
+    // map columns have no defined entry order, compare the rows with sorted keys
+    private static List<String> sortedJson(final Dataset<Row> dataset) throws IOException {
+        ObjectMapper om = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        List<String> rows = new ArrayList<>();
+        for (String json : dataset.toJSON().collectAsList()) {
+            rows.add(om.writeValueAsString(om.readValue(json, Map.class)));
+        }
+        Collections.sort(rows);
+        return rows;
+    }
+
 }
@@ -0,0 +1,84 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+package software.aws.solution.clickstream;
+
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.api.java.UDF1;
+import org.apache.spark.sql.expressions.UserDefinedFunction;
+import org.apache.spark.sql.types.DataTypes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.aws.solution.clickstream.common.Constant;
+
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.udf;
+import static software.aws.solution.clickstream.util.ContextUtil.ENRICH_BROADCAST_MAX_KEYS_PROP;
+import static software.aws.solution.clickstream.util.ContextUtil.ENRICH_DISTINCT_KEY_RATIO_PROP;
+
+class DistinctKeyEnrichmentTest extends BaseSparkTest {
+
+    @AfterEach
+    void clearProperties() {
+        System.clearProperty(ENRICH_DISTINCT_KEY_RATIO_PROP);
+        System.clearProperty(ENRICH_BROADCAST_MAX_KEYS_PROP);
+    }
+
+    @Test
+    void should_enrich_by_distinct_keys_same_as_per_row() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.DistinctKeyEnrichmentTest.should_enrich_by_distinct_keys_same_as_per_row
+        Dataset<Row> dataset =
+                spark.read().json(requireNonNull(getClass().getResource("/event_v2/transformed_data_event_v2.json")).getPath());
+        Dataset<Row> repeated = dataset.union(dataset).union(dataset).union(dataset);
+        UserDefinedFunction lengthUdf = udf((UDF1<String, Integer>) ua -> ua == null ? null : ua.length(), DataTypes.IntegerType);
+
+        Dataset<Row> perRowDataset = DistinctKeyEnrichment.enrich(repeated, lengthUdf, "ua_length", col(Constant.UA));
+        Assertions.assertFalse(hasJoin(perRowDataset), "enrichment is off by default");
+        List<Row> perRow = perRowDataset.select(Constant.EVENT_ID, "ua_length").orderBy(Constant.EVENT_ID).collectAsList();
+
+        System.setProperty(ENRICH_DISTINCT_KEY_RATIO_PROP, "0.5");
+        Dataset<Row> distinctKeyDataset = DistinctKeyEnrichment.enrich(repeated, lengthUdf, "ua_length", col(Constant.UA));
+        Assertions.assertTrue(distinctKeyDataset.queryExecution().executedPlan().toString().contains("BroadcastHashJoin"));
+        List<Row> distinctKey = distinctKeyDataset
+                .select(Constant.EVENT_ID, "ua_length").orderBy(Constant.EVENT_ID).collectAsList();
+
+        Assertions.assertEquals(repeated.columns().length + 1, distinctKeyDataset.columns().length);
+        Assertions.assertEquals(perRow, distinctKey);
+        Assertions.assertFalse(repeated.storageLevel().useMemory(), "the input is not left cached");
+    }
+
+    @Test
+    void should_enrich_per_row_when_keys_exceed_broadcast_max() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.DistinctKeyEnrichmentTest.should_enrich_per_row_when_keys_exceed_broadcast_max
+        Dataset<Row> dataset =
+                spark.read().json(requireNonNull(getClass().getResource("/event_v2/transformed_data_event_v2.json")).getPath());
+        Dataset<Row> repeated = dataset.union(dataset).union(dataset).union(dataset);
+        UserDefinedFunction lengthUdf = udf((UDF1<String, Integer>) ua -> ua == null ? null : ua.length(), DataTypes.IntegerType);
+
+        System.setProperty(ENRICH_DISTINCT_KEY_RATIO_PROP, "0.5");
+        System.setProperty(ENRICH_BROADCAST_MAX_KEYS_PROP, "0");
+        Dataset<Row> result = DistinctKeyEnrichment.enrich(repeated, lengthUdf, "ua_length", col(Constant.UA));
+
+        Assertions.assertFalse(hasJoin(result));
+        Assertions.assertEquals(repeated.count(), result.filter(col("ua_length").isNotNull().or(col(Constant.UA).isNull())).count());
+    }
+
+    private static boolean hasJoin(final Dataset<Row> dataset) {
+        return dataset.queryExecution().executedPlan().toString().contains("Join");
+    }
+}
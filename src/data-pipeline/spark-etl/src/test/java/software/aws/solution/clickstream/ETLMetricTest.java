@@ -0,0 +1,107 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream;
+
+import org.apache.spark.api.java.function.MapPartitionsFunction;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Encoders;
+import org.apache.spark.sql.Row;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.aws.solution.clickstream.common.Cache;
+import software.aws.solution.clickstream.common.ParserMetrics;
+import software.aws.solution.clickstream.util.ETLMetric;
+import software.aws.solution.clickstream.util.ParserMetricsAccumulator;
+
+import java.util.List;
+import java.util.Map;
+
+class ETLMetricTest extends BaseSparkTest {
+
+    @AfterEach
+    void resetMetrics() {
+        ETLMetric.reset();
+    }
+
+    @Test
+    void should_register_new_parser_metrics_after_reset() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.ETLMetricTest.should_register_new_parser_metrics_after_reset
+        ParserMetricsAccumulator first = ETLMetric.registerParserMetrics(spark);
+
+        ETLMetric.reset();
+        Assertions.assertNull(ETLMetric.getParserMetrics());
+
+        ParserMetricsAccumulator second = ETLMetric.registerParserMetrics(spark);
+        Assertions.assertNotSame(first, second);
+        Assertions.assertTrue(second.isRegistered());
+        Assertions.assertSame(second, ETLMetric.getParserMetrics());
+    }
+
+    @Test
+    void should_leave_out_observations_not_executed() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.ETLMetricTest.should_leave_out_observations_not_executed
+        ETLMetric.reset();
+        Dataset<Row> executed = ETLMetric.observe(spark.range(5).toDF(), "executed");
+        ETLMetric.observe(spark.range(3).toDF(), "not executed");
+        executed.collectAsList();
+
+        Map<String, Long> metrics = ETLMetric.summary();
+        Assertions.assertEquals(5L, metrics.get("executed"));
+        Assertions.assertFalse(metrics.containsKey("not executed"));
+        Assertions.assertTrue(metrics.keySet().stream().noneMatch(name -> name.startsWith("cache ")));
+    }
+
+    @Test
+    void should_add_parser_metrics_of_each_task_once() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.ETLMetricTest.should_add_parser_metrics_of_each_task_once
+        ParserMetricsAccumulator accumulator = ETLMetric.registerParserMetrics(spark);
+        ParserMetrics.record(ParserMetrics.Phase.UA, ParserMetrics.start());
+
+        long rows = spark.range(0, 100, 1, 4).mapPartitions((MapPartitionsFunction<Long, Long>) ids -> {
+            ETLMetric.collectParserMetrics(accumulator);
+            long count = 0;
+            while (ids.hasNext()) {
+                ids.next();
+                ParserMetrics.record(ParserMetrics.Phase.URI_PARSE, ParserMetrics.start());
+                count++;
+            }
+            return List.of(count).iterator();
+        }, Encoders.LONG()).collectAsList().stream().mapToLong(Long::longValue).sum();
+
+        Assertions.assertEquals(100L, rows);
+        Assertions.assertEquals(100L, accumulator.value().getCount(ParserMetrics.Phase.URI_PARSE.name()));
+        Assertions.assertEquals(0L, accumulator.value().getCount(ParserMetrics.Phase.UA.name()));
+        Assertions.assertEquals(1L, ParserMetrics.drain().getCount(ParserMetrics.Phase.UA.name()));
+    }
+
+    @Test
+    void should_add_cache_stats_of_the_tasks() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.ETLMetricTest.should_add_cache_stats_of_the_tasks
+        ParserMetricsAccumulator accumulator = ETLMetric.registerParserMetrics(spark);
+
+        spark.range(0, 100, 1, 4).mapPartitions((MapPartitionsFunction<Long, Long>) ids -> {
+            ETLMetric.collectParserMetrics(accumulator);
+            Cache<Long, Long> partitionCache = new Cache<>("etl_metric_test", 16);
+            ids.forEachRemaining(id -> partitionCache.get(id % 2, key -> key));
+            return List.of(0L).iterator();
+        }, Encoders.LONG()).collectAsList();
+
+        ETLMetric.summary();
+        Map<String, Long> cacheStats = accumulator.value().getCacheStats();
+        Assertions.assertEquals(92L, cacheStats.get("etl_metric_test hit"));
+        Assertions.assertEquals(8L, cacheStats.get("etl_metric_test miss"));
+    }
+}
@@ -50,6 +50,8 @@ class ETLRunnerTest extends ETLRunnerBaseTest {
 
         Dataset<Row> dataset = runner.readInputDataset(false);
         assertEquals(9, dataset.count());
+        long inputFileCount = dataset.select(TransformerV3.INPUT_FILE_NAME).distinct().count();
+        assertEquals(inputFileCount, ETLMetric.getCounts().get("loaded input files"));
     }
 
     @Test
@@ -136,6 +138,41 @@ class ETLRunnerTest extends ETLRunnerBaseTest {
                 .toFile().isDirectory());
     }
 
+    @Test
+    public void should_write_result_by_target_file_size() {
+        //DOWNLOAD_FILE=1 ./gradlew clean test --info --tests software.aws.solution.clickstream.ETLRunnerTest.should_write_result_by_target_file_size
+        System.setProperty(DEBUG_LOCAL_PROP, "true");
+        System.setProperty(APP_IDS_PROP, "id1,id2,uba-app");
+        System.setProperty(PROJECT_ID_PROP, "projectId1");
+        System.setProperty(OUTPUT_TARGET_FILE_BYTES_PROP, String.valueOf(128 * 1024 * 1024));
+
+        spark.sparkContext().addFile(requireNonNull(getClass().getResource("/GeoLite2-City.mmdb")).getPath());
+
+        List<String> transformers = Lists.newArrayList();
+        transformers.add("software.aws.solution.clickstream.Transformer");
+        transformers.add("software.aws.solution.clickstream.UAEnrichment");
+        transformers.add("software.aws.solution.clickstream.IPEnrichment");
+
+        ETLRunnerConfig config = getRunnerConfig(transformers, "writeResultBySize_parquet");
+        ETLRunner runner = new ETLRunner(spark, config);
+
+        Dataset<Row> sourceDataset =
+                spark.read().json(requireNonNull(getClass().getResource("/original_data.json")).getPath());
+        Dataset<Row> dataset = runner.executeTransformers(sourceDataset, transformers);
+        String advisorySize = spark.conf().get("spark.sql.adaptive.advisoryPartitionSizeInBytes");
+
+        String outPath = "/tmp/test-spark-etl/" + new Date().getTime();
+        long resultCount = runner.writeResult(outPath, dataset, TableName.ODS_EVENTS);
+        System.clearProperty(OUTPUT_TARGET_FILE_BYTES_PROP);
+
+        assertEquals(dataset.count(), resultCount);
+        File partitionDir = Paths.get(outPath, "ods_events/partition_app=uba-app/partition_year=2023" +
+                "/partition_month=04/partition_day=24").toFile();
+        assertTrue(partitionDir.isDirectory());
+        assertEquals(1, requireNonNull(partitionDir.list((dir, name) -> name.endsWith(".parquet"))).length);
+        assertEquals(advisorySize, spark.conf().get("spark.sql.adaptive.advisoryPartitionSizeInBytes"));
+    }
+
     private void checkSchema(Dataset<Row> dataset) throws IOException {
         dataset.printSchema();
         System.out.println(dataset.schema().toDDL());
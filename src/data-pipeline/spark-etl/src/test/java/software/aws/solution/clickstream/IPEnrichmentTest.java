@@ -19,6 +19,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.net.InetAddress;
 
 import static java.util.Objects.requireNonNull;
 import static org.apache.spark.sql.functions.lit;
@@ -106,5 +107,51 @@ class IPEnrichmentTest extends BaseSparkTest {
 
         String expectedJson = this.resourceFileAsString("/expected/empty_ip_enrich_data_v2.json");
         Assertions.assertEquals(expectedJson, transformedDataset.first().prettyJson());
-    }    
-}
\ No newline at end of file
+    }
+
+    @Test
+    public void should_share_geo_reader_across_lookups() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.IPEnrichmentTest.should_share_geo_reader_across_lookups
+        System.setProperty(APP_IDS_PROP, "uba-app");
+        System.setProperty(PROJECT_ID_PROP, "test_project_id_01");
+        spark.sparkContext().addFile(requireNonNull(getClass().getResource("/GeoLite2-City.mmdb")).getPath());
+
+        Dataset<Row> dataset = spark.read().json(requireNonNull(getClass().getResource("/transformed_data.json")).getPath());
+        ipEnrichment.transform(dataset.withColumn("geo_for_enrich", dataset.col("geo_for_enrich").withField("ip", lit("18.233.165.1")))).first();
+        long openCount = GeoDatabaseReader.getReaderOpenCount();
+        long lookupCount = GeoDatabaseReader.getLookupCount();
+
+        ipEnrichment.transform(dataset.withColumn("geo_for_enrich", dataset.col("geo_for_enrich").withField("ip", lit("18.233.165.2")))).first();
+        ipEnrichment.transform(dataset.withColumn("geo_for_enrich", dataset.col("geo_for_enrich").withField("ip", lit("18.233.165.3")))).first();
+
+        Assertions.assertEquals(openCount, GeoDatabaseReader.getReaderOpenCount());
+        // both addresses are in the network of the first one
+        Assertions.assertEquals(lookupCount, GeoDatabaseReader.getLookupCount());
+    }
+
+    @Test
+    public void should_lookup_same_geo_by_network() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.IPEnrichmentTest.should_lookup_same_geo_by_network
+        spark.sparkContext().addFile(requireNonNull(getClass().getResource("/GeoLite2-City.mmdb")).getPath());
+
+        GeoNetworkIndex<IPEnrichment.LookupResult> index = new GeoNetworkIndex<>(IPEnrichment.LookupResult.class, 100);
+        String[] ips = {"18.233.165.1", "18.233.165.2", "13.212.229.59", "::ffff:13.212.229.59", "8.8.8.8", "8.8.4.4",
+                "10.0.0.1", "10.0.0.2", "2a00:1450:4001:80e::200e", "2a00:1450:4001:80e::2004"};
+        for (String ip : ips) {
+            IPEnrichment.LookupResult expected = GeoDatabaseReader.lookup(InetAddress.getByName(ip), IPEnrichment.LookupResult.class);
+            IPEnrichment.LookupResult actual = index.lookup(IpAddressParser.parse(ip));
+            assertEquals(geoNames(expected), geoNames(actual), ip);
+        }
+        Assertions.assertTrue(index.size() < ips.length);
+    }
+
+    private static String geoNames(final IPEnrichment.LookupResult result) {
+        if (result == null) {
+            return null;
+        }
+        return String.join("/",
+                String.valueOf(result.getCity() == null ? null : result.getCity().getName()),
+                String.valueOf(result.getContinent() == null ? null : result.getContinent().getName()),
+                String.valueOf(result.getCountry() == null ? null : result.getCountry().getName()));
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+package software.aws.solution.clickstream;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class IpAddressParserTest {
+
+    @Test
+    void should_parse_same_bytes_as_inet_address() throws UnknownHostException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.IpAddressParserTest.should_parse_same_bytes_as_inet_address
+        String[] literals = {
+                "13.212.229.59", "0.0.0.0", "255.255.255.255", "127.1", "10.1.2", "3232235777", "010.001.02.3",
+                "::", "::1", "2001:db8::1", "2001:DB8:0:0:8:800:200C:417A", "1:2:3:4:5:6:7::", "::2:3:4:5:6:7:8",
+                "2a00:1450:4001:80e::200e", "00001::", "::13.212.229.59", "1:2:3:4:5:6:1.2.3.4",
+                "::ffff:13.212.229.59", "::ffff:d4d4:e53b", "[2001:db8::1]", "fe80::1%2", "[fe80::1%2]",
+        };
+        for (String literal : literals) {
+            assertArrayEquals(InetAddress.getByName(literal).getAddress(), IpAddressParser.parse(literal), literal);
+        }
+    }
+
+    @Test
+    void should_not_parse_host_names_and_invalid_literals() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.IpAddressParserTest.should_not_parse_host_names_and_invalid_literals
+        String[] values = {
+                null, "", "313.212.229.599", "1.2.3.4.5", "1..2.3", "1.2.3.", "4294967296", "-1.2.3.4", " 1.2.3.4", "example.com",
+                "[1.2.3.4]", "[::1", "1::2::3", ":1::", "1:", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7:8::", "10000::", "::1.2.3",
+                "::1.2.3.256", "1.2.3.4::", "fe80::1%", "fe80::1%eth0", "g::1",
+        };
+        for (String value : values) {
+            assertNull(IpAddressParser.parse(value), value);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.aws.solution.clickstream.exception.ExecuteTransformerException;
+import software.aws.solution.clickstream.util.DatasetUtil;
+import software.aws.solution.clickstream.util.KeyedStateStore;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.apache.spark.sql.functions.col;
+import static org.apache.spark.sql.functions.expr;
+import static org.apache.spark.sql.functions.max_by;
+import static org.apache.spark.sql.functions.struct;
+import static software.aws.solution.clickstream.util.ContextUtil.KEYED_STATE_STORE_PROP;
+import static software.aws.solution.clickstream.util.ContextUtil.STATE_STORE_COMPACT_FILES_PROP;
+import static software.aws.solution.clickstream.util.ContextUtil.WAREHOUSE_DIR_PROP;
+
+class KeyedStateStoreTest extends BaseSparkTest {
+    private static final StructType SCHEMA = DataTypes.createStructType(new StructField[]{
+            DataTypes.createStructField("app_id", DataTypes.StringType, true),
+            DataTypes.createStructField("user_pseudo_id", DataTypes.StringType, true),
+            DataTypes.createStructField("event_timestamp", DataTypes.LongType, true),
+            DataTypes.createStructField("user_name", DataTypes.StringType, true),
+    });
+
+    @AfterEach
+    void clearProperties() {
+        System.clearProperty(STATE_STORE_COMPACT_FILES_PROP);
+        System.clearProperty(KEYED_STATE_STORE_PROP);
+    }
+
+    @Test
+    void should_upsert_and_merge_batch_keys_only() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.KeyedStateStoreTest.should_upsert_and_merge_batch_keys_only
+        System.setProperty(WAREHOUSE_DIR_PROP, "/tmp/warehouse/keyed_state_store/" + new Date().getTime());
+        System.setProperty(STATE_STORE_COMPACT_FILES_PROP, "1");
+        long now = System.currentTimeMillis();
+
+        Dataset<Row> batch1 = createDataset(
+                RowFactory.create("app1", "u1", now - 2000, "name-a"),
+                RowFactory.create("app1", "u2", now - 2000, "name-x"),
+                RowFactory.create("app1", "u3", now - 100 * 24 * 3600 * 1000L, "expired")
+        );
+        KeyedStateStore store = new KeyedStateStore(
+                DatasetUtil.addSchemaToMap(batch1, "etl_test_user_props", "_v1").getState(),
+                List.of("app_id", "user_pseudo_id"), KeyedStateStoreTest::aggUser, 30);
+
+        Assertions.assertEquals(2, store.upsert(batch1).count());
+
+        List<Row> merged2 = store.upsert(createDataset(RowFactory.create("app1", "u1", now - 1000, "name-b")))
+                .collectAsList();
+        Assertions.assertEquals(1, merged2.size());
+        Assertions.assertEquals("name-b", merged2.get(0).getAs("user_name"));
+
+        List<Row> merged3 = store.upsert(createDataset(RowFactory.create("app1", "u2", now - 3000, "name-y")))
+                .collectAsList();
+        Assertions.assertEquals(1, merged3.size());
+        Assertions.assertEquals("name-x", merged3.get(0).getAs("user_name"));
+
+        // compacted buckets keep one row per key
+        Dataset<Row> state = spark.read().parquet(store.getPath());
+        Assertions.assertEquals(1, state.filter(col("user_pseudo_id").equalTo("u1")).count());
+        Assertions.assertEquals(Arrays.asList(SCHEMA.fieldNames()), Arrays.asList(store.upsert(batch1).columns()));
+    }
+
+    @Test
+    void should_sweep_buckets_older_than_kept_days() throws IOException {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.KeyedStateStoreTest.should_sweep_buckets_older_than_kept_days
+        System.setProperty(WAREHOUSE_DIR_PROP, "/tmp/warehouse/keyed_state_store_sweep/" + new Date().getTime());
+        long now = System.currentTimeMillis();
+
+        Dataset<Row> coldBatch = createDataset(RowFactory.create("cold_app", "u1", now - 1000, "name-a"));
+        KeyedStateStore store = new KeyedStateStore(
+                DatasetUtil.addSchemaToMap(coldBatch, "etl_test_user_props", "_v1").getState(),
+                List.of("app_id", "user_pseudo_id"), KeyedStateStoreTest::aggUser, 30);
+        store.upsert(coldBatch);
+
+        Path coldApp = new Path(store.getPath(), "app_id=cold_app");
+        FileSystem fs = coldApp.getFileSystem(spark.sparkContext().hadoopConfiguration());
+        long longAgo = now - 31 * 24 * 3600 * 1000L;
+        for (FileStatus bucket : fs.listStatus(coldApp)) {
+            for (FileStatus file : fs.listStatus(bucket.getPath())) {
+                fs.setTimes(file.getPath(), longAgo, -1);
+            }
+        }
+
+        store.upsert(createDataset(RowFactory.create("hot_app", "u1", now - 1000, "name-b")));
+
+        Assertions.assertFalse(fs.exists(coldApp));
+        Assertions.assertTrue(fs.exists(new Path(store.getPath(), "_last_sweep")));
+        Assertions.assertEquals(1, spark.read().parquet(store.getPath()).count());
+    }
+
+    @Test
+    void should_reject_keyed_state_store_for_v2_transformer() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.KeyedStateStoreTest.should_reject_keyed_state_store_for_v2_transformer
+        System.setProperty(KEYED_STATE_STORE_PROP, "true");
+        TransformerV2 transformer = new TransformerV2();
+        Assertions.assertThrows(ExecuteTransformerException.class, () -> transformer.transform(createDataset()));
+    }
+
+    private Dataset<Row> createDataset(final Row... rows) {
+        return spark.createDataFrame(Arrays.asList(rows), SCHEMA);
+    }
+
+    private static Dataset<Row> aggUser(final Dataset<Row> dataset) {
+        return dataset.groupBy("app_id", "user_pseudo_id")
+                .agg(max_by(struct(expr("*")), col("event_timestamp")).alias("user"))
+                .select(expr("user.*"));
+    }
+}
@@ -17,6 +17,7 @@ package software.aws.solution.clickstream;
 import org.apache.spark.sql.Dataset;
 import org.apache.spark.sql.Row;
 import org.junit.jupiter.api.Assertions;
+import org.apache.spark.unsafe.types.UTF8String;
 import org.junit.jupiter.api.Test;
 import software.aws.solution.clickstream.transformer.*;
 
@@ -56,4 +57,16 @@ public class MaxLengthTransformerTest extends BaseSparkTest {
         Assertions.assertEquals("我爱", MaxLengthTransformer.checkStringValueLength("我爱你，亚马逊", 8));
     }
 
+    @Test
+    public void test_truncate_utf8_same_as_string() {
+        // DOWNLOAD_FILE=0 ./gradlew clean test --info --tests software.aws.solution.clickstream.MaxLengthTransformerTest.test_truncate_utf8_same_as_string
+        List<String> values = List.of("abc", "我爱你，亚马逊", "héllo wörld", "a\uD83D\uDE00b\uD83D\uDE00c", "");
+        for (String value : values) {
+            for (int len = 0; len <= 20; len++) {
+                Assertions.assertEquals(MaxLengthTransformer.checkStringValueLength(value, len),
+                        MaxLengthTransformer.truncateUtf8(UTF8String.fromString(value), len).toString(), value + ", " + len);
+            }
+        }
+    }
+
 }
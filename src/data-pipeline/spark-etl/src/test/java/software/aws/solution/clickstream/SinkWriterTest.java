@@ -0,0 +1,97 @@
+/**
+ *  Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not use this file except in compliance
+ *  with the License. A copy of the License is located at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  or in the 'license' file accompanying this file. This file is distributed on an 'AS IS' BASIS, WITHOUT WARRANTIES
+ *  OR CONDITIONS OF ANY KIND, express or implied. See the License for the specific language governing permissions
+ *  and limitations under the License.
+ */
+
+
+package software.aws.solution.clickstream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.aws.solution.clickstream.exception.ExecuteTransformerException;
+import software.aws.solution.clickstream.util.ETLMetric;
+import software.aws.solution.clickstream.util.SinkWriter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+class SinkWriterTest extends BaseSparkTest {
+
+    @Test
+    void should_write_tables_concurrently_in_scheduler_pool() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.SinkWriterTest.should_write_tables_concurrently_in_scheduler_pool
+        Map<String, String> pools = new ConcurrentHashMap<>();
+        try (SinkWriter writer = new SinkWriter(spark.sparkContext(), 2, "sink")) {
+            writer.submit("sink a", () -> {
+                pools.put("a", spark.sparkContext().getLocalProperty("spark.scheduler.pool"));
+                return spark.range(10).count();
+            });
+            writer.submit("sink b", () -> {
+                pools.put("b", spark.sparkContext().getLocalProperty("spark.scheduler.pool"));
+                return spark.range(20).count();
+            });
+
+            Map<String, Long> counts = writer.awaitAll();
+            Assertions.assertEquals(10L, counts.get("sink a"));
+            Assertions.assertEquals(20L, counts.get("sink b"));
+        }
+        Assertions.assertEquals("sink", pools.get("a"));
+        Assertions.assertEquals("sink", pools.get("b"));
+        Assertions.assertEquals(20L, ETLMetric.getCounts().get("sink b"));
+        Assertions.assertTrue(ETLMetric.getCounts().containsKey("sink b millis"));
+    }
+
+    @Test
+    void should_isolate_failed_table_write() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.SinkWriterTest.should_isolate_failed_table_write
+        try (SinkWriter writer = new SinkWriter(spark.sparkContext(), 2, "sink")) {
+            writer.submit("sink failed", () -> {
+                throw new IllegalStateException("write failed");
+            });
+            writer.submit("sink ok", () -> spark.range(5).count());
+
+            ExecuteTransformerException exception = Assertions.assertThrows(ExecuteTransformerException.class, writer::awaitAll);
+            Assertions.assertTrue(exception.getMessage().contains("sink failed"));
+            Assertions.assertEquals("write failed", exception.getCause().getMessage());
+        }
+        Assertions.assertEquals(5L, ETLMetric.getCounts().get("sink ok"));
+    }
+
+    @Test
+    void should_isolate_failed_table_write_without_parallelism() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.SinkWriterTest.should_isolate_failed_table_write_without_parallelism
+        try (SinkWriter writer = new SinkWriter(spark.sparkContext(), 1, "sink")) {
+            writer.submit("sink inline failed", () -> {
+                throw new IllegalStateException("inline write failed");
+            });
+            writer.submit("sink inline ok", () -> spark.range(7).count());
+
+            ExecuteTransformerException exception = Assertions.assertThrows(ExecuteTransformerException.class, writer::awaitAll);
+            Assertions.assertTrue(exception.getMessage().contains("sink inline failed"));
+            Assertions.assertFalse(exception.getMessage().contains("sink inline ok"));
+            Assertions.assertEquals("inline write failed", exception.getCause().getMessage());
+        }
+        Assertions.assertEquals(7L, ETLMetric.getCounts().get("sink inline ok"));
+    }
+
+    @Test
+    void should_write_in_caller_thread_without_parallelism() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.SinkWriterTest.should_write_in_caller_thread_without_parallelism
+        Thread caller = Thread.currentThread();
+        try (SinkWriter writer = new SinkWriter(spark.sparkContext(), 1, "sink")) {
+            writer.submit("sink single", () -> {
+                Assertions.assertSame(caller, Thread.currentThread());
+                return 1L;
+            });
+            Assertions.assertEquals(1L, writer.awaitAll().get("sink single"));
+        }
+    }
+}
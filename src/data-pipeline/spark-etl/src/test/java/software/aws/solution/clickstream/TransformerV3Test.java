@@ -22,6 +22,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import software.aws.solution.clickstream.common.Constant;
 import software.aws.solution.clickstream.model.ModelV2;
+import software.aws.solution.clickstream.udfconverter.ClickstreamDataConverterV3;
 import software.aws.solution.clickstream.util.*;
 
 import java.io.IOException;
@@ -349,4 +350,21 @@ class TransformerV3Test extends BaseSparkTest {
         transformer.postTransform(datasetEvent);  // should no error
     }
 
-}
\ No newline at end of file
+    @Test
+    void should_pass_ingest_validation_without_changing_transform_config() {
+        // ./gradlew clean test --info --tests software.aws.solution.clickstream.TransformerV3Test.should_pass_ingest_validation_without_changing_transform_config
+        System.setProperty(APP_IDS_PROP, "uba-app");
+        System.setProperty(PROJECT_ID_PROP, "test_project_id_01");
+        System.setProperty(SINGLE_PARSE_CLEAN_PROP, "true");
+        try {
+            ClickstreamDataConverterV3 converter = (ClickstreamDataConverterV3) transformer.getDatasetTransformer();
+
+            Assertions.assertNull(transformer.getTransformConfig().getIngestValidation());
+            Assertions.assertNotNull(converter.getTransformConfig().getIngestValidation());
+            Assertions.assertSame(transformer.getTransformConfig().getAppRuleConfig(), converter.getTransformConfig().getAppRuleConfig());
+        } finally {
+            System.clearProperty(SINGLE_PARSE_CLEAN_PROP);
+        }
+    }
+
+}